@@ -0,0 +1,209 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import dev.turtywurty.pepolang.parser.Statement;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * How objects of a class are laid out in native code.
+ * <p>
+ * An object is a struct whose first member points to the class's vtable, followed by the fields of its superclasses,
+ * outermost first, and then its own fields. Since a subclass starts with the same members as its superclass, a
+ * pointer to it can be used wherever the superclass is expected. The vtable starts with the class's type descriptor,
+ * which tells the garbage collector how big an object is and where its pointer fields are, followed by one slot per
+ * method signature, where a subclass keeps the slots of its superclass, replaces the implementation of the ones it
+ * overrides and adds slots for new methods after them.
+ */
+final class ClassLayout {
+    /**
+     * The struct member that points to the vtable.
+     */
+    static final int VTABLE_INDEX = 0;
+    /**
+     * The vtable entry of the first method slot, after the type descriptor.
+     */
+    static final int FIRST_SLOT_ENTRY = 1;
+
+    private final String name;
+    private final Statement.ClassStatement declaration;
+    private final @Nullable ClassLayout superclass;
+    private final LLVMTypeRef structType;
+    private final List<String> fieldNames = new ArrayList<>();
+    private final List<LLVMTypeRef> fieldTypes = new ArrayList<>();
+    private final List<MethodSlot> slots = new ArrayList<>();
+    private final List<Constructor> constructors = new ArrayList<>();
+    private final List<ClassLayout> subclasses = new ArrayList<>();
+    private LLVMValueRef vtable;
+
+    ClassLayout(String name, Statement.ClassStatement declaration, @Nullable ClassLayout superclass, LLVMTypeRef structType) {
+        this.name = name;
+        this.declaration = declaration;
+        this.superclass = superclass;
+        this.structType = structType;
+        if (superclass != null) {
+            this.fieldNames.addAll(superclass.fieldNames);
+            this.fieldTypes.addAll(superclass.fieldTypes);
+            this.slots.addAll(superclass.slots);
+            superclass.subclasses.add(this);
+        }
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    Statement.ClassStatement getDeclaration() {
+        return this.declaration;
+    }
+
+    @Nullable ClassLayout getSuperclass() {
+        return this.superclass;
+    }
+
+    LLVMTypeRef getStructType() {
+        return this.structType;
+    }
+
+    /**
+     * @return the types of the struct's members, starting with the vtable pointer
+     */
+    List<LLVMTypeRef> getMemberTypes(LLVMTypeRef pointerType) {
+        List<LLVMTypeRef> members = new ArrayList<>(this.fieldTypes.size() + 1);
+        members.add(pointerType);
+        members.addAll(this.fieldTypes);
+        return members;
+    }
+
+    LLVMValueRef getVtable() {
+        return this.vtable;
+    }
+
+    void setVtable(LLVMValueRef vtable) {
+        this.vtable = vtable;
+    }
+
+    List<MethodSlot> getSlots() {
+        return Collections.unmodifiableList(this.slots);
+    }
+
+    void addField(String name, LLVMTypeRef type) {
+        this.fieldNames.add(name);
+        this.fieldTypes.add(type);
+    }
+
+    /**
+     * @return the struct member that holds the field, or -1 if neither the class nor its superclasses declare it
+     */
+    int getFieldIndex(String name) {
+        // Searched from the end, so a field hides a superclass field with the same name
+        int index = this.fieldNames.lastIndexOf(name);
+        return index < 0 ? -1 : index + 1;
+    }
+
+    LLVMTypeRef getFieldType(int fieldIndex) {
+        return this.fieldTypes.get(fieldIndex - 1);
+    }
+
+    /**
+     * Adds a method implementation, overriding the superclass slot with the same key if there is one.
+     *
+     * @param key the method's name mangled with its parameter types
+     */
+    void addMethod(String key, String methodName, int arity, LLVMValueRef implementation, LLVMTypeRef functionType) {
+        for (int index = 0; index < this.slots.size(); index++) {
+            MethodSlot slot = this.slots.get(index);
+            if (slot.key().equals(key)) {
+                // Calls through the superclass use its function type, so an override has to return the same type
+                if (!LLVM.LLVMGetReturnType(functionType).equals(LLVM.LLVMGetReturnType(slot.functionType())))
+                    throw new UnsupportedOperationException("Method '" + methodName + "' of class '" + this.name +
+                            "' returns a different type than the method it overrides!");
+
+                this.slots.set(index, new MethodSlot(key, methodName, arity, index, implementation, slot.functionType()));
+                return;
+            }
+        }
+
+        this.slots.add(new MethodSlot(key, methodName, arity, this.slots.size(), implementation, functionType));
+    }
+
+    /**
+     * @return the slot with the key, or else the only slot with the name and arity, or {@code null} if there is no
+     * such slot or several
+     */
+    @Nullable MethodSlot findMethod(String key, String methodName, int arity) {
+        MethodSlot found = null;
+        for (MethodSlot slot : this.slots) {
+            if (slot.key().equals(key))
+                return slot;
+
+            if (slot.name().equals(methodName) && slot.arity() == arity) {
+                if (found != null)
+                    return null;
+
+                found = slot;
+            }
+        }
+
+        return found;
+    }
+
+    void addConstructor(String key, int arity, LLVMValueRef function) {
+        this.constructors.add(new Constructor(key, arity, function));
+    }
+
+    boolean hasConstructors() {
+        return !this.constructors.isEmpty();
+    }
+
+    /**
+     * @return the constructor with the key, or else the only one with the arity, or {@code null}
+     */
+    @Nullable LLVMValueRef findConstructor(String key, int arity) {
+        Constructor found = null;
+        for (Constructor constructor : this.constructors) {
+            if (constructor.key().equals(key))
+                return constructor.function();
+
+            if (constructor.arity() == arity) {
+                if (found != null)
+                    return null;
+
+                found = constructor;
+            }
+        }
+
+        return found == null ? null : found.function();
+    }
+
+    /**
+     * @return whether a subclass, at any depth, has its own implementation of the slot. If not, every object that is
+     * statically of this class runs the same implementation, so calls to it do not need the vtable.
+     */
+    boolean isOverridden(MethodSlot slot) {
+        for (ClassLayout subclass : this.subclasses) {
+            MethodSlot subclassSlot = subclass.slots.get(slot.index());
+            if (!subclassSlot.implementation().equals(slot.implementation()) || subclass.isOverridden(subclassSlot))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param key            the method's name mangled with its parameter types
+     * @param index          the position of the slot among the class's slots, which is its vtable entry minus
+     *                       {@link #FIRST_SLOT_ENTRY}
+     * @param implementation the function that objects of this class run for the method
+     * @param functionType   the type of the method's functions, which take the object as their first parameter
+     */
+    record MethodSlot(String key, String name, int arity, int index, LLVMValueRef implementation,
+                      LLVMTypeRef functionType) {
+    }
+
+    private record Constructor(String key, int arity, LLVMValueRef function) {
+    }
+}
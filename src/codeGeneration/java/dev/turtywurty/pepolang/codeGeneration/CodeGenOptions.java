@@ -0,0 +1,32 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import dev.turtywurty.pepolang.semanticAnalysis.ExecutionProfile;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+
+/**
+ * Options for {@link LLVMCodeGenerator}.
+ *
+ * @param optimizationLevel the pass pipeline to run over the generated module
+ * @param timePasses        whether to report how long the optimization passes took on standard error
+ * @param outputFormat      what to write to the output path
+ * @param threads           how many threads to generate functions on, where 1 generates everything on the calling
+ *                          thread
+ * @param cacheDirectory    where to keep the object file of each function between builds of an executable, or
+ *                          {@code null} to compile everything every time
+ * @param garbageCollected  whether objects and strings are allocated from the garbage collected heap of the
+ *                          {@link NativeRuntime}, rather than with {@code malloc} and never freed
+ * @param profile           the counts an interpreted run of the program recorded, to optimize for the paths it took,
+ *                          or {@code null} to optimize without them
+ */
+public record CodeGenOptions(OptimizationLevel optimizationLevel, boolean timePasses, OutputFormat outputFormat,
+                             int threads, @Nullable Path cacheDirectory, boolean garbageCollected,
+                             ExecutionProfile.@Nullable Sites profile) {
+    public static final CodeGenOptions DEFAULT = new CodeGenOptions(OptimizationLevel.O0, false, OutputFormat.LLVM_IR, 1, null, false, null);
+
+    public CodeGenOptions {
+        if (threads < 1)
+            throw new IllegalArgumentException("Threads must be at least 1 but was " + threads + "!");
+    }
+}
@@ -3,57 +3,823 @@ package dev.turtywurty.pepolang.codeGeneration;
 import dev.turtywurty.pepolang.lexer.Token;
 import dev.turtywurty.pepolang.lexer.TokenType;
 import dev.turtywurty.pepolang.parser.*;
+import dev.turtywurty.pepolang.semanticAnalysis.Type;
+import dev.turtywurty.pepolang.semanticAnalysis.EscapeAnalysis;
+import dev.turtywurty.pepolang.semanticAnalysis.EscapeAnalyzer;
+import dev.turtywurty.pepolang.semanticAnalysis.ExecutionProfile;
+import dev.turtywurty.pepolang.semanticAnalysis.TypeTable;
 import org.bytedeco.javacpp.BytePointer;
 import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.*;
 import org.bytedeco.llvm.global.LLVM;
 import org.jetbrains.annotations.Nullable;
 
-import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 
 public class LLVMCodeGenerator {
     public static void generate(List<Statement> statements, Path outputPath) {
+        generate(statements, new TypeTable(), outputPath);
+    }
+
+    /**
+     * @param types the types semantic analysis found for the expressions in the statements, used to pick between
+     *              integer and floating point instructions
+     */
+    public static void generate(List<Statement> statements, TypeTable types, Path outputPath) {
+        generate(statements, types, CodeGenOptions.DEFAULT, outputPath);
+    }
+
+    /**
+     * Generates the module, runs the optimization pipeline the options ask for over it, and writes it to the output
+     * path in the format the options ask for. Assembly, object files and executables are emitted straight from the
+     * module, without going through textual IR.
+     *
+     * @param types the types semantic analysis found for the expressions in the statements, used to pick between
+     *              integer and floating point instructions
+     */
+    public static void generate(List<Statement> statements, TypeTable types, CodeGenOptions options, Path outputPath) {
+        if (options.cacheDirectory() != null && options.outputFormat() == OutputFormat.EXECUTABLE) {
+            NativeCompileCache.generate(statements, types, options, outputPath);
+            return;
+        }
+
+        if (options.threads() > 1) {
+            ParallelCodeGenerator.generate(statements, types, options, outputPath);
+            return;
+        }
+
         LLVM.LLVMInitializeNativeTarget();
         LLVM.LLVMInitializeNativeAsmPrinter();
 
         LLVMContextRef context = LLVM.LLVMContextCreate();
-        LLVMModuleRef module = LLVM.LLVMModuleCreateWithName("pepolang");
+        LLVMModuleRef module = buildModule(statements, types, options, context);
+        LLVMTargetMachineRef targetMachine = LLVMOptimizer.createHostTargetMachine(options.optimizationLevel());
+        try {
+            LLVMOptimizer.setTarget(module, targetMachine);
+            optimize(module, targetMachine, options);
+            emit(module, targetMachine, options.outputFormat(), options.garbageCollected(), outputPath);
+        } finally {
+            LLVM.LLVMDisposeTargetMachine(targetMachine);
+            LLVM.LLVMDisposeModule(module);
+            LLVM.LLVMContextDispose(context);
+        }
+    }
+
+    /**
+     * Writes the module to the output path in the given format.
+     */
+    public static void emit(LLVMModuleRef module, LLVMTargetMachineRef targetMachine, OutputFormat format, Path outputPath) {
+        emit(module, targetMachine, format, false, outputPath);
+    }
+
+    /**
+     * Writes the module to the output path in the given format.
+     *
+     * @param garbageCollected whether the module was built garbage collected, so an executable has to be linked with
+     *                         the {@link NativeRuntime}
+     */
+    public static void emit(LLVMModuleRef module, LLVMTargetMachineRef targetMachine, OutputFormat format,
+                            boolean garbageCollected, Path outputPath) {
+        switch (format) {
+            case LLVM_IR -> {
+                var error = new BytePointer();
+                if (LLVM.LLVMPrintModuleToFile(module, outputPath.toString(), error) != 0)
+                    throw new IllegalStateException("Could not write " + outputPath + ": " + takeMessage(error));
+            }
+            case ASSEMBLY -> emitMachineCode(module, targetMachine, LLVM.LLVMAssemblyFile, outputPath);
+            case OBJECT -> emitMachineCode(module, targetMachine, LLVM.LLVMObjectFile, outputPath);
+            case EXECUTABLE -> {
+                Path objectFile = null;
+                try {
+                    objectFile = Files.createTempFile("pepolang", ".o");
+                    emitMachineCode(module, targetMachine, LLVM.LLVMObjectFile, objectFile);
+                    NativeLinker.link(NativeRuntime.linkInputs(List.of(objectFile), garbageCollected), outputPath);
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                } finally {
+                    if (objectFile != null) {
+                        objectFile.toFile().delete();
+                    }
+                }
+            }
+        }
+    }
+
+    private static void emitMachineCode(LLVMModuleRef module, LLVMTargetMachineRef targetMachine, int fileType, Path outputPath) {
+        var error = new BytePointer();
+        if (LLVM.LLVMTargetMachineEmitToFile(targetMachine, module, outputPath.toString(), fileType, error) != 0)
+            throw new IllegalStateException("Could not emit " + outputPath + ": " + takeMessage(error));
+    }
+
+    private static String takeMessage(BytePointer message) {
+        try {
+            return message.getString();
+        } finally {
+            LLVM.LLVMDisposeMessage(message);
+        }
+    }
+
+    /**
+     * Generates a module whose {@code main} function runs the top-level statements and returns 0. Everything in the
+     * module is created in the given context, so the caller decides who owns it.
+     */
+    public static LLVMModuleRef buildModule(List<Statement> statements, TypeTable types, LLVMContextRef context) {
+        return buildModule(statements, types, CodeGenOptions.DEFAULT, context);
+    }
+
+    /**
+     * @param options whether the module is garbage collected, in which case it has to be linked with the
+     *                {@link NativeRuntime}, and the profile to optimize it with. The other options are not used here.
+     */
+    public static LLVMModuleRef buildModule(List<Statement> statements, TypeTable types, CodeGenOptions options,
+                                            LLVMContextRef context) {
+        return buildModule(statements, null, true, types, new EscapeAnalyzer().analyze(statements), options, context);
+    }
+
+    /**
+     * Generates a module that declares every top-level function of the program, so they can all be called, but only
+     * defines some of them. Modules built this way from the same program can be linked together.
+     *
+     * @param defined  the top-level functions to define, compared by identity, or {@code null} to define all of them
+     * @param withMain whether to generate the {@code main} function that runs the other top-level statements
+     */
+    static LLVMModuleRef buildModule(List<Statement> statements, @Nullable Set<Statement.FunctionStatement> defined,
+                                     boolean withMain, TypeTable types, EscapeAnalysis escapes, CodeGenOptions options,
+                                     LLVMContextRef context) {
+        LLVMModuleRef module = LLVM.LLVMModuleCreateWithNameInContext("pepolang", context);
         LLVMBuilderRef builder = LLVM.LLVMCreateBuilderInContext(context);
 
-        PointerPointer<LLVMTypeRef> argTypes = new PointerPointer<>();
-        LLVMTypeRef mainType = LLVM.LLVMFunctionType(LLVM.LLVMInt32TypeInContext(context), argTypes, 0, 0);
-        LLVMValueRef mainFunction = LLVM.LLVMAddFunction(module, "main", mainType);
-        LLVMBasicBlockRef entryBlock = LLVM.LLVMAppendBasicBlockInContext(context, mainFunction, "entry");
-        LLVM.LLVMPositionBuilderAtEnd(builder, entryBlock);
+        var visitor = new LLVMCodeGeneratorVisitor(context, module, builder, types, escapes, options.garbageCollected());
+        if (options.profile() != null) {
+            visitor.useProfile(options.profile());
+        }
 
-        var visitor = new LLVMCodeGeneratorVisitor(context, module, builder);
+        visitor.defineRuntime();
+        visitor.declareClasses(statements);
         for (Statement statement : statements) {
-            statement.accept(visitor);
+            if (statement instanceof Statement.FunctionStatement function) {
+                visitor.declareFunction(function);
+            }
         }
 
-        LLVM.LLVMBuildRet(builder, LLVM.LLVMConstInt(LLVM.LLVMInt32TypeInContext(context), 0, 0)); // Return 0
+        if (withMain) {
+            PointerPointer<LLVMTypeRef> argTypes = new PointerPointer<>();
+            LLVMTypeRef mainType = LLVM.LLVMFunctionType(LLVM.LLVMInt32TypeInContext(context), argTypes, 0, 0);
+            LLVMValueRef mainFunction = LLVM.LLVMAddFunction(module, "main", mainType);
+            visitor.appendEntryBlock(mainFunction);
+            if (options.garbageCollected()) {
+                visitor.registerRoots();
+            }
+        }
+
+        for (Statement statement : statements) {
+            boolean generate = statement instanceof Statement.FunctionStatement function
+                    ? defined == null || defined.contains(function)
+                    : withMain;
+            if (generate) {
+                statement.accept(visitor);
+            }
+        }
 
-        ByteBuffer error = ByteBuffer.allocateDirect(1024);
-        LLVM.LLVMPrintModuleToFile(module, outputPath.toString(), error);
+        if (withMain && LLVM.LLVMGetBasicBlockTerminator(LLVM.LLVMGetInsertBlock(builder)) == null) {
+            LLVM.LLVMBuildRet(builder, LLVM.LLVMConstInt(LLVM.LLVMInt32TypeInContext(context), 0, 0)); // Return 0
+        }
 
         LLVM.LLVMDisposeBuilder(builder);
-        LLVM.LLVMDisposeModule(module);
-        LLVM.LLVMContextDispose(context);
+        return module;
+    }
+
+    /**
+     * Verifies the module and runs the optimization pipeline the options ask for over it, for the host machine.
+     */
+    public static void optimize(LLVMModuleRef module, CodeGenOptions options) {
+        LLVMOptimizer.verify(module);
+        if (options.optimizationLevel() == OptimizationLevel.O0)
+            return;
+
+        LLVMTargetMachineRef targetMachine = LLVMOptimizer.createHostTargetMachine(options.optimizationLevel());
+        try {
+            optimize(module, targetMachine, options);
+        } finally {
+            LLVM.LLVMDisposeTargetMachine(targetMachine);
+        }
     }
 
+    static void optimize(LLVMModuleRef module, LLVMTargetMachineRef targetMachine, CodeGenOptions options) {
+        OptimizationLevel level = options.optimizationLevel();
+        long elapsed = LLVMOptimizer.optimize(module, targetMachine, level, options.timePasses());
+        if (options.timePasses() && level != OptimizationLevel.O0) {
+            System.err.printf("Ran the %s pipeline in %.2f ms%n", level.getPassPipeline(), elapsed / 1_000_000.0);
+        }
+    }
     public static class LLVMCodeGeneratorVisitor implements StatementVisitor<LLVMValueRef>, ExpressionVisitor<LLVMValueRef> {
+        // Keeps top-level functions from taking the symbols of main, the C library or the runtime
+        private static final String FUNCTION_PREFIX = "pepo.";
+
         private final LLVMContextRef context;
         private final LLVMModuleRef module;
         private final LLVMBuilderRef builder;
         private final SymbolTable symbolTable = new SymbolTable();
         private final Stack<LoopBlock> loopBlocks = new Stack<>();
+        private final TypeTable types;
+        private final EscapeAnalysis escapes;
+        private final SsaBuilder ssa;
+        private final Set<String> classNames = new HashSet<>();
+        private final Map<String, ClassLayout> classes = new HashMap<>();
+        private final Map<Statement.FunctionStatement, LLVMValueRef> methodFunctions = new IdentityHashMap<>();
+        private final Map<Statement.ConstructorStatement, LLVMValueRef> constructorFunctions = new IdentityHashMap<>();
+        private final Map<SymbolTable.Symbol, String> localClasses = new IdentityHashMap<>();
+        private final boolean garbageCollected;
+        private final Map<SymbolTable.Symbol, LLVMValueRef> rootSlots = new IdentityHashMap<>();
+        private @Nullable ClassLayout currentClass;
+        private LLVMValueRef gcRoot;
+        private @Nullable ExecutionProfile.Sites profile;
 
         public LLVMCodeGeneratorVisitor(LLVMContextRef context, LLVMModuleRef module, LLVMBuilderRef builder) {
+            this(context, module, builder, new TypeTable());
+        }
+
+        public LLVMCodeGeneratorVisitor(LLVMContextRef context, LLVMModuleRef module, LLVMBuilderRef builder, TypeTable types) {
+            this(context, module, builder, types, new EscapeAnalysis());
+        }
+
+        /**
+         * @param escapes the local objects in the statements, which are allocated on the stack instead of the heap
+         */
+        public LLVMCodeGeneratorVisitor(LLVMContextRef context, LLVMModuleRef module, LLVMBuilderRef builder, TypeTable types, EscapeAnalysis escapes) {
+            this(context, module, builder, types, escapes, false);
+        }
+
+        /**
+         * @param garbageCollected whether objects and strings are allocated from the {@link NativeRuntime}'s heap.
+         *                         Every pointer that a function holds on to while it may allocate is then kept in a
+         *                         stack slot registered with {@code llvm.gcroot}, so the collector can find it.
+         */
+        public LLVMCodeGeneratorVisitor(LLVMContextRef context, LLVMModuleRef module, LLVMBuilderRef builder, TypeTable types,
+                                        EscapeAnalysis escapes, boolean garbageCollected) {
             this.context = context;
             this.module = module;
             this.builder = builder;
+            this.types = types;
+            this.escapes = escapes;
+            this.garbageCollected = garbageCollected;
+            this.ssa = new SsaBuilder(builder);
+        }
+
+        /**
+         * Optimizes for the counts the interpreter recorded: branches are weighted by how often they went each way, so
+         * LLVM lays out the likely path as the fall through, calls that never ran are marked {@code cold}, and
+         * functions get {@code inlinehint} if they are hot, or {@code cold} if they never ran. Sites that the profile
+         * has no counts for are generated as usual.
+         */
+        public void useProfile(ExecutionProfile.Sites profile) {
+            this.profile = profile;
+        }
+
+        /**
+         * Adds the entry block to the function and moves the builder to it. The entry block has no predecessors, so it
+         * is sealed straight away.
+         */
+        public LLVMBasicBlockRef appendEntryBlock(LLVMValueRef function) {
+            if (this.garbageCollected) {
+                LLVM.LLVMSetGC(function, LLVMRuntime.GC_STRATEGY);
+            }
+
+            LLVMBasicBlockRef entry = LLVM.LLVMAppendBasicBlockInContext(this.context, function, "entry");
+            LLVM.LLVMPositionBuilderAtEnd(this.builder, entry);
+            this.ssa.seal(entry);
+            return entry;
+        }
+
+        private LLVMBasicBlockRef appendBlock(String name) {
+            return LLVM.LLVMAppendBasicBlockInContext(this.context, currentFunction(), name);
+        }
+
+        /**
+         * Branches to the target, unless the current block already ended with a return, break or continue.
+         */
+        private void branch(LLVMBasicBlockRef target) {
+            LLVMBasicBlockRef current = LLVM.LLVMGetInsertBlock(this.builder);
+            if (LLVM.LLVMGetBasicBlockTerminator(current) != null)
+                return;
+
+            LLVM.LLVMBuildBr(this.builder, target);
+            this.ssa.addPredecessor(target, current);
+        }
+
+        /**
+         * @param site the {@code if}, {@code while} or {@code for} statement the condition belongs to, whose profile
+         *             counts weight the branch, see {@link ProfileBuckets#branchCounts}
+         */
+        private void conditionalBranch(Statement site, Expression condition, LLVMBasicBlockRef thenBlock, LLVMBasicBlockRef elseBlock) {
+            LLVMValueRef llvmCondition = condition.accept(this);
+            if (!LLVM.LLVMTypeOf(llvmCondition).equals(LLVM.LLVMInt1TypeInContext(this.context))) {
+                llvmCondition = LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE,
+                        llvmCondition,
+                        LLVM.LLVMConstNull(LLVM.LLVMTypeOf(llvmCondition)),
+                        "condition_cast");
+            }
+
+            LLVMBasicBlockRef current = LLVM.LLVMGetInsertBlock(this.builder);
+            LLVMValueRef branch = LLVM.LLVMBuildCondBr(this.builder, llvmCondition, thenBlock, elseBlock);
+            long[] counts = ProfileBuckets.branchCounts(this.profile, site);
+            if (counts != null) {
+                setBranchWeights(branch, counts[0], counts[1]);
+            }
+
+            this.ssa.addPredecessor(thenBlock, current);
+            this.ssa.addPredecessor(elseBlock, current);
+        }
+
+        /**
+         * Attaches {@code !prof !{"branch_weights", i32 taken, i32 notTaken}} to a conditional branch. The weights are
+         * 32 bits, so large counts are scaled down, and 1 is added so a branch that never went one way is unlikely
+         * rather than impossible, the same as clang does with its own profiles.
+         */
+        private void setBranchWeights(LLVMValueRef branch, long taken, long notTaken) {
+            long scale = Math.max(taken, notTaken) / 0xFFFFFFFFL + 1;
+            LLVMTypeRef int32 = LLVM.LLVMInt32TypeInContext(this.context);
+            var operands = new LLVMMetadataRef[]{
+                    LLVM.LLVMMDStringInContext2(this.context, "branch_weights", "branch_weights".length()),
+                    LLVM.LLVMValueAsMetadata(LLVM.LLVMConstInt(int32, Math.min(taken / scale + 1, 0xFFFFFFFFL), 0)),
+                    LLVM.LLVMValueAsMetadata(LLVM.LLVMConstInt(int32, Math.min(notTaken / scale + 1, 0xFFFFFFFFL), 0))
+            };
+            LLVMMetadataRef weights = LLVM.LLVMMDNodeInContext2(this.context, new PointerPointer<>(operands), operands.length);
+            int kind = LLVM.LLVMGetMDKindIDInContext(this.context, "prof", "prof".length());
+            LLVM.LLVMSetMetadata(branch, kind, LLVM.LLVMMetadataAsValue(this.context, weights));
+        }
+
+        private LLVMAttributeRef enumAttribute(String name) {
+            return LLVM.LLVMCreateEnumAttribute(this.context, LLVM.LLVMGetEnumAttributeKindForName(name, name.length()), 0);
+        }
+
+        /**
+         * Marks a function {@code cold} if the profile says it never ran, or {@code inlinehint} if it is hot, see
+         * {@link ProfileBuckets#heat}.
+         */
+        private void addProfileAttributes(LLVMValueRef function, Statement.FunctionStatement statement) {
+            ProfileBuckets.Heat heat = ProfileBuckets.heat(this.profile, statement);
+            if (heat == ProfileBuckets.Heat.COLD) {
+                LLVM.LLVMAddAttributeAtIndex(function, LLVM.LLVMAttributeFunctionIndex, enumAttribute("cold"));
+            } else if (heat == ProfileBuckets.Heat.HOT) {
+                LLVM.LLVMAddAttributeAtIndex(function, LLVM.LLVMAttributeFunctionIndex, enumAttribute("inlinehint"));
+            }
+        }
+
+        /**
+         * Ends the current block with a jump that leaves it, and continues in a block that nothing branches to, so any
+         * statements after a return, break or continue still have somewhere to go.
+         */
+        private void jump(LLVMBasicBlockRef target) {
+            branch(target);
+            startUnreachableBlock();
+        }
+
+        private void startUnreachableBlock() {
+            LLVMBasicBlockRef unreachable = appendBlock("unreachable");
+            LLVM.LLVMPositionBuilderAtEnd(this.builder, unreachable);
+            this.ssa.seal(unreachable);
+        }
+
+        private LLVMValueRef currentFunction() {
+            return LLVM.LLVMGetBasicBlockParent(LLVM.LLVMGetInsertBlock(this.builder));
+        }
+
+        /**
+         * Declares a local variable with its first value. Locals are SSA values rather than stack slots, see
+         * {@link SsaBuilder}.
+         */
+        private SymbolTable.Symbol declareLocal(String name, LLVMTypeRef type, LLVMValueRef value) {
+            var symbol = new SymbolTable.Symbol(name, SymbolTable.SymbolType.LOCAL, null);
+            this.symbolTable.insert(name, symbol);
+            this.ssa.declare(symbol, type, currentFunction());
+            this.ssa.write(symbol, LLVM.LLVMGetInsertBlock(this.builder), value);
+
+            // Every write also goes to the root slot, so whichever value reaches a use is the one the collector sees
+            if (this.garbageCollected && LLVM.LLVMGetTypeKind(type) == LLVM.LLVMPointerTypeKind) {
+                LLVMValueRef slot = buildRootSlot(name + "_root");
+                this.rootSlots.put(symbol, slot);
+                LLVM.LLVMBuildStore(this.builder, value, slot);
+            }
+
+            return symbol;
+        }
+
+        /**
+         * Declares a local, remembering its class if it has a class type, so objects can be used through it even
+         * where semantic analysis recorded no type.
+         */
+        private void declareLocal(String name, Token type, LLVMTypeRef llvmType, LLVMValueRef value) {
+            SymbolTable.Symbol symbol = declareLocal(name, llvmType, value);
+            if (type.type() == TokenType.IDENTIFIER) {
+                this.localClasses.put(symbol, (String) type.value());
+            }
+        }
+
+        /**
+         * Adds an alloca to the start of the function's entry block, so it is only allocated once however often the
+         * code that needs it runs.
+         */
+        private LLVMValueRef buildEntryAlloca(LLVMTypeRef type, String name) {
+            LLVMBasicBlockRef insertBlock = positionAtEntry();
+            LLVMValueRef alloca = LLVM.LLVMBuildAlloca(this.builder, type, name);
+            LLVM.LLVMPositionBuilderAtEnd(this.builder, insertBlock);
+            return alloca;
+        }
+
+        /**
+         * Moves the builder to the start of the current function's entry block.
+         *
+         * @return the block the builder was in
+         */
+        private LLVMBasicBlockRef positionAtEntry() {
+            LLVMBasicBlockRef insertBlock = LLVM.LLVMGetInsertBlock(this.builder);
+            LLVMBasicBlockRef entry = LLVM.LLVMGetEntryBasicBlock(currentFunction());
+            LLVMValueRef first = LLVM.LLVMGetFirstInstruction(entry);
+            if (first != null) {
+                LLVM.LLVMPositionBuilderBefore(this.builder, first);
+            } else {
+                LLVM.LLVMPositionBuilderAtEnd(this.builder, entry);
+            }
+
+            return insertBlock;
+        }
+
+        /**
+         * Adds a stack slot that the garbage collector treats as a root, which holds null until something is stored
+         * in it. Like {@link #buildEntryAlloca}, the slot is in the entry block, which {@code llvm.gcroot} requires.
+         */
+        private LLVMValueRef buildRootSlot(String name) {
+            LLVMTypeRef pointer = LLVM.LLVMPointerTypeInContext(this.context, 0);
+            LLVMBasicBlockRef insertBlock = positionAtEntry();
+            LLVMValueRef slot = LLVM.LLVMBuildAlloca(this.builder, pointer, name);
+            LLVMValueRef[] arguments = {slot, LLVM.LLVMConstNull(pointer)};
+            LLVM.LLVMBuildCall2(this.builder, LLVM.LLVMGlobalGetValueType(this.gcRoot), this.gcRoot,
+                    new PointerPointer<>(arguments), arguments.length, "");
+            LLVM.LLVMBuildStore(this.builder, LLVM.LLVMConstNull(pointer), slot);
+            LLVM.LLVMPositionBuilderAtEnd(this.builder, insertBlock);
+            return slot;
+        }
+
+        /**
+         * Keeps a pointer that was just returned or loaded alive until the function returns or the same code runs
+         * again, since it only lives in a register until it is stored somewhere the collector looks.
+         *
+         * @return the value
+         */
+        private LLVMValueRef root(LLVMValueRef value, String name) {
+            if (this.garbageCollected && LLVM.LLVMGetTypeKind(LLVM.LLVMTypeOf(value)) == LLVM.LLVMPointerTypeKind) {
+                LLVM.LLVMBuildStore(this.builder, value, buildRootSlot(name));
+            }
+
+            return value;
+        }
+
+        /**
+         * Hands the native runtime the root chain, which {@code main} has to do before anything is allocated.
+         */
+        public void registerRoots() {
+            LLVMTypeRef pointer = LLVM.LLVMPointerTypeInContext(this.context, 0);
+            LLVMValueRef chain = LLVM.LLVMGetNamedGlobal(this.module, LLVMRuntime.ROOT_CHAIN);
+            if (chain == null) {
+                chain = LLVM.LLVMAddGlobal(this.module, pointer, LLVMRuntime.ROOT_CHAIN);
+            }
+
+            callRuntime(LLVMRuntime.REGISTER_ROOTS, chain);
+        }
+
+        /**
+         * Calls a function, converting the arguments to its parameter types.
+         */
+        private LLVMValueRef buildCall(LLVMTypeRef functionType, LLVMValueRef function, LLVMValueRef... arguments) {
+            return buildCall(null, functionType, function, arguments);
+        }
+
+        /**
+         * @param site the call expression the call was generated for, which is marked {@code cold} if the profile says
+         *             it never ran
+         */
+        private LLVMValueRef buildCall(Expression.@Nullable Call site, LLVMTypeRef functionType, LLVMValueRef function,
+                                       LLVMValueRef... arguments) {
+            int parameterCount = LLVM.LLVMCountParamTypes(functionType);
+            var parameterTypes = new PointerPointer<LLVMTypeRef>(parameterCount);
+            LLVM.LLVMGetParamTypes(functionType, parameterTypes);
+            for (int index = 0; index < Math.min(parameterCount, arguments.length); index++) {
+                arguments[index] = convert(arguments[index], parameterTypes.get(LLVMTypeRef.class, index));
+            }
+
+            // Calls that return void can not be named
+            boolean returnsVoid = LLVM.LLVMGetTypeKind(LLVM.LLVMGetReturnType(functionType)) == LLVM.LLVMVoidTypeKind;
+            LLVMValueRef result = LLVM.LLVMBuildCall2(builder, functionType, function, new PointerPointer<>(arguments),
+                    arguments.length, returnsVoid ? "" : "calltmp");
+            if (site != null && ProfileBuckets.isColdCall(this.profile, site)) {
+                LLVM.LLVMAddCallSiteAttribute(result, LLVM.LLVMAttributeFunctionIndex, enumAttribute("cold"));
+            }
+
+            return returnsVoid ? result : root(result, "result_root");
+        }
+
+        private LLVMValueRef[] generateArguments(List<Expression> arguments) {
+            LLVMValueRef[] llvmArguments = new LLVMValueRef[arguments.size()];
+            for (int index = 0; index < llvmArguments.length; index++) {
+                llvmArguments[index] = arguments.get(index).accept(this);
+            }
+
+            return llvmArguments;
+        }
+
+        private static List<LLVMTypeRef> typesOf(LLVMValueRef[] values) {
+            List<LLVMTypeRef> types = new ArrayList<>(values.length);
+            for (LLVMValueRef value : values) {
+                types.add(LLVM.LLVMTypeOf(value));
+            }
+
+            return types;
+        }
+
+        private static <T> T[] prepend(T first, T[] rest) {
+            T[] values = Arrays.copyOf(rest, rest.length + 1);
+            System.arraycopy(rest, 0, values, 1, rest.length);
+            values[0] = first;
+            return values;
+        }
+
+        /**
+         * Lays out every top-level class and declares its methods, constructors and vtable, so classes can be used
+         * before their declaration and from modules that do not define them. Superclasses are laid out before their
+         * subclasses.
+         */
+        public void declareClasses(List<Statement> statements) {
+            Map<String, Statement.ClassStatement> declarations = new LinkedHashMap<>();
+            for (Statement statement : statements) {
+                if (statement instanceof Statement.ClassStatement classStatement &&
+                        declarations.put((String) classStatement.getName().value(), classStatement) != null)
+                    throw new UnsupportedOperationException("Class '" + classStatement.getName().value() + "' is declared more than once!");
+            }
+
+            this.classNames.addAll(declarations.keySet());
+            for (Statement.ClassStatement declaration : declarations.values()) {
+                declareClass(declaration, declarations, new HashSet<>());
+            }
+        }
+
+        private ClassLayout declareClass(Statement.ClassStatement statement, Map<String, Statement.ClassStatement> declarations,
+                                         Set<String> visiting) {
+            String name = (String) statement.getName().value();
+            ClassLayout existing = this.classes.get(name);
+            if (existing != null)
+                return existing;
+
+            if (!visiting.add(name))
+                throw new RuntimeException("Class '" + name + "' extends itself!");
+
+            // The interpreter has no static members either
+            if (!statement.getStaticFields().isEmpty() || !statement.getStaticMethods().isEmpty())
+                throw new UnsupportedOperationException("Static members of class '" + name + "' are not supported yet!");
+
+            ClassLayout superclass = null;
+            if (statement.getSuperclass() != null) {
+                String superclassName = (String) statement.getSuperclass().getName().value();
+                Statement.ClassStatement superclassDeclaration = declarations.get(superclassName);
+                if (superclassDeclaration == null)
+                    throw new RuntimeException("Unknown class: " + superclassName);
+
+                superclass = declareClass(superclassDeclaration, declarations, visiting);
+            }
+
+            var layout = new ClassLayout(name, statement, superclass, LLVM.LLVMStructCreateNamed(this.context, "class." + name));
+            this.classes.put(name, layout);
+
+            for (Statement.VariableStatement field : statement.getFields()) {
+                layout.addField((String) field.getName().value(), mapType(field.getType()));
+            }
+
+            LLVMTypeRef pointer = LLVM.LLVMPointerTypeInContext(this.context, 0);
+            List<LLVMTypeRef> members = layout.getMemberTypes(pointer);
+            LLVM.LLVMStructSetBody(layout.getStructType(), new PointerPointer<>(members.toArray(LLVMTypeRef[]::new)), members.size(), 0);
+
+            for (Statement.FunctionStatement method : statement.getMethods()) {
+                String methodName = (String) method.getName().value();
+                LLVMTypeRef[] parameterTypes = mapParameterTypes(method.getParameters());
+                String key = getFunctionNameLLVM(methodName, List.of(parameterTypes));
+
+                LLVMTypeRef[] withThis = prepend(pointer, parameterTypes);
+                LLVMTypeRef functionType = LLVM.LLVMFunctionType(mapType(method.getReturnType()), new PointerPointer<>(withThis), withThis.length, 0);
+                LLVMValueRef function = getOrAddFunction(name + "." + key, functionType);
+                addProfileAttributes(function, method);
+                this.methodFunctions.put(method, function);
+                layout.addMethod(key, methodName, parameterTypes.length, function, functionType);
+            }
+
+            for (Statement.ConstructorStatement constructor : statement.getConstructors()) {
+                LLVMTypeRef[] parameterTypes = mapParameterTypes(constructor.getParameters());
+                String key = getFunctionNameLLVM("init", List.of(parameterTypes));
+
+                LLVMTypeRef[] withThis = prepend(pointer, parameterTypes);
+                LLVMTypeRef functionType = LLVM.LLVMFunctionType(LLVM.LLVMVoidTypeInContext(this.context), new PointerPointer<>(withThis), withThis.length, 0);
+                LLVMValueRef function = getOrAddFunction(name + "." + key, functionType);
+                this.constructorFunctions.put(constructor, function);
+                layout.addConstructor(key, parameterTypes.length, function);
+            }
+
+            // Only declared here, the module that compiles the class statement gives it its entries
+            String vtableName = name + ".vtable";
+            LLVMValueRef vtable = LLVM.LLVMGetNamedGlobal(this.module, vtableName);
+            if (vtable == null) {
+                vtable = LLVM.LLVMAddGlobal(this.module, LLVM.LLVMArrayType2(pointer,
+                        ClassLayout.FIRST_SLOT_ENTRY + layout.getSlots().size()), vtableName);
+            }
+
+            layout.setVtable(vtable);
+            visiting.remove(name);
+            return layout;
+        }
+
+        private LLVMTypeRef[] mapParameterTypes(List<Parameter> parameters) {
+            return parameters.stream().map(Parameter::type).map(this::mapType).toArray(LLVMTypeRef[]::new);
+        }
+
+        private LLVMValueRef getOrAddFunction(String name, LLVMTypeRef functionType) {
+            LLVMValueRef existing = LLVM.LLVMGetNamedFunction(this.module, name);
+            return existing != null ? existing : LLVM.LLVMAddFunction(this.module, name, functionType);
+        }
+
+        /**
+         * @return the class that the objects the expression evaluates to are statically known to be instances of
+         */
+        private ClassLayout classOf(Expression expression) {
+            String name = switch (expression) {
+                case Expression.This ignored -> this.currentClass == null ? null : this.currentClass.getName();
+                case Expression.New newExpression -> className(newExpression);
+                case Expression.Grouping grouping -> {
+                    yield classOf(grouping.getExpression()).getName();
+                }
+                case Expression.Variable variable when this.types.getType(variable) == null -> {
+                    SymbolTable.Symbol symbol = this.symbolTable.lookup((String) variable.getName().value(), SymbolTable.SymbolCategory.VARIABLE);
+                    yield symbol == null ? null : this.localClasses.get(symbol);
+                }
+                default -> this.types.getType(expression) instanceof Type.ClassType classType ? classType.getName() : null;
+            };
+
+            ClassLayout layout = name == null ? null : this.classes.get(name);
+            if (layout == null)
+                throw new UnsupportedOperationException("The class of '" + AstPrinter.print(expression) + "' is not known statically!");
+
+            return layout;
+        }
+
+        private static String className(Expression.New expression) {
+            if (!(expression.getCall() instanceof Expression.Call call))
+                throw new RuntimeException("Expected a constructor call after 'new'!");
+
+            return switch (call.getCallee()) {
+                case Expression.Function function -> (String) function.getName().value();
+                case Expression.Variable variable -> (String) variable.getName().value();
+                default -> throw new RuntimeException("Expected a class name after 'new'!");
+            };
+        }
+
+        private LLVMValueRef getThis() {
+            SymbolTable.Symbol symbol = this.symbolTable.lookup("this", SymbolTable.SymbolCategory.VARIABLE);
+            if (symbol == null)
+                throw new RuntimeException("Unknown 'this' reference!");
+
+            return symbol.llvmValue();
+        }
+
+        /**
+         * @return the field of the current class that a bare name refers to in a method or constructor, or -1 if the
+         * name is a local or not a field
+         */
+        private int implicitField(String name, @Nullable SymbolTable.Symbol symbol) {
+            if (this.currentClass == null || (symbol != null && this.ssa.isDeclaredIn(symbol, currentFunction())))
+                return -1;
+
+            return this.currentClass.getFieldIndex(name);
+        }
+
+        private LLVMValueRef fieldPointer(ClassLayout layout, LLVMValueRef object, Token name) {
+            int index = layout.getFieldIndex((String) name.value());
+            if (index < 0)
+                throw new RuntimeException("Class '" + layout.getName() + "' has no field '" + name.value() + "'!");
+
+            return LLVM.LLVMBuildStructGEP2(builder, layout.getStructType(), object, index, (String) name.value());
+        }
+
+        private LLVMValueRef storeField(ClassLayout layout, LLVMValueRef object, Token name, LLVMValueRef value) {
+            LLVMValueRef converted = convert(value, layout.getFieldType(layout.getFieldIndex((String) name.value())));
+            LLVM.LLVMBuildStore(builder, converted, fieldPointer(layout, object, name));
+            return converted;
+        }
+
+        /**
+         * Calls a method on an object. The vtable is only used when the method may be overridden and the object's
+         * exact class is unknown, otherwise the implementation is called directly, which LLVM can then inline.
+         *
+         * @param exactClass whether the object is known to be exactly of the class, such as a {@code new} expression
+         */
+        private LLVMValueRef invokeMethod(Expression.Call site, ClassLayout layout, LLVMValueRef receiver,
+                                          ClassLayout.MethodSlot slot, LLVMValueRef[] arguments, boolean exactClass) {
+            LLVMValueRef[] withReceiver = prepend(receiver, arguments);
+            if (exactClass || !layout.isOverridden(slot))
+                return buildCall(site, slot.functionType(), slot.implementation(), withReceiver);
+
+            LLVMTypeRef pointer = LLVM.LLVMPointerTypeInContext(this.context, 0);
+            LLVMValueRef vtableSlot = LLVM.LLVMBuildStructGEP2(builder, layout.getStructType(), receiver, ClassLayout.VTABLE_INDEX, "vtable_slot");
+            LLVMValueRef vtable = LLVM.LLVMBuildLoad2(builder, pointer, vtableSlot, "vtable");
+            LLVMValueRef index = LLVM.LLVMConstInt(LLVM.LLVMInt32TypeInContext(this.context),
+                    ClassLayout.FIRST_SLOT_ENTRY + slot.index(), 0);
+            LLVMValueRef entry = LLVM.LLVMBuildGEP2(builder, pointer, vtable, new PointerPointer<>(new LLVMValueRef[]{index}), 1, "method_slot");
+            LLVMValueRef method = LLVM.LLVMBuildLoad2(builder, pointer, entry, slot.name());
+            return buildCall(site, slot.functionType(), method, withReceiver);
+        }
+
+        private ClassLayout.MethodSlot findMethod(ClassLayout layout, Token name, LLVMValueRef[] arguments) {
+            String methodName = (String) name.value();
+            ClassLayout.MethodSlot slot = layout.findMethod(getFunctionNameLLVM(methodName, typesOf(arguments)), methodName, arguments.length);
+            if (slot == null)
+                throw new RuntimeException("Class '" + layout.getName() + "' has no method '" + methodName + "' taking " + arguments.length + " arguments!");
+
+            return slot;
+        }
+
+        /**
+         * Generates the body of a function, method or constructor. Methods and constructors get the object as their
+         * first parameter, which {@code this} refers to.
+         */
+        private void generateBody(LLVMValueRef function, List<Parameter> parameters, List<Statement> body, @Nullable ClassLayout owner) {
+            LLVMTypeRef llvmReturnType = LLVM.LLVMGetReturnType(LLVM.LLVMGlobalGetValueType(function));
+            ClassLayout enclosingClass = this.currentClass;
+            this.currentClass = owner;
+            this.symbolTable.enterScope();
+
+            // Code after the function still belongs to whatever block it was declared in
+            LLVMBasicBlockRef enclosingBlock = LLVM.LLVMGetInsertBlock(builder);
+            appendEntryBlock(function);
+
+            int paramIndex = 0;
+            if (owner != null) {
+                LLVMValueRef self = LLVM.LLVMGetParam(function, paramIndex++);
+                LLVM.LLVMSetValueName2(self, "this", 4);
+                root(self, "this_root");
+                this.symbolTable.insert("this", new SymbolTable.Symbol("this", SymbolTable.SymbolType.PARAMETER, self));
+            }
+
+            // Parameters can be assigned to like any other local
+            for (Parameter parameter : parameters) {
+                String parameterName = (String) parameter.name().value();
+                LLVMValueRef llvmParameter = LLVM.LLVMGetParam(function, paramIndex++);
+                LLVM.LLVMSetValueName2(llvmParameter, parameterName, parameterName.length());
+                declareLocal(parameterName, parameter.type(), LLVM.LLVMTypeOf(llvmParameter), llvmParameter);
+            }
+
+            for (Statement stmt : body) {
+                stmt.accept(this);
+            }
+
+            // Only fall off the end of the body if it did not already return
+            if (LLVM.LLVMGetBasicBlockTerminator(LLVM.LLVMGetInsertBlock(builder)) == null) {
+                if(llvmReturnType.equals(LLVM.LLVMVoidTypeInContext(this.context))) {
+                    LLVM.LLVMBuildRetVoid(builder);
+                } else {
+                    LLVM.LLVMBuildRet(builder, LLVM.LLVMConstNull(llvmReturnType));
+                }
+            }
+
+            this.symbolTable.exitScope();
+            this.currentClass = enclosingClass;
+            if (enclosingBlock != null) {
+                LLVM.LLVMPositionBuilderAtEnd(builder, enclosingBlock);
+            } else {
+                LLVM.LLVMClearInsertionPosition(builder);
+            }
+        }
+
+        private LLVMValueRef assignLocal(SymbolTable.Symbol symbol, LLVMValueRef value) {
+            LLVMValueRef converted = convert(value, this.ssa.typeOf(symbol));
+            this.ssa.write(symbol, LLVM.LLVMGetInsertBlock(this.builder), converted);
+            LLVMValueRef slot = this.rootSlots.get(symbol);
+            if (slot != null) {
+                LLVM.LLVMBuildStore(this.builder, converted, slot);
+            }
+
+            return converted;
+        }
+
+        /**
+         * Defines the functions that built-in calls such as {@code print} are compiled to.
+         */
+        public void defineRuntime() {
+            LLVMRuntime.define(this.context, this.module, this.garbageCollected).forEach((name, function) ->
+                    this.symbolTable.insert(name, new SymbolTable.Symbol(name, SymbolTable.SymbolType.FUNCTION, function)));
+            if (this.garbageCollected) {
+                int gcRootId = LLVM.LLVMLookupIntrinsicID("llvm.gcroot", "llvm.gcroot".length());
+                this.gcRoot = LLVM.LLVMGetIntrinsicDeclaration(this.module, gcRootId, (PointerPointer<?>) null, 0);
+            }
         }
 
         @Override
@@ -64,15 +830,12 @@ public class LLVMCodeGenerator {
             @Nullable Expression initializer = statement.getInitializer();
 
             LLVMTypeRef llvmType = mapType(type);
-            LLVMValueRef allocatedVariable  = LLVM.LLVMBuildAlloca(this.builder, llvmType, variableName);
-
-            if(initializer != null) {
-                LLVMValueRef llvmInitializer = initializer.accept(this);
-                LLVM.LLVMBuildStore(this.builder, llvmInitializer, allocatedVariable);
-            }
+            LLVMValueRef value = initializer != null
+                    ? convert(initializer.accept(this), llvmType)
+                    : LLVM.LLVMConstNull(llvmType);
 
-            this.symbolTable.insert(variableName, new SymbolTable.Symbol(variableName, SymbolTable.SymbolType.VARIABLE, allocatedVariable));
-            return allocatedVariable;
+            declareLocal(variableName, type, llvmType, value);
+            return value;
         }
 
         private LLVMTypeRef mapType(Token type) {
@@ -81,16 +844,19 @@ public class LLVMCodeGenerator {
                     case KEYWORD_INT -> LLVM.LLVMInt32TypeInContext(this.context);
                     case KEYWORD_STRING -> LLVM.LLVMPointerType(LLVM.LLVMInt8TypeInContext(this.context), 0);
                     case KEYWORD_BOOL -> LLVM.LLVMInt1TypeInContext(this.context);
-                    case KEYWORD_DOUBLE -> LLVM.LLVMFloatTypeInContext(this.context);
-                    case KEYWORD_FLOAT -> LLVM.LLVMDoubleTypeInContext(this.context);
+                    case KEYWORD_DOUBLE -> LLVM.LLVMDoubleTypeInContext(this.context);
+                    case KEYWORD_FLOAT -> LLVM.LLVMFloatTypeInContext(this.context);
                     case KEYWORD_LONG -> LLVM.LLVMInt64TypeInContext(this.context);
                     case KEYWORD_BYTE, KEYWORD_CHAR -> LLVM.LLVMInt8TypeInContext(this.context);
                     case KEYWORD_SHORT -> LLVM.LLVMInt16TypeInContext(this.context);
                     case KEYWORD_VOID -> LLVM.LLVMVoidTypeInContext(this.context);
                     default -> throw new UnsupportedOperationException("Unknown type: " + type.type());
                 };
+            } else if (this.classNames.contains((String) type.value())) {
+                // Objects are always used through a pointer to their struct
+                return LLVM.LLVMPointerTypeInContext(this.context, 0);
             } else {
-               throw new UnsupportedOperationException("User defined types are not supported yet!");
+               throw new UnsupportedOperationException("Unknown type: " + type.value());
             }
         }
 
@@ -100,12 +866,18 @@ public class LLVMCodeGenerator {
             Expression value = expression.getValue();
 
             SymbolTable.Symbol symbol = symbolTable.lookup((String) name.value(), SymbolTable.SymbolCategory.VARIABLE);
+            if (implicitField((String) name.value(), symbol) >= 0)
+                return storeField(this.currentClass, getThis(), name, value.accept(this));
+
             if(symbol == null)
                 throw new RuntimeException("Unknown variable: " + name.value());
 
             LLVMValueRef llvmValue = value.accept(this);
-            LLVM.LLVMBuildStore(builder, llvmValue, symbol.llvmValue());
+            if (symbol.type() == SymbolTable.SymbolType.LOCAL)
+                return assignLocal(symbol, llvmValue);
 
+            llvmValue = convert(llvmValue, LLVM.LLVMGetAllocatedType(symbol.llvmValue()));
+            LLVM.LLVMBuildStore(builder, llvmValue, symbol.llvmValue());
             return llvmValue;
         }
 
@@ -114,6 +886,26 @@ public class LLVMCodeGenerator {
             LLVMValueRef left = expression.getLeft().accept(this);
             LLVMValueRef right = expression.getRight().accept(this);
 
+            if (isString(expression.getLeft(), left) || isString(expression.getRight(), right))
+                return buildStringBinary(expression.getOperator(), expression, left, right);
+
+            boolean leftFloating = isFloatingPoint(expression.getLeft(), left);
+            boolean rightFloating = isFloatingPoint(expression.getRight(), right);
+            if (leftFloating || rightFloating) {
+                // The result is a double unless every floating point operand is a float
+                boolean isDouble = (leftFloating && isDouble(expression.getLeft(), left)) || (rightFloating && isDouble(expression.getRight(), right));
+                LLVMTypeRef type = isDouble ? LLVM.LLVMDoubleTypeInContext(context) : LLVM.LLVMFloatTypeInContext(context);
+                return buildFloatingPointBinary(expression.getOperator(), toFloatingPoint(left, type), toFloatingPoint(right, type));
+            }
+
+            int leftWidth = LLVM.LLVMGetIntTypeWidth(LLVM.LLVMTypeOf(left));
+            int rightWidth = LLVM.LLVMGetIntTypeWidth(LLVM.LLVMTypeOf(right));
+            if (leftWidth < rightWidth) {
+                left = LLVM.LLVMBuildIntCast2(builder, left, LLVM.LLVMTypeOf(right), 1, "sexttmp");
+            } else if (rightWidth < leftWidth) {
+                right = LLVM.LLVMBuildIntCast2(builder, right, LLVM.LLVMTypeOf(left), 1, "sexttmp");
+            }
+
             return switch (expression.getOperator().type()) {
                 case ADD -> LLVM.LLVMBuildAdd(builder, left, right, "addtmp");
                 case SUB -> LLVM.LLVMBuildSub(builder, left, right, "subtmp");
@@ -130,120 +922,265 @@ public class LLVMCodeGenerator {
             };
         }
 
-        @Override
-        public LLVMValueRef visitCall(Expression.Call expression) {
-            Expression callee = expression.getCallee();
-            List<Expression> arguments = expression.getArguments();
+        private LLVMValueRef buildFloatingPointBinary(Token operator, LLVMValueRef left, LLVMValueRef right) {
+            return switch (operator.type()) {
+                case ADD -> LLVM.LLVMBuildFAdd(builder, left, right, "addtmp");
+                case SUB -> LLVM.LLVMBuildFSub(builder, left, right, "subtmp");
+                case MUL -> LLVM.LLVMBuildFMul(builder, left, right, "multmp");
+                case DIV -> LLVM.LLVMBuildFDiv(builder, left, right, "divtmp");
+                case MOD -> LLVM.LLVMBuildFRem(builder, left, right, "modtmp");
+                case EQUAL -> LLVM.LLVMBuildFCmp(builder, LLVM.LLVMRealOEQ, left, right, "eqtmp");
+                case NOT_EQUAL -> LLVM.LLVMBuildFCmp(builder, LLVM.LLVMRealUNE, left, right, "neqtmp");
+                case GT -> LLVM.LLVMBuildFCmp(builder, LLVM.LLVMRealOGT, left, right, "gttmp");
+                case GREATER_EQUAL -> LLVM.LLVMBuildFCmp(builder, LLVM.LLVMRealOGE, left, right, "gtetmp");
+                case LT -> LLVM.LLVMBuildFCmp(builder, LLVM.LLVMRealOLT, left, right, "lttmp");
+                case LESS_EQUAL -> LLVM.LLVMBuildFCmp(builder, LLVM.LLVMRealOLE, left, right, "ltetmp");
+                default -> throw new UnsupportedOperationException("Unknown binary operator: " + operator.type());
+            };
+        }
+
+        /**
+         * Concatenates with {@code +}, converting a non-string operand to a string first, and compares strings by
+         * their contents.
+         */
+        private LLVMValueRef buildStringBinary(Token operator, Expression expression, LLVMValueRef left, LLVMValueRef right) {
+            return switch (operator.type()) {
+                case ADD -> callRuntime(LLVMRuntime.CONCAT, toStringValue(left), toStringValue(right));
+                case EQUAL, NOT_EQUAL -> {
+                    LLVMValueRef comparison = callRuntime(LLVMRuntime.COMPARE, left, right);
+                    yield LLVM.LLVMBuildICmp(builder, operator.type() == TokenType.EQUAL ? LLVM.LLVMIntEQ : LLVM.LLVMIntNE,
+                            comparison, LLVM.LLVMConstNull(LLVM.LLVMTypeOf(comparison)), "streqtmp");
+                }
+                default -> throw new UnsupportedOperationException("Unsupported string operator: " + operator.type() +
+                        " in " + AstPrinter.print(expression));
+            };
+        }
 
-            String name = (String) ((Expression.Function) callee).getName().value();
-            List<LLVMTypeRef> parameterTypes = new ArrayList<>();
-            for (Expression argument : arguments) {
-                LLVMValueRef llvmArgument = argument.accept(this);
-                LLVMTypeRef llvmArgumentType = LLVM.LLVMTypeOf(llvmArgument);
-                parameterTypes.add(llvmArgumentType);
+        private LLVMValueRef toStringValue(LLVMValueRef value) {
+            LLVMTypeRef type = LLVM.LLVMTypeOf(value);
+            if (LLVM.LLVMGetTypeKind(type) == LLVM.LLVMPointerTypeKind)
+                return value;
+
+            // Narrow integers print the same as an int
+            if (LLVM.LLVMGetTypeKind(type) == LLVM.LLVMIntegerTypeKind && LLVM.LLVMGetIntTypeWidth(type) > 1 &&
+                    LLVM.LLVMGetIntTypeWidth(type) < 32) {
+                type = LLVM.LLVMInt32TypeInContext(this.context);
+                value = LLVM.LLVMBuildIntCast2(builder, value, type, 1, "sexttmp");
             }
 
-            name = getFunctionNameLLVM(name, parameterTypes);
+            return callRuntime(LLVMRuntime.toStringName(type), value);
+        }
 
-            SymbolTable.Symbol symbol = symbolTable.lookup(name, SymbolTable.SymbolCategory.FUNCTION);
-            if(symbol == null)
-                throw new RuntimeException("Unknown function: " + name);
+        private LLVMValueRef callRuntime(String name, LLVMValueRef... arguments) {
+            SymbolTable.Symbol symbol = this.symbolTable.lookup(name, SymbolTable.SymbolCategory.FUNCTION);
+            if (symbol == null)
+                throw new IllegalStateException("The runtime does not define " + name + ", was defineRuntime called?");
 
-            LLVMValueRef llvmCallee = symbol.llvmValue();
-            LLVMTypeRef llvmFunctionType = LLVM.LLVMTypeOf(llvmCallee);
-            if(LLVM.LLVMGetTypeKind(llvmFunctionType) != LLVM.LLVMFunctionTypeKind)
-                throw new RuntimeException("Callee is not a function type: " + name);
+            LLVMValueRef function = symbol.llvmValue();
+            return buildCall(LLVM.LLVMGlobalGetValueType(function), function, arguments);
+        }
+
+        /**
+         * Converts a value to the type it is stored or returned as: integers are sign extended or truncated, integers
+         * become floating point, and floats and doubles are widened or narrowed. Any other value is left as it is.
+         */
+        private LLVMValueRef convert(LLVMValueRef value, LLVMTypeRef type) {
+            LLVMTypeRef valueType = LLVM.LLVMTypeOf(value);
+            if (valueType.equals(type))
+                return value;
+
+            int kind = LLVM.LLVMGetTypeKind(type);
+            int valueKind = LLVM.LLVMGetTypeKind(valueType);
+            boolean floating = kind == LLVM.LLVMFloatTypeKind || kind == LLVM.LLVMDoubleTypeKind;
+            boolean valueFloating = valueKind == LLVM.LLVMFloatTypeKind || valueKind == LLVM.LLVMDoubleTypeKind;
+            if (floating && (valueFloating || valueKind == LLVM.LLVMIntegerTypeKind))
+                return toFloatingPoint(value, type);
+
+            if (kind == LLVM.LLVMIntegerTypeKind && valueKind == LLVM.LLVMIntegerTypeKind) {
+                // Booleans are unsigned, so true widens to 1 rather than -1
+                boolean signed = LLVM.LLVMGetIntTypeWidth(valueType) > 1;
+                return LLVM.LLVMBuildIntCast2(builder, value, type, signed ? 1 : 0, "intcasttmp");
+            }
+
+            if (kind == LLVM.LLVMIntegerTypeKind && valueFloating)
+                return LLVM.LLVMBuildFPToSI(builder, value, type, "fptositmp");
+
+            return value;
+        }
 
-            LLVMValueRef[] llvmArguments = arguments.stream()
-                    .map(arg -> arg.accept(this))
-                    .toArray(LLVMValueRef[]::new);
+        private boolean isString(Expression expression, LLVMValueRef value) {
+            Type type = this.types.getType(expression);
+            if (type != null)
+                return type == Type.STRING;
 
-            return LLVM.LLVMBuildCall2(builder, llvmFunctionType, llvmCallee,
-                    new PointerPointer<>(llvmArguments), llvmArguments.length, "calltmp");
+            return LLVM.LLVMGetTypeKind(LLVM.LLVMTypeOf(value)) == LLVM.LLVMPointerTypeKind;
+        }
+
+        /**
+         * Uses the type semantic analysis found for the expression, falling back to the type of the generated value
+         * for expressions it has no type for.
+         */
+        private boolean isFloatingPoint(Expression expression, LLVMValueRef value) {
+            Type type = this.types.getType(expression);
+            if (type != null)
+                return type == Type.DOUBLE || type == Type.FLOAT;
+
+            int kind = LLVM.LLVMGetTypeKind(LLVM.LLVMTypeOf(value));
+            return kind == LLVM.LLVMDoubleTypeKind || kind == LLVM.LLVMFloatTypeKind;
+        }
+
+        private boolean isDouble(Expression expression, LLVMValueRef value) {
+            Type type = this.types.getType(expression);
+            if (type != null)
+                return type == Type.DOUBLE;
+
+            return LLVM.LLVMGetTypeKind(LLVM.LLVMTypeOf(value)) == LLVM.LLVMDoubleTypeKind;
+        }
+
+        private LLVMValueRef toFloatingPoint(LLVMValueRef value, LLVMTypeRef type) {
+            LLVMTypeRef valueType = LLVM.LLVMTypeOf(value);
+            int kind = LLVM.LLVMGetTypeKind(valueType);
+            if (kind == LLVM.LLVMIntegerTypeKind)
+                return LLVM.LLVMBuildSIToFP(builder, value, type, "sitofptmp");
+
+            if (!valueType.equals(type))
+                return LLVM.LLVMBuildFPCast(builder, value, type, "fpcasttmp");
+
+            return value;
         }
 
         @Override
-        public LLVMValueRef visitNew(Expression.New expression) {
-            Expression call = expression.getCall();
+        public LLVMValueRef visitCall(Expression.Call expression) {
+            Expression callee = expression.getCallee();
+            List<Expression> arguments = expression.getArguments();
+
+            switch (callee) {
+                case Expression.Get get -> {
+                    LLVMValueRef receiver = get.getObject().accept(this);
+                    ClassLayout layout = classOf(get.getObject());
+                    LLVMValueRef[] llvmArguments = generateArguments(arguments);
+                    return invokeMethod(expression, layout, receiver, findMethod(layout, get.getName(), llvmArguments), llvmArguments,
+                            get.getObject() instanceof Expression.New);
+                }
+                case Expression.Super superExpression -> {
+                    // Always the superclass's implementation, so there is nothing to dispatch
+                    if (this.currentClass == null || this.currentClass.getSuperclass() == null)
+                        throw new RuntimeException("Cannot use 'super' outside of a subclass!");
+
+                    LLVMValueRef[] llvmArguments = generateArguments(arguments);
+                    ClassLayout.MethodSlot slot = findMethod(this.currentClass.getSuperclass(), superExpression.getMethod(), llvmArguments);
+                    return buildCall(expression, slot.functionType(), slot.implementation(), prepend(getThis(), llvmArguments));
+                }
+                case Expression.Function function -> {
+                    String name = (String) function.getName().value();
+                    LLVMValueRef[] llvmArguments = generateArguments(arguments);
+                    String mangledName = getFunctionNameLLVM(name, typesOf(llvmArguments));
+
+                    SymbolTable.Symbol symbol = symbolTable.lookup(mangledName, SymbolTable.SymbolCategory.FUNCTION);
+                    if (symbol == null && this.currentClass != null) {
+                        // A bare call in a method calls another method on the same object
+                        ClassLayout.MethodSlot slot = this.currentClass.findMethod(mangledName, name, llvmArguments.length);
+                        if (slot != null)
+                            return invokeMethod(expression, this.currentClass, getThis(), slot, llvmArguments, false);
+                    }
+
+                    if(symbol == null)
+                        throw new RuntimeException("Unknown function: " + mangledName);
 
-            LLVMValueRef constructor = call.accept(this);
-            if(constructor == null)
-                throw new RuntimeException("Unknown constructor: " + call);
+                    LLVMValueRef llvmCallee = symbol.llvmValue();
+                    // Functions are pointers, so the function type is the value type of the global
+                    return buildCall(expression, LLVM.LLVMGlobalGetValueType(llvmCallee), llvmCallee, llvmArguments);
+                }
+                default -> throw new UnsupportedOperationException("Cannot call " + AstPrinter.print(callee));
+            }
+        }
 
-            LLVMTypeRef constructorType = LLVM.LLVMTypeOf(constructor);
-            if(LLVM.LLVMGetTypeKind(constructorType) != LLVM.LLVMFunctionTypeKind)
-                throw new RuntimeException("Constructor is not a function type: " + call);
+        @Override
+        public LLVMValueRef visitNew(Expression.New expression) {
+            String className = className(expression);
+            ClassLayout layout = this.classes.get(className);
+            if (layout == null)
+                throw new RuntimeException("Unknown class: " + className);
+
+            LLVMValueRef[] llvmArguments = generateArguments(((Expression.Call) expression.getCall()).getArguments());
+
+            // Objects that never leave their variable's scope do not need to outlive the function
+            LLVMTypeRef classType = layout.getStructType();
+            LLVMValueRef objectPtr;
+            if (this.escapes.isLocalAllocation(expression)) {
+                objectPtr = buildLocalObject(classType);
+            } else if (this.garbageCollected) {
+                // The runtime zeroes the object and sets its vtable
+                objectPtr = callRuntime(LLVMRuntime.ALLOCATE_OBJECT, layout.getVtable());
+            } else {
+                objectPtr = LLVM.LLVMBuildMalloc(builder, classType, "new_object");
+            }
 
-            LLVMTypeRef classType = LLVM.LLVMGetReturnType(constructorType);
-            LLVMValueRef objectPtr = LLVM.LLVMBuildMalloc(builder, classType, "new_object");
+            // Fields start out zeroed, like in the interpreter, where they are unset until a constructor sets them
+            if (this.escapes.isLocalAllocation(expression) || !this.garbageCollected) {
+                LLVM.LLVMBuildStore(builder, LLVM.LLVMConstNull(classType), objectPtr);
+                LLVMValueRef vtableSlot = LLVM.LLVMBuildStructGEP2(builder, classType, objectPtr, ClassLayout.VTABLE_INDEX, "vtable_slot");
+                LLVM.LLVMBuildStore(builder, layout.getVtable(), vtableSlot);
+            }
 
-            List<Expression> arguments = ((Expression.Call) call).getArguments();
-            LLVMValueRef[] llvmArguments = arguments.stream()
-                    .map(arg -> arg.accept(this))
-                    .toArray(value -> new LLVMValueRef[value + 1]);
-            System.arraycopy(llvmArguments, 0, llvmArguments, 1, llvmArguments.length - 1);
-            llvmArguments[0] = objectPtr;
+            if (!layout.hasConstructors() && llvmArguments.length == 0)
+                return objectPtr;
 
-            LLVM.LLVMBuildCall2(builder, constructorType, constructor,
-                    new PointerPointer<>(llvmArguments), llvmArguments.length, "");
+            LLVMValueRef constructor = layout.findConstructor(getFunctionNameLLVM("init", typesOf(llvmArguments)), llvmArguments.length);
+            if (constructor == null)
+                throw new RuntimeException("Class '" + className + "' has no constructor taking " + llvmArguments.length + " arguments!");
 
+            buildCall(LLVM.LLVMGlobalGetValueType(constructor), constructor, prepend(objectPtr, llvmArguments));
             return objectPtr;
         }
 
+        /**
+         * Allocates an object on the stack. In a garbage collected module it gets a header, so the collector traces
+         * its fields when it finds it through a root.
+         */
+        private LLVMValueRef buildLocalObject(LLVMTypeRef classType) {
+            if (!this.garbageCollected)
+                return buildEntryAlloca(classType, "local_object");
+
+            LLVMTypeRef headerType = LLVMRuntime.headerType(this.context);
+            LLVMTypeRef[] members = {headerType, classType};
+            LLVMTypeRef withHeader = LLVM.LLVMStructTypeInContext(this.context, new PointerPointer<>(members), 2, 0);
+            LLVMValueRef allocation = buildEntryAlloca(withHeader, "local_object");
+            LLVM.LLVMBuildStore(builder, LLVMRuntime.header(this.context, 0, LLVMRuntime.STACK_OBJECT_KIND),
+                    LLVM.LLVMBuildStructGEP2(builder, withHeader, allocation, 0, "local_header"));
+            return LLVM.LLVMBuildStructGEP2(builder, withHeader, allocation, 1, "local_object_fields");
+        }
+
         @Override
         public LLVMValueRef visitGet(Expression.Get expression) {
             Token name = expression.getName();
             Expression object = expression.getObject();
 
             LLVMValueRef objectPtr = object.accept(this);
-            if(objectPtr == null)
-                throw new RuntimeException("Unknown object reference: " + object);
-
-            LLVMTypeRef objectType = LLVM.LLVMTypeOf(objectPtr);
-            if(LLVM.LLVMGetTypeKind(objectType) != LLVM.LLVMPointerTypeKind)
-                throw new RuntimeException("Object is not a pointer type: " + object);
-
-            LLVMValueRef fieldPtr = LLVM.LLVMBuildStructGEP2(builder, objectType, objectPtr, 0, (String) name.value());
-            return LLVM.LLVMBuildLoad2(builder, LLVM.LLVMTypeOf(fieldPtr), fieldPtr, name.value() + "_load");
+            ClassLayout layout = classOf(object);
+            LLVMValueRef fieldPtr = fieldPointer(layout, objectPtr, name);
+            LLVMTypeRef fieldType = layout.getFieldType(layout.getFieldIndex((String) name.value()));
+            return root(LLVM.LLVMBuildLoad2(builder, fieldType, fieldPtr, name.value() + "_load"), "field_root");
         }
 
         @Override
         public LLVMValueRef visitSet(Expression.Set expression) {
-            Token name = expression.getName();
             Expression object = expression.getObject();
-            Expression value = expression.getValue();
 
             LLVMValueRef objectPtr = object.accept(this);
-            if(objectPtr == null)
-                throw new RuntimeException("Unknown object reference: " + object);
-
-            LLVMTypeRef objectType = LLVM.LLVMTypeOf(objectPtr);
-            if(LLVM.LLVMGetTypeKind(objectType) != LLVM.LLVMPointerTypeKind)
-                throw new RuntimeException("Object is not a pointer type: " + object);
-
-            LLVMValueRef llvmValue = value.accept(this);
-            LLVMValueRef fieldPtr = LLVM.LLVMBuildStructGEP2(builder, objectType, objectPtr, 0, (String) name.value());
-            LLVM.LLVMBuildStore(builder, llvmValue, fieldPtr);
-
-            return llvmValue;
+            ClassLayout layout = classOf(object);
+            LLVMValueRef llvmValue = expression.getValue().accept(this);
+            return storeField(layout, objectPtr, expression.getName(), llvmValue);
         }
 
         @Override
         public LLVMValueRef visitThis(Expression.This expression) {
-            SymbolTable.Symbol symbol = symbolTable.lookup("this", SymbolTable.SymbolCategory.VARIABLE);
-            if(symbol == null)
-                throw new RuntimeException("Unknown 'this' reference!");
-
-            return symbol.llvmValue();
+            return getThis();
         }
 
         @Override
         public LLVMValueRef visitSuper(Expression.Super expression) {
-            SymbolTable.Symbol symbol = symbolTable.lookup("super", SymbolTable.SymbolCategory.VARIABLE);
-            if(symbol == null)
-                throw new RuntimeException("Unknown 'super' reference!");
-
-            return symbol.llvmValue();
+            throw new UnsupportedOperationException("'super' can only be used to call a superclass method!");
         }
 
         @Override
@@ -255,10 +1192,10 @@ public class LLVMCodeGenerator {
         public LLVMValueRef visitLiteral(Expression.Literal expression) {
             return switch (expression.getValue()) {
                 case Integer integerVal -> LLVM.LLVMConstInt(LLVM.LLVMInt32TypeInContext(context), integerVal, 0);
-                case String stringVal -> LLVM.LLVMConstStringInContext(context, stringVal, stringVal.length(), 0);
+                case String stringVal -> LLVMRuntime.stringConstant(this.context, this.module, stringVal, this.garbageCollected);
                 case Boolean booleanVal ->
                         LLVM.LLVMConstInt(LLVM.LLVMInt1TypeInContext(context), booleanVal ? 1 : 0, 0);
-                case Double doubleVal -> LLVM.LLVMConstReal(LLVM.LLVMFloatTypeInContext(context), doubleVal);
+                case Double doubleVal -> LLVM.LLVMConstReal(LLVM.LLVMDoubleTypeInContext(context), doubleVal);
                 case Float floatVal -> LLVM.LLVMConstReal(LLVM.LLVMFloatTypeInContext(context), floatVal);
                 case Long longVal -> LLVM.LLVMConstInt(LLVM.LLVMInt64TypeInContext(context), longVal, 0);
                 case Byte byteVal -> LLVM.LLVMConstInt(LLVM.LLVMInt8TypeInContext(context), byteVal, 0);
@@ -288,7 +1225,9 @@ public class LLVMCodeGenerator {
 
             return switch (expression.getOperator().type()) {
                 case NOT -> LLVM.LLVMBuildNot(builder, right, "nottmp");
-                case SUB -> LLVM.LLVMBuildNeg(builder, right, "negtmp");
+                case SUB -> isFloatingPoint(expression.getRight(), right)
+                        ? LLVM.LLVMBuildFNeg(builder, right, "negtmp")
+                        : LLVM.LLVMBuildNeg(builder, right, "negtmp");
                 default -> throw new UnsupportedOperationException("Unknown unary operator: " + expression.getOperator().type());
             };
         }
@@ -296,13 +1235,26 @@ public class LLVMCodeGenerator {
         @Override
         public LLVMValueRef visitVariable(Expression.Variable expression) {
             SymbolTable.Symbol symbol = symbolTable.lookup((String) expression.getName().value(), SymbolTable.SymbolCategory.VARIABLE);
+            int field = implicitField((String) expression.getName().value(), symbol);
+            if (field >= 0) {
+                LLVMValueRef fieldPtr = fieldPointer(this.currentClass, getThis(), expression.getName());
+                return root(LLVM.LLVMBuildLoad2(builder, this.currentClass.getFieldType(field), fieldPtr,
+                        expression.getName().value() + "_load"), "field_root");
+            }
+
             if (symbol == null) {
                 throw new RuntimeException("Unknown variable: " + expression.getName().value());
             }
 
+            if (symbol.type() == SymbolTable.SymbolType.LOCAL)
+                return this.ssa.read(symbol, LLVM.LLVMGetInsertBlock(builder));
+
+            // Parameters are used directly, while anything else lives in memory that holds its value
             LLVMValueRef variable = symbol.llvmValue();
-            LLVMTypeRef variableType = LLVM.LLVMTypeOf(variable);
+            if (symbol.type() == SymbolTable.SymbolType.PARAMETER)
+                return variable;
 
+            LLVMTypeRef variableType = LLVM.LLVMGetAllocatedType(variable);
             return LLVM.LLVMBuildLoad2(builder, variableType, variable, expression.getName().value() + "_load");
         }
 
@@ -328,49 +1280,36 @@ public class LLVMCodeGenerator {
             return null;
         }
 
-        @Override
-        public LLVMValueRef visitFunctionStatement(Statement.FunctionStatement statement) {
-            Token name = statement.getName();
-            Token returnType = statement.getReturnType();
-            List<Parameter> parameters = statement.getParameters();
-            List<Statement> body = statement.getBody();
-
-            LLVMTypeRef llvmReturnType = mapType(returnType);
-            LLVMTypeRef[] llvmParameterTypes = parameters.stream()
+        /**
+         * Adds the function to the module without a body, so it can be called before it is defined or from a module
+         * that does not define it. Declaring a function again returns the existing declaration.
+         * <p>
+         * The symbol is the mangled name with {@value FUNCTION_PREFIX} in front, so a function called {@code main}
+         * does not replace the entry point that runs the top-level statements.
+         */
+        public LLVMValueRef declareFunction(Statement.FunctionStatement statement) {
+            LLVMTypeRef llvmReturnType = mapType(statement.getReturnType());
+            LLVMTypeRef[] llvmParameterTypes = statement.getParameters().stream()
                     .map(Parameter::type)
                     .map(this::mapType)
                     .toArray(LLVMTypeRef[]::new);
 
-            LLVMTypeRef llvmFunctionType = LLVM.LLVMFunctionType(llvmReturnType, new PointerPointer<>(llvmParameterTypes), llvmParameterTypes.length, 0); // TODO: Add support for variadic functions
+            String functionName = getFunctionNameLLVM((String) statement.getName().value(), List.of(llvmParameterTypes));
+            LLVMValueRef existing = LLVM.LLVMGetNamedFunction(this.module, FUNCTION_PREFIX + functionName);
+            if (existing != null)
+                return existing;
 
-            String functionName = getFunctionNameLLVM((String) name.value(), List.of(llvmParameterTypes));
-            LLVMValueRef llvmFunction = LLVM.LLVMAddFunction(module, functionName, llvmFunctionType);
+            LLVMTypeRef llvmFunctionType = LLVM.LLVMFunctionType(llvmReturnType, new PointerPointer<>(llvmParameterTypes), llvmParameterTypes.length, 0); // TODO: Add support for variadic functions
+            LLVMValueRef llvmFunction = LLVM.LLVMAddFunction(module, FUNCTION_PREFIX + functionName, llvmFunctionType);
+            addProfileAttributes(llvmFunction, statement);
             this.symbolTable.insert(functionName, new SymbolTable.Symbol(functionName, SymbolTable.SymbolType.FUNCTION, llvmFunction));
+            return llvmFunction;
+        }
 
-            this.symbolTable.enterScope();
-
-            int paramIndex = 0;
-            for (Parameter parameter : parameters) {
-                String parameterName = (String) parameter.name().value();
-                LLVMValueRef llvmParameter = LLVM.LLVMGetParam(llvmFunction, paramIndex++);
-                this.symbolTable.insert(parameterName, new SymbolTable.Symbol(parameterName, SymbolTable.SymbolType.PARAMETER, llvmParameter));
-            }
-
-            LLVMBasicBlockRef entry = LLVM.LLVMAppendBasicBlock(llvmFunction, "entry");
-            LLVM.LLVMPositionBuilderAtEnd(builder, entry);
-
-            for (Statement stmt : body) {
-                stmt.accept(this);
-            }
-
-            if(llvmReturnType.equals(LLVM.LLVMVoidType())) {
-                LLVM.LLVMBuildRetVoid(builder);
-            } else {
-                LLVM.LLVMBuildRet(builder, LLVM.LLVMConstNull(llvmReturnType));
-            }
-
-            this.symbolTable.exitScope();
-
+        @Override
+        public LLVMValueRef visitFunctionStatement(Statement.FunctionStatement statement) {
+            LLVMValueRef llvmFunction = declareFunction(statement);
+            generateBody(llvmFunction, statement.getParameters(), statement.getBody(), null);
             return llvmFunction;
         }
 
@@ -385,36 +1324,30 @@ public class LLVMCodeGenerator {
             Statement thenBranch = statement.getThenBranch();
             Statement elseBranch = statement.getElseBranch();
 
-            LLVMValueRef llvmCondition = condition.accept(this);
-            if (!LLVM.LLVMTypeOf(llvmCondition).equals(LLVM.LLVMInt1Type())) {
-                llvmCondition = LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE,
-                        llvmCondition,
-                        LLVM.LLVMConstNull(LLVM.LLVMTypeOf(llvmCondition)),
-                        "condition_cast");
-            }
-
-            LLVMValueRef function = LLVM.LLVMGetBasicBlockParent(LLVM.LLVMGetInsertBlock(builder));
-            LLVMBasicBlockRef thenBlock = LLVM.LLVMAppendBasicBlock(function, "then");
-            LLVMBasicBlockRef elseBlock = (elseBranch != null) ? LLVM.LLVMAppendBasicBlock(function, "else") : null;
-            LLVMBasicBlockRef mergeBlock = LLVM.LLVMAppendBasicBlock(function, "merge");
+            LLVMBasicBlockRef thenBlock = appendBlock("then");
+            LLVMBasicBlockRef elseBlock = (elseBranch != null) ? appendBlock("else") : null;
+            LLVMBasicBlockRef mergeBlock = appendBlock("merge");
 
-            LLVM.LLVMBuildCondBr(builder, llvmCondition, thenBlock, elseBlock != null ? elseBlock : mergeBlock);
+            conditionalBranch(statement, condition, thenBlock, elseBlock != null ? elseBlock : mergeBlock);
 
             LLVM.LLVMPositionBuilderAtEnd(builder, thenBlock);
+            this.ssa.seal(thenBlock);
             this.symbolTable.enterScope();
             thenBranch.accept(this);
             this.symbolTable.exitScope();
-            LLVM.LLVMBuildBr(builder, mergeBlock);
+            branch(mergeBlock);
 
             if (elseBranch != null) {
                 LLVM.LLVMPositionBuilderAtEnd(builder, elseBlock);
+                this.ssa.seal(elseBlock);
                 this.symbolTable.enterScope();
                 elseBranch.accept(this);
                 this.symbolTable.exitScope();
-                LLVM.LLVMBuildBr(builder, mergeBlock);
+                branch(mergeBlock);
             }
 
             LLVM.LLVMPositionBuilderAtEnd(builder, mergeBlock);
+            this.ssa.seal(mergeBlock);
             return null;
         }
 
@@ -430,89 +1363,65 @@ public class LLVMCodeGenerator {
 
         @Override
         public LLVMValueRef visitClassStatement(Statement.ClassStatement statement) {
-//            Token name = statement.getName();
-//            List<Statement.VariableStatement> fields = statement.getFields();
-//            List<Statement.FunctionStatement> methods = statement.getMethods();
-//            List<Statement.ConstructorStatement> constructors = statement.getConstructors();
-//            Expression.Extends superclass = statement.getSuperclass();
-//            List<Statement.VariableStatement> staticFields = statement.getStaticFields();
-//            List<Statement.FunctionStatement> staticMethods = statement.getStaticMethods();
-//
-//            LLVMTypeRef classType = LLVM.LLVMStructCreateNamed(context, (String) name.value());
-//
-//            List<LLVMTypeRef> fieldTypes = new ArrayList<>();
-//
-//            LLVMTypeRef superclassType = null;
-//            if(superclassType != null) {
-//                superclassType = (LLVMTypeRef) (Object) superclass.accept(this); //  TODO: This won't work but idk how to fix it rn
-//                fieldTypes.add(superclassType);
-//            }
-//
-//            for (Statement.VariableStatement field : fields) {
-//                fieldTypes.add(mapType(field.getType()));
-//                //
-//            }
-//
-//            PointerPointer<LLVMTypeRef> fieldTypesArray = new PointerPointer<>(fieldTypes.toArray(new LLVMTypeRef[0]));
-//            LLVM.LLVMStructSetBody(classType, fieldTypesArray, fieldTypes.size(), 0);
-//
-//            LLVM.LLVMAddGlobal(module, classType, (String) name.value());
-//
-//            for (Statement.ConstructorStatement constructor : constructors) {
-//                LLVMTypeRef constructorType = mapFunctionType(constructor);
-//                LLVMValueRef constructorFunction = LLVM.LLVMAddFunction(module, name.value() + "_ctor", constructorType);
-//                this.symbolTable.enterScope();
-//                constructor.accept(this);
-//                this.symbolTable.exitScope();
-//
-//                LLVM.LLVMSetLinkage(constructorFunction, LLVM.LLVMPrivateLinkage);
-//            }
-//
-//            for (Statement.FunctionStatement method : methods) {
-//                LLVMTypeRef methodType = mapFunctionType(method);
-//                LLVMValueRef methodFunction = LLVM.LLVMAddFunction(module, name.value() + "_" + method.getName().value(), methodType);
-//                this.symbolTable.enterScope();
-//                method.accept(this);
-//                this.symbolTable.exitScope();
-//
-//                LLVM.LLVMSetLinkage(methodFunction, LLVM.LLVMPrivateLinkage);
-//            }
-//
-//            for (Statement.VariableStatement staticField : staticFields) {
-//                LLVMTypeRef staticFieldType = mapType(staticField.getType());
-//                LLVMValueRef staticFieldPtr = LLVM.LLVMBuildAlloca(builder, staticFieldType, (String) staticField.getName().value());
-//                this.symbolTable.insert((String) staticField.getName().value(), new SymbolTable.Symbol((String) staticField.getName().value(), SymbolTable.SymbolType.VARIABLE, staticFieldPtr));
-//            }
+            ClassLayout layout = this.classes.get((String) statement.getName().value());
+            if (layout == null || layout.getDeclaration() != statement)
+                throw new UnsupportedOperationException("Only top-level classes can be compiled natively!");
+
+            // The module that compiles the class defines its vtable, every other module links against it
+            List<LLVMValueRef> entryList = new ArrayList<>();
+            entryList.add(defineTypeDescriptor(layout));
+            layout.getSlots().forEach(slot -> entryList.add(slot.implementation()));
+            LLVMValueRef[] entries = entryList.toArray(LLVMValueRef[]::new);
+            LLVM.LLVMSetInitializer(layout.getVtable(), LLVM.LLVMConstArray2(LLVM.LLVMPointerTypeInContext(this.context, 0),
+                    new PointerPointer<>(entries), entries.length));
+            LLVM.LLVMSetGlobalConstant(layout.getVtable(), 1);
+
+            for (Statement.FunctionStatement method : statement.getMethods()) {
+                generateBody(this.methodFunctions.get(method), method.getParameters(), method.getBody(), layout);
+            }
 
-            return null;
+            for (Statement.ConstructorStatement constructor : statement.getConstructors()) {
+                generateBody(this.constructorFunctions.get(constructor), constructor.getParameters(), constructor.getBody(), layout);
+            }
+
+            return layout.getVtable();
+        }
+
+        /**
+         * Defines the descriptor that the native runtime allocates and traces objects of the class with: the size of
+         * the struct, the number of pointer fields and their offsets, all as 64-bit integers. The sizes and offsets
+         * are constant expressions, which LLVM folds once the module has a data layout.
+         */
+        private LLVMValueRef defineTypeDescriptor(ClassLayout layout) {
+            LLVMTypeRef i32 = LLVM.LLVMInt32TypeInContext(this.context);
+            LLVMTypeRef i64 = LLVM.LLVMInt64TypeInContext(this.context);
+            LLVMTypeRef pointer = LLVM.LLVMPointerTypeInContext(this.context, 0);
+            LLVMTypeRef structType = layout.getStructType();
+
+            List<LLVMValueRef> offsets = new ArrayList<>();
+            List<LLVMTypeRef> members = layout.getMemberTypes(pointer);
+            for (int index = 0; index < members.size(); index++) {
+                if (index == ClassLayout.VTABLE_INDEX || LLVM.LLVMGetTypeKind(members.get(index)) != LLVM.LLVMPointerTypeKind)
+                    continue;
+
+                LLVMValueRef[] indices = {LLVM.LLVMConstNull(i32), LLVM.LLVMConstInt(i32, index, 0)};
+                LLVMValueRef field = LLVM.LLVMConstGEP2(structType, LLVM.LLVMConstNull(pointer), new PointerPointer<>(indices), 2);
+                offsets.add(LLVM.LLVMConstPtrToInt(field, i64));
+            }
+
+            LLVMValueRef[] descriptor = {LLVM.LLVMSizeOf(structType), LLVM.LLVMConstInt(i64, offsets.size(), 0),
+                    LLVM.LLVMConstArray2(i64, new PointerPointer<>(offsets.toArray(LLVMValueRef[]::new)), offsets.size())};
+            LLVMValueRef value = LLVM.LLVMConstStructInContext(this.context, new PointerPointer<>(descriptor), descriptor.length, 0);
+            LLVMValueRef global = LLVM.LLVMAddGlobal(this.module, LLVM.LLVMTypeOf(value), layout.getName() + ".type");
+            LLVM.LLVMSetInitializer(global, value);
+            LLVM.LLVMSetGlobalConstant(global, 1);
+            LLVM.LLVMSetLinkage(global, LLVM.LLVMPrivateLinkage);
+            return global;
         }
 
         @Override
         public LLVMValueRef visitConstructorStatement(Statement.ConstructorStatement statement) {
-            Token name = statement.getName();
-            List<Parameter> parameters = statement.getParameters();
-            List<Statement> body = statement.getBody();
-            
-            LLVMValueRef function = LLVM.LLVMGetBasicBlockParent(LLVM.LLVMGetInsertBlock(builder));
-            LLVMBasicBlockRef entry = LLVM.LLVMAppendBasicBlock(function, "entry");
-            LLVM.LLVMPositionBuilderAtEnd(builder, entry);
-            
-            this.symbolTable.enterScope();
-            int paramIndex = 0;
-            for (Parameter parameter : parameters) {
-                String parameterName = (String) parameter.name().value();
-                LLVMValueRef llvmParameter = LLVM.LLVMGetParam(function, paramIndex++);
-                this.symbolTable.insert(parameterName, new SymbolTable.Symbol(parameterName, SymbolTable.SymbolType.PARAMETER, llvmParameter));
-            }
-            
-            for (Statement stmt : body) {
-                stmt.accept(this);
-            }
-            
-            LLVM.LLVMBuildRetVoid(builder);
-            this.symbolTable.exitScope();
-            
-            return null;
+            throw new UnsupportedOperationException("Constructors are compiled with their class!");
         }
 
         @Override
@@ -521,12 +1430,18 @@ public class LLVMCodeGenerator {
             Expression value = statement.getValue();
 
             SymbolTable.Symbol symbol = symbolTable.lookup((String) name.value(), SymbolTable.SymbolCategory.VARIABLE);
+            if (implicitField((String) name.value(), symbol) >= 0)
+                return storeField(this.currentClass, getThis(), name, value.accept(this));
+
             if(symbol == null)
                 throw new RuntimeException("Unknown variable: " + name.value());
 
             LLVMValueRef llvmValue = value.accept(this);
-            LLVM.LLVMBuildStore(builder, llvmValue, symbol.llvmValue());
+            if (symbol.type() == SymbolTable.SymbolType.LOCAL)
+                return assignLocal(symbol, llvmValue);
 
+            llvmValue = convert(llvmValue, LLVM.LLVMGetAllocatedType(symbol.llvmValue()));
+            LLVM.LLVMBuildStore(builder, llvmValue, symbol.llvmValue());
             return llvmValue;
         }
 
@@ -535,42 +1450,96 @@ public class LLVMCodeGenerator {
             Expression condition = statement.getCondition();
             Statement body = statement.getBody();
 
-            LLVMValueRef function = LLVM.LLVMGetBasicBlockParent(LLVM.LLVMGetInsertBlock(builder));
-            LLVMBasicBlockRef conditionBlock = LLVM.LLVMAppendBasicBlock(function, "condition");
-            LLVMBasicBlockRef bodyBlock = LLVM.LLVMAppendBasicBlock(function, "body");
-            LLVMBasicBlockRef mergeBlock = LLVM.LLVMAppendBasicBlock(function, "merge");
+            LLVMBasicBlockRef conditionBlock = appendBlock("condition");
+            LLVMBasicBlockRef bodyBlock = appendBlock("body");
+            LLVMBasicBlockRef mergeBlock = appendBlock("merge");
 
-            this.loopBlocks.push(new LoopBlock(conditionBlock, bodyBlock, mergeBlock));
+            this.loopBlocks.push(new LoopBlock(conditionBlock, bodyBlock, conditionBlock, mergeBlock));
 
-            LLVM.LLVMBuildBr(builder, conditionBlock);
+            branch(conditionBlock);
 
+            // The condition is not sealed until the back edge from the body exists
             LLVM.LLVMPositionBuilderAtEnd(builder, conditionBlock);
-            LLVMValueRef llvmCondition = condition.accept(this);
-            if (!LLVM.LLVMTypeOf(llvmCondition).equals(LLVM.LLVMInt1Type())) {
-                llvmCondition = LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE,
-                        llvmCondition,
-                        LLVM.LLVMConstNull(LLVM.LLVMTypeOf(llvmCondition)),
-                        "condition_cast");
+            conditionalBranch(statement, condition, bodyBlock, mergeBlock);
+
+            LLVM.LLVMPositionBuilderAtEnd(builder, bodyBlock);
+            this.ssa.seal(bodyBlock);
+            this.symbolTable.enterScope();
+            body.accept(this);
+            this.symbolTable.exitScope();
+            branch(conditionBlock);
+            this.ssa.seal(conditionBlock);
+
+            LLVM.LLVMPositionBuilderAtEnd(builder, mergeBlock);
+            this.ssa.seal(mergeBlock);
+
+            this.loopBlocks.pop();
+            return null;
+        }
+
+        @Override
+        public LLVMValueRef visitForStatement(Statement.ForStatement statement) {
+            Statement initializer = statement.getInitializer();
+            Expression condition = statement.getCondition();
+            Expression increment = statement.getIncrement();
+            Statement body = statement.getBody();
+
+            this.symbolTable.enterScope();
+            if (initializer != null) {
+                initializer.accept(this);
             }
 
-            LLVM.LLVMBuildCondBr(builder, llvmCondition, bodyBlock, mergeBlock);
+            LLVMBasicBlockRef conditionBlock = appendBlock("for_condition");
+            LLVMBasicBlockRef bodyBlock = appendBlock("for_body");
+            LLVMBasicBlockRef incrementBlock = appendBlock("for_increment");
+            LLVMBasicBlockRef mergeBlock = appendBlock("for_merge");
+
+            this.loopBlocks.push(new LoopBlock(conditionBlock, bodyBlock, incrementBlock, mergeBlock));
+
+            branch(conditionBlock);
+
+            // The condition is not sealed until the back edge from the increment exists
+            LLVM.LLVMPositionBuilderAtEnd(builder, conditionBlock);
+            if (condition != null) {
+                conditionalBranch(statement, condition, bodyBlock, mergeBlock);
+            } else {
+                branch(bodyBlock);
+            }
 
             LLVM.LLVMPositionBuilderAtEnd(builder, bodyBlock);
+            this.ssa.seal(bodyBlock);
             this.symbolTable.enterScope();
             body.accept(this);
             this.symbolTable.exitScope();
-            LLVM.LLVMBuildBr(builder, conditionBlock);
+            branch(incrementBlock);
+
+            // Continue statements in the body are the increment's other predecessors
+            LLVM.LLVMPositionBuilderAtEnd(builder, incrementBlock);
+            this.ssa.seal(incrementBlock);
+            if (increment != null) {
+                increment.accept(this);
+            }
+
+            branch(conditionBlock);
+            this.ssa.seal(conditionBlock);
 
             LLVM.LLVMPositionBuilderAtEnd(builder, mergeBlock);
+            this.ssa.seal(mergeBlock);
 
             this.loopBlocks.pop();
+            this.symbolTable.exitScope();
+            return null;
+        }
+
+        @Override
+        public LLVMValueRef visitImportStatement(Statement.ImportStatement statement) {
             return null;
         }
 
         @Override
         public LLVMValueRef visitBreakStatement(Statement.BreakStatement statement) {
             if(!this.loopBlocks.isEmpty()) {
-                LLVM.LLVMBuildBr(builder, this.loopBlocks.peek().mergeBlock());
+                jump(this.loopBlocks.peek().mergeBlock());
             } else {
                 throw new RuntimeException("Cannot use 'break' outside of a loop!");
             }
@@ -581,7 +1550,7 @@ public class LLVMCodeGenerator {
         @Override
         public LLVMValueRef visitContinueStatement(Statement.ContinueStatement statement) {
             if(!this.loopBlocks.isEmpty()) {
-                LLVM.LLVMBuildBr(builder, this.loopBlocks.peek().conditionBlock());
+                jump(this.loopBlocks.peek().continueBlock());
             } else {
                 throw new RuntimeException("Cannot use 'continue' outside of a loop!");
             }
@@ -594,12 +1563,14 @@ public class LLVMCodeGenerator {
             Expression value = statement.getValue();
 
             if(value != null) {
-                LLVMValueRef llvmValue = value.accept(this);
+                LLVMTypeRef returnType = LLVM.LLVMGetReturnType(LLVM.LLVMGlobalGetValueType(currentFunction()));
+                LLVMValueRef llvmValue = convert(value.accept(this), returnType);
                 LLVM.LLVMBuildRet(builder, llvmValue);
             } else {
                 LLVM.LLVMBuildRetVoid(builder);
             }
 
+            startUnreachableBlock();
             return null;
         }
 
@@ -612,20 +1583,10 @@ public class LLVMCodeGenerator {
                     throw new RuntimeException("Null LLVMTypeRef encountered.");
                 }
 
+                // Pointers are opaque, so they all mangle the same way
                 int typeKind = LLVM.LLVMGetTypeKind(parameterType);
-                if(typeKind == LLVM.LLVMPointerTypeKind) {
-                    LLVMTypeRef elementType = LLVM.LLVMGetElementType(parameterType);
-                    BytePointer moduleStr = LLVM.LLVMPrintModuleToString(this.module);
-                    try {
-                        String moduleString = moduleStr.getString();
-                        System.out.println(moduleString);
-                    } finally {
-                        LLVM.LLVMDisposeMessage(moduleStr);
-                    }
-                    typeKind = LLVM.LLVMGetTypeKind(elementType);
-                }
-
                 output.append(switch (typeKind) {
+                    case LLVM.LLVMPointerTypeKind -> "ptr";
                     case LLVM.LLVMVoidTypeKind-> "void";
                     case LLVM.LLVMIntegerTypeKind -> {
                         int bitWidth = LLVM.LLVMGetIntTypeWidth(parameterType);
@@ -652,5 +1613,5 @@ public class LLVMCodeGenerator {
         }
     }
 
-    public record LoopBlock(LLVMBasicBlockRef conditionBlock, LLVMBasicBlockRef bodyBlock, LLVMBasicBlockRef mergeBlock) {}
+    public record LoopBlock(LLVMBasicBlockRef conditionBlock, LLVMBasicBlockRef bodyBlock, LLVMBasicBlockRef continueBlock, LLVMBasicBlockRef mergeBlock) {}
 }
@@ -0,0 +1,98 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.TypeTable;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.LongPointer;
+import org.bytedeco.llvm.LLVM.*;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+
+/**
+ * Compiles a program with LLVM's ORC {@code LLJIT} and runs it inside the JVM, without writing anything to disk.
+ * <p>
+ * Symbols the module does not define, such as {@code printf} from the {@link LLVMRuntime}, are looked up in the JVM
+ * process, which already has the C library loaded. Garbage collected programs also look them up in the
+ * {@link NativeRuntime}'s shared library. The compiled {@code main} is called through the foreign function API.
+ */
+public final class LLVMJit {
+    private LLVMJit() {
+    }
+
+    /**
+     * @return the value the program's {@code main} returned
+     */
+    public static int run(List<Statement> statements, TypeTable types, CodeGenOptions options) {
+        LLVM.LLVMInitializeNativeTarget();
+        LLVM.LLVMInitializeNativeAsmPrinter();
+        LLVM.LLVMInitializeNativeAsmParser();
+
+        LLVMOrcThreadSafeContextRef threadSafeContext = LLVM.LLVMOrcCreateNewThreadSafeContext();
+        LLVMModuleRef module = LLVMCodeGenerator.buildModule(statements, types, options,
+                LLVM.LLVMOrcThreadSafeContextGetContext(threadSafeContext));
+        LLVMCodeGenerator.optimize(module, options);
+
+        var jit = new LLVMOrcLLJITRef();
+        check(LLVM.LLVMOrcCreateLLJIT(jit, null), "create the JIT");
+        try {
+            LLVMOrcJITDylibRef mainLibrary = LLVM.LLVMOrcLLJITGetMainJITDylib(jit);
+
+            var processSymbols = new LLVMOrcDefinitionGeneratorRef();
+            check(LLVM.LLVMOrcCreateDynamicLibrarySearchGeneratorForProcess(processSymbols,
+                    LLVM.LLVMOrcLLJITGetGlobalPrefix(jit), null, null), "search the process for symbols");
+            LLVM.LLVMOrcJITDylibAddGenerator(mainLibrary, processSymbols);
+
+            if (options.garbageCollected()) {
+                var runtimeSymbols = new LLVMOrcDefinitionGeneratorRef();
+                check(LLVM.LLVMOrcCreateDynamicLibrarySearchGeneratorForPath(runtimeSymbols,
+                        new BytePointer(NativeRuntime.sharedLibrary().toString()), LLVM.LLVMOrcLLJITGetGlobalPrefix(jit),
+                        null, null), "load the native runtime");
+                LLVM.LLVMOrcJITDylibAddGenerator(mainLibrary, runtimeSymbols);
+            }
+
+            // The JIT takes ownership of the module, which keeps the context alive for as long as it needs it
+            LLVMOrcThreadSafeModuleRef threadSafeModule = LLVM.LLVMOrcCreateNewThreadSafeModule(module, threadSafeContext);
+            LLVM.LLVMOrcDisposeThreadSafeContext(threadSafeContext);
+            check(LLVM.LLVMOrcLLJITAddLLVMIRModule(jit, mainLibrary, threadSafeModule), "add the module");
+
+            var mainAddress = new LongPointer(1);
+            check(LLVM.LLVMOrcLLJITLookup(jit, mainAddress, "main"), "find main");
+
+            return callMain(mainAddress.get());
+        } finally {
+            LLVM.LLVMOrcDisposeLLJIT(jit);
+        }
+    }
+
+    private static int callMain(long address) {
+        Linker linker = Linker.nativeLinker();
+        MethodHandle main = linker.downcallHandle(MemorySegment.ofAddress(address), FunctionDescriptor.of(ValueLayout.JAVA_INT));
+        // printf buffers its output, which has to be written before anything else the JVM prints
+        MethodHandle flush = linker.downcallHandle(linker.defaultLookup().find("fflush").orElseThrow(),
+                FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
+
+        try {
+            int result = (int) main.invokeExact();
+            int ignored = (int) flush.invokeExact(MemorySegment.NULL);
+            return result;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException("JIT compiled main failed", throwable);
+        }
+    }
+
+    private static void check(LLVMErrorRef error, String action) {
+        if (error == null)
+            return;
+
+        BytePointer message = LLVM.LLVMGetErrorMessage(error);
+        String text = message.getString();
+        LLVM.LLVMDisposeErrorMessage(message);
+        throw new IllegalStateException("Could not " + action + ": " + text);
+    }
+}
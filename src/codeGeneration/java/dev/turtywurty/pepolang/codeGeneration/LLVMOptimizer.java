@@ -0,0 +1,130 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.*;
+import org.bytedeco.llvm.global.LLVM;
+
+/**
+ * Runs LLVM's optimization pipeline for an {@link OptimizationLevel} over a generated module, targeting the host
+ * machine.
+ */
+public final class LLVMOptimizer {
+    private static boolean timePassesEnabled = false;
+
+    private LLVMOptimizer() {
+    }
+
+    /**
+     * Creates a target machine for the host CPU and its features. The native target has to be initialized first.
+     */
+    public static LLVMTargetMachineRef createHostTargetMachine(OptimizationLevel level) {
+        BytePointer triple = LLVM.LLVMGetDefaultTargetTriple();
+        BytePointer cpu = LLVM.LLVMGetHostCPUName();
+        BytePointer features = LLVM.LLVMGetHostCPUFeatures();
+        try {
+            var target = new LLVMTargetRef();
+            var error = new BytePointer();
+            if (LLVM.LLVMGetTargetFromTriple(triple, target, error) != 0) {
+                String message = error.getString();
+                LLVM.LLVMDisposeMessage(error);
+                throw new IllegalStateException("Could not find a target for '" + triple.getString() + "': " + message);
+            }
+
+            // Position independent, since the system linker builds position independent executables by default
+            return LLVM.LLVMCreateTargetMachine(target, triple, cpu, features, level.getCodeGenLevel(),
+                    LLVM.LLVMRelocPIC, LLVM.LLVMCodeModelDefault);
+        } finally {
+            LLVM.LLVMDisposeMessage(triple);
+            LLVM.LLVMDisposeMessage(cpu);
+            LLVM.LLVMDisposeMessage(features);
+        }
+    }
+
+    /**
+     * Sets the module's target triple and data layout to the machine's, so passes that depend on type sizes and
+     * alignments can run.
+     */
+    public static void setTarget(LLVMModuleRef module, LLVMTargetMachineRef targetMachine) {
+        BytePointer triple = LLVM.LLVMGetTargetMachineTriple(targetMachine);
+        LLVMTargetDataRef dataLayout = LLVM.LLVMCreateTargetDataLayout(targetMachine);
+        BytePointer layout = LLVM.LLVMCopyStringRepOfTargetData(dataLayout);
+        try {
+            LLVM.LLVMSetTarget(module, triple);
+            LLVM.LLVMSetDataLayout(module, layout);
+        } finally {
+            LLVM.LLVMDisposeMessage(triple);
+            LLVM.LLVMDisposeMessage(layout);
+            LLVM.LLVMDisposeTargetData(dataLayout);
+        }
+    }
+
+    /**
+     * Checks that the module is valid IR, so a bug in the code generator is reported as such rather than crashing LLVM
+     * while it optimizes, emits or JIT-compiles the module.
+     *
+     * @throws IllegalStateException if the module is invalid, with LLVM's description of what is wrong with it
+     */
+    public static void verify(LLVMModuleRef module) {
+        var verifyError = new BytePointer();
+        if (LLVM.LLVMVerifyModule(module, LLVM.LLVMReturnStatusAction, verifyError) != 0) {
+            String message = verifyError.getString();
+            LLVM.LLVMDisposeMessage(verifyError);
+            throw new IllegalStateException("Generated module is invalid: " + message);
+        }
+
+        LLVM.LLVMDisposeMessage(verifyError);
+    }
+
+    /**
+     * Verifies the module and runs the pass pipeline for the level over it. At {@code O0} the module is only verified.
+     *
+     * @param timePasses whether LLVM should print how long each pass took to standard error
+     * @return how long the pipeline took, in nanoseconds
+     */
+    public static long optimize(LLVMModuleRef module, LLVMTargetMachineRef targetMachine, OptimizationLevel level,
+                                boolean timePasses) {
+        verify(module);
+        if (level == OptimizationLevel.O0)
+            return 0;
+
+        if (timePasses) {
+            enableTimePasses();
+        }
+
+        setTarget(module, targetMachine);
+
+        LLVMPassBuilderOptionsRef options = LLVM.LLVMCreatePassBuilderOptions();
+        try {
+            // Like clang, only vectorize and unroll loops from O2 upwards
+            boolean optimizeLoops = level != OptimizationLevel.O1;
+            LLVM.LLVMPassBuilderOptionsSetLoopVectorization(options, optimizeLoops ? 1 : 0);
+            LLVM.LLVMPassBuilderOptionsSetSLPVectorization(options, optimizeLoops ? 1 : 0);
+            LLVM.LLVMPassBuilderOptionsSetLoopUnrolling(options, optimizeLoops ? 1 : 0);
+
+            long start = System.nanoTime();
+            LLVMErrorRef error = LLVM.LLVMRunPasses(module, level.getPassPipeline(), targetMachine, options);
+            long elapsed = System.nanoTime() - start;
+            if (error != null) {
+                BytePointer message = LLVM.LLVMGetErrorMessage(error);
+                String text = message.getString();
+                LLVM.LLVMDisposeErrorMessage(message);
+                throw new IllegalStateException("Could not run the '" + level.getPassPipeline() + "' pipeline: " + text);
+            }
+
+            return elapsed;
+        } finally {
+            LLVM.LLVMDisposePassBuilderOptions(options);
+        }
+    }
+
+    // LLVM's command line options are global and can only be parsed once per process
+    private static synchronized void enableTimePasses() {
+        if (timePassesEnabled)
+            return;
+
+        timePassesEnabled = true;
+        var arguments = new PointerPointer<>("pepolang", "-time-passes");
+        LLVM.LLVMParseCommandLineOptions(2, arguments, (BytePointer) null);
+    }
+}
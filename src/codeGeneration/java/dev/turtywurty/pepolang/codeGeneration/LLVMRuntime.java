@@ -0,0 +1,288 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.*;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The built-in functions that generated code can call, defined in IR on top of the C library so a module only needs
+ * libc to be linked or JIT compiled.
+ * <p>
+ * Each {@code print} overload is named the way {@link LLVMCodeGenerator} mangles calls, so {@code print(1)} calls
+ * {@code print_i32}. The string helpers that the generator calls itself, such as {@link #CONCAT}, have a {@code pepo.}
+ * prefix so they can never clash with a PepoLang function. The definitions are internal to the module.
+ * <p>
+ * Garbage collected modules allocate strings from the {@link NativeRuntime} instead of with {@code malloc}, and get
+ * its other entry points too. Every string or object they can point to then starts with a header the collector reads,
+ * laid out like {@link #headerType}, so string constants get one as well.
+ */
+final class LLVMRuntime {
+    /**
+     * {@code ptr pepo.concat(ptr, ptr)}: a new string holding the first string followed by the second.
+     */
+    static final String CONCAT = "pepo.concat";
+    /**
+     * {@code i32 strcmp(ptr, ptr)} from the C library.
+     */
+    static final String COMPARE = "strcmp";
+    /**
+     * {@code ptr pepo_alloc_object(ptr)} from the native runtime: a zeroed object whose vtable pointer is set to the
+     * given vtable.
+     */
+    static final String ALLOCATE_OBJECT = "pepo_alloc_object";
+    /**
+     * {@code void pepo_gc_register_roots(ptr)} from the native runtime, which {@code main} calls with
+     * {@link #ROOT_CHAIN} before anything is allocated.
+     */
+    static final String REGISTER_ROOTS = "pepo_gc_register_roots";
+    /**
+     * The head of the list of stack frames with garbage collector roots, which LLVM's {@link #GC_STRATEGY} maintains.
+     */
+    static final String ROOT_CHAIN = "llvm_gc_root_chain";
+    static final String GC_STRATEGY = "shadow-stack";
+    /**
+     * The header kind of a string constant, which is never collected.
+     */
+    static final int STATIC_KIND = 2;
+    /**
+     * The header kind of an object on the stack, which is not collected but whose fields are traced.
+     */
+    static final int STACK_OBJECT_KIND = 3;
+    private static final String HEADER_TYPE = "pepo.header";
+    private static final String TO_STRING_PREFIX = "pepo.to_string_";
+    private static final int NUMBER_BUFFER_SIZE = 32;
+
+    private LLVMRuntime() {
+    }
+
+    /**
+     * @return the name of the function that converts a value of the type to a string
+     */
+    static String toStringName(LLVMTypeRef type) {
+        return TO_STRING_PREFIX + mangle(type);
+    }
+
+    /**
+     * The header in front of everything a garbage collected module can point to: the next object on the heap, the
+     * size, the kind, a mark bit and padding. It has to match {@code PepoHeader} in the native runtime.
+     */
+    static LLVMTypeRef headerType(LLVMContextRef context) {
+        LLVMTypeRef existing = LLVM.LLVMGetTypeByName2(context, HEADER_TYPE);
+        if (existing != null)
+            return existing;
+
+        LLVMTypeRef header = LLVM.LLVMStructCreateNamed(context, HEADER_TYPE);
+        LLVMTypeRef[] members = {LLVM.LLVMPointerTypeInContext(context, 0), LLVM.LLVMInt32TypeInContext(context),
+                LLVM.LLVMInt8TypeInContext(context), LLVM.LLVMInt8TypeInContext(context), LLVM.LLVMInt16TypeInContext(context)};
+        LLVM.LLVMStructSetBody(header, new PointerPointer<>(members), members.length, 0);
+        return header;
+    }
+
+    /**
+     * @return a constant header of the kind, which is not on the heap
+     */
+    static LLVMValueRef header(LLVMContextRef context, long size, int kind) {
+        LLVMValueRef[] values = {LLVM.LLVMConstNull(LLVM.LLVMPointerTypeInContext(context, 0)),
+                LLVM.LLVMConstInt(LLVM.LLVMInt32TypeInContext(context), size, 0),
+                LLVM.LLVMConstInt(LLVM.LLVMInt8TypeInContext(context), kind, 0),
+                LLVM.LLVMConstNull(LLVM.LLVMInt8TypeInContext(context)),
+                LLVM.LLVMConstNull(LLVM.LLVMInt16TypeInContext(context))};
+        return LLVM.LLVMConstNamedStruct(headerType(context), new PointerPointer<>(values), values.length);
+    }
+
+    /**
+     * Adds a null terminated, UTF-8 encoded string constant to the module, with a header in front of it if the module
+     * is garbage collected.
+     *
+     * @return a pointer to the first character
+     */
+    static LLVMValueRef stringConstant(LLVMContextRef context, LLVMModuleRef module, String value, boolean garbageCollected) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        LLVMValueRef characters = LLVM.LLVMConstStringInContext2(context, new BytePointer(bytes), bytes.length, 0);
+        if (!garbageCollected)
+            return addConstant(module, characters, "string");
+
+        LLVMValueRef[] members = {header(context, bytes.length + 1, STATIC_KIND), characters};
+        LLVMValueRef withHeader = addConstant(module, LLVM.LLVMConstStructInContext(context, new PointerPointer<>(members), 2, 0), "string");
+        LLVMTypeRef i32 = LLVM.LLVMInt32TypeInContext(context);
+        LLVMValueRef[] indices = {LLVM.LLVMConstNull(i32), LLVM.LLVMConstInt(i32, 1, 0)};
+        return LLVM.LLVMConstInBoundsGEP2(LLVM.LLVMGlobalGetValueType(withHeader), withHeader, new PointerPointer<>(indices), 2);
+    }
+
+    private static LLVMValueRef addConstant(LLVMModuleRef module, LLVMValueRef value, String name) {
+        LLVMValueRef global = LLVM.LLVMAddGlobal(module, LLVM.LLVMTypeOf(value), name);
+        LLVM.LLVMSetInitializer(global, value);
+        LLVM.LLVMSetGlobalConstant(global, 1);
+        LLVM.LLVMSetLinkage(global, LLVM.LLVMPrivateLinkage);
+        LLVM.LLVMSetUnnamedAddress(global, LLVM.LLVMGlobalUnnamedAddr);
+        return global;
+    }
+
+    /**
+     * Defines the runtime functions in the module.
+     *
+     * @param garbageCollected whether strings are allocated from the native runtime's heap, which also declares its
+     *                         {@link #ALLOCATE_OBJECT} and {@link #REGISTER_ROOTS}
+     * @return the functions, by their names
+     */
+    static Map<String, LLVMValueRef> define(LLVMContextRef context, LLVMModuleRef module, boolean garbageCollected) {
+        LLVMTypeRef i32 = LLVM.LLVMInt32TypeInContext(context);
+        LLVMTypeRef i64 = LLVM.LLVMInt64TypeInContext(context);
+        LLVMTypeRef pointer = LLVM.LLVMPointerTypeInContext(context, 0);
+        LLVMTypeRef allocateType = LLVM.LLVMFunctionType(pointer, new PointerPointer<>(new LLVMTypeRef[]{i64}), 1, 0);
+        var library = new Library(
+                declare(module, "printf", LLVM.LLVMFunctionType(i32, new PointerPointer<>(new LLVMTypeRef[]{pointer}), 1, 1)),
+                declare(module, "snprintf", LLVM.LLVMFunctionType(i32, new PointerPointer<>(pointer, i64, pointer), 3, 1)),
+                declare(module, garbageCollected ? "pepo_alloc_string" : "malloc", allocateType),
+                declare(module, "strlen", LLVM.LLVMFunctionType(i64, new PointerPointer<>(new LLVMTypeRef[]{pointer}), 1, 0)),
+                declare(module, COMPARE, LLVM.LLVMFunctionType(i32, new PointerPointer<>(pointer, pointer), 2, 0)),
+                garbageCollected);
+
+        Map<String, LLVMValueRef> functions = new LinkedHashMap<>();
+        functions.put(COMPARE, library.strcmp().function());
+        if (garbageCollected) {
+            functions.put(ALLOCATE_OBJECT, declare(module, ALLOCATE_OBJECT,
+                    LLVM.LLVMFunctionType(pointer, new PointerPointer<>(new LLVMTypeRef[]{pointer}), 1, 0)).function());
+            functions.put(REGISTER_ROOTS, declare(module, REGISTER_ROOTS,
+                    LLVM.LLVMFunctionType(LLVM.LLVMVoidTypeInContext(context), new PointerPointer<>(new LLVMTypeRef[]{pointer}), 1, 0)).function());
+        }
+
+        LLVMBuilderRef builder = LLVM.LLVMCreateBuilderInContext(context);
+        try {
+            for (LLVMTypeRef type : new LLVMTypeRef[]{i32, i64, LLVM.LLVMFloatTypeInContext(context),
+                    LLVM.LLVMDoubleTypeInContext(context), pointer, LLVM.LLVMInt1TypeInContext(context)}) {
+                String name = "print_" + mangle(type);
+                functions.put(name, definePrint(context, module, builder, library, name, type));
+                functions.put(toStringName(type), defineToString(context, module, builder, library, type));
+            }
+
+            functions.put(CONCAT, defineConcat(context, module, builder, library));
+        } finally {
+            LLVM.LLVMDisposeBuilder(builder);
+        }
+
+        return functions;
+    }
+
+    private static LLVMValueRef definePrint(LLVMContextRef context, LLVMModuleRef module, LLVMBuilderRef builder,
+                                            Library library, String name, LLVMTypeRef type) {
+        LLVMTypeRef functionType = LLVM.LLVMFunctionType(LLVM.LLVMVoidTypeInContext(context), new PointerPointer<>(new LLVMTypeRef[]{type}), 1, 0);
+        LLVMValueRef function = defineInternal(context, module, builder, name, functionType);
+
+        Formatted formatted = format(context, module, builder, library, LLVM.LLVMGetParam(function, 0), type);
+        LLVMValueRef formatString = LLVM.LLVMBuildGlobalStringPtr(builder, formatted.format() + "\n", "format");
+        library.printf().call(builder, formatString, formatted.value());
+        LLVM.LLVMBuildRetVoid(builder);
+        return function;
+    }
+
+    private static LLVMValueRef defineToString(LLVMContextRef context, LLVMModuleRef module, LLVMBuilderRef builder,
+                                               Library library, LLVMTypeRef type) {
+        LLVMTypeRef pointer = LLVM.LLVMPointerTypeInContext(context, 0);
+        LLVMTypeRef functionType = LLVM.LLVMFunctionType(pointer, new PointerPointer<>(new LLVMTypeRef[]{type}), 1, 0);
+        LLVMValueRef function = defineInternal(context, module, builder, toStringName(type), functionType);
+
+        // Strings and booleans already are strings once formatted, so only numbers need a buffer
+        Formatted formatted = format(context, module, builder, library, LLVM.LLVMGetParam(function, 0), type);
+        if (formatted.format().equals("%s")) {
+            LLVM.LLVMBuildRet(builder, formatted.value());
+            return function;
+        }
+
+        LLVMValueRef size = LLVM.LLVMConstInt(LLVM.LLVMInt64TypeInContext(context), NUMBER_BUFFER_SIZE, 0);
+        LLVMValueRef buffer = library.allocateString().call(builder, size);
+        LLVMValueRef formatString = LLVM.LLVMBuildGlobalStringPtr(builder, formatted.format(), "format");
+        library.snprintf().call(builder, buffer, size, formatString, formatted.value());
+        LLVM.LLVMBuildRet(builder, buffer);
+        return function;
+    }
+
+    private static LLVMValueRef defineConcat(LLVMContextRef context, LLVMModuleRef module, LLVMBuilderRef builder,
+                                             Library library) {
+        LLVMTypeRef i64 = LLVM.LLVMInt64TypeInContext(context);
+        LLVMTypeRef pointer = LLVM.LLVMPointerTypeInContext(context, 0);
+        LLVMTypeRef functionType = LLVM.LLVMFunctionType(pointer, new PointerPointer<>(pointer, pointer), 2, 0);
+        LLVMValueRef function = defineInternal(context, module, builder, CONCAT, functionType);
+
+        LLVMValueRef left = LLVM.LLVMGetParam(function, 0);
+        LLVMValueRef right = LLVM.LLVMGetParam(function, 1);
+        LLVMValueRef leftLength = library.strlen().call(builder, left);
+        // The right string is copied with its terminator
+        LLVMValueRef rightSize = LLVM.LLVMBuildAdd(builder, library.strlen().call(builder, right),
+                LLVM.LLVMConstInt(i64, 1, 0), "right_size");
+
+        LLVMValueRef result = library.allocateString().call(builder, LLVM.LLVMBuildAdd(builder, leftLength, rightSize, "size"));
+        LLVM.LLVMBuildMemCpy(builder, result, 1, left, 1, leftLength);
+        LLVMValueRef end = LLVM.LLVMBuildGEP2(builder, LLVM.LLVMInt8TypeInContext(context), result,
+                new PointerPointer<>(new LLVMValueRef[]{leftLength}), 1, "end");
+        LLVM.LLVMBuildMemCpy(builder, end, 1, right, 1, rightSize);
+        LLVM.LLVMBuildRet(builder, result);
+        return function;
+    }
+
+    /**
+     * Builds the printf format and argument for a value. Booleans become the strings {@code true} and {@code false}.
+     */
+    private static Formatted format(LLVMContextRef context, LLVMModuleRef module, LLVMBuilderRef builder, Library library,
+                                    LLVMValueRef value, LLVMTypeRef type) {
+        return switch (LLVM.LLVMGetTypeKind(type)) {
+            case LLVM.LLVMIntegerTypeKind -> {
+                int width = LLVM.LLVMGetIntTypeWidth(type);
+                if (width == 1) {
+                    yield new Formatted("%s", LLVM.LLVMBuildSelect(builder, value,
+                            stringConstant(context, module, "true", library.garbageCollected()),
+                            stringConstant(context, module, "false", library.garbageCollected()), "bool_string"));
+                }
+
+                yield new Formatted(width == 64 ? "%lld" : "%d", value);
+            }
+            // Variadic arguments are promoted to double
+            case LLVM.LLVMFloatTypeKind -> new Formatted("%g",
+                    LLVM.LLVMBuildFPExt(builder, value, LLVM.LLVMDoubleTypeInContext(context), "promoted"));
+            case LLVM.LLVMDoubleTypeKind -> new Formatted("%g", value);
+            default -> new Formatted("%s", value);
+        };
+    }
+
+    private static LLVMValueRef defineInternal(LLVMContextRef context, LLVMModuleRef module, LLVMBuilderRef builder,
+                                               String name, LLVMTypeRef functionType) {
+        LLVMValueRef function = LLVM.LLVMAddFunction(module, name, functionType);
+        LLVM.LLVMSetLinkage(function, LLVM.LLVMInternalLinkage);
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlockInContext(context, function, "entry"));
+        return function;
+    }
+
+    private static Declared declare(LLVMModuleRef module, String name, LLVMTypeRef functionType) {
+        return new Declared(LLVM.LLVMAddFunction(module, name, functionType), functionType);
+    }
+
+    private static String mangle(LLVMTypeRef type) {
+        return switch (LLVM.LLVMGetTypeKind(type)) {
+            case LLVM.LLVMIntegerTypeKind -> "i" + LLVM.LLVMGetIntTypeWidth(type);
+            case LLVM.LLVMFloatTypeKind -> "f32";
+            case LLVM.LLVMDoubleTypeKind -> "f64";
+            default -> "ptr";
+        };
+    }
+
+    private record Formatted(String format, LLVMValueRef value) {
+    }
+
+    private record Declared(LLVMValueRef function, LLVMTypeRef type) {
+        LLVMValueRef call(LLVMBuilderRef builder, LLVMValueRef... arguments) {
+            // Calls that return void can not be named
+            boolean returnsVoid = LLVM.LLVMGetTypeKind(LLVM.LLVMGetReturnType(this.type)) == LLVM.LLVMVoidTypeKind;
+            return LLVM.LLVMBuildCall2(builder, this.type, this.function, new PointerPointer<>(arguments),
+                    arguments.length, returnsVoid ? "" : "call");
+        }
+    }
+
+    private record Library(Declared printf, Declared snprintf, Declared allocateString, Declared strlen, Declared strcmp,
+                           boolean garbageCollected) {
+    }
+}
@@ -0,0 +1,231 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import dev.turtywurty.pepolang.lexer.Token;
+import dev.turtywurty.pepolang.lexer.TokenType;
+import dev.turtywurty.pepolang.parser.AstArena;
+import dev.turtywurty.pepolang.parser.Parameter;
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.EscapeAnalysis;
+import dev.turtywurty.pepolang.semanticAnalysis.EscapeAnalyzer;
+import dev.turtywurty.pepolang.semanticAnalysis.ExecutionProfile;
+import dev.turtywurty.pepolang.semanticAnalysis.TypeTable;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.llvm.global.LLVM;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds executables out of one object file per top-level function, kept in a cache directory between builds, so a
+ * rebuild only compiles the functions that changed and then relinks.
+ * <p>
+ * Each function is compiled into a module of its own, which declares the rest of the program, and the other
+ * top-level statements go into a unit with {@code main}. A unit's object file is named after a SHA-256 hash of the
+ * unit's AST fingerprint (see {@link AstArena#fingerprint()}), the declarations of the top-level functions and classes
+ * it refers to, the optimization level, whether the program is garbage collected, the LLVM version and the host
+ * target. Editing the body of one function
+ * therefore only invalidates that function, while changing a signature also invalidates the units that use it.
+ * Units that use objects depend on every class, since whether a method call can skip the vtable depends on which
+ * classes override the method, and the object's class need not be named in the unit.
+ * <p>
+ * With a profile, a unit also depends on the {@link ProfileBuckets} of its own sites and of the functions and methods
+ * it depends on, rather than on the exact counts, so another profiled run only invalidates the units it changed the
+ * buckets of.
+ * <p>
+ * Since every unit is optimized on its own, functions are not inlined into each other across units.
+ */
+final class NativeCompileCache {
+    private static final int VERSION = 1;
+
+    private NativeCompileCache() {
+    }
+
+    static void generate(List<Statement> statements, TypeTable types, CodeGenOptions options, Path outputPath) {
+        LLVM.LLVMInitializeNativeTarget();
+        LLVM.LLVMInitializeNativeAsmPrinter();
+
+        Path directory = options.cacheDirectory();
+        Map<String, List<Statement>> declarations = new HashMap<>();
+        var classes = new StringBuilder();
+        List<Statement> mainStatements = new ArrayList<>();
+        List<Statement.FunctionStatement> functions = new ArrayList<>();
+        for (Statement statement : statements) {
+            switch (statement) {
+                case Statement.FunctionStatement function -> {
+                    functions.add(function);
+                    declarations.computeIfAbsent(nameOf(function.getName()), name -> new ArrayList<>()).add(function);
+                }
+                case Statement.ClassStatement classStatement -> {
+                    mainStatements.add(classStatement);
+                    declarations.computeIfAbsent(nameOf(classStatement.getName()), name -> new ArrayList<>()).add(classStatement);
+                    classes.append(describe(classStatement)).append(',');
+                    for (Statement.FunctionStatement method : classStatement.getMethods()) {
+                        ProfileBuckets.describeDeclaration(options.profile(), method, classes);
+                    }
+
+                    classes.append(';');
+                }
+                default -> mainStatements.add(statement);
+            }
+        }
+
+        String environment = describeEnvironment(options);
+        String hierarchy = classes.toString();
+        List<Set<Statement.FunctionStatement>> units = new ArrayList<>();
+        List<Path> objectFiles = new ArrayList<>();
+
+        // The first unit is the one with main, which defines no functions
+        units.add(Set.of());
+        objectFiles.add(directory.resolve(key(environment, mainStatements, declarations, hierarchy, options.profile()) + ".o"));
+        for (Statement.FunctionStatement function : functions) {
+            units.add(Collections.singleton(function));
+            objectFiles.add(directory.resolve(key(environment, List.of(function), declarations, hierarchy, options.profile()) + ".o"));
+        }
+
+        List<Set<Statement.FunctionStatement>> missing = new ArrayList<>();
+        List<Path> missingFiles = new ArrayList<>();
+        Set<Path> seen = new HashSet<>();
+        for (int index = 0; index < units.size(); index++) {
+            Path objectFile = objectFiles.get(index);
+            if (seen.add(objectFile) && !Files.isRegularFile(objectFile)) {
+                missing.add(units.get(index));
+                missingFiles.add(objectFile);
+            }
+        }
+
+        try {
+            Files.createDirectories(directory);
+            if (!missing.isEmpty()) {
+                compile(statements, types, options, units.getFirst(), missing, missingFiles);
+            }
+
+            NativeLinker.link(NativeRuntime.linkInputs(objectFiles, options.garbageCollected()), outputPath);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+
+        if (options.timePasses()) {
+            System.err.printf("Compiled %d of %d units, reused the rest from %s%n", missing.size(), units.size(), directory);
+        }
+    }
+
+    private static void compile(List<Statement> statements, TypeTable types, CodeGenOptions options,
+                                Set<Statement.FunctionStatement> mainUnit, List<Set<Statement.FunctionStatement>> units,
+                                List<Path> objectFiles) {
+        EscapeAnalysis escapes = new EscapeAnalyzer().analyze(statements);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(options.threads(), units.size()));
+        try {
+            ParallelCodeGenerator.run(executor, units, (index, unit) -> {
+                // Written next to the entry and moved into place, so an interrupted build never leaves half an entry
+                Path objectFile = objectFiles.get(index);
+                try {
+                    Path partial = Files.createTempFile(objectFile.getParent(), "partial", ".o");
+                    ParallelCodeGenerator.emitObjectFile(statements, unit, unit == mainUnit, types, escapes, options, partial);
+                    Files.move(partial, objectFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    return objectFile;
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String key(String environment, List<Statement> unit, Map<String, List<Statement>> declarations,
+                              String hierarchy, ExecutionProfile.@Nullable Sites profile) {
+        AstArena arena = AstArena.of(unit);
+        Set<String> references = new TreeSet<>();
+        boolean usesObjects = false;
+        for (int node = 0; node < arena.size(); node++) {
+            Token token = arena.token(node);
+            if (token != null && token.type() == TokenType.IDENTIFIER && declarations.containsKey(nameOf(token))) {
+                references.add(nameOf(token));
+                usesObjects |= declarations.get(nameOf(token)).getFirst() instanceof Statement.ClassStatement;
+            }
+
+            usesObjects |= switch (arena.kind(node)) {
+                case NEW, GET, SET, THIS, SUPER -> true;
+                default -> false;
+            };
+        }
+
+        var description = new StringBuilder(environment).append(arena.fingerprint());
+        if (usesObjects) {
+            description.append(";classes=").append(hierarchy);
+        }
+
+        for (String name : references) {
+            description.append(';').append(name).append('=');
+            for (Statement declaration : declarations.get(name)) {
+                description.append(describe(declaration)).append(',');
+                if (declaration instanceof Statement.FunctionStatement function) {
+                    ProfileBuckets.describeDeclaration(profile, function, description);
+                }
+            }
+        }
+
+        if (profile != null) {
+            description.append(";profile=");
+            for (Statement statement : unit) {
+                ProfileBuckets.describe(profile, statement, description);
+            }
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(description.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+    }
+
+    /**
+     * Describes what code generation needs to know about a declaration to call it from another unit. For classes,
+     * that is the whole class, since their layout is compiled into the units that use them.
+     */
+    private static String describe(Statement declaration) {
+        if (!(declaration instanceof Statement.FunctionStatement function))
+            return AstArena.of(List.of(declaration)).fingerprint();
+
+        Token returnType = function.getReturnType();
+        var signature = new StringBuilder().append(returnType.type()).append(' ').append(returnType.value()).append('(');
+        for (Parameter parameter : function.getParameters()) {
+            signature.append(parameter.type().type()).append(' ').append(parameter.type().value()).append(';');
+        }
+
+        return signature.append(')').toString();
+    }
+
+    private static String describeEnvironment(CodeGenOptions options) {
+        int[] major = new int[1], minor = new int[1], patch = new int[1];
+        LLVM.LLVMGetVersion(major, minor, patch);
+
+        BytePointer triple = LLVM.LLVMGetDefaultTargetTriple();
+        BytePointer cpu = LLVM.LLVMGetHostCPUName();
+        BytePointer features = LLVM.LLVMGetHostCPUFeatures();
+        try {
+            return VERSION + ";LLVM " + major[0] + "." + minor[0] + "." + patch[0] + ";" + triple.getString() + ";" +
+                    cpu.getString() + ";" + features.getString() + ";" + options.optimizationLevel() + ";" +
+                    (options.garbageCollected() ? "gc;" : "") + (options.profile() != null ? "profile;" : "");
+        } finally {
+            LLVM.LLVMDisposeMessage(triple);
+            LLVM.LLVMDisposeMessage(cpu);
+            LLVM.LLVMDisposeMessage(features);
+        }
+    }
+
+    private static String nameOf(Token name) {
+        return String.valueOf(name.value());
+    }
+}
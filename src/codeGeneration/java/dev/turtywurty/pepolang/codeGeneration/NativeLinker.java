@@ -0,0 +1,60 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Links object files into an executable with the system C compiler driver, which knows where the C library and
+ * startup files are. The driver is {@code cc} unless the {@code CC} environment variable names another one.
+ */
+public final class NativeLinker {
+    private NativeLinker() {
+    }
+
+    public static void link(List<Path> objectFiles, Path executable) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(driver());
+        command.add("-o");
+        command.add(executable.toString());
+        for (Path objectFile : objectFiles) {
+            command.add(objectFile.toString());
+        }
+
+        command.add("-lm");
+        run(command, executable);
+    }
+
+    /**
+     * Compiles a C source file with the driver.
+     *
+     * @param flags what to build, such as {@code -c} for an object file
+     */
+    static void compile(Path source, Path output, String... flags) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(driver());
+        command.addAll(List.of(flags));
+        command.add("-o");
+        command.add(output.toString());
+        command.add(source.toString());
+        run(command, output);
+    }
+
+    private static String driver() {
+        return System.getenv().getOrDefault("CC", "cc");
+    }
+
+    private static void run(List<String> command, Path output) throws IOException {
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        try {
+            int exitCode = process.waitFor();
+            if (exitCode != 0)
+                throw new IOException("'" + String.join(" ", command) + "' failed with exit code " + exitCode);
+        } catch (InterruptedException exception) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while building " + output, exception);
+        }
+    }
+}
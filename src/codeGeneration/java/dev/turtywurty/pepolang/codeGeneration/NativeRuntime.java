@@ -0,0 +1,155 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * The garbage collected heap that programs compiled with {@link CodeGenOptions#garbageCollected()} allocate their
+ * objects and strings from. It is written in C, in {@code pepo_runtime.c} next to this class, which describes how it
+ * works, and compiled with the system C compiler (see {@link NativeLinker}) the first time it is needed.
+ * <p>
+ * Executables link the runtime's object file, while the JIT loads it as a shared library. Both are kept in the
+ * user's cache directory ({@code $XDG_CACHE_HOME/pepolang}, or {@code ~/.cache/pepolang}), in a directory named after
+ * a hash of the source, so they are only compiled once per version of the runtime. Since a build found there is
+ * loaded and linked as it is, the directories are created so only their owner can write to them, and a build is only
+ * reused from directories that the current user owns and nobody else can write to.
+ */
+public final class NativeRuntime {
+    private static final String SOURCE = "pepo_runtime.c";
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private static Path objectFile;
+    private static Path sharedLibrary;
+
+    private NativeRuntime() {
+    }
+
+    /**
+     * @return the runtime compiled to an object file, which can be linked into an executable
+     */
+    public static synchronized Path objectFile() {
+        if (objectFile == null) {
+            objectFile = build("pepo_runtime.o", "-O2", "-fPIC", "-c");
+        }
+
+        return objectFile;
+    }
+
+    /**
+     * @return the runtime compiled to a shared library, which the JIT can load. It depends on {@code libgcc_s}, which
+     * has the unwinder that the shadow stack's cleanup code calls, so the JIT finds those symbols through the library
+     * even when the JVM has not loaded {@code libgcc_s} itself.
+     */
+    public static synchronized Path sharedLibrary() {
+        if (sharedLibrary == null) {
+            sharedLibrary = build("libpepo_runtime.so", "-O2", "-fPIC", "-shared", "-Wl,--no-as-needed", "-lgcc_s");
+        }
+
+        return sharedLibrary;
+    }
+
+    /**
+     * @return the object files to link an executable from, which include the runtime if the program is garbage
+     * collected
+     */
+    static List<Path> linkInputs(List<Path> objectFiles, boolean garbageCollected) {
+        if (!garbageCollected)
+            return objectFiles;
+
+        List<Path> inputs = new ArrayList<>(objectFiles);
+        inputs.add(objectFile());
+        return inputs;
+    }
+
+    private static Path build(String fileName, String... flags) {
+        try {
+            byte[] source;
+            try (InputStream stream = NativeRuntime.class.getResourceAsStream(SOURCE)) {
+                if (stream == null)
+                    throw new IllegalStateException("The native runtime source " + SOURCE + " is missing");
+
+                source = stream.readAllBytes();
+            }
+
+            // The flags are part of the hash, so changing how the runtime is built does not reuse an old build
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(source);
+            digest.update(String.join(" ", flags).getBytes(StandardCharsets.UTF_8));
+            String hash = HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+            Path cacheDirectory = cacheDirectory(System.getenv(), System.getProperty("user.home"));
+            Path directory = cacheDirectory.resolve("runtime-" + hash);
+            createPrivateDirectory(cacheDirectory);
+            createPrivateDirectory(directory);
+
+            Path output = directory.resolve(fileName);
+            if (Files.isRegularFile(output, LinkOption.NOFOLLOW_LINKS))
+                return output;
+
+            // Built next to the output and moved into place, so another build never sees half of it
+            Path sourceFile = directory.resolve(SOURCE);
+            Files.write(sourceFile, source);
+            Path partial = Files.createTempFile(directory, "partial", fileName);
+            NativeLinker.compile(sourceFile, partial, flags);
+            Files.move(partial, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return output;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+    }
+
+    /**
+     * @return the directory PepoLang keeps its builds of the runtime in, following the XDG base directory
+     * specification
+     */
+    static Path cacheDirectory(Map<String, String> environment, String home) {
+        String cacheHome = environment.get("XDG_CACHE_HOME");
+        Path base = cacheHome != null && Path.of(cacheHome).isAbsolute() ? Path.of(cacheHome) : Path.of(home, ".cache");
+        return base.resolve("pepolang");
+    }
+
+    /**
+     * Creates the directory, and any missing parents, so only the current user can access it, or checks that an
+     * existing one is owned by the current user and cannot be written to by anyone else.
+     *
+     * @throws IOException if the directory cannot be trusted
+     */
+    static void createPrivateDirectory(Path directory) throws IOException {
+        boolean posix = directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+        if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+            if (posix) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+            } else {
+                Files.createDirectories(directory);
+            }
+        }
+
+        if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS))
+            throw new IOException(directory + " is not a directory");
+
+        UserPrincipal owner = Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!owner.equals(user))
+            throw new IOException(directory + " belongs to " + owner.getName() + " rather than the current user");
+
+        if (posix) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS);
+            if (permissions.contains(PosixFilePermission.GROUP_WRITE) || permissions.contains(PosixFilePermission.OTHERS_WRITE))
+                throw new IOException(directory + " can be written to by other users");
+        }
+    }
+}
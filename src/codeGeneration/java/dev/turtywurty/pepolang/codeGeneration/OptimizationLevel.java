@@ -0,0 +1,48 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import org.bytedeco.llvm.global.LLVM;
+
+/**
+ * How hard LLVM should try to optimize the generated code, matching clang's {@code -O0} to {@code -O3}.
+ */
+public enum OptimizationLevel {
+    O0("default<O0>", LLVM.LLVMCodeGenLevelNone),
+    O1("default<O1>", LLVM.LLVMCodeGenLevelLess),
+    O2("default<O2>", LLVM.LLVMCodeGenLevelDefault),
+    O3("default<O3>", LLVM.LLVMCodeGenLevelAggressive);
+
+    private final String passPipeline;
+    private final int codeGenLevel;
+
+    OptimizationLevel(String passPipeline, int codeGenLevel) {
+        this.passPipeline = passPipeline;
+        this.codeGenLevel = codeGenLevel;
+    }
+
+    /**
+     * @return the pipeline to give the new pass manager
+     */
+    public String getPassPipeline() {
+        return this.passPipeline;
+    }
+
+    /**
+     * @return the {@code LLVMCodeGenOptLevel} for the target machine
+     */
+    public int getCodeGenLevel() {
+        return this.codeGenLevel;
+    }
+
+    /**
+     * @param flag a command line flag such as {@code -O2}
+     * @return the level the flag selects, or {@code null} if it is not an optimization flag
+     */
+    public static OptimizationLevel fromFlag(String flag) {
+        for (OptimizationLevel level : values()) {
+            if (flag.equals("-" + level.name()))
+                return level;
+        }
+
+        return null;
+    }
+}
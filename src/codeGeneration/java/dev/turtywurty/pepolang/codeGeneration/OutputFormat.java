@@ -0,0 +1,46 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+/**
+ * What {@link LLVMCodeGenerator#generate} writes to its output path.
+ */
+public enum OutputFormat {
+    /**
+     * Textual LLVM IR.
+     */
+    LLVM_IR("--emit-llvm"),
+    /**
+     * Native assembly for the host machine.
+     */
+    ASSEMBLY("--emit-asm"),
+    /**
+     * A native object file for the host machine.
+     */
+    OBJECT("--emit-obj"),
+    /**
+     * A standalone executable, linked against the C library with the system linker.
+     */
+    EXECUTABLE("--emit-exe");
+
+    private final String flag;
+
+    OutputFormat(String flag) {
+        this.flag = flag;
+    }
+
+    public String getFlag() {
+        return this.flag;
+    }
+
+    /**
+     * @param flag a command line flag such as {@code --emit-obj}
+     * @return the format the flag selects, or {@code null} if it is not an output flag
+     */
+    public static OutputFormat fromFlag(String flag) {
+        for (OutputFormat format : values()) {
+            if (format.flag.equals(flag))
+                return format;
+        }
+
+        return null;
+    }
+}
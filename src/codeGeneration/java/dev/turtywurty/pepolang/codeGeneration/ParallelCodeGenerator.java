@@ -0,0 +1,188 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.EscapeAnalysis;
+import dev.turtywurty.pepolang.semanticAnalysis.EscapeAnalyzer;
+import dev.turtywurty.pepolang.semanticAnalysis.TypeTable;
+import org.bytedeco.llvm.LLVM.*;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Generates code for a program on several threads. The top-level functions are split into one partition per thread,
+ * and each thread builds a module for its partition in a context of its own, since LLVM contexts can not be shared
+ * between threads. Every module declares all of the program's functions, and the first one also gets {@code main}.
+ * <p>
+ * Executables are built by having each thread optimize its module and emit it as an object file, which the system
+ * linker then links. For every other format, the modules are moved into one context as bitcode and linked with
+ * {@code LLVMLinkModules2}, so the optimizer sees the whole program.
+ */
+final class ParallelCodeGenerator {
+    private ParallelCodeGenerator() {
+    }
+
+    static void generate(List<Statement> statements, TypeTable types, CodeGenOptions options, Path outputPath) {
+        LLVM.LLVMInitializeNativeTarget();
+        LLVM.LLVMInitializeNativeAsmPrinter();
+
+        List<Set<Statement.FunctionStatement>> partitions = partition(statements, options.threads());
+        EscapeAnalysis escapes = new EscapeAnalyzer().analyze(statements);
+
+        ExecutorService executor = Executors.newFixedThreadPool(partitions.size());
+        try {
+            if (options.outputFormat() == OutputFormat.EXECUTABLE) {
+                List<Path> objectFiles = run(executor, partitions, (index, partition) -> {
+                    try {
+                        Path objectFile = Files.createTempFile("pepolang", ".o");
+                        emitObjectFile(statements, partition, index == 0, types, escapes, options, objectFile);
+                        return objectFile;
+                    } catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                });
+                try {
+                    NativeLinker.link(NativeRuntime.linkInputs(objectFiles, options.garbageCollected()), outputPath);
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                } finally {
+                    objectFiles.forEach(objectFile -> objectFile.toFile().delete());
+                }
+            } else {
+                List<LLVMMemoryBufferRef> bitcode = run(executor, partitions, (index, partition) ->
+                        buildBitcode(statements, partition, index == 0, types, escapes, options));
+                linkAndEmit(bitcode, options, outputPath);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Functions are dealt out in turn, so a run of large functions is spread over the threads
+    private static List<Set<Statement.FunctionStatement>> partition(List<Statement> statements, int threads) {
+        List<Statement.FunctionStatement> functions = new ArrayList<>();
+        for (Statement statement : statements) {
+            if (statement instanceof Statement.FunctionStatement function) {
+                functions.add(function);
+            }
+        }
+
+        int count = Math.max(1, Math.min(threads, functions.size()));
+        List<Set<Statement.FunctionStatement>> partitions = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            partitions.add(Collections.newSetFromMap(new IdentityHashMap<>()));
+        }
+
+        for (int index = 0; index < functions.size(); index++) {
+            partitions.get(index % count).add(functions.get(index));
+        }
+
+        return partitions;
+    }
+
+    /**
+     * Runs the task for every partition on the executor and waits for all of them, rethrowing the first failure.
+     *
+     * @return the results, in the order of the partitions
+     */
+    static <T> List<T> run(ExecutorService executor, List<Set<Statement.FunctionStatement>> partitions,
+                           PartitionTask<T> task) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(partitions.size());
+        for (int index = 0; index < partitions.size(); index++) {
+            int partitionIndex = index;
+            futures.add(CompletableFuture.supplyAsync(() -> task.run(partitionIndex, partitions.get(partitionIndex)), executor));
+        }
+
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause)
+                throw cause;
+
+            throw exception;
+        }
+    }
+
+    /**
+     * Builds a module that defines the functions of the partition in a context of its own, optimizes it and writes it
+     * to an object file. Safe to call from any thread.
+     */
+    static void emitObjectFile(List<Statement> statements, Set<Statement.FunctionStatement> partition, boolean withMain,
+                               TypeTable types, EscapeAnalysis escapes, CodeGenOptions options, Path objectFile) {
+        LLVMContextRef context = LLVM.LLVMContextCreate();
+        LLVMModuleRef module = LLVMCodeGenerator.buildModule(statements, partition, withMain, types, escapes,
+                options, context);
+        LLVMTargetMachineRef targetMachine = LLVMOptimizer.createHostTargetMachine(options.optimizationLevel());
+        try {
+            LLVMOptimizer.setTarget(module, targetMachine);
+            LLVMCodeGenerator.optimize(module, targetMachine, options);
+            LLVMCodeGenerator.emit(module, targetMachine, OutputFormat.OBJECT, objectFile);
+        } finally {
+            LLVM.LLVMDisposeTargetMachine(targetMachine);
+            LLVM.LLVMDisposeModule(module);
+            LLVM.LLVMContextDispose(context);
+        }
+    }
+
+    private static LLVMMemoryBufferRef buildBitcode(List<Statement> statements, Set<Statement.FunctionStatement> partition,
+                                                    boolean withMain, TypeTable types, EscapeAnalysis escapes,
+                                                    CodeGenOptions options) {
+        LLVMContextRef context = LLVM.LLVMContextCreate();
+        LLVMModuleRef module = LLVMCodeGenerator.buildModule(statements, partition, withMain, types, escapes,
+                options, context);
+        try {
+            return LLVM.LLVMWriteBitcodeToMemoryBuffer(module);
+        } finally {
+            LLVM.LLVMDisposeModule(module);
+            LLVM.LLVMContextDispose(context);
+        }
+    }
+
+    private static void linkAndEmit(List<LLVMMemoryBufferRef> bitcode, CodeGenOptions options, Path outputPath) {
+        LLVMContextRef context = LLVM.LLVMContextCreate();
+        LLVMModuleRef linked = null;
+        try {
+            for (LLVMMemoryBufferRef buffer : bitcode) {
+                var module = new LLVMModuleRef();
+                int failed = LLVM.LLVMParseBitcodeInContext2(context, buffer, module);
+                LLVM.LLVMDisposeMemoryBuffer(buffer);
+                if (failed != 0)
+                    throw new IllegalStateException("Could not read back the bitcode of a partition");
+
+                if (linked == null) {
+                    linked = module;
+                } else if (LLVM.LLVMLinkModules2(linked, module) != 0) {
+                    throw new IllegalStateException("Could not link the modules of the partitions");
+                }
+            }
+
+            LLVMTargetMachineRef targetMachine = LLVMOptimizer.createHostTargetMachine(options.optimizationLevel());
+            try {
+                LLVMOptimizer.setTarget(linked, targetMachine);
+                LLVMCodeGenerator.optimize(linked, targetMachine, options);
+                LLVMCodeGenerator.emit(linked, targetMachine, options.outputFormat(), options.garbageCollected(), outputPath);
+            } finally {
+                LLVM.LLVMDisposeTargetMachine(targetMachine);
+            }
+        } finally {
+            if (linked != null) {
+                LLVM.LLVMDisposeModule(linked);
+            }
+
+            LLVM.LLVMContextDispose(context);
+        }
+    }
+
+    @FunctionalInterface
+    interface PartitionTask<T> {
+        T run(int index, Set<Statement.FunctionStatement> partition);
+    }
+}
@@ -0,0 +1,106 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.ExecutionProfile;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The coarse view of an {@link ExecutionProfile} that code generation optimizes with. Functions are cold, normal or
+ * hot, calls are cold or not, and a branch only keeps the ratio of its counts, rounded to a power of two.
+ * <p>
+ * Generated code depends on nothing but these buckets, so {@link NativeCompileCache} can key each unit on the buckets
+ * of its own sites. Profiling another run then only recompiles the units whose behaviour actually changed.
+ */
+final class ProfileBuckets {
+    // Fewer calls than this are not worth inlining for, however few calls there were in total
+    private static final long HOT_ENTRIES = 100;
+    // Keeps the weights of a branch within the 32 bits LLVM stores them in
+    private static final int MAX_RATIO = 30;
+
+    private ProfileBuckets() {
+    }
+
+    enum Heat {
+        COLD,
+        NORMAL,
+        HOT
+    }
+
+    /**
+     * @return {@link Heat#COLD} if the function never ran, {@link Heat#HOT} if it ran at least {@value HOT_ENTRIES}
+     * times and took at least 1% of all calls, or {@code null} if the profile has no count for it
+     */
+    static @Nullable Heat heat(ExecutionProfile.@Nullable Sites profile, Statement.FunctionStatement function) {
+        long entries = profile != null ? profile.getEntryCount(function) : -1;
+        if (entries < 0)
+            return null;
+
+        if (entries == 0)
+            return Heat.COLD;
+
+        return entries >= HOT_ENTRIES && entries * 100 >= profile.getTotalEntries() ? Heat.HOT : Heat.NORMAL;
+    }
+
+    /**
+     * @return whether the profile says the call never ran
+     */
+    static boolean isColdCall(ExecutionProfile.@Nullable Sites profile, Expression.Call call) {
+        return profile != null && profile.getCallCount(call) == 0;
+    }
+
+    /**
+     * Rounds the ratio between how often the condition was true and false to a power of two, so that a branch keeps
+     * its weights for as long as it goes each way about as often.
+     *
+     * @return the counts to weight the branch with, of which one is 0, or {@code null} if the condition never ran
+     */
+    static long @Nullable [] branchCounts(ExecutionProfile.@Nullable Sites profile, Statement site) {
+        long[] counts = profile != null ? profile.getBranchCounts(site) : null;
+        if (counts == null || counts[0] + counts[1] == 0)
+            return null;
+
+        // log2((taken + 1) / (notTaken + 1)), the same +1 the weights get, so a branch never taken is not impossible
+        double logRatio = (Math.log1p(counts[0]) - Math.log1p(counts[1])) / Math.log(2);
+        int ratio = (int) Math.max(-MAX_RATIO, Math.min(MAX_RATIO, Math.round(logRatio)));
+        return ratio >= 0 ? new long[]{(1L << ratio) - 1, 0} : new long[]{0, (1L << -ratio) - 1};
+    }
+
+    /**
+     * Describes the buckets of every site in the statement, in the order {@link ExecutionProfile#sitesOf(Statement)}
+     * finds them.
+     */
+    static void describe(ExecutionProfile.@Nullable Sites profile, Statement statement, StringBuilder description) {
+        if (profile == null)
+            return;
+
+        for (Object site : ExecutionProfile.sitesOf(statement)) {
+            switch (site) {
+                case Statement.FunctionStatement function -> describe(heat(profile, function), description);
+                case Expression.Call call -> description.append(isColdCall(profile, call) ? 'c' : '-');
+                case Statement branch -> {
+                    long[] counts = branchCounts(profile, branch);
+                    description.append(counts == null ? "-" : counts[0] + ":" + counts[1]);
+                }
+                default -> throw new IllegalStateException("Unexpected profile site: " + site);
+            }
+
+            description.append(',');
+        }
+    }
+
+    /**
+     * Describes the bucket of a function that is only declared, for the units that call it.
+     */
+    static void describeDeclaration(ExecutionProfile.@Nullable Sites profile, Statement.FunctionStatement function,
+                                    StringBuilder description) {
+        if (profile != null) {
+            describe(heat(profile, function), description);
+            description.append(',');
+        }
+    }
+
+    private static void describe(@Nullable Heat heat, StringBuilder description) {
+        description.append(heat == null ? "-" : heat.name());
+    }
+}
@@ -0,0 +1,212 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.*;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.util.*;
+
+/**
+ * Builds SSA form for local variables while the code is being generated, following Braun et al., "Simple and
+ * Efficient Construction of Static Single Assignment Form". Variables never get a stack slot: every assignment
+ * records the value as the variable's definition in the current block, and a read looks the definition up through
+ * the predecessors of the block, placing phi nodes where definitions from several predecessors meet.
+ * <p>
+ * The code generator has to report every edge it adds with {@link #addPredecessor}, and seal a block with
+ * {@link #seal} once all of its predecessors are known. Reads in a block that is not sealed yet, such as a loop
+ * header before the back edge exists, get an operandless phi that is completed when the block is sealed. Phis that
+ * turn out to only merge one value are removed again.
+ */
+final class SsaBuilder {
+    private final LLVMBuilderRef builder;
+    private final Map<SymbolTable.Symbol, Variable> variables = new IdentityHashMap<>();
+    private final Map<LLVMBasicBlockRef, Map<SymbolTable.Symbol, LLVMValueRef>> definitions = new HashMap<>();
+    private final Map<LLVMBasicBlockRef, List<LLVMBasicBlockRef>> predecessors = new HashMap<>();
+    private final Map<LLVMBasicBlockRef, Map<SymbolTable.Symbol, LLVMValueRef>> incompletePhis = new HashMap<>();
+    private final Set<LLVMBasicBlockRef> sealed = new HashSet<>();
+    // Where each phi that still exists is the definition of a variable, so removing it only updates those places
+    private final Map<LLVMValueRef, List<DefinitionSite>> phiDefinitions = new HashMap<>();
+
+    /**
+     * @param builder the builder the code generator uses, which is moved to the top of a block to insert phis and
+     *                then back to the end of the block it was in
+     */
+    SsaBuilder(LLVMBuilderRef builder) {
+        this.builder = builder;
+    }
+
+    /**
+     * Starts tracking a variable of the function.
+     */
+    void declare(SymbolTable.Symbol symbol, LLVMTypeRef type, LLVMValueRef function) {
+        this.variables.put(symbol, new Variable(symbol.name(), type, function));
+    }
+
+    /**
+     * @return the type the variable was declared with
+     */
+    LLVMTypeRef typeOf(SymbolTable.Symbol symbol) {
+        return variable(symbol).type();
+    }
+
+    /**
+     * @return whether the symbol is a variable of the function
+     */
+    boolean isDeclaredIn(SymbolTable.Symbol symbol, LLVMValueRef function) {
+        Variable variable = this.variables.get(symbol);
+        return variable != null && variable.function().equals(function);
+    }
+
+    void addPredecessor(LLVMBasicBlockRef block, LLVMBasicBlockRef predecessor) {
+        this.predecessors.computeIfAbsent(block, key -> new ArrayList<>()).add(predecessor);
+    }
+
+    void write(SymbolTable.Symbol symbol, LLVMBasicBlockRef block, LLVMValueRef value) {
+        this.definitions.computeIfAbsent(block, key -> new HashMap<>()).put(symbol, value);
+        List<DefinitionSite> sites = this.phiDefinitions.get(value);
+        if (sites != null) {
+            sites.add(new DefinitionSite(block, symbol));
+        }
+    }
+
+    LLVMValueRef read(SymbolTable.Symbol symbol, LLVMBasicBlockRef block) {
+        Variable variable = variable(symbol);
+        if (!variable.function().equals(LLVM.LLVMGetBasicBlockParent(block)))
+            throw new UnsupportedOperationException("Functions can not use the local variable '" + variable.name() +
+                    "' of the code they are declared in yet!");
+
+        return readVariable(symbol, block);
+    }
+
+    /**
+     * Marks that the block will not get any more predecessors, and completes the phis that were placed in it while
+     * they were unknown.
+     */
+    void seal(LLVMBasicBlockRef block) {
+        Map<SymbolTable.Symbol, LLVMValueRef> phis = this.incompletePhis.remove(block);
+        if (phis != null) {
+            for (Map.Entry<SymbolTable.Symbol, LLVMValueRef> phi : phis.entrySet()) {
+                addPhiOperands(phi.getKey(), phi.getValue(), block);
+            }
+        }
+
+        this.sealed.add(block);
+    }
+
+    private Variable variable(SymbolTable.Symbol symbol) {
+        Variable variable = this.variables.get(symbol);
+        if (variable == null)
+            throw new IllegalStateException("Variable '" + symbol.name() + "' was never declared!");
+
+        return variable;
+    }
+
+    private LLVMValueRef readVariable(SymbolTable.Symbol symbol, LLVMBasicBlockRef block) {
+        Map<SymbolTable.Symbol, LLVMValueRef> blockDefinitions = this.definitions.get(block);
+        if (blockDefinitions != null && blockDefinitions.containsKey(symbol))
+            return blockDefinitions.get(symbol);
+
+        return readVariableRecursive(symbol, block);
+    }
+
+    private LLVMValueRef readVariableRecursive(SymbolTable.Symbol symbol, LLVMBasicBlockRef block) {
+        List<LLVMBasicBlockRef> blockPredecessors = this.predecessors.getOrDefault(block, List.of());
+        LLVMValueRef value;
+        if (!this.sealed.contains(block)) {
+            value = createPhi(symbol, block);
+            this.incompletePhis.computeIfAbsent(block, key -> new HashMap<>()).put(symbol, value);
+        } else if (blockPredecessors.size() == 1) {
+            value = readVariable(symbol, blockPredecessors.getFirst());
+        } else {
+            // Written before the operands are read, so a loop that reaches this block again finds the phi
+            value = createPhi(symbol, block);
+            write(symbol, block, value);
+            value = addPhiOperands(symbol, value, block);
+        }
+
+        write(symbol, block, value);
+        return value;
+    }
+
+    private LLVMValueRef createPhi(SymbolTable.Symbol symbol, LLVMBasicBlockRef block) {
+        LLVMBasicBlockRef insertBlock = LLVM.LLVMGetInsertBlock(this.builder);
+        LLVMValueRef first = LLVM.LLVMGetFirstInstruction(block);
+        if (first != null) {
+            LLVM.LLVMPositionBuilderBefore(this.builder, first);
+        } else {
+            LLVM.LLVMPositionBuilderAtEnd(this.builder, block);
+        }
+
+        LLVMValueRef phi = LLVM.LLVMBuildPhi(this.builder, variable(symbol).type(), symbol.name());
+        LLVM.LLVMPositionBuilderAtEnd(this.builder, insertBlock);
+        this.phiDefinitions.put(phi, new ArrayList<>());
+        return phi;
+    }
+
+    private LLVMValueRef addPhiOperands(SymbolTable.Symbol symbol, LLVMValueRef phi, LLVMBasicBlockRef block) {
+        for (LLVMBasicBlockRef predecessor : this.predecessors.getOrDefault(block, List.of())) {
+            LLVMValueRef value = readVariable(symbol, predecessor);
+            LLVM.LLVMAddIncoming(phi, new PointerPointer<>(new LLVMValueRef[]{value}),
+                    new PointerPointer<>(new LLVMBasicBlockRef[]{predecessor}), 1);
+        }
+
+        return tryRemoveTrivialPhi(phi, new HashSet<>());
+    }
+
+    /**
+     * Replaces a phi whose operands are all the same value, or itself, with that value. Phis that used the removed
+     * phi may have become trivial too, so they are tried again.
+     */
+    private LLVMValueRef tryRemoveTrivialPhi(LLVMValueRef phi, Set<LLVMValueRef> removed) {
+        LLVMValueRef same = null;
+        int count = LLVM.LLVMCountIncoming(phi);
+        for (int index = 0; index < count; index++) {
+            LLVMValueRef operand = LLVM.LLVMGetIncomingValue(phi, index);
+            if (operand.equals(same) || operand.equals(phi))
+                continue;
+
+            if (same != null)
+                return phi;
+
+            same = operand;
+        }
+
+        // A phi without operands is in unreachable code
+        if (same == null) {
+            same = LLVM.LLVMGetUndef(LLVM.LLVMTypeOf(phi));
+        }
+
+        List<LLVMValueRef> users = new ArrayList<>();
+        for (LLVMUseRef use = LLVM.LLVMGetFirstUse(phi); use != null; use = LLVM.LLVMGetNextUse(use)) {
+            LLVMValueRef user = LLVM.LLVMGetUser(use);
+            if (!user.equals(phi) && LLVM.LLVMIsAPHINode(user) != null) {
+                users.add(user);
+            }
+        }
+
+        LLVM.LLVMReplaceAllUsesWith(phi, same);
+        // A site may have been written again since, in which case it no longer holds the phi
+        for (DefinitionSite site : this.phiDefinitions.remove(phi)) {
+            if (phi.equals(this.definitions.get(site.block()).get(site.symbol()))) {
+                write(site.symbol(), site.block(), same);
+            }
+        }
+
+        LLVM.LLVMInstructionEraseFromParent(phi);
+        removed.add(phi);
+
+        for (LLVMValueRef user : users) {
+            if (!removed.contains(user)) {
+                tryRemoveTrivialPhi(user, removed);
+            }
+        }
+
+        return same;
+    }
+
+    private record Variable(String name, LLVMTypeRef type, LLVMValueRef function) {
+    }
+
+    private record DefinitionSite(LLVMBasicBlockRef block, SymbolTable.Symbol symbol) {
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * The native runtime that garbage collected PepoLang programs are linked with. See NativeRuntime.java.
+ *
+ * Objects and strings are allocated from a heap that belongs to the allocating thread. Small cells are bumped out of
+ * 256 KiB arenas, or reused from a free list of cells of the same size, while large ones come from malloc. Every cell
+ * starts with a PepoHeader, which generated code also puts in front of string literals and stack allocated objects,
+ * so the collector can tell what any string or object pointer points to.
+ *
+ * The collector is a precise, non-moving mark-sweep collector. Its roots are the slots that generated code registers
+ * with llvm.gcroot, which LLVM's shadow-stack GC strategy keeps in a linked list of frames, llvm_gc_root_chain. An
+ * object's pointer fields are found through the type descriptor in the first entry of its class's vtable. A collection
+ * runs when a thread has allocated as many bytes since the last one as survived it, and at least 4 MiB.
+ *
+ * There is one root chain per program, so only one thread may run compiled PepoLang code at a time.
+ */
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+
+/* Matches the kinds in LLVMRuntime.java */
+enum {
+    PEPO_OBJECT = 0,
+    PEPO_STRING = 1,
+    PEPO_STATIC = 2,
+    PEPO_STACK_OBJECT = 3
+};
+
+typedef struct PepoHeader {
+    /* The next cell of the heap, or of the free list while the cell is free */
+    struct PepoHeader *next;
+    uint32_t size;
+    uint8_t kind;
+    uint8_t marked;
+    uint16_t reserved;
+} PepoHeader;
+
+/* The first vtable entry of every class */
+typedef struct PepoType {
+    uint64_t size;
+    uint64_t pointer_count;
+    uint64_t pointer_offsets[];
+} PepoType;
+
+/* The frame layout of LLVM's shadow-stack GC strategy */
+typedef struct FrameMap {
+    int32_t num_roots;
+    int32_t num_meta;
+    const void *meta[];
+} FrameMap;
+
+typedef struct StackEntry {
+    struct StackEntry *next;
+    const FrameMap *map;
+    void *roots[];
+} StackEntry;
+
+#define GRANULE 16
+#define SMALL_GRANULES 16
+#define ARENA_SIZE (256 * 1024)
+#define MIN_THRESHOLD (4 * 1024 * 1024)
+
+typedef struct Heap {
+    char *cursor;
+    char *limit;
+    PepoHeader *cells;
+    PepoHeader *free_cells[SMALL_GRANULES + 1];
+    size_t allocated;
+    size_t threshold;
+    void **mark_stack;
+    size_t mark_count;
+    size_t mark_capacity;
+} Heap;
+
+static _Thread_local Heap heap;
+
+/*
+ * Every module defines llvm_gc_root_chain itself, so main hands the runtime the one it uses. A JIT compiled program
+ * and the runtime library would otherwise each see their own.
+ */
+static StackEntry **root_chain;
+
+static void out_of_memory(void) {
+    fputs("PepoLang: out of memory\n", stderr);
+    abort();
+}
+
+static size_t granules_of(size_t size) {
+    return (sizeof(PepoHeader) + size + GRANULE - 1) / GRANULE;
+}
+
+static PepoHeader *bump(size_t bytes) {
+    if ((size_t) (heap.limit - heap.cursor) < bytes) {
+        // The rest of the old arena is left unused, it is smaller than the cell anyway
+        char *arena = malloc(ARENA_SIZE);
+        if (arena == NULL)
+            out_of_memory();
+
+        heap.cursor = arena;
+        heap.limit = arena + ARENA_SIZE;
+    }
+
+    PepoHeader *header = (PepoHeader *) heap.cursor;
+    heap.cursor += bytes;
+    return header;
+}
+
+static void push(void *object) {
+    if (heap.mark_count == heap.mark_capacity) {
+        size_t capacity = heap.mark_capacity == 0 ? 256 : heap.mark_capacity * 2;
+        void **stack = realloc(heap.mark_stack, capacity * sizeof(void *));
+        if (stack == NULL)
+            out_of_memory();
+
+        heap.mark_stack = stack;
+        heap.mark_capacity = capacity;
+    }
+
+    heap.mark_stack[heap.mark_count++] = object;
+}
+
+static void mark(void *payload) {
+    if (payload == NULL)
+        return;
+
+    PepoHeader *header = (PepoHeader *) payload - 1;
+    switch (header->kind) {
+        case PEPO_OBJECT:
+            if (!header->marked) {
+                header->marked = 1;
+                push(payload);
+            }
+            break;
+        case PEPO_STRING:
+            header->marked = 1;
+            break;
+        case PEPO_STACK_OBJECT:
+            // Not part of the heap, but its fields can point into it
+            push(payload);
+            break;
+        default:
+            break;
+    }
+}
+
+static void trace(void *object) {
+    void **vtable = *(void ***) object;
+    if (vtable == NULL)
+        return;
+
+    const PepoType *type = vtable[0];
+    for (uint64_t index = 0; index < type->pointer_count; index++) {
+        mark(*(void **) ((char *) object + type->pointer_offsets[index]));
+    }
+}
+
+static void sweep(void) {
+    size_t live = 0;
+    PepoHeader *survivors = NULL;
+    PepoHeader *cell = heap.cells;
+    while (cell != NULL) {
+        PepoHeader *next = cell->next;
+        size_t granules = granules_of(cell->size);
+        if (cell->marked) {
+            cell->marked = 0;
+            cell->next = survivors;
+            survivors = cell;
+            live += granules * GRANULE;
+        } else if (granules <= SMALL_GRANULES) {
+            cell->next = heap.free_cells[granules];
+            heap.free_cells[granules] = cell;
+        } else {
+            free(cell);
+        }
+
+        cell = next;
+    }
+
+    heap.cells = survivors;
+    heap.allocated = 0;
+    heap.threshold = live < MIN_THRESHOLD ? MIN_THRESHOLD : live;
+}
+
+void pepo_gc_register_roots(StackEntry **chain) {
+    root_chain = chain;
+}
+
+void pepo_gc_collect(void) {
+    // Without the root chain, every object would look unreachable
+    if (root_chain == NULL)
+        return;
+
+    for (StackEntry *entry = *root_chain; entry != NULL; entry = entry->next) {
+        for (int32_t index = 0; index < entry->map->num_roots; index++) {
+            mark(entry->roots[index]);
+        }
+    }
+
+    while (heap.mark_count > 0) {
+        trace(heap.mark_stack[--heap.mark_count]);
+    }
+
+    sweep();
+}
+
+static void *allocate(uint64_t size, uint8_t kind) {
+    if (size > UINT32_MAX)
+        out_of_memory();
+
+    if (heap.threshold == 0) {
+        heap.threshold = MIN_THRESHOLD;
+    } else if (heap.allocated >= heap.threshold) {
+        pepo_gc_collect();
+    }
+
+    size_t granules = granules_of(size);
+    PepoHeader *header;
+    if (granules <= SMALL_GRANULES) {
+        header = heap.free_cells[granules];
+        if (header != NULL) {
+            heap.free_cells[granules] = header->next;
+        } else {
+            header = bump(granules * GRANULE);
+        }
+    } else {
+        header = malloc(granules * GRANULE);
+        if (header == NULL)
+            out_of_memory();
+    }
+
+    heap.allocated += granules * GRANULE;
+    header->next = heap.cells;
+    heap.cells = header;
+    header->size = (uint32_t) size;
+    header->kind = kind;
+    header->marked = 0;
+    header->reserved = 0;
+
+    void *payload = header + 1;
+    memset(payload, 0, size);
+    return payload;
+}
+
+/* A zeroed object of the class whose vtable is given, with its vtable pointer set */
+void *pepo_alloc_object(void **vtable) {
+    const PepoType *type = vtable[0];
+    void **object = allocate(type->size, PEPO_OBJECT);
+    object[0] = vtable;
+    return object;
+}
+
+/* Room for a string of size bytes, including its terminator */
+char *pepo_alloc_string(uint64_t size) {
+    return allocate(size, PEPO_STRING);
+}
@@ -0,0 +1,96 @@
+package dev.turtywurty.pepolang.interpreter;
+
+import dev.turtywurty.pepolang.parser.Parameter;
+import dev.turtywurty.pepolang.semanticAnalysis.Type;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.MethodSymbol;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.VariableSymbol;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The overloads of a method or constructor, indexed by how many parameters they take, so a call can be dispatched
+ * with an array access. A call whose overload semantic analysis resolved is dispatched on that overload's
+ * {@link MethodSymbol} instead, which picks the overload with exactly its parameter types; otherwise the first declared
+ * overload with the right number of parameters is used.
+ */
+public final class ArityIndex<T extends PepoCallable> {
+    private final List<T> overloads;
+    private final Function<? super T, List<Parameter>> parameters;
+    private final PepoCallable[] byArity;
+    private final Map<MethodSymbol, T> bySignature = new IdentityHashMap<>();
+
+    /**
+     * @param parameters gives the declared parameters of an overload
+     */
+    public ArityIndex(List<T> overloads, Function<? super T, List<Parameter>> parameters) {
+        this.overloads = List.copyOf(overloads);
+        this.parameters = parameters;
+
+        int maxArity = -1;
+        for (T overload : overloads) {
+            maxArity = Math.max(maxArity, overload.arity());
+        }
+
+        this.byArity = new PepoCallable[maxArity + 1];
+        for (T overload : overloads) {
+            if (this.byArity[overload.arity()] == null) {
+                this.byArity[overload.arity()] = overload;
+            }
+        }
+    }
+
+    /**
+     * @return the first declared overload taking the given number of arguments, or {@code null} if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int arity) {
+        return arity >= 0 && arity < this.byArity.length ? (T) this.byArity[arity] : null;
+    }
+
+    /**
+     * @return the overload declared with the parameter types of the signature, or {@code null} if there is none
+     */
+    public T get(MethodSymbol signature) {
+        T overload = this.bySignature.get(signature);
+        if (overload == null && !this.bySignature.containsKey(signature)) {
+            overload = find(signature);
+            this.bySignature.put(signature, overload);
+        }
+
+        return overload;
+    }
+
+    private T find(MethodSymbol signature) {
+        List<VariableSymbol> expected = signature.getParameters();
+        for (T overload : this.overloads) {
+            List<Parameter> declared = this.parameters.apply(overload);
+            if (declared.size() != expected.size())
+                continue;
+
+            boolean matches = true;
+            for (int index = 0; index < declared.size() && matches; index++) {
+                matches = Type.of(declared.get(index).type()) == expected.get(index).getReturnType();
+            }
+
+            if (matches)
+                return overload;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the first declared overload, or {@code null} if there are none
+     */
+    public T first() {
+        return this.overloads.isEmpty() ? null : this.overloads.getFirst();
+    }
+
+    @Override
+    public String toString() {
+        return this.overloads.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package dev.turtywurty.pepolang.interpreter;
+
+import dev.turtywurty.pepolang.lexer.TokenType;
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.semanticAnalysis.Arithmetic;
+import dev.turtywurty.pepolang.semanticAnalysis.PrimitiveType;
+import dev.turtywurty.pepolang.semanticAnalysis.Type;
+import dev.turtywurty.pepolang.semanticAnalysis.TypeTable;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * What the interpreter knows about the operands of an {@link Expression.Binary} from semantic analysis.
+ * <p>
+ * When both operands are statically numeric, the operator can be applied to their values directly instead of
+ * checking what kind of value each one holds, and it is computed in the analyzed type: the result type for
+ * arithmetic, and the wider operand type for comparisons. A {@code +} whose result is statically a string is always a
+ * concatenation. Anything else, including expressions the analysis has no type for, is evaluated dynamically.
+ *
+ * @param kind how the operator is applied
+ * @param type the type a numeric operator is computed in, or {@code null} if it is not numeric
+ */
+record BinaryShape(Kind kind, @Nullable PrimitiveType type) {
+    private static final BinaryShape CONCATENATION = new BinaryShape(Kind.CONCATENATION, null);
+    private static final BinaryShape DYNAMIC = new BinaryShape(Kind.DYNAMIC, null);
+
+    static BinaryShape of(Expression.Binary expression, TypeTable types) {
+        Type left = types.getType(expression.getLeft());
+        Type right = types.getType(expression.getRight());
+        Type result = types.getType(expression);
+        if (isNumeric(left) && isNumeric(right)) {
+            if (isNumeric(result))
+                return new BinaryShape(Kind.ARITHMETIC, result.getPrimitiveType());
+
+            if (result == Type.BOOL && isComparison(expression.getOperator().type()))
+                return new BinaryShape(Kind.COMPARISON, Arithmetic.wider(left.getPrimitiveType(), right.getPrimitiveType()));
+        }
+
+        return result == Type.STRING ? CONCATENATION : DYNAMIC;
+    }
+
+    private static boolean isNumeric(Type type) {
+        return type == Type.INT || type == Type.LONG || type == Type.DOUBLE || type == Type.FLOAT ||
+                type == Type.SHORT || type == Type.BYTE;
+    }
+
+    private static boolean isComparison(TokenType operator) {
+        return switch (operator) {
+            case EQUAL, NOT_EQUAL, LT, LESS_EQUAL, GT, GREATER_EQUAL -> true;
+            default -> false;
+        };
+    }
+
+    enum Kind {
+        ARITHMETIC,
+        COMPARISON,
+        CONCATENATION,
+        DYNAMIC
+    }
+}
@@ -26,6 +26,12 @@ public class Environment {
         return this.enclosing;
     }
 
+    public void clear() {
+        this.classes.clear();
+        this.variables.clear();
+        this.functions.clear();
+    }
+
     public void defineClass(String name, PepoClass value) {
         if (this.classes.containsKey(name) && classes.get(name) != null && value != null)
             throw new RuntimeError("Class with name '" + name + "' already defined!");
@@ -47,6 +53,13 @@ public class Environment {
         this.functions.put(name, value);
     }
 
+    /**
+     * Sets a variable declared in this scope, without looking it up in the enclosing ones.
+     */
+    void setVariable(String name, Object value) {
+        this.variables.put(name, value);
+    }
+
     public Object getVariableAt(int distance, String name) {
         return ancestor(distance).getVariable(name);
     }
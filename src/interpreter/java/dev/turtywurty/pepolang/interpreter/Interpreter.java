@@ -3,6 +3,13 @@ package dev.turtywurty.pepolang.interpreter;
 import dev.turtywurty.pepolang.lexer.Token;
 import dev.turtywurty.pepolang.lexer.TokenType;
 import dev.turtywurty.pepolang.parser.*;
+import dev.turtywurty.pepolang.semanticAnalysis.Arithmetic;
+import dev.turtywurty.pepolang.semanticAnalysis.EscapeAnalysis;
+import dev.turtywurty.pepolang.semanticAnalysis.ExecutionProfile;
+import dev.turtywurty.pepolang.semanticAnalysis.PrimitiveType;
+import dev.turtywurty.pepolang.semanticAnalysis.Type;
+import dev.turtywurty.pepolang.semanticAnalysis.TypeTable;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.MethodSymbol;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
@@ -12,10 +19,36 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     private final Map<Expression, Integer> localVariables = new HashMap<>();
     private final Map<Expression, Integer> localFunctions = new HashMap<>();
     private final Map<Expression, Integer> localClasses = new HashMap<>();
+    private final Map<Statement.ForStatement, LoopShape> loopShapes = new HashMap<>();
+    private final Map<Expression.Binary, BinaryShape> binaryShapes = new IdentityHashMap<>();
+    private final TypeTable types;
+    private final EscapeAnalysis escapes;
 
     private Environment environment = globals;
+    private MemoCache memoCache;
+    private ExecutionProfile.Sites profile;
 
     public Interpreter() {
+        this(new TypeTable());
+    }
+
+    /**
+     * @param types the types semantic analysis found for the expressions that will be interpreted, used to skip
+     *              runtime type checks where the types are statically known
+     */
+    public Interpreter(TypeTable types) {
+        this(types, new EscapeAnalysis());
+    }
+
+    /**
+     * @param types   the types semantic analysis found for the expressions that will be interpreted, used to skip
+     *                runtime type checks where the types are statically known
+     * @param escapes the local objects in the statements that will be interpreted, whose fields are kept in the
+     *                slots of a {@link LocalObject} rather than in a {@link PepoInstance}
+     */
+    public Interpreter(TypeTable types, EscapeAnalysis escapes) {
+        this.types = types;
+        this.escapes = escapes;
         this.globals.defineFunction("print", new PepoCallable() {
             @Override
             public int arity() {
@@ -224,6 +257,32 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
         });
     }
 
+    /**
+     * Serves calls to the given pure functions from a cache of earlier results with the same arguments, evicting the
+     * least recently used result once more than {@code capacity} are cached.
+     *
+     * @see dev.turtywurty.pepolang.semanticAnalysis.PurityAnalyzer
+     */
+    public void enableMemoization(Set<Statement.FunctionStatement> pureFunctions, int capacity) {
+        this.memoCache = new MemoCache(pureFunctions, capacity);
+    }
+
+    /**
+     * Counts which way every branch goes and how often every call runs into the given sites, for the native code
+     * generator to optimize with.
+     */
+    public void enableProfiling(ExecutionProfile.Sites sites) {
+        this.profile = sites;
+    }
+
+    private boolean recordBranch(Statement statement, boolean taken) {
+        if (this.profile != null) {
+            this.profile.recordBranch(statement, taken);
+        }
+
+        return taken;
+    }
+
     public void interpret(List<Statement> statements) {
         try {
             for (Statement statement : statements) {
@@ -234,10 +293,37 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
         }
     }
 
+    /**
+     * Resolves and executes each top-level statement as soon as it is produced, rather than waiting for the whole
+     * program to be parsed. Statements can only refer to declarations that came before them.
+     */
+    public void interpret(Iterator<Statement> statements) {
+        var resolver = new Resolver(this);
+        try {
+            while (statements.hasNext()) {
+                Statement statement = statements.next();
+                resolver.resolve(statement);
+                execute(statement);
+            }
+        } catch (RuntimeError error) {
+            throw new RuntimeException("Something went wrong in the interpreter!", error);
+        }
+    }
+
     private void execute(Statement statement) {
         statement.accept(this);
     }
 
+    /**
+     * Evaluates a value that is about to be stored, converting a number to the type of the variable, field or return
+     * value it is stored in, the same way native code does.
+     */
+    private Object evaluateStored(Expression value) {
+        Object result = evaluate(value);
+        Type conversion = this.types.getConversion(value);
+        return conversion != null && result instanceof Number number ? Arithmetic.convert(number, conversion.getPrimitiveType()) : result;
+    }
+
     private String stringify(Object object) {
         if (object == null) return "null";
         return object.toString();
@@ -245,7 +331,7 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
 
     @Override
     public Object visitAssign(Expression.Assign expression) {
-        Object value = evaluate(expression.getValue());
+        Object value = evaluateStored(expression.getValue());
 
         Integer distance = localVariables.get(expression);
         if (distance != null) {
@@ -261,19 +347,33 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     public Object visitBinary(Expression.Binary expression) {
         Object left = evaluate(expression.getLeft());
         Object right = evaluate(expression.getRight());
+        Token operator = expression.getOperator();
 
-        switch (expression.getOperator().type()) {
-            case SUB -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                if (left instanceof Number leftNum && right instanceof Number rightNum)
-                    return leftNum.doubleValue() - rightNum.doubleValue();
-
-                return null;
+        BinaryShape shape = this.binaryShapes.computeIfAbsent(expression, binary -> BinaryShape.of(binary, this.types));
+        switch (shape.kind()) {
+            case ARITHMETIC -> {
+                if (left != null && right != null)
+                    return evaluateArithmetic(operator, shape.type(), (Number) left, (Number) right);
             }
-            case ADD -> {
-                if (left instanceof Number leftNum && right instanceof Number rightNum)
-                    return leftNum.doubleValue() + rightNum.doubleValue();
+            case COMPARISON -> {
+                if (left != null && right != null)
+                    return Arithmetic.compare(operator.type(), shape.type(), (Number) left, (Number) right);
+            }
+            case CONCATENATION -> {
+                return stringify(left) + stringify(right);
+            }
+            case DYNAMIC -> {
+            }
+        }
+
+        if (left instanceof Number leftNum && right instanceof Number rightNum) {
+            PrimitiveType type = Arithmetic.typeOf(operator.type(), leftNum, rightNum);
+            Boolean comparison = Arithmetic.compare(operator.type(), type, leftNum, rightNum);
+            return comparison != null ? comparison : evaluateArithmetic(operator, type, leftNum, rightNum);
+        }
 
+        switch (operator.type()) {
+            case ADD -> {
                 if (left instanceof String leftStr && right instanceof String rightStr)
                     return leftStr + rightStr;
 
@@ -284,87 +384,56 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
                 if (right instanceof String rightStr)
                     return stringify(left) + rightStr;
 
-                throw new RuntimeError(expression.getOperator(), "Operands must be two numbers or two strings.");
-            }
-            case MUL -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                if (left instanceof Number leftNum && right instanceof Number rightNum)
-                    return leftNum.doubleValue() * rightNum.doubleValue();
-
-                return null;
-            }
-            case DIV -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                if (left instanceof Number leftNum && right instanceof Number rightNum) {
-                    if (rightNum.doubleValue() == 0)
-                        throw new RuntimeError(expression.getOperator(), "Cannot divide by zero!");
-
-                    return leftNum.doubleValue() / rightNum.doubleValue();
-                }
-
-                return null;
-            }
-            case MOD -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                if (left instanceof Number leftNum && right instanceof Number rightNum)
-                    return leftNum.doubleValue() % rightNum.doubleValue();
-
-                return null;
-            }
-            case GT -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                if (left instanceof Number leftNum && right instanceof Number rightNum)
-                    return leftNum.doubleValue() > rightNum.doubleValue();
-
-                return null;
-            }
-            case GREATER_EQUAL -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                if (left instanceof Number leftNum && right instanceof Number rightNum)
-                    return leftNum.doubleValue() >= rightNum.doubleValue();
-
-                return null;
-            }
-            case LT -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                if (left instanceof Number leftNum && right instanceof Number rightNum)
-                    return leftNum.doubleValue() < rightNum.doubleValue();
-
-                return null;
-            }
-            case LESS_EQUAL -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                if (left instanceof Number leftNum && right instanceof Number rightNum)
-                    return leftNum.doubleValue() <= rightNum.doubleValue();
-
-                return null;
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
             }
             case EQUAL -> {
                 if (left == null && right == null) return true;
                 if (left == null) return false;
 
-                if (left instanceof Number leftNum && right instanceof Number rightNum)
-                    return Double.compare(leftNum.doubleValue(), rightNum.doubleValue()) == 0;
-
                 return left.equals(right);
             }
             case NOT_EQUAL -> {
                 if (left == null && right == null) return false;
                 if (left == null) return true;
 
-                if (left instanceof Number leftNum && right instanceof Number rightNum)
-                    return Double.compare(leftNum.doubleValue(), rightNum.doubleValue()) != 0;
-
                 return !left.equals(right);
             }
+            default -> {
+                checkNumberOperands(operator, left, right);
+                return null;
+            }
         }
+    }
+
+    /**
+     * Computes an arithmetic operator in the given type, the same way native code and {@code ConstantFolder} do.
+     */
+    private static Object evaluateArithmetic(Token operator, PrimitiveType type, Number left, Number right) {
+        if (operator.type() == TokenType.DIV && right.doubleValue() == 0)
+            throw new RuntimeError(operator, "Cannot divide by zero!");
 
-        return null; // Unreachable
+        Number result;
+        try {
+            result = Arithmetic.evaluate(operator.type(), type, left, right);
+        } catch (ArithmeticException exception) {
+            throw new RuntimeError(operator, "Cannot divide by zero!");
+        }
+
+        if (result == null)
+            throw new RuntimeError(operator, "Unknown binary operator.");
+
+        return result;
     }
 
     @Override
     public Object visitCall(Expression.Call expression) {
-        Object callee = evaluate(expression.getCallee());
+        int arity = expression.getArguments().size();
+        MethodSymbol signature = this.types.getDeclaration(expression) instanceof MethodSymbol method ? method : null;
+        Object callee = switch (expression.getCallee()) {
+            case Expression.Get get -> evaluateMethod(get, arity, signature);
+            case Expression.Super superMethod -> lookUpSuperMethod(superMethod, arity, signature);
+            default -> evaluate(expression.getCallee());
+        };
 
         List<Object> arguments = new ArrayList<>();
         for (Expression argument : expression.getArguments()) {
@@ -377,64 +446,111 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
         if (arguments.size() != function.arity())
             throw new RuntimeError(expression.getParen(), "Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
 
+        if (this.profile != null) {
+            this.profile.recordCall(expression, function instanceof PepoFunction pepoFunction ? pepoFunction.getDeclaration() : null);
+        }
+
+        if (this.memoCache != null && function instanceof PepoFunction pepoFunction)
+            return this.memoCache.call(pepoFunction, this, arguments);
+
         return function.call(this, arguments);
     }
 
     @Override
     public Object visitNew(Expression.New expression) {
-        Object call = evaluate(expression.getCall());
+        return construct(expression, null);
+    }
 
-        if (!(call instanceof Expression.Call callExpression))
+    /**
+     * Runs the constructor that a {@code new} expression calls, on a new instance, or with the local object as
+     * {@code this} if there is one.
+     */
+    private Object construct(Expression.New expression, LocalObject localObject) {
+        if (!(expression.getCall() instanceof Expression.Call callExpression))
             throw new RuntimeError(expression.getKeyword(), "Expected a call expression!");
 
-        Object callee = evaluate(callExpression.getCallee());
-        if (!(callee instanceof PepoClass clazz))
-            throw new RuntimeError(expression.getKeyword(), "Expected a class!");
+        Token className = switch (callExpression.getCallee()) {
+            case Expression.Function function -> function.getName();
+            case Expression.Variable variable -> variable.getName();
+            default -> throw new RuntimeError(expression.getKeyword(), "Expected a class!");
+        };
+        PepoClass clazz = this.environment.getClass((String) className.value());
 
         List<Object> arguments = new ArrayList<>();
         for (Expression argument : callExpression.getArguments()) {
             arguments.add(evaluate(argument));
         }
 
-        PepoFunction constructor = clazz.findMethod("constructor");
-        if (constructor == null)
-            throw new RuntimeError(expression.getKeyword(), "Expected a constructor!");
+        Object instance = localObject != null ? localObject : new PepoInstance(clazz);
+        MethodSymbol signature = this.types.getDeclaration(expression) instanceof MethodSymbol method ? method : null;
+        PepoClass.PepoConstructor constructor = clazz.findConstructor(arguments.size(), signature);
+        if (constructor == null) {
+            if (arguments.isEmpty())
+                return instance;
+
+            throw new RuntimeError(expression.getKeyword(), "Class '" + clazz.name() + "' has no constructor taking " + arguments.size() + " arguments.");
+        }
 
-        return constructor.call(this, arguments);
+        return constructor.bind(instance).call(this, arguments);
     }
 
     @Override
     public Object visitGet(Expression.Get expression) {
         Object object = evaluate(expression.getObject());
+        if (object instanceof LocalObject localObject)
+            return localObject.get(this.escapes.getFieldSlot(expression), expression.getName());
+
         if (object instanceof PepoInstance instance)
             return instance.get(expression.getName());
 
         throw new RuntimeError(expression.getName(), "Only instances have properties.");
     }
 
+    private Object evaluateMethod(Expression.Get expression, int arity, MethodSymbol signature) {
+        Object object = evaluate(expression.getObject());
+        if (object instanceof PepoInstance instance)
+            return instance.get(expression.getName(), arity, signature);
+
+        throw new RuntimeError(expression.getName(), "Only instances have properties.");
+    }
+
     @Override
     public Object visitSet(Expression.Set expression) {
         Object object = evaluate(expression.getObject());
+        if (object instanceof LocalObject localObject) {
+            Object value = evaluateStored(expression.getValue());
+            localObject.set(this.escapes.getFieldSlot(expression), value);
+            return value;
+        }
+
         if (!(object instanceof PepoInstance instance))
             throw new RuntimeError(expression.getName(), "Only instances have fields.");
 
-        Object value = evaluate(expression.getValue());
+        Object value = evaluateStored(expression.getValue());
         instance.set(expression.getName(), value);
         return value;
     }
 
     @Override
     public Object visitThis(Expression.This expression) {
-        return lookUpVariable(expression.getKeyword(), expression);
+        return lookUpVariable("this", expression);
     }
 
     @Override
     public Object visitSuper(Expression.Super expression) {
+        return lookUpSuperMethod(expression, -1, null);
+    }
+
+    /**
+     * @param arity the number of arguments the method is called with, or {@code -1} for its first overload
+     */
+    private Object lookUpSuperMethod(Expression.Super expression, int arity, MethodSymbol signature) {
         int distance = this.localVariables.get(expression);
         PepoClass superclass = this.environment.getClassAt(distance, "super");
         PepoInstance object = (PepoInstance) this.environment.getVariableAt(distance - 1, "this");
 
-        PepoFunction method = superclass.findMethod((String) expression.getMethod().value());
+        String name = (String) expression.getMethod().value();
+        PepoFunction method = arity < 0 ? superclass.findMethod(name) : superclass.findMethod(name, arity, signature);
         if (method == null)
             throw new RuntimeError(expression.getMethod(), "Undefined property '" + expression.getMethod().value() + "'.");
 
@@ -469,7 +585,10 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
         Object right = evaluate(expression.getRight());
 
         return switch (expression.getOperator().type()) {
-            case SUB -> -(double) right;
+            case SUB -> {
+                checkNumberOperand(expression.getOperator(), right);
+                yield Arithmetic.negate((Number) right);
+            }
             case ADD -> right;
             case NOT -> !isTruthy(right);
             default -> null;
@@ -482,11 +601,15 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     }
 
     private Object lookUpVariable(Token name, Expression expression) {
+        return lookUpVariable((String) name.value(), expression);
+    }
+
+    private Object lookUpVariable(String name, Expression expression) {
         Integer distance = localVariables.get(expression);
         if (distance != null) {
-            return environment.getVariableAt(distance, (String) name.value());
+            return environment.getVariableAt(distance, name);
         } else {
-            return globals.getVariable((String) name.value());
+            return globals.getVariable(name);
         }
     }
 
@@ -547,7 +670,7 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
 
     @Override
     public Void visitAssignStatement(Statement.AssignStatement statement) {
-        Object value = evaluate(statement.getValue());
+        Object value = evaluateStored(statement.getValue());
         environment.assignVariable(statement.getName(), value);
         return null;
     }
@@ -568,6 +691,78 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
         throw new Continue();
     }
 
+    @Override
+    public Void visitImportStatement(Statement.ImportStatement statement) {
+        // modules are loaded and executed ahead of the statements that import them
+        return null;
+    }
+
+    @Override
+    public Void visitForStatement(Statement.ForStatement statement) {
+        Environment previous = this.environment;
+        try {
+            this.environment = new Environment(previous);
+            if (statement.getInitializer() != null) {
+                execute(statement.getInitializer());
+            }
+
+            LoopShape shape = this.loopShapes.computeIfAbsent(statement, LoopShape::of);
+            Environment bodyEnvironment = shape.reusableBody() ? new Environment(this.environment) : null;
+            if (shape.isCounted() && this.environment.getVariable((String) shape.counter().value()) instanceof Integer start) {
+                executeCountedLoop(statement, shape, start, bodyEnvironment);
+                return null;
+            }
+
+            while (recordBranch(statement, statement.getCondition() == null || isTruthy(evaluate(statement.getCondition())))) {
+                try {
+                    executeLoopBody(statement.getBody(), bodyEnvironment);
+                } catch (Break ignored) {
+                    break;
+                } catch (Continue ignored) {
+                }
+
+                if (statement.getIncrement() != null) {
+                    evaluate(statement.getIncrement());
+                }
+            }
+        } finally {
+            this.environment = previous;
+        }
+
+        return null;
+    }
+
+    private void executeCountedLoop(Statement.ForStatement statement, LoopShape shape, int start, Environment bodyEnvironment) {
+        String counter = (String) shape.counter().value();
+        Environment scope = this.environment;
+        Expression bound = shape.bound();
+        Object constantBound = bound instanceof Expression.Literal literal ? literal.getValue() : null;
+
+        for (int value = start; recordBranch(statement, shape.test(value, constantBound != null ? constantBound : evaluate(bound))); ) {
+            try {
+                executeLoopBody(statement.getBody(), bodyEnvironment);
+            } catch (Break ignored) {
+                break;
+            } catch (Continue ignored) {
+            }
+
+            // i = i + c is an int addition, which wraps around like this one does
+            value += shape.step();
+            if (shape.readsCounter()) {
+                scope.setVariable(counter, value);
+            }
+        }
+    }
+
+    private void executeLoopBody(Statement body, Environment bodyEnvironment) {
+        if (bodyEnvironment != null && body instanceof Statement.BlockStatement block) {
+            bodyEnvironment.clear();
+            executeBlock(block.getStatements(), bodyEnvironment);
+        } else {
+            execute(body);
+        }
+    }
+
     public void executeBlock(List<Statement> statements, Environment environment) {
         Environment previous = this.environment;
         try {
@@ -596,7 +791,7 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
 
     @Override
     public Void visitIfStatement(Statement.IfStatement statement) {
-        if (isTruthy(evaluate(statement.getCondition()))) {
+        if (recordBranch(statement, isTruthy(evaluate(statement.getCondition())))) {
             execute(statement.getThenBranch());
         } else if (statement.getElseBranch() != null) {
             execute(statement.getElseBranch());
@@ -609,7 +804,7 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     public Void visitReturnStatement(Statement.ReturnStatement statement) {
         Object value = null;
         if (statement.getValue() != null) {
-            value = evaluate(statement.getValue());
+            value = evaluateStored(statement.getValue());
         }
 
         throw new Return(value);
@@ -618,11 +813,15 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     @Override
     public Void visitVariableStatement(Statement.VariableStatement statement) {
         Object value = null;
-        if (statement.getInitializer() != null) {
-            value = evaluate(statement.getInitializer());
+        if (this.escapes.isLocalObject(statement)) {
+            var localObject = new LocalObject(this.escapes.getFieldCount(statement));
+            construct((Expression.New) statement.getInitializer(), localObject);
+            value = localObject;
+        } else if (statement.getInitializer() != null) {
+            value = evaluateStored(statement.getInitializer());
         }
 
-        environment.defineVariable((String) statement.getName().value(), value); // TODO: Handle types
+        environment.defineVariable((String) statement.getName().value(), value);
         return null;
     }
 
@@ -653,7 +852,12 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
                     .add(new PepoFunction(method, this.environment));
         }
 
-        PepoClass clazz = new PepoClass(className, superclass, methods);
+        List<PepoClass.PepoConstructor> constructors = new ArrayList<>();
+        for (Statement.ConstructorStatement constructor : statement.getConstructors()) {
+            constructors.add(new PepoClass.PepoConstructor(constructor, this.environment));
+        }
+
+        PepoClass clazz = PepoClass.of(className, superclass, methods, constructors);
         if (superclass != null)
             this.environment = this.environment.getEnclosing();
 
@@ -671,7 +875,7 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
 
     @Override
     public Void visitWhileStatement(Statement.WhileStatement statement) {
-        while (isTruthy(evaluate(statement.getCondition()))) {
+        while (recordBranch(statement, isTruthy(evaluate(statement.getCondition())))) {
             try {
                 execute(statement.getBody());
             } catch (Break ignored) {
@@ -692,6 +896,8 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
             this.localVariables.put(variable, depth);
         } else if(expression instanceof Expression.Assign assign) {
             this.localVariables.put(assign, depth);
+        } else if(expression instanceof Expression.This thisExpression) {
+            this.localVariables.put(thisExpression, depth);
         } else if(expression instanceof Expression.Function function) {
             this.localFunctions.put(function, depth);
         } else if(expression instanceof Expression.Extends clazz) {
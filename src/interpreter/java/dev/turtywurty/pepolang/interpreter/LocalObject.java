@@ -0,0 +1,33 @@
+package dev.turtywurty.pepolang.interpreter;
+
+import dev.turtywurty.pepolang.lexer.Token;
+
+import java.util.Arrays;
+
+/**
+ * The fields of an object that never escapes the variable it was created for, kept in the slots
+ * {@link dev.turtywurty.pepolang.semanticAnalysis.EscapeAnalysis} gave them instead of in a {@link PepoInstance}.
+ * It is the value of that variable, and {@code this} while its constructor runs.
+ */
+final class LocalObject {
+    private static final Object UNSET = new Object();
+
+    private final Object[] fields;
+
+    LocalObject(int fieldCount) {
+        this.fields = new Object[fieldCount];
+        Arrays.fill(this.fields, UNSET);
+    }
+
+    Object get(int slot, Token name) {
+        Object value = this.fields[slot];
+        if (value == UNSET)
+            throw new Interpreter.RuntimeError(name, "Undefined property '" + name.value() + "'.");
+
+        return value;
+    }
+
+    void set(int slot, Object value) {
+        this.fields[slot] = value;
+    }
+}
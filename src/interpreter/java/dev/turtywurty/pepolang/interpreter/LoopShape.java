@@ -0,0 +1,160 @@
+package dev.turtywurty.pepolang.interpreter;
+
+import dev.turtywurty.pepolang.lexer.Token;
+import dev.turtywurty.pepolang.lexer.TokenType;
+import dev.turtywurty.pepolang.parser.AstArena;
+import dev.turtywurty.pepolang.parser.AstArenaEncoder;
+import dev.turtywurty.pepolang.parser.AstKind;
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.RuntimeError;
+import dev.turtywurty.pepolang.parser.Statement;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * What the interpreter knows about a {@link Statement.ForStatement} ahead of running it.
+ * <p>
+ * A loop is <em>counted</em> when it has the shape {@code for (int i = a; i < b; i = i + c)} (or any of
+ * {@code <=}, {@code >}, {@code >=}, {@code i++} and {@code i--}), {@code c} is an int literal and the body never
+ * assigns {@code i}. Such loops are driven by a primitive counter instead of evaluating the condition and increment
+ * expressions every iteration, and the counter is only stored into {@code i} when the body or bound reads it.
+ * <p>
+ * The body environment can be reused between iterations when the body declares no functions or classes, since
+ * nothing can capture it.
+ *
+ * @param counter      the loop variable, or {@code null} if the loop is not counted
+ * @param comparison   the comparison operator of the condition
+ * @param bound        the right-hand side of the condition, re-evaluated every iteration unless it is a literal
+ * @param step         the amount added to the counter after every iteration
+ * @param readsCounter whether the body or bound reads the loop variable, so it has to be kept up to date
+ * @param reusableBody whether the body environment can be reused between iterations
+ */
+record LoopShape(@Nullable Token counter, @Nullable TokenType comparison, @Nullable Expression bound, int step,
+                 boolean readsCounter, boolean reusableBody) {
+    private static final List<TokenType> COMPARISONS = List.of(TokenType.LT, TokenType.LESS_EQUAL, TokenType.GT, TokenType.GREATER_EQUAL);
+
+    static LoopShape of(Statement.ForStatement statement) {
+        var arena = new AstArena();
+        int body = new AstArenaEncoder(arena).encode(statement.getBody());
+        boolean reusableBody = statement.getBody() instanceof Statement.BlockStatement && !declaresCallables(arena, body);
+
+        if (!(statement.getInitializer() instanceof Statement.VariableStatement variable) ||
+                variable.getType().type() != TokenType.KEYWORD_INT ||
+                !(statement.getCondition() instanceof Expression.Binary condition) ||
+                !COMPARISONS.contains(condition.getOperator().type()) ||
+                !isVariable(condition.getLeft(), variable.getName()) ||
+                assigns(arena, body, variable.getName()))
+            return new LoopShape(null, null, null, 0, false, reusableBody);
+
+        Integer step = step(statement.getIncrement(), variable.getName());
+        if (step == null)
+            return new LoopShape(null, null, null, 0, false, reusableBody);
+
+        boolean readsCounter = reads(arena, body, variable.getName()) ||
+                reads(arena, new AstArenaEncoder(arena).encode(condition.getRight()), variable.getName());
+        return new LoopShape(variable.getName(), condition.getOperator().type(), condition.getRight(), step, readsCounter, reusableBody);
+    }
+
+    boolean isCounted() {
+        return this.counter != null;
+    }
+
+    /**
+     * Compares the counter to the bound the way {@code i < bound} would, in the wider of their types.
+     */
+    boolean test(int value, Object bound) {
+        if (!(bound instanceof Number number))
+            throw new RuntimeError(this.counter, "Operands must be numbers.");
+
+        TokenType comparison = Objects.requireNonNull(this.comparison);
+        return switch (number) {
+            case Double doubleBound -> compare(comparison, value, doubleBound);
+            case Float floatBound -> compare(comparison, (float) value, floatBound);
+            case Long longBound -> compare(comparison, (long) value, longBound);
+            default -> compare(comparison, value, number.intValue());
+        };
+    }
+
+    private static boolean compare(TokenType comparison, double value, double bound) {
+        return switch (comparison) {
+            case LT -> value < bound;
+            case LESS_EQUAL -> value <= bound;
+            case GT -> value > bound;
+            case GREATER_EQUAL -> value >= bound;
+            default -> throw new IllegalStateException("Unexpected comparison: " + comparison);
+        };
+    }
+
+    private static boolean compare(TokenType comparison, long value, long bound) {
+        return switch (comparison) {
+            case LT -> value < bound;
+            case LESS_EQUAL -> value <= bound;
+            case GT -> value > bound;
+            case GREATER_EQUAL -> value >= bound;
+            default -> throw new IllegalStateException("Unexpected comparison: " + comparison);
+        };
+    }
+
+    private static @Nullable Integer step(Expression increment, Token counter) {
+        if (!(increment instanceof Expression.Assign assign) || !sameName(assign.getName(), counter) ||
+                !(assign.getValue() instanceof Expression.Binary binary) ||
+                !isVariable(binary.getLeft(), counter) ||
+                !(binary.getRight() instanceof Expression.Literal literal) ||
+                !(literal.getValue() instanceof Integer amount))
+            return null;
+
+        return switch (binary.getOperator().type()) {
+            case ADD -> amount;
+            case SUB -> -amount;
+            default -> null;
+        };
+    }
+
+    private static boolean isVariable(Expression expression, Token name) {
+        return expression instanceof Expression.Variable variable && sameName(variable.getName(), name);
+    }
+
+    private static boolean sameName(Token first, Token second) {
+        return Objects.equals(first.value(), second.value());
+    }
+
+    private static boolean assigns(AstArena arena, int node, Token name) {
+        AstKind kind = arena.kind(node);
+        if ((kind == AstKind.ASSIGN || kind == AstKind.ASSIGN_STATEMENT) && sameName(arena.token(node), name))
+            return true;
+
+        for (int child = arena.firstChild(node); child != AstArena.NO_NODE; child = arena.nextSibling(child)) {
+            if (assigns(arena, child, name))
+                return true;
+        }
+
+        return false;
+    }
+
+    private static boolean reads(AstArena arena, int node, Token name) {
+        if (arena.kind(node) == AstKind.VARIABLE && sameName(arena.token(node), name))
+            return true;
+
+        for (int child = arena.firstChild(node); child != AstArena.NO_NODE; child = arena.nextSibling(child)) {
+            if (reads(arena, child, name))
+                return true;
+        }
+
+        return false;
+    }
+
+    private static boolean declaresCallables(AstArena arena, int node) {
+        AstKind kind = arena.kind(node);
+        if (kind == AstKind.FUNCTION_STATEMENT || kind == AstKind.CLASS_STATEMENT)
+            return true;
+
+        for (int child = arena.firstChild(node); child != AstArena.NO_NODE; child = arena.nextSibling(child)) {
+            if (declaresCallables(arena, child))
+                return true;
+        }
+
+        return false;
+    }
+}
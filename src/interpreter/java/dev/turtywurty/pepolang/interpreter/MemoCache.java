@@ -0,0 +1,73 @@
+package dev.turtywurty.pepolang.interpreter;
+
+import dev.turtywurty.pepolang.parser.Statement;
+
+import java.util.*;
+
+/**
+ * The results of earlier calls to pure functions, keyed by the function and its arguments. Only calls whose
+ * arguments are all numbers, strings, booleans or {@code null} are cached, since those are immutable and compare by
+ * value. Once the cache is full, the least recently used result is evicted.
+ */
+public final class MemoCache {
+    private final Set<Statement.FunctionStatement> pureFunctions;
+    private final Map<Key, Object> results;
+
+    /**
+     * @param pureFunctions the functions whose calls can be cached, compared by identity
+     * @param capacity      the most results to keep
+     */
+    public MemoCache(Set<Statement.FunctionStatement> pureFunctions, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive but was " + capacity + "!");
+
+        this.pureFunctions = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.pureFunctions.addAll(pureFunctions);
+        this.results = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Calls the function, or returns the result of an earlier call with the same arguments if it is pure.
+     */
+    public Object call(PepoFunction function, Interpreter interpreter, List<Object> arguments) {
+        if (!this.pureFunctions.contains(function.getDeclaration()) || !isCacheable(arguments))
+            return function.call(interpreter, arguments);
+
+        var key = new Key(function.getDeclaration(), arguments);
+        // Checked with containsKey as well, since a function can return null
+        Object result = this.results.get(key);
+        if (result != null || this.results.containsKey(key))
+            return result;
+
+        result = function.call(interpreter, arguments);
+        this.results.put(key, result);
+        return result;
+    }
+
+    private static boolean isCacheable(List<Object> arguments) {
+        for (Object argument : arguments) {
+            if (argument != null && !(argument instanceof Number) && !(argument instanceof String) &&
+                    !(argument instanceof Boolean) && !(argument instanceof Character))
+                return false;
+        }
+
+        return true;
+    }
+
+    private record Key(Statement.FunctionStatement function, List<Object> arguments) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && this.function == key.function && this.arguments.equals(key.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.function) * 31 + this.arguments.hashCode();
+        }
+    }
+}
@@ -3,23 +3,38 @@ package dev.turtywurty.pepolang.interpreter;
 import dev.turtywurty.pepolang.lexer.Token;
 import dev.turtywurty.pepolang.parser.Parameter;
 import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.MethodSymbol;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public record PepoClass(String name, PepoClass superClass, Map<String, List<PepoFunction>> methods) {
+public record PepoClass(String name, PepoClass superClass, Map<String, ArityIndex<PepoFunction>> methods,
+                        ArityIndex<PepoConstructor> constructors) {
+    public static PepoClass of(String name, PepoClass superClass, Map<String, List<PepoFunction>> methods, List<PepoConstructor> constructors) {
+        Map<String, ArityIndex<PepoFunction>> indexedMethods = new HashMap<>();
+        for (Map.Entry<String, List<PepoFunction>> overloads : methods.entrySet()) {
+            indexedMethods.put(overloads.getKey(), new ArityIndex<>(overloads.getValue(), method -> method.getDeclaration().getParameters()));
+        }
+
+        return new PepoClass(name, superClass, indexedMethods,
+                new ArityIndex<>(constructors, constructor -> constructor.getDeclaration().getParameters()));
+    }
+
     @Override
     public String toString() {
         return "PepoClass{" +
                 "name='" + name + '\'' +
                 ", superClass=" + superClass +
                 ", methods=" + methods +
+                ", constructors=" + constructors +
                 '}';
     }
 
     public PepoFunction findMethod(String name) {
-        if (this.methods.containsKey(name))
-            return this.methods.get(name).getFirst();
+        ArityIndex<PepoFunction> overloads = this.methods.get(name);
+        if (overloads != null)
+            return overloads.first();
 
         if (this.superClass != null)
             return this.superClass.findMethod(name);
@@ -27,6 +42,30 @@ public record PepoClass(String name, PepoClass superClass, Map<String, List<Pepo
         return null;
     }
 
+    /**
+     * @param signature the overload semantic analysis resolved the call to, or {@code null} if it is not known
+     * @return the overload of the method declared with the signature's parameter types, or without a signature the
+     * one taking the given number of arguments, looking in the superclass if this class has none
+     */
+    public PepoFunction findMethod(String name, int arity, MethodSymbol signature) {
+        ArityIndex<PepoFunction> overloads = this.methods.get(name);
+        PepoFunction method = overloads == null ? null : signature != null ? overloads.get(signature) : overloads.get(arity);
+        if (method != null)
+            return method;
+
+        if (this.superClass != null)
+            return this.superClass.findMethod(name, arity, signature);
+
+        return null;
+    }
+
+    /**
+     * @param signature the constructor semantic analysis resolved the call to, or {@code null} if it is not known
+     */
+    public PepoConstructor findConstructor(int arity, MethodSymbol signature) {
+        return signature != null ? this.constructors.get(signature) : this.constructors.get(arity);
+    }
+
     public static class PepoConstructor implements PepoCallable {
         private final Statement.ConstructorStatement declaration;
         private final Environment closure;
@@ -41,6 +80,10 @@ public record PepoClass(String name, PepoClass superClass, Map<String, List<Pepo
             return this.declaration.getParameters().size();
         }
 
+        public Statement.ConstructorStatement getDeclaration() {
+            return this.declaration;
+        }
+
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
             Environment environment = new Environment(this.closure);
@@ -58,6 +101,15 @@ public record PepoClass(String name, PepoClass superClass, Map<String, List<Pepo
             return this.closure.getVariableAt(0, "this");
         }
 
+        /**
+         * @param instance the {@link PepoInstance} or {@link LocalObject} the constructor initializes
+         */
+        public PepoConstructor bind(Object instance) {
+            Environment environment = new Environment(this.closure);
+            environment.defineVariable("this", instance);
+            return new PepoConstructor(this.declaration, environment);
+        }
+
         @Override
         public String toString() {
             return "<constructor " + this.declaration.getName().value() + ">";
@@ -36,6 +36,10 @@ public class PepoFunction implements PepoCallable {
         return null;
     }
 
+    public Statement.FunctionStatement getDeclaration() {
+        return this.declaration;
+    }
+
     @Override
     public String toString() {
         return "<fn " + this.declaration.getName().value() + ">";
@@ -1,6 +1,7 @@
 package dev.turtywurty.pepolang.interpreter;
 
 import dev.turtywurty.pepolang.lexer.Token;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.MethodSymbol;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -30,6 +31,22 @@ public class PepoInstance {
         throw new Interpreter.RuntimeError(name, "Undefined property '" + name.value() + "'.");
     }
 
+    /**
+     * Like {@link #get(Token)}, but picks the overload of a method that a call resolves to, see
+     * {@link PepoClass#findMethod(String, int, MethodSymbol)}.
+     */
+    public Object get(Token name, int arity, MethodSymbol signature) {
+        if (this.fields.containsKey((String) name.value())) {
+            return this.fields.get((String) name.value());
+        }
+
+        PepoFunction method = this.clazz.findMethod((String) name.value(), arity, signature);
+        if (method != null)
+            return method.bind(this);
+
+        throw new Interpreter.RuntimeError(name, "Undefined property '" + name.value() + "' taking " + arity + " arguments.");
+    }
+
     public void set(Token name, Object value) {
         this.fields.put((String) name.value(), value);
     }
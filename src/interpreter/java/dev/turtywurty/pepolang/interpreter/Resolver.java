@@ -15,6 +15,7 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
     private final Stack<HashMap<String, Boolean>> classScopes = new Stack<>();
     private FunctionType currentFunction = FunctionType.NONE;
     private ClassType currentClass = ClassType.NONE;
+    private int loopDepth = 0;
 
     public Resolver(Interpreter interpreter) {
         this.interpreter = interpreter;
@@ -118,7 +119,36 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
     @Override
     public Void visitWhileStatement(Statement.WhileStatement statement) {
         resolve(statement.getCondition());
+        this.loopDepth++;
         resolve(statement.getBody());
+        this.loopDepth--;
+        return null;
+    }
+
+    @Override
+    public Void visitForStatement(Statement.ForStatement statement) {
+        beginScope();
+        if (statement.getInitializer() != null) {
+            resolve(statement.getInitializer());
+        }
+
+        if (statement.getCondition() != null) {
+            resolve(statement.getCondition());
+        }
+
+        if (statement.getIncrement() != null) {
+            resolve(statement.getIncrement());
+        }
+
+        this.loopDepth++;
+        resolve(statement.getBody());
+        this.loopDepth--;
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitImportStatement(Statement.ImportStatement statement) {
         return null;
     }
 
@@ -166,7 +196,7 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
 
     @Override
     public Void visitBreakStatement(Statement.BreakStatement statement) {
-        if (this.currentFunction == FunctionType.NONE)
+        if (this.loopDepth == 0)
             throw new Interpreter.RuntimeError("Cannot break outside of a loop.");
 
         return null;
@@ -174,7 +204,7 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
 
     @Override
     public Void visitContinueStatement(Statement.ContinueStatement statement) {
-        if (this.currentFunction == FunctionType.NONE)
+        if (this.loopDepth == 0)
             throw new Interpreter.RuntimeError("Cannot continue outside of a loop.");
 
         return null;
@@ -240,7 +270,8 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
         if (this.currentFunction == FunctionType.NONE || this.currentClass == ClassType.NONE)
             throw new Interpreter.RuntimeError(expression.getKeyword(), "Cannot use 'this' outside of a class method.");
 
-        resolveLocalVariable(expression, expression.getKeyword());
+        // Keywords have no value, so 'this' is looked up by name
+        resolveLocalVariable(expression, "this");
         return null;
     }
 
@@ -386,8 +417,12 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
     }
 
     private void resolveLocalVariable(Expression expression, Token name) {
+        resolveLocalVariable(expression, (String) name.value());
+    }
+
+    private void resolveLocalVariable(Expression expression, String name) {
         for (int i = this.variableScopes.size() - 1; i >= 0; i--) {
-            if (this.variableScopes.get(i).containsKey((String) name.value())) {
+            if (this.variableScopes.get(i).containsKey(name)) {
                 this.interpreter.resolve(expression, this.variableScopes.size() - 1 - i);
                 return;
             }
@@ -405,7 +440,9 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
 
     private void resolveConstructor(Statement.ConstructorStatement statement) {
         FunctionType enclosingFunction = this.currentFunction;
+        int enclosingLoopDepth = this.loopDepth;
         this.currentFunction = FunctionType.CONSTRUCTOR;
+        this.loopDepth = 0;
 
         beginScope();
 
@@ -418,11 +455,14 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
         endScope();
 
         this.currentFunction = enclosingFunction;
+        this.loopDepth = enclosingLoopDepth;
     }
 
     private void resolveFunction(Statement.FunctionStatement statement, FunctionType type) {
         FunctionType enclosingFunction = this.currentFunction;
+        int enclosingLoopDepth = this.loopDepth;
         this.currentFunction = type;
+        this.loopDepth = 0;
 
         beginScope();
 
@@ -435,5 +475,6 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
         endScope();
 
         this.currentFunction = enclosingFunction;
+        this.loopDepth = enclosingLoopDepth;
     }
 }
@@ -114,7 +114,7 @@ public class Lexer {
             }
 
             if (longestMatch != null) {
-                this.reader.consume(longestMatch.length());
+                this.reader.consume(longestMatch.length() - 1);
 
                 return Optional.of(new Token(matchType, longestMatch, this.reader.getPos()));
             }
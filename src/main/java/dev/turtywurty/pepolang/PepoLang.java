@@ -1,51 +1,230 @@
 package dev.turtywurty.pepolang;
 
+import dev.turtywurty.pepolang.codeGeneration.CodeGenOptions;
+import dev.turtywurty.pepolang.codeGeneration.LLVMCodeGenerator;
+import dev.turtywurty.pepolang.codeGeneration.LLVMJit;
+import dev.turtywurty.pepolang.codeGeneration.OptimizationLevel;
+import dev.turtywurty.pepolang.codeGeneration.OutputFormat;
 import dev.turtywurty.pepolang.interpreter.Interpreter;
 import dev.turtywurty.pepolang.interpreter.Resolver;
 import dev.turtywurty.pepolang.lexer.Lexer;
-import dev.turtywurty.pepolang.lexer.Token;
+import dev.turtywurty.pepolang.module.Module;
+import dev.turtywurty.pepolang.module.ModuleException;
+import dev.turtywurty.pepolang.module.ModuleLoader;
 import dev.turtywurty.pepolang.parser.Parser;
 import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.AnalysisCache;
+import dev.turtywurty.pepolang.semanticAnalysis.ConstantFolder;
+import dev.turtywurty.pepolang.semanticAnalysis.DeadCodeEliminator;
+import dev.turtywurty.pepolang.semanticAnalysis.EscapeAnalyzer;
+import dev.turtywurty.pepolang.semanticAnalysis.ExecutionProfile;
+import dev.turtywurty.pepolang.semanticAnalysis.PurityAnalyzer;
 import dev.turtywurty.pepolang.semanticAnalysis.SemanticAnalyzer;
 import dev.turtywurty.pepolang.semanticAnalysis.SemanticException;
+import dev.turtywurty.pepolang.semanticAnalysis.TypeTable;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
+import java.util.*;
 
 public class PepoLang {
+    private static final String DEFAULT_SOURCE = "E:\\PepoLang\\src\\main\\resources\\main.pepolang";
+    private static final int MEMO_CAPACITY = 10_000;
+
     public static void main(String[] args) throws IOException {
-        String fullSrc = Files.readString(Path.of("E:\\PepoLang\\src\\main\\resources\\main.pepolang"));
-        var lexer = new Lexer(fullSrc);
-        List<Token> tokens = lexer.lex();
+        boolean stream = false;
+        boolean memoize = false;
+        boolean jit = false;
+        boolean timePasses = false;
+        boolean garbageCollected = false;
+        OptimizationLevel optimizationLevel = OptimizationLevel.O0;
+        int codegenThreads = 1;
+        Path cachePath = null;
+        Path nativeCachePath = null;
+        Path profilePath = null;
+        OutputFormat outputFormat = null;
+        Path outputPath = null;
+        String path = DEFAULT_SOURCE;
+        for (int index = 0; index < args.length; index++) {
+            String arg = args[index];
+            if (arg.equals("--stream")) {
+                stream = true;
+            } else if (arg.equals("--memoize")) {
+                memoize = true;
+            } else if (arg.equals("--jit")) {
+                jit = true;
+            } else if (arg.equals("--time-passes")) {
+                timePasses = true;
+            } else if (arg.equals("--gc")) {
+                garbageCollected = true;
+            } else if (OptimizationLevel.fromFlag(arg) != null) {
+                optimizationLevel = OptimizationLevel.fromFlag(arg);
+            } else if (arg.equals("--codegen-threads") && index + 1 < args.length) {
+                codegenThreads = Integer.parseInt(args[++index]);
+            } else if (arg.equals("--native-cache") && index + 1 < args.length) {
+                nativeCachePath = Path.of(args[++index]);
+            } else if (arg.equals("--profile") && index + 1 < args.length) {
+                profilePath = Path.of(args[++index]);
+            } else if (arg.equals("--cache") && index + 1 < args.length) {
+                cachePath = Path.of(args[++index]);
+            } else if (OutputFormat.fromFlag(arg) != null && index + 1 < args.length) {
+                outputFormat = OutputFormat.fromFlag(arg);
+                outputPath = Path.of(args[++index]);
+            } else {
+                path = arg;
+            }
+        }
 
-        var parser = new Parser(tokens);
-        List<Statement> statements = parser.parse();
+        if (stream) {
+            runStreaming(Path.of(path));
+            return;
+        }
 
-        if (parser.hadError())
+        AnalysisCache analysisCache = cachePath == null ? null : AnalysisCache.load(cachePath);
+
+        Module module;
+        try {
+            module = new ModuleLoader(analysisCache).load(Path.of(path));
+        } catch (ModuleException exception) {
+            printErrors(exception);
             return;
+        } finally {
+            if (analysisCache != null) {
+                analysisCache.save(cachePath);
+            }
+        }
+
+        //System.out.println(AstPrinter.print(module.statements()));
 
-        //System.out.println(AstPrinter.print(statements));
+        List<Module> executionOrder = ModuleLoader.executionOrder(module);
+        var types = new TypeTable();
+        for (Module toExecute : executionOrder) {
+            types.merge(toExecute.types());
+        }
 
-        var semanticAnalyzer = new SemanticAnalyzer(statements);
-        semanticAnalyzer.analyze();
+        List<List<Statement>> liveStatements = new DeadCodeEliminator().eliminateAll(executionOrder.stream().map(Module::statements).toList());
 
-        if (semanticAnalyzer.hadError()) {
-            for (SemanticException error : semanticAnalyzer.getErrors()) {
-                System.err.println("Error: " + error.getMessage() + " at pos: " + error.getToken().pos());
+        if (outputFormat != null || jit) {
+            List<Statement> program = liveStatements.stream().flatMap(List::stream).toList();
+            ExecutionProfile.Sites profile = profilePath == null ? null : ExecutionProfile.load(profilePath).lookUp(program);
+            if (jit) {
+                LLVMJit.run(program, types, new CodeGenOptions(optimizationLevel, timePasses, OutputFormat.LLVM_IR, 1, null,
+                        garbageCollected, profile));
+            } else {
+                LLVMCodeGenerator.generate(program, types, new CodeGenOptions(optimizationLevel, timePasses, outputFormat, codegenThreads,
+                        nativeCachePath, garbageCollected, profile), outputPath);
             }
 
             return;
         }
 
-        var interpreter = new Interpreter();
+        var interpreter = new Interpreter(types, new EscapeAnalyzer().analyzeAll(liveStatements));
+        if (memoize) {
+            interpreter.enableMemoization(new PurityAnalyzer().analyzeAll(liveStatements), MEMO_CAPACITY);
+        }
+
+        // Interpreted runs add to the profile, for the next native build to optimize with
+        ExecutionProfile profile = profilePath == null ? null : ExecutionProfile.load(profilePath);
+        if (profile != null) {
+            interpreter.enableProfiling(profile.record(liveStatements));
+        }
+
+        try {
+            for (List<Statement> statements : liveStatements) {
+                var resolver = new Resolver(interpreter);
+                resolver.resolve(statements);
+
+                interpreter.interpret(statements);
+            }
+        } finally {
+            if (profile != null) {
+                profile.save(profilePath);
+            }
+        }
+    }
+
+    /**
+     * Parses, analyzes and executes the program one top-level statement at a time, so output starts as soon as
+     * the first statement is complete. Execution stops at the first statement that fails to parse or analyze.
+     * <p>
+     * Imported modules are loaded in full when their import statement is reached, and any of them that have not
+     * already run are executed before the statement after the import.
+     */
+    private static void runStreaming(Path path) throws IOException {
+        var parser = new Parser(new Lexer(Files.readString(path)));
+        var semanticAnalyzer = new SemanticAnalyzer();
+        var constantFolder = new ConstantFolder(semanticAnalyzer.getTypes());
+        var moduleLoader = new ModuleLoader();
+        Path directory = path.toAbsolutePath().getParent();
+        Iterator<Statement> statements = parser.statements();
+
+        new Interpreter(semanticAnalyzer.getTypes()).interpret(new Iterator<>() {
+            private final Deque<Statement> pending = new ArrayDeque<>();
+            private final Set<String> executedModules = new HashSet<>();
+            private boolean failed = false;
+
+            @Override
+            public boolean hasNext() {
+                if (!this.pending.isEmpty())
+                    return true;
+
+                if (this.failed || !statements.hasNext() || parser.hadError())
+                    return false;
+
+                Statement statement = statements.next();
+                if (!semanticAnalyzer.analyze(statement)) {
+                    printErrors(semanticAnalyzer.getErrors());
+                    this.failed = true;
+                    return false;
+                }
+
+                if (statement instanceof Statement.ImportStatement importStatement && !load(importStatement))
+                    return false;
+
+                this.pending.add(constantFolder.fold(statement));
+                return true;
+            }
+
+            private boolean load(Statement.ImportStatement statement) {
+                Module module;
+                try {
+                    module = moduleLoader.load(directory.resolve(String.valueOf(statement.getPath().value())));
+                } catch (ModuleException exception) {
+                    printErrors(exception);
+                    this.failed = true;
+                    return false;
+                }
+
+                for (Module toExecute : ModuleLoader.executionOrder(module)) {
+                    if (this.executedModules.add(toExecute.key())) {
+                        semanticAnalyzer.getTypes().merge(toExecute.types());
+                        this.pending.addAll(toExecute.statements());
+                    }
+                }
 
-        var resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
+                semanticAnalyzer.importSymbols(module.exports());
+                return true;
+            }
 
-        interpreter.interpret(statements);
+            @Override
+            public Statement next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
 
-//        LLVMCodeGenerator.generate(statements, Path.of("output.ll"));
+                return this.pending.poll();
+            }
+        });
+    }
+
+    private static void printErrors(ModuleException exception) {
+        System.err.println("Error: " + exception.getMessage());
+        printErrors(exception.getErrors());
+    }
+
+    private static void printErrors(List<SemanticException> errors) {
+        for (SemanticException error : errors) {
+            System.err.println("Error: " + error.getMessage() + " at pos: " + error.getToken().pos());
+        }
     }
 }
@@ -0,0 +1,22 @@
+package dev.turtywurty.pepolang.module;
+
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.TypeTable;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.Symbol;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A source file that has been parsed, analyzed and folded, together with the modules it imports.
+ *
+ * @param path         the absolute path the module was loaded from
+ * @param key          identifies the module's content and the content of everything it imports
+ * @param statements   the folded statements of the module, ready to be resolved and interpreted
+ * @param dependencies the modules imported by this module, in import order
+ * @param exports      the top-level symbols declared by this module
+ * @param types        the types semantic analysis found for the expressions in the folded statements
+ */
+public record Module(Path path, String key, List<Statement> statements, List<Module> dependencies,
+                     List<Symbol> exports, TypeTable types) {
+}
@@ -0,0 +1,35 @@
+package dev.turtywurty.pepolang.module;
+
+import dev.turtywurty.pepolang.semanticAnalysis.SemanticException;
+
+import java.nio.file.Path;
+import java.util.List;
+
+public class ModuleException extends RuntimeException {
+    private final Path path;
+    private final List<SemanticException> errors;
+
+    public ModuleException(Path path, String message) {
+        this(path, message, List.of());
+    }
+
+    public ModuleException(Path path, String message, List<SemanticException> errors) {
+        super(message + " (" + path + ")");
+        this.path = path;
+        this.errors = List.copyOf(errors);
+    }
+
+    public ModuleException(Path path, String message, Throwable cause) {
+        super(message + " (" + path + ")", cause);
+        this.path = path;
+        this.errors = List.of();
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    public List<SemanticException> getErrors() {
+        return this.errors;
+    }
+}
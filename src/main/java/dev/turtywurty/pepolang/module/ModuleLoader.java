@@ -0,0 +1,243 @@
+package dev.turtywurty.pepolang.module;
+
+import dev.turtywurty.pepolang.lexer.Lexer;
+import dev.turtywurty.pepolang.parser.Parser;
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.AnalysisCache;
+import dev.turtywurty.pepolang.semanticAnalysis.ConstantFolder;
+import dev.turtywurty.pepolang.semanticAnalysis.SemanticAnalyzer;
+import dev.turtywurty.pepolang.semanticAnalysis.TypeTable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Loads a script together with everything it imports.
+ * <p>
+ * Loading happens in two phases. First the import graph is discovered: every file is lexed and parsed on the
+ * executor as soon as an import of it is seen, so independent modules are parsed in parallel. Then every module is
+ * analyzed and folded once all of its imports have been, again in parallel where the graph allows it.
+ * <p>
+ * Both phases are cached for the lifetime of the process. Parsed files are keyed by a hash of their content, and
+ * analyzed modules by a hash of their content and the keys of their imports, so an unchanged library is only
+ * processed once no matter how many scripts import it. An {@link AnalysisCache} can be given to also reuse the
+ * results of checking unchanged function bodies across processes.
+ */
+public class ModuleLoader {
+    private static final Map<String, ParsedSource> PARSED = new ConcurrentHashMap<>();
+    private static final Map<String, Module> ANALYZED = new ConcurrentHashMap<>();
+
+    private final Executor executor;
+    private final AnalysisCache analysisCache;
+    private final Map<Path, CompletableFuture<Source>> sources = new ConcurrentHashMap<>();
+
+    public ModuleLoader() {
+        this(ForkJoinPool.commonPool(), null);
+    }
+
+    public ModuleLoader(AnalysisCache analysisCache) {
+        this(ForkJoinPool.commonPool(), analysisCache);
+    }
+
+    public ModuleLoader(Executor executor, AnalysisCache analysisCache) {
+        this.executor = executor;
+        this.analysisCache = analysisCache;
+    }
+
+    /**
+     * Loads the module at the given path and every module it imports, directly or indirectly.
+     *
+     * @return the module at the given path
+     * @throws ModuleException if any module cannot be read, parsed or analyzed, or the imports form a cycle
+     */
+    public Module load(Path path) {
+        Path entry = path.toAbsolutePath().normalize();
+        discover(entry);
+
+        int known;
+        do {
+            known = this.sources.size();
+            await(CompletableFuture.allOf(this.sources.values().toArray(CompletableFuture[]::new)));
+        } while (known != this.sources.size());
+
+        Map<Path, Source> graph = new HashMap<>();
+        this.sources.forEach((modulePath, future) -> graph.put(modulePath, future.join()));
+        checkForCycles(entry, graph, new HashSet<>(), new ArrayDeque<>());
+
+        return await(analyze(entry, graph, new HashMap<>()));
+    }
+
+    /**
+     * @return the given module and everything it imports, each exactly once, with every module placed after the
+     * modules it imports
+     */
+    public static List<Module> executionOrder(Module module) {
+        Map<String, Module> order = new LinkedHashMap<>();
+        addInExecutionOrder(module, order);
+        return List.copyOf(order.values());
+    }
+
+    private static void addInExecutionOrder(Module module, Map<String, Module> order) {
+        if (order.containsKey(module.key()))
+            return;
+
+        for (Module dependency : module.dependencies()) {
+            addInExecutionOrder(dependency, order);
+        }
+
+        order.put(module.key(), module);
+    }
+
+    private void discover(Path path) {
+        // claimed before any work starts, since the work discovers imports and so updates the map itself
+        var future = new CompletableFuture<Source>();
+        if (this.sources.putIfAbsent(path, future) != null)
+            return;
+
+        CompletableFuture.supplyAsync(() -> read(path), this.executor)
+                .thenApply(source -> {
+                    source.imports().forEach(this::discover);
+                    return source;
+                })
+                .whenComplete((source, exception) -> {
+                    if (exception != null) {
+                        future.completeExceptionally(exception);
+                    } else {
+                        future.complete(source);
+                    }
+                });
+    }
+
+    private static Source read(Path path) {
+        String content;
+        try {
+            content = Files.readString(path);
+        } catch (IOException exception) {
+            throw new ModuleException(path, "Could not read module", exception);
+        }
+
+        String hash = hash(content);
+        ParsedSource parsed = PARSED.computeIfAbsent(hash, _ -> parse(path, content));
+
+        Path directory = path.getParent();
+        List<Path> imports = parsed.imports().stream()
+                .map(name -> directory.resolve(name).toAbsolutePath().normalize())
+                .distinct()
+                .toList();
+
+        return new Source(path, hash, parsed.statements(), imports);
+    }
+
+    private static ParsedSource parse(Path path, String content) {
+        var parser = new Parser(new Lexer(content).lex());
+        List<Statement> statements = parser.parse();
+        if (parser.hadError())
+            throw new ModuleException(path, "Module failed to parse");
+
+        List<String> imports = new ArrayList<>();
+        for (Statement statement : statements) {
+            if (statement instanceof Statement.ImportStatement importStatement) {
+                imports.add(String.valueOf(importStatement.getPath().value()));
+            }
+        }
+
+        return new ParsedSource(List.copyOf(statements), List.copyOf(imports));
+    }
+
+    private static void checkForCycles(Path path, Map<Path, Source> graph, Set<Path> visited, Deque<Path> stack) {
+        if (stack.contains(path)) {
+            List<Path> cycle = new ArrayList<>(stack.reversed());
+            cycle = cycle.subList(cycle.indexOf(path), cycle.size());
+            cycle.add(path);
+            throw new ModuleException(path, "Circular import: " + cycle.stream().map(Path::getFileName).toList());
+        }
+
+        if (!visited.add(path))
+            return;
+
+        stack.push(path);
+        for (Path dependency : graph.get(path).imports()) {
+            checkForCycles(dependency, graph, visited, stack);
+        }
+
+        stack.pop();
+    }
+
+    private CompletableFuture<Module> analyze(Path path, Map<Path, Source> graph, Map<Path, CompletableFuture<Module>> modules) {
+        CompletableFuture<Module> existing = modules.get(path);
+        if (existing != null)
+            return existing;
+
+        Source source = graph.get(path);
+        List<CompletableFuture<Module>> dependencies = new ArrayList<>();
+        for (Path dependency : source.imports()) {
+            dependencies.add(analyze(dependency, graph, modules));
+        }
+
+        CompletableFuture<Module> module = CompletableFuture
+                .allOf(dependencies.toArray(CompletableFuture[]::new))
+                .thenApplyAsync(_ -> analyze(source, dependencies.stream().map(CompletableFuture::join).toList()), this.executor);
+        modules.put(path, module);
+        return module;
+    }
+
+    private Module analyze(Source source, List<Module> dependencies) {
+        var keyBuilder = new StringBuilder(source.hash());
+        for (Module dependency : dependencies) {
+            keyBuilder.append('\n').append(dependency.key());
+        }
+
+        String key = hash(keyBuilder.toString());
+        Module cached = ANALYZED.get(key);
+        if (cached != null)
+            return cached;
+
+        var semanticAnalyzer = new SemanticAnalyzer(source.statements());
+        semanticAnalyzer.setCache(this.analysisCache);
+        for (Module dependency : dependencies) {
+            semanticAnalyzer.importSymbols(dependency.exports());
+        }
+
+        semanticAnalyzer.analyze();
+        if (semanticAnalyzer.hadError())
+            throw new ModuleException(source.path(), "Module failed semantic analysis", semanticAnalyzer.getErrors());
+
+        TypeTable types = semanticAnalyzer.getTypes();
+        List<Statement> statements = new ConstantFolder(types).fold(source.statements());
+        var module = new Module(source.path(), key, statements, dependencies, semanticAnalyzer.getExportedSymbols(), types);
+        Module existing = ANALYZED.putIfAbsent(key, module);
+        return existing != null ? existing : module;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof ModuleException moduleException)
+                throw moduleException;
+
+            throw exception;
+        }
+    }
+
+    private static String hash(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+    }
+
+    private record ParsedSource(List<Statement> statements, List<String> imports) {
+    }
+
+    private record Source(Path path, String hash, List<Statement> statements, List<Path> imports) {
+    }
+}
@@ -0,0 +1,421 @@
+package dev.turtywurty.pepolang.parser;
+
+import dev.turtywurty.pepolang.lexer.Token;
+import dev.turtywurty.pepolang.lexer.TokenType;
+
+import java.io.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A flat representation of the AST where every node lives in a set of parallel {@code int[]} arrays.
+ * <p>
+ * Each node has a {@link AstKind}, the index of its first child, the index of its next sibling and the index of
+ * its primary token. Fields of the generated {@link Expression} and {@link Statement} classes become children in
+ * declaration order, so a node can be decoded back without any extra bookkeeping.
+ * <p>
+ * Use {@link AstArenaEncoder} to build an arena from a regular AST and {@link AstArenaDecoder} to turn it back
+ * into one. {@link Node} provides a thin view for walking the arena directly, and {@link AstNodeVisitor} dispatches on
+ * the kind of a node without decoding it.
+ */
+public final class AstArena {
+    public static final int NO_NODE = -1;
+
+    private static final int MAGIC = 0x5045504F; // "PEPO"
+    private static final int VERSION = 2;
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final AstKind[] KINDS = AstKind.values();
+
+    private int[] kinds;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int[] tokenIndices;
+    private int size;
+
+    private final List<Token> tokens = new ArrayList<>();
+    private final List<Object> values = new ArrayList<>();
+    private final List<Integer> roots = new ArrayList<>();
+
+    public AstArena() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public AstArena(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.kinds = new int[capacity];
+        this.firstChildren = new int[capacity];
+        this.nextSiblings = new int[capacity];
+        this.tokenIndices = new int[capacity];
+    }
+
+    public static AstArena of(List<Statement> statements) {
+        var arena = new AstArena();
+        var encoder = new AstArenaEncoder(arena);
+        for (Statement statement : statements) {
+            arena.roots.add(encoder.encode(statement));
+        }
+
+        return arena;
+    }
+
+    public List<Statement> toStatements() {
+        var decoder = new AstArenaDecoder(this);
+        List<Statement> statements = new ArrayList<>(this.roots.size());
+        for (int root : this.roots) {
+            statements.add(decoder.decodeStatement(root));
+        }
+
+        return statements;
+    }
+
+    public int addNode(AstKind kind, int tokenNode, int... children) {
+        int node = allocate(kind, tokenNode == NO_NODE ? NO_NODE : this.tokenIndices[tokenNode]);
+        if (children.length > 0) {
+            this.firstChildren[node] = children[0];
+            for (int index = 0; index < children.length - 1; index++) {
+                this.nextSiblings[children[index]] = children[index + 1];
+            }
+        }
+
+        return node;
+    }
+
+    public int addNone() {
+        return allocate(AstKind.NONE, NO_NODE);
+    }
+
+    public int addToken(Token token) {
+        if (token == null)
+            return addNone();
+
+        this.tokens.add(token);
+        return allocate(AstKind.TOKEN, this.tokens.size() - 1);
+    }
+
+    public int addValue(Object value) {
+        this.values.add(value);
+        return allocate(AstKind.VALUE, this.values.size() - 1);
+    }
+
+    public int addParameter(Parameter parameter) {
+        if (parameter == null)
+            return addNone();
+
+        int name = addToken(parameter.name());
+        int type = addToken(parameter.type());
+        return addNode(AstKind.PARAMETER, name, name, type);
+    }
+
+    public int addList(int[] children) {
+        return addNode(AstKind.LIST, NO_NODE, children);
+    }
+
+    public void addRoot(int node) {
+        this.roots.add(node);
+    }
+
+    public List<Integer> getRoots() {
+        return this.roots;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public AstKind kind(int node) {
+        return KINDS[this.kinds[node]];
+    }
+
+    public int firstChild(int node) {
+        return this.firstChildren[node];
+    }
+
+    public int nextSibling(int node) {
+        return this.nextSiblings[node];
+    }
+
+    public Token token(int node) {
+        int index = this.tokenIndices[node];
+        return index == NO_NODE || kind(node) == AstKind.VALUE ? null : this.tokens.get(index);
+    }
+
+    public Object value(int node) {
+        if (kind(node) != AstKind.VALUE)
+            throw new IllegalArgumentException("Node " + node + " is not a value node!");
+
+        return this.values.get(this.tokenIndices[node]);
+    }
+
+    public int childCount(int node) {
+        int count = 0;
+        for (int child = firstChild(node); child != NO_NODE; child = nextSibling(child)) {
+            count++;
+        }
+
+        return count;
+    }
+
+    public Node node(int index) {
+        return new Node(this, index);
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+
+        output.writeInt(this.size);
+        for (int index = 0; index < this.size; index++) {
+            output.writeByte(this.kinds[index]);
+            output.writeInt(this.firstChildren[index]);
+            output.writeInt(this.nextSiblings[index]);
+            output.writeInt(this.tokenIndices[index]);
+        }
+
+        output.writeInt(this.tokens.size());
+        for (Token token : this.tokens) {
+            output.writeShort(token.type().ordinal());
+            output.writeInt(token.pos());
+            writeValue(output, token.value());
+        }
+
+        output.writeInt(this.values.size());
+        for (Object value : this.values) {
+            writeValue(output, value);
+        }
+
+        output.writeInt(this.roots.size());
+        for (int root : this.roots) {
+            output.writeInt(root);
+        }
+    }
+
+    /**
+     * @return a SHA-256 hash of the arena's nodes, token types and values. Token positions are left out, so the
+     * same code produces the same fingerprint wherever it appears in a file.
+     */
+    public String fingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+
+        try (var output = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+            output.writeInt(this.size);
+            for (int index = 0; index < this.size; index++) {
+                output.writeByte(this.kinds[index]);
+                output.writeInt(this.firstChildren[index]);
+                output.writeInt(this.nextSiblings[index]);
+                output.writeInt(this.tokenIndices[index]);
+            }
+
+            for (Token token : this.tokens) {
+                output.writeShort(token.type().ordinal());
+                writeValue(output, token.value());
+            }
+
+            for (Object value : this.values) {
+                writeValue(output, value);
+            }
+
+            for (int root : this.roots) {
+                output.writeInt(root);
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static AstArena read(DataInput input) throws IOException {
+        if (input.readInt() != MAGIC)
+            throw new IOException("Not a PepoLang AST arena!");
+
+        int version = input.readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported AST arena version: " + version);
+
+        int size = input.readInt();
+        var arena = new AstArena(size);
+        for (int index = 0; index < size; index++) {
+            arena.kinds[index] = input.readByte();
+            arena.firstChildren[index] = input.readInt();
+            arena.nextSiblings[index] = input.readInt();
+            arena.tokenIndices[index] = input.readInt();
+        }
+
+        arena.size = size;
+
+        int tokenCount = input.readInt();
+        TokenType[] tokenTypes = TokenType.values();
+        for (int index = 0; index < tokenCount; index++) {
+            TokenType type = tokenTypes[input.readShort()];
+            int pos = input.readInt();
+            arena.tokens.add(new Token(type, readValue(input), pos));
+        }
+
+        int valueCount = input.readInt();
+        for (int index = 0; index < valueCount; index++) {
+            arena.values.add(readValue(input));
+        }
+
+        int rootCount = input.readInt();
+        for (int index = 0; index < rootCount; index++) {
+            arena.roots.add(input.readInt());
+        }
+
+        return arena;
+    }
+
+    private int allocate(AstKind kind, int tokenIndex) {
+        if (this.size == this.kinds.length) {
+            int capacity = this.kinds.length * 2;
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.firstChildren = Arrays.copyOf(this.firstChildren, capacity);
+            this.nextSiblings = Arrays.copyOf(this.nextSiblings, capacity);
+            this.tokenIndices = Arrays.copyOf(this.tokenIndices, capacity);
+        }
+
+        int node = this.size++;
+        this.kinds[node] = kind.ordinal();
+        this.firstChildren[node] = NO_NODE;
+        this.nextSiblings[node] = NO_NODE;
+        this.tokenIndices[node] = tokenIndex;
+        return node;
+    }
+
+    private static void writeValue(DataOutput output, Object value) throws IOException {
+        switch (value) {
+            case null -> output.writeByte(0);
+            case String str -> {
+                output.writeByte(1);
+                output.writeUTF(str);
+            }
+            case Integer integer -> {
+                output.writeByte(2);
+                output.writeInt(integer);
+            }
+            case Long longValue -> {
+                output.writeByte(3);
+                output.writeLong(longValue);
+            }
+            case Float floatValue -> {
+                output.writeByte(4);
+                output.writeFloat(floatValue);
+            }
+            case Double doubleValue -> {
+                output.writeByte(5);
+                output.writeDouble(doubleValue);
+            }
+            case Boolean bool -> {
+                output.writeByte(6);
+                output.writeBoolean(bool);
+            }
+            case Character character -> {
+                output.writeByte(7);
+                output.writeChar(character);
+            }
+            case Short shortValue -> {
+                output.writeByte(8);
+                output.writeShort(shortValue);
+            }
+            case Byte byteValue -> {
+                output.writeByte(9);
+                output.writeByte(byteValue);
+            }
+            default -> throw new IOException("Cannot serialize value of type: " + value.getClass());
+        }
+    }
+
+    private static Object readValue(DataInput input) throws IOException {
+        byte tag = input.readByte();
+        return switch (tag) {
+            case 0 -> null;
+            case 1 -> input.readUTF();
+            case 2 -> input.readInt();
+            case 3 -> input.readLong();
+            case 4 -> input.readFloat();
+            case 5 -> input.readDouble();
+            case 6 -> input.readBoolean();
+            case 7 -> input.readChar();
+            case 8 -> input.readShort();
+            case 9 -> input.readByte();
+            default -> throw new IOException("Unknown value tag: " + tag);
+        };
+    }
+
+    /**
+     * A thin, allocation-cheap view of a single node in an {@link AstArena}.
+     */
+    public record Node(AstArena arena, int index) implements Iterable<Node> {
+        public AstKind kind() {
+            return this.arena.kind(this.index);
+        }
+
+        public Token token() {
+            return this.arena.token(this.index);
+        }
+
+        public Object value() {
+            return this.arena.value(this.index);
+        }
+
+        public boolean isNone() {
+            return kind() == AstKind.NONE;
+        }
+
+        public Node child(int position) {
+            int child = this.arena.firstChild(this.index);
+            for (int current = 0; current < position && child != NO_NODE; current++) {
+                child = this.arena.nextSibling(child);
+            }
+
+            if (child == NO_NODE)
+                throw new IndexOutOfBoundsException("Node " + this.index + " has no child at position " + position);
+
+            return new Node(this.arena, child);
+        }
+
+        public int childCount() {
+            return this.arena.childCount(this.index);
+        }
+
+        public <R> R accept(AstNodeVisitor<R> visitor) {
+            return visitor.visit(this);
+        }
+
+        public Expression toExpression() {
+            return new AstArenaDecoder(this.arena).decodeExpression(this.index);
+        }
+
+        public Statement toStatement() {
+            return new AstArenaDecoder(this.arena).decodeStatement(this.index);
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            return new Iterator<>() {
+                private int next = Node.this.arena.firstChild(Node.this.index);
+
+                @Override
+                public boolean hasNext() {
+                    return this.next != NO_NODE;
+                }
+
+                @Override
+                public Node next() {
+                    if (this.next == NO_NODE)
+                        throw new NoSuchElementException();
+
+                    var node = new Node(Node.this.arena, this.next);
+                    this.next = Node.this.arena.nextSibling(this.next);
+                    return node;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,285 @@
+// This file is automatically generated. Do not modify.
+package dev.turtywurty.pepolang.parser;
+
+import dev.turtywurty.pepolang.JavaGenerated;
+import dev.turtywurty.pepolang.lexer.Token;
+import java.util.ArrayList;
+import java.util.List;
+
+@JavaGenerated
+public class AstArenaDecoder {
+    private final AstArena arena;
+
+    public AstArenaDecoder(AstArena arena) {
+        this.arena = arena;
+    }
+
+    public Expression decodeExpression(int node) {
+        return switch (this.arena.kind(node)) {
+            case NONE -> null;
+            case ASSIGN -> {
+                int child = this.arena.firstChild(node);
+                Token name = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Expression value = decodeExpression(child);
+                yield new Expression.Assign(name, value);
+            }
+            case BINARY -> {
+                int child = this.arena.firstChild(node);
+                Expression left = decodeExpression(child);
+                child = this.arena.nextSibling(child);
+                Token operator = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Expression right = decodeExpression(child);
+                yield new Expression.Binary(left, operator, right);
+            }
+            case CALL -> {
+                int child = this.arena.firstChild(node);
+                Expression callee = decodeExpression(child);
+                child = this.arena.nextSibling(child);
+                Token paren = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                List<Expression> arguments = decodeExpressions(child);
+                yield new Expression.Call(callee, paren, arguments);
+            }
+            case NEW -> {
+                int child = this.arena.firstChild(node);
+                Token keyword = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Expression call = decodeExpression(child);
+                yield new Expression.New(keyword, call);
+            }
+            case GET -> {
+                int child = this.arena.firstChild(node);
+                Expression object = decodeExpression(child);
+                child = this.arena.nextSibling(child);
+                Token name = this.arena.token(child);
+                yield new Expression.Get(object, name);
+            }
+            case SET -> {
+                int child = this.arena.firstChild(node);
+                Expression object = decodeExpression(child);
+                child = this.arena.nextSibling(child);
+                Token name = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Expression value = decodeExpression(child);
+                yield new Expression.Set(object, name, value);
+            }
+            case THIS -> {
+                int child = this.arena.firstChild(node);
+                Token keyword = this.arena.token(child);
+                yield new Expression.This(keyword);
+            }
+            case SUPER -> {
+                int child = this.arena.firstChild(node);
+                Token keyword = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Token method = this.arena.token(child);
+                yield new Expression.Super(keyword, method);
+            }
+            case GROUPING -> {
+                int child = this.arena.firstChild(node);
+                Expression expression = decodeExpression(child);
+                yield new Expression.Grouping(expression);
+            }
+            case LITERAL -> {
+                int child = this.arena.firstChild(node);
+                Object value = this.arena.value(child);
+                yield new Expression.Literal(value);
+            }
+            case LOGICAL -> {
+                int child = this.arena.firstChild(node);
+                Expression left = decodeExpression(child);
+                child = this.arena.nextSibling(child);
+                Token operator = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Expression right = decodeExpression(child);
+                yield new Expression.Logical(left, operator, right);
+            }
+            case UNARY -> {
+                int child = this.arena.firstChild(node);
+                Token operator = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Expression right = decodeExpression(child);
+                yield new Expression.Unary(operator, right);
+            }
+            case VARIABLE -> {
+                int child = this.arena.firstChild(node);
+                Token name = this.arena.token(child);
+                yield new Expression.Variable(name);
+            }
+            case FUNCTION -> {
+                int child = this.arena.firstChild(node);
+                Token name = this.arena.token(child);
+                yield new Expression.Function(name);
+            }
+            case EXTENDS -> {
+                int child = this.arena.firstChild(node);
+                Token name = this.arena.token(child);
+                yield new Expression.Extends(name);
+            }
+            default -> throw new IllegalArgumentException("Node " + node + " is not a expression: " + this.arena.kind(node));
+        };
+    }
+
+    public Statement decodeStatement(int node) {
+        return switch (this.arena.kind(node)) {
+            case NONE -> null;
+            case BLOCK_STATEMENT -> {
+                int child = this.arena.firstChild(node);
+                List<Statement> statements = decodeStatements(child);
+                yield new Statement.BlockStatement(statements);
+            }
+            case FUNCTION_STATEMENT -> {
+                int child = this.arena.firstChild(node);
+                Token name = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Token returnType = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                List<Parameter> parameters = decodeParameters(child);
+                child = this.arena.nextSibling(child);
+                List<Statement> body = decodeStatements(child);
+                yield new Statement.FunctionStatement(name, returnType, parameters, body);
+            }
+            case VARIABLE_STATEMENT -> {
+                int child = this.arena.firstChild(node);
+                Token type = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Token name = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Expression initializer = decodeExpression(child);
+                yield new Statement.VariableStatement(type, name, initializer);
+            }
+            case CLASS_STATEMENT -> {
+                int child = this.arena.firstChild(node);
+                Token name = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Expression.Extends superclass = (Expression.Extends) decodeExpression(child);
+                child = this.arena.nextSibling(child);
+                List<Statement.ConstructorStatement> constructors = decodeStatements(child);
+                child = this.arena.nextSibling(child);
+                List<Statement.FunctionStatement> methods = decodeStatements(child);
+                child = this.arena.nextSibling(child);
+                List<Statement.VariableStatement> fields = decodeStatements(child);
+                child = this.arena.nextSibling(child);
+                List<Statement.FunctionStatement> staticMethods = decodeStatements(child);
+                child = this.arena.nextSibling(child);
+                List<Statement.VariableStatement> staticFields = decodeStatements(child);
+                yield new Statement.ClassStatement(name, superclass, constructors, methods, fields, staticMethods, staticFields);
+            }
+            case CONSTRUCTOR_STATEMENT -> {
+                int child = this.arena.firstChild(node);
+                Token name = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                List<Parameter> parameters = decodeParameters(child);
+                child = this.arena.nextSibling(child);
+                List<Statement> body = decodeStatements(child);
+                yield new Statement.ConstructorStatement(name, parameters, body);
+            }
+            case EXPRESSION_STATEMENT -> {
+                int child = this.arena.firstChild(node);
+                Expression expression = decodeExpression(child);
+                yield new Statement.ExpressionStatement(expression);
+            }
+            case IF_STATEMENT -> {
+                int child = this.arena.firstChild(node);
+                Expression condition = decodeExpression(child);
+                child = this.arena.nextSibling(child);
+                Statement thenBranch = decodeStatement(child);
+                child = this.arena.nextSibling(child);
+                Statement elseBranch = decodeStatement(child);
+                yield new Statement.IfStatement(condition, thenBranch, elseBranch);
+            }
+            case ASSIGN_STATEMENT -> {
+                int child = this.arena.firstChild(node);
+                Token name = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Expression value = decodeExpression(child);
+                yield new Statement.AssignStatement(name, value);
+            }
+            case WHILE_STATEMENT -> {
+                int child = this.arena.firstChild(node);
+                Expression condition = decodeExpression(child);
+                child = this.arena.nextSibling(child);
+                Statement body = decodeStatement(child);
+                yield new Statement.WhileStatement(condition, body);
+            }
+            case FOR_STATEMENT -> {
+                int child = this.arena.firstChild(node);
+                Statement initializer = decodeStatement(child);
+                child = this.arena.nextSibling(child);
+                Expression condition = decodeExpression(child);
+                child = this.arena.nextSibling(child);
+                Expression increment = decodeExpression(child);
+                child = this.arena.nextSibling(child);
+                Statement body = decodeStatement(child);
+                yield new Statement.ForStatement(initializer, condition, increment, body);
+            }
+            case BREAK_STATEMENT -> {
+                yield new Statement.BreakStatement();
+            }
+            case CONTINUE_STATEMENT -> {
+                yield new Statement.ContinueStatement();
+            }
+            case RETURN_STATEMENT -> {
+                int child = this.arena.firstChild(node);
+                Token keyword = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Expression value = decodeExpression(child);
+                yield new Statement.ReturnStatement(keyword, value);
+            }
+            case IMPORT_STATEMENT -> {
+                int child = this.arena.firstChild(node);
+                Token keyword = this.arena.token(child);
+                child = this.arena.nextSibling(child);
+                Token path = this.arena.token(child);
+                yield new Statement.ImportStatement(keyword, path);
+            }
+            default -> throw new IllegalArgumentException("Node " + node + " is not a statement: " + this.arena.kind(node));
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Expression> List<T> decodeExpressions(int node) {
+        if (this.arena.kind(node) == AstKind.NONE) {
+            return null;
+        }
+        List<T> elements = new ArrayList<>(this.arena.childCount(node));
+        for (int child = this.arena.firstChild(node); child != AstArena.NO_NODE; child = this.arena.nextSibling(child)) {
+            elements.add((T) decodeExpression(child));
+        }
+        return elements;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Statement> List<T> decodeStatements(int node) {
+        if (this.arena.kind(node) == AstKind.NONE) {
+            return null;
+        }
+        List<T> elements = new ArrayList<>(this.arena.childCount(node));
+        for (int child = this.arena.firstChild(node); child != AstArena.NO_NODE; child = this.arena.nextSibling(child)) {
+            elements.add((T) decodeStatement(child));
+        }
+        return elements;
+    }
+
+    private List<Parameter> decodeParameters(int node) {
+        if (this.arena.kind(node) == AstKind.NONE) {
+            return null;
+        }
+        List<Parameter> parameters = new ArrayList<>(this.arena.childCount(node));
+        for (int child = this.arena.firstChild(node); child != AstArena.NO_NODE; child = this.arena.nextSibling(child)) {
+            parameters.add(decodeParameter(child));
+        }
+        return parameters;
+    }
+
+    private Parameter decodeParameter(int node) {
+        if (this.arena.kind(node) == AstKind.NONE) {
+            return null;
+        }
+        int name = this.arena.firstChild(node);
+        int type = this.arena.nextSibling(name);
+        return new Parameter(this.arena.token(name), this.arena.token(type));
+    }
+}
@@ -0,0 +1,268 @@
+// This file is automatically generated. Do not modify.
+package dev.turtywurty.pepolang.parser;
+
+import dev.turtywurty.pepolang.JavaGenerated;
+import java.util.List;
+
+@JavaGenerated
+public class AstArenaEncoder implements ExpressionVisitor<Integer>, StatementVisitor<Integer> {
+    private final AstArena arena;
+
+    public AstArenaEncoder(AstArena arena) {
+        this.arena = arena;
+    }
+
+    public int encode(Expression expression) {
+        if (expression == null) {
+            return this.arena.addNone();
+        }
+        return expression.accept(this);
+    }
+
+    public int encode(Statement statement) {
+        if (statement == null) {
+            return this.arena.addNone();
+        }
+        return statement.accept(this);
+    }
+
+    private int encodeExpressions(List<? extends Expression> elements) {
+        if (elements == null) {
+            return this.arena.addNone();
+        }
+        int[] children = new int[elements.size()];
+        for (int index = 0; index < children.length; index++) {
+            children[index] = encode(elements.get(index));
+        }
+        return this.arena.addList(children);
+    }
+
+    private int encodeStatements(List<? extends Statement> elements) {
+        if (elements == null) {
+            return this.arena.addNone();
+        }
+        int[] children = new int[elements.size()];
+        for (int index = 0; index < children.length; index++) {
+            children[index] = encode(elements.get(index));
+        }
+        return this.arena.addList(children);
+    }
+
+    private int encodeParameters(List<Parameter> elements) {
+        if (elements == null) {
+            return this.arena.addNone();
+        }
+        int[] children = new int[elements.size()];
+        for (int index = 0; index < children.length; index++) {
+            children[index] = this.arena.addParameter(elements.get(index));
+        }
+        return this.arena.addList(children);
+    }
+
+    @Override
+    public Integer visitAssign(Expression.Assign expression) {
+        int nameNode = this.arena.addToken(expression.getName());
+        int valueNode = encode(expression.getValue());
+        return this.arena.addNode(AstKind.ASSIGN, nameNode, nameNode, valueNode);
+    }
+
+    @Override
+    public Integer visitBinary(Expression.Binary expression) {
+        int leftNode = encode(expression.getLeft());
+        int operatorNode = this.arena.addToken(expression.getOperator());
+        int rightNode = encode(expression.getRight());
+        return this.arena.addNode(AstKind.BINARY, operatorNode, leftNode, operatorNode, rightNode);
+    }
+
+    @Override
+    public Integer visitCall(Expression.Call expression) {
+        int calleeNode = encode(expression.getCallee());
+        int parenNode = this.arena.addToken(expression.getParen());
+        int argumentsNode = encodeExpressions(expression.getArguments());
+        return this.arena.addNode(AstKind.CALL, parenNode, calleeNode, parenNode, argumentsNode);
+    }
+
+    @Override
+    public Integer visitNew(Expression.New expression) {
+        int keywordNode = this.arena.addToken(expression.getKeyword());
+        int callNode = encode(expression.getCall());
+        return this.arena.addNode(AstKind.NEW, keywordNode, keywordNode, callNode);
+    }
+
+    @Override
+    public Integer visitGet(Expression.Get expression) {
+        int objectNode = encode(expression.getObject());
+        int nameNode = this.arena.addToken(expression.getName());
+        return this.arena.addNode(AstKind.GET, nameNode, objectNode, nameNode);
+    }
+
+    @Override
+    public Integer visitSet(Expression.Set expression) {
+        int objectNode = encode(expression.getObject());
+        int nameNode = this.arena.addToken(expression.getName());
+        int valueNode = encode(expression.getValue());
+        return this.arena.addNode(AstKind.SET, nameNode, objectNode, nameNode, valueNode);
+    }
+
+    @Override
+    public Integer visitThis(Expression.This expression) {
+        int keywordNode = this.arena.addToken(expression.getKeyword());
+        return this.arena.addNode(AstKind.THIS, keywordNode, keywordNode);
+    }
+
+    @Override
+    public Integer visitSuper(Expression.Super expression) {
+        int keywordNode = this.arena.addToken(expression.getKeyword());
+        int methodNode = this.arena.addToken(expression.getMethod());
+        return this.arena.addNode(AstKind.SUPER, keywordNode, keywordNode, methodNode);
+    }
+
+    @Override
+    public Integer visitGrouping(Expression.Grouping expression) {
+        int expressionNode = encode(expression.getExpression());
+        return this.arena.addNode(AstKind.GROUPING, AstArena.NO_NODE, expressionNode);
+    }
+
+    @Override
+    public Integer visitLiteral(Expression.Literal expression) {
+        int valueNode = this.arena.addValue(expression.getValue());
+        return this.arena.addNode(AstKind.LITERAL, AstArena.NO_NODE, valueNode);
+    }
+
+    @Override
+    public Integer visitLogical(Expression.Logical expression) {
+        int leftNode = encode(expression.getLeft());
+        int operatorNode = this.arena.addToken(expression.getOperator());
+        int rightNode = encode(expression.getRight());
+        return this.arena.addNode(AstKind.LOGICAL, operatorNode, leftNode, operatorNode, rightNode);
+    }
+
+    @Override
+    public Integer visitUnary(Expression.Unary expression) {
+        int operatorNode = this.arena.addToken(expression.getOperator());
+        int rightNode = encode(expression.getRight());
+        return this.arena.addNode(AstKind.UNARY, operatorNode, operatorNode, rightNode);
+    }
+
+    @Override
+    public Integer visitVariable(Expression.Variable expression) {
+        int nameNode = this.arena.addToken(expression.getName());
+        return this.arena.addNode(AstKind.VARIABLE, nameNode, nameNode);
+    }
+
+    @Override
+    public Integer visitFunction(Expression.Function expression) {
+        int nameNode = this.arena.addToken(expression.getName());
+        return this.arena.addNode(AstKind.FUNCTION, nameNode, nameNode);
+    }
+
+    @Override
+    public Integer visitExtends(Expression.Extends expression) {
+        int nameNode = this.arena.addToken(expression.getName());
+        return this.arena.addNode(AstKind.EXTENDS, nameNode, nameNode);
+    }
+
+    @Override
+    public Integer visitBlockStatement(Statement.BlockStatement statement) {
+        int statementsNode = encodeStatements(statement.getStatements());
+        return this.arena.addNode(AstKind.BLOCK_STATEMENT, AstArena.NO_NODE, statementsNode);
+    }
+
+    @Override
+    public Integer visitFunctionStatement(Statement.FunctionStatement statement) {
+        int nameNode = this.arena.addToken(statement.getName());
+        int returnTypeNode = this.arena.addToken(statement.getReturnType());
+        int parametersNode = encodeParameters(statement.getParameters());
+        int bodyNode = encodeStatements(statement.getBody());
+        return this.arena.addNode(AstKind.FUNCTION_STATEMENT, nameNode, nameNode, returnTypeNode, parametersNode, bodyNode);
+    }
+
+    @Override
+    public Integer visitVariableStatement(Statement.VariableStatement statement) {
+        int typeNode = this.arena.addToken(statement.getType());
+        int nameNode = this.arena.addToken(statement.getName());
+        int initializerNode = encode(statement.getInitializer());
+        return this.arena.addNode(AstKind.VARIABLE_STATEMENT, typeNode, typeNode, nameNode, initializerNode);
+    }
+
+    @Override
+    public Integer visitClassStatement(Statement.ClassStatement statement) {
+        int nameNode = this.arena.addToken(statement.getName());
+        int superclassNode = encode(statement.getSuperclass());
+        int constructorsNode = encodeStatements(statement.getConstructors());
+        int methodsNode = encodeStatements(statement.getMethods());
+        int fieldsNode = encodeStatements(statement.getFields());
+        int staticMethodsNode = encodeStatements(statement.getStaticMethods());
+        int staticFieldsNode = encodeStatements(statement.getStaticFields());
+        return this.arena.addNode(AstKind.CLASS_STATEMENT, nameNode, nameNode, superclassNode, constructorsNode, methodsNode, fieldsNode, staticMethodsNode, staticFieldsNode);
+    }
+
+    @Override
+    public Integer visitConstructorStatement(Statement.ConstructorStatement statement) {
+        int nameNode = this.arena.addToken(statement.getName());
+        int parametersNode = encodeParameters(statement.getParameters());
+        int bodyNode = encodeStatements(statement.getBody());
+        return this.arena.addNode(AstKind.CONSTRUCTOR_STATEMENT, nameNode, nameNode, parametersNode, bodyNode);
+    }
+
+    @Override
+    public Integer visitExpressionStatement(Statement.ExpressionStatement statement) {
+        int expressionNode = encode(statement.getExpression());
+        return this.arena.addNode(AstKind.EXPRESSION_STATEMENT, AstArena.NO_NODE, expressionNode);
+    }
+
+    @Override
+    public Integer visitIfStatement(Statement.IfStatement statement) {
+        int conditionNode = encode(statement.getCondition());
+        int thenBranchNode = encode(statement.getThenBranch());
+        int elseBranchNode = encode(statement.getElseBranch());
+        return this.arena.addNode(AstKind.IF_STATEMENT, AstArena.NO_NODE, conditionNode, thenBranchNode, elseBranchNode);
+    }
+
+    @Override
+    public Integer visitAssignStatement(Statement.AssignStatement statement) {
+        int nameNode = this.arena.addToken(statement.getName());
+        int valueNode = encode(statement.getValue());
+        return this.arena.addNode(AstKind.ASSIGN_STATEMENT, nameNode, nameNode, valueNode);
+    }
+
+    @Override
+    public Integer visitWhileStatement(Statement.WhileStatement statement) {
+        int conditionNode = encode(statement.getCondition());
+        int bodyNode = encode(statement.getBody());
+        return this.arena.addNode(AstKind.WHILE_STATEMENT, AstArena.NO_NODE, conditionNode, bodyNode);
+    }
+
+    @Override
+    public Integer visitForStatement(Statement.ForStatement statement) {
+        int initializerNode = encode(statement.getInitializer());
+        int conditionNode = encode(statement.getCondition());
+        int incrementNode = encode(statement.getIncrement());
+        int bodyNode = encode(statement.getBody());
+        return this.arena.addNode(AstKind.FOR_STATEMENT, AstArena.NO_NODE, initializerNode, conditionNode, incrementNode, bodyNode);
+    }
+
+    @Override
+    public Integer visitBreakStatement(Statement.BreakStatement statement) {
+        return this.arena.addNode(AstKind.BREAK_STATEMENT, AstArena.NO_NODE);
+    }
+
+    @Override
+    public Integer visitContinueStatement(Statement.ContinueStatement statement) {
+        return this.arena.addNode(AstKind.CONTINUE_STATEMENT, AstArena.NO_NODE);
+    }
+
+    @Override
+    public Integer visitReturnStatement(Statement.ReturnStatement statement) {
+        int keywordNode = this.arena.addToken(statement.getKeyword());
+        int valueNode = encode(statement.getValue());
+        return this.arena.addNode(AstKind.RETURN_STATEMENT, keywordNode, keywordNode, valueNode);
+    }
+
+    @Override
+    public Integer visitImportStatement(Statement.ImportStatement statement) {
+        int keywordNode = this.arena.addToken(statement.getKeyword());
+        int pathNode = this.arena.addToken(statement.getPath());
+        return this.arena.addNode(AstKind.IMPORT_STATEMENT, keywordNode, keywordNode, pathNode);
+    }
+}
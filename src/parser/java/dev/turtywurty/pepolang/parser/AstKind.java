@@ -0,0 +1,75 @@
+// This file is automatically generated. Do not modify.
+package dev.turtywurty.pepolang.parser;
+
+import dev.turtywurty.pepolang.JavaGenerated;
+
+@JavaGenerated
+public enum AstKind {
+    NONE,
+
+    TOKEN,
+
+    VALUE,
+
+    PARAMETER,
+
+    LIST,
+
+    ASSIGN,
+
+    BINARY,
+
+    CALL,
+
+    NEW,
+
+    GET,
+
+    SET,
+
+    THIS,
+
+    SUPER,
+
+    GROUPING,
+
+    LITERAL,
+
+    LOGICAL,
+
+    UNARY,
+
+    VARIABLE,
+
+    FUNCTION,
+
+    EXTENDS,
+
+    BLOCK_STATEMENT,
+
+    FUNCTION_STATEMENT,
+
+    VARIABLE_STATEMENT,
+
+    CLASS_STATEMENT,
+
+    CONSTRUCTOR_STATEMENT,
+
+    EXPRESSION_STATEMENT,
+
+    IF_STATEMENT,
+
+    ASSIGN_STATEMENT,
+
+    WHILE_STATEMENT,
+
+    FOR_STATEMENT,
+
+    BREAK_STATEMENT,
+
+    CONTINUE_STATEMENT,
+
+    RETURN_STATEMENT,
+
+    IMPORT_STATEMENT
+}
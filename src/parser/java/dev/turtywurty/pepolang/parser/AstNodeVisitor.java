@@ -0,0 +1,100 @@
+// This file is automatically generated. Do not modify.
+package dev.turtywurty.pepolang.parser;
+
+import dev.turtywurty.pepolang.JavaGenerated;
+
+@JavaGenerated
+public interface AstNodeVisitor<R> {
+    R visitAssign(AstArena.Node node);
+
+    R visitBinary(AstArena.Node node);
+
+    R visitCall(AstArena.Node node);
+
+    R visitNew(AstArena.Node node);
+
+    R visitGet(AstArena.Node node);
+
+    R visitSet(AstArena.Node node);
+
+    R visitThis(AstArena.Node node);
+
+    R visitSuper(AstArena.Node node);
+
+    R visitGrouping(AstArena.Node node);
+
+    R visitLiteral(AstArena.Node node);
+
+    R visitLogical(AstArena.Node node);
+
+    R visitUnary(AstArena.Node node);
+
+    R visitVariable(AstArena.Node node);
+
+    R visitFunction(AstArena.Node node);
+
+    R visitExtends(AstArena.Node node);
+
+    R visitBlockStatement(AstArena.Node node);
+
+    R visitFunctionStatement(AstArena.Node node);
+
+    R visitVariableStatement(AstArena.Node node);
+
+    R visitClassStatement(AstArena.Node node);
+
+    R visitConstructorStatement(AstArena.Node node);
+
+    R visitExpressionStatement(AstArena.Node node);
+
+    R visitIfStatement(AstArena.Node node);
+
+    R visitAssignStatement(AstArena.Node node);
+
+    R visitWhileStatement(AstArena.Node node);
+
+    R visitForStatement(AstArena.Node node);
+
+    R visitBreakStatement(AstArena.Node node);
+
+    R visitContinueStatement(AstArena.Node node);
+
+    R visitReturnStatement(AstArena.Node node);
+
+    R visitImportStatement(AstArena.Node node);
+
+    default R visit(AstArena.Node node) {
+        return switch (node.kind()) {
+            case ASSIGN -> visitAssign(node);
+            case BINARY -> visitBinary(node);
+            case CALL -> visitCall(node);
+            case NEW -> visitNew(node);
+            case GET -> visitGet(node);
+            case SET -> visitSet(node);
+            case THIS -> visitThis(node);
+            case SUPER -> visitSuper(node);
+            case GROUPING -> visitGrouping(node);
+            case LITERAL -> visitLiteral(node);
+            case LOGICAL -> visitLogical(node);
+            case UNARY -> visitUnary(node);
+            case VARIABLE -> visitVariable(node);
+            case FUNCTION -> visitFunction(node);
+            case EXTENDS -> visitExtends(node);
+            case BLOCK_STATEMENT -> visitBlockStatement(node);
+            case FUNCTION_STATEMENT -> visitFunctionStatement(node);
+            case VARIABLE_STATEMENT -> visitVariableStatement(node);
+            case CLASS_STATEMENT -> visitClassStatement(node);
+            case CONSTRUCTOR_STATEMENT -> visitConstructorStatement(node);
+            case EXPRESSION_STATEMENT -> visitExpressionStatement(node);
+            case IF_STATEMENT -> visitIfStatement(node);
+            case ASSIGN_STATEMENT -> visitAssignStatement(node);
+            case WHILE_STATEMENT -> visitWhileStatement(node);
+            case FOR_STATEMENT -> visitForStatement(node);
+            case BREAK_STATEMENT -> visitBreakStatement(node);
+            case CONTINUE_STATEMENT -> visitContinueStatement(node);
+            case RETURN_STATEMENT -> visitReturnStatement(node);
+            case IMPORT_STATEMENT -> visitImportStatement(node);
+            default -> throw new IllegalArgumentException("Node " + node.index() + " is not an expression or statement: " + node.kind());
+        };
+    }
+}
@@ -149,6 +149,16 @@ public class AstPrinter implements ExpressionVisitor<String>, StatementVisitor<V
         return null;
     }
 
+    @Override
+    public Void visitForStatement(Statement.ForStatement statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitImportStatement(Statement.ImportStatement statement) {
+        return null;
+    }
+
     @Override
     public Void visitBreakStatement(Statement.BreakStatement statement) {
         return null;
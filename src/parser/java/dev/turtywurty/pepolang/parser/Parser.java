@@ -1,20 +1,35 @@
 package dev.turtywurty.pepolang.parser;
 
+import dev.turtywurty.pepolang.lexer.Lexer;
 import dev.turtywurty.pepolang.lexer.LexerMain;
 import dev.turtywurty.pepolang.lexer.Token;
 import dev.turtywurty.pepolang.lexer.TokenType;
 
 import java.util.*;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Parser {
     private final List<Token> tokens;
+    private final Lexer lexer;
     private int current = 0;
     private boolean hadError = false;
     private int loopDepth = 0;
 
     public Parser(List<Token> tokens) {
         this.tokens = tokens;
+        this.lexer = null;
+    }
+
+    /**
+     * Creates a parser that pulls tokens from the lexer on demand instead of requiring the whole file to be lexed
+     * up front. Tokens belonging to already parsed top-level declarations are discarded as {@link #statements()}
+     * advances, so memory stays bounded by the size of the largest declaration.
+     */
+    public Parser(Lexer lexer) {
+        this.tokens = new ArrayList<>();
+        this.lexer = lexer;
     }
 
     public List<Statement> parse() {
@@ -27,6 +42,40 @@ public class Parser {
         return statements;
     }
 
+    /**
+     * Lazily parses the input, yielding each top-level declaration as soon as it is complete.
+     * Declarations that fail to parse are reported as usual and skipped.
+     */
+    public Iterator<Statement> statements() {
+        return new Iterator<>() {
+            private Statement next;
+
+            @Override
+            public boolean hasNext() {
+                while (this.next == null && !isAtEnd()) {
+                    this.next = declaration();
+                    discardConsumedTokens();
+                }
+
+                return this.next != null;
+            }
+
+            @Override
+            public Statement next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                Statement statement = this.next;
+                this.next = null;
+                return statement;
+            }
+        };
+    }
+
+    public Stream<Statement> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(statements(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     public Expression parseExpr() {
         return expression();
     }
@@ -36,6 +85,9 @@ public class Parser {
             if(match(TokenType.KEYWORD_CLASS))
                 return classDeclaration();
 
+            if (match(TokenType.KEYWORD_IMPORT))
+                return importDeclaration();
+
             if (match(TokenType::isTypeKeyword) && check(TokenType.IDENTIFIER)) // int a
                 return variableOrFunctionDeclaration();
 
@@ -58,6 +110,13 @@ public class Parser {
         }
     }
 
+    private Statement importDeclaration() {
+        Token keyword = previous();
+        Token path = consume(TokenType.STRING, "Expected module path after 'import'.");
+        consume(TokenType.SEMICOLON, "Expected ';' after import.");
+        return new Statement.ImportStatement(keyword, path);
+    }
+
     private Statement classDeclaration() {
         Token name = consume(TokenType.IDENTIFIER, "Expected name of class.");
         Token superclass = null;
@@ -244,9 +303,9 @@ public class Parser {
 
             consume(TokenType.SEMICOLON, "Expected ';' after loop condition.");
 
-            Expression incrementer = null;
+            Expression increment = null;
             if (!check(TokenType.RPAREN)) {
-                incrementer = expression();
+                increment = increment();
             }
 
             consume(TokenType.RPAREN, "Expected ')' after for clause.");
@@ -256,20 +315,7 @@ public class Parser {
             Statement body = statement();
             this.loopDepth--;
 
-            // Add incrementer to the end of the body
-            if (incrementer != null)
-                body = new Statement.BlockStatement(List.of(body, new Statement.ExpressionStatement(incrementer)));
-
-            // Add condition to the start of the body as a while loop
-            if (condition == null)
-                condition = new Expression.Literal(true);
-            body = new Statement.WhileStatement(condition, body);
-
-            // Add initializer to the start of the body
-            if(initializer != null)
-                body = new Statement.BlockStatement(List.of(initializer, body));
-
-            return body;
+            return new Statement.ForStatement(initializer, condition, increment, body);
         } finally {
             this.loopDepth--;
         }
@@ -343,6 +389,31 @@ public class Parser {
         return assignment();
     }
 
+    // i++, i--, ++i and --i are only supported as the increment of a for loop, where they are sugar for i = i + 1
+    private Expression increment() {
+        if (check(TokenType.IDENTIFIER) && (check(TokenType.PLUS_PLUS, 1) || check(TokenType.MINUS_MINUS, 1))) {
+            Token name = advance();
+            return increment(name, advance());
+        }
+
+        if (match(TokenType.PLUS_PLUS, TokenType.MINUS_MINUS)) {
+            Token operator = previous();
+            Token name = consume(TokenType.IDENTIFIER, "Expected variable name after '" + operator.value() + "'.");
+            return increment(name, operator);
+        }
+
+        return expression();
+    }
+
+    private Expression increment(Token name, Token operator) {
+        Token binaryOperator = operator.type() == TokenType.PLUS_PLUS ?
+                new Token(TokenType.ADD, '+', operator.pos()) :
+                new Token(TokenType.SUB, '-', operator.pos());
+
+        return new Expression.Assign(name,
+                new Expression.Binary(new Expression.Variable(name), binaryOperator, new Expression.Literal(1)));
+    }
+
     private Expression assignment() {
         Expression expression = or();
 
@@ -612,7 +683,31 @@ public class Parser {
     }
 
     private Token peek(int offset) {
-        return tokens.get(current + offset);
+        int index = current + offset;
+        if (this.lexer != null) {
+            fill(index);
+            index = Math.min(index, tokens.size() - 1);
+        }
+
+        return tokens.get(index);
+    }
+
+    private void fill(int index) {
+        while (tokens.size() <= index) {
+            if (!tokens.isEmpty() && tokens.getLast().type() == TokenType.EOF)
+                return;
+
+            tokens.add(this.lexer.nextToken());
+        }
+    }
+
+    private void discardConsumedTokens() {
+        // keep the previous token around so that error reporting and synchronisation can still look back
+        if (this.lexer == null || current <= 1)
+            return;
+
+        tokens.subList(0, current - 1).clear();
+        current = 1;
     }
 
     private Token previous() {
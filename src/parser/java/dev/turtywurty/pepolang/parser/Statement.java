@@ -286,6 +286,45 @@ public abstract class Statement {
         }
     }
 
+    public static class ForStatement extends Statement {
+        private final Statement initializer;
+
+        private final Expression condition;
+
+        private final Expression increment;
+
+        private final Statement body;
+
+        public ForStatement(Statement initializer, Expression condition, Expression increment,
+                Statement body) {
+            this.initializer = initializer;
+            this.condition = condition;
+            this.increment = increment;
+            this.body = body;
+        }
+
+        @Override
+        public <R> R accept(StatementVisitor<R> visitor) {
+            return visitor.visitForStatement(this);
+        }
+
+        public Statement getInitializer() {
+            return this.initializer;
+        }
+
+        public Expression getCondition() {
+            return this.condition;
+        }
+
+        public Expression getIncrement() {
+            return this.increment;
+        }
+
+        public Statement getBody() {
+            return this.body;
+        }
+    }
+
     public static class BreakStatement extends Statement {
         public BreakStatement() {
         }
@@ -329,4 +368,28 @@ public abstract class Statement {
             return this.value;
         }
     }
+
+    public static class ImportStatement extends Statement {
+        private final Token keyword;
+
+        private final Token path;
+
+        public ImportStatement(Token keyword, Token path) {
+            this.keyword = keyword;
+            this.path = path;
+        }
+
+        @Override
+        public <R> R accept(StatementVisitor<R> visitor) {
+            return visitor.visitImportStatement(this);
+        }
+
+        public Token getKeyword() {
+            return this.keyword;
+        }
+
+        public Token getPath() {
+            return this.path;
+        }
+    }
 }
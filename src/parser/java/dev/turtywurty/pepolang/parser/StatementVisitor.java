@@ -9,8 +9,10 @@ import dev.turtywurty.pepolang.parser.Statement.ClassStatement;
 import dev.turtywurty.pepolang.parser.Statement.ConstructorStatement;
 import dev.turtywurty.pepolang.parser.Statement.ContinueStatement;
 import dev.turtywurty.pepolang.parser.Statement.ExpressionStatement;
+import dev.turtywurty.pepolang.parser.Statement.ForStatement;
 import dev.turtywurty.pepolang.parser.Statement.FunctionStatement;
 import dev.turtywurty.pepolang.parser.Statement.IfStatement;
+import dev.turtywurty.pepolang.parser.Statement.ImportStatement;
 import dev.turtywurty.pepolang.parser.Statement.ReturnStatement;
 import dev.turtywurty.pepolang.parser.Statement.VariableStatement;
 import dev.turtywurty.pepolang.parser.Statement.WhileStatement;
@@ -35,9 +37,13 @@ public interface StatementVisitor<R> {
 
     R visitWhileStatement(WhileStatement statement);
 
+    R visitForStatement(ForStatement statement);
+
     R visitBreakStatement(BreakStatement statement);
 
     R visitContinueStatement(ContinueStatement statement);
 
     R visitReturnStatement(ReturnStatement statement);
+
+    R visitImportStatement(ImportStatement statement);
 }
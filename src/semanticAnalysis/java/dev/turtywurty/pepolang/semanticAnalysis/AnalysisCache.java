@@ -0,0 +1,314 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.lexer.Token;
+import dev.turtywurty.pepolang.lexer.TokenType;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers the outcome of checking every function, method and constructor body, so a later analysis only has to
+ * re-check the bodies that changed and the bodies that depend on declarations that changed.
+ * <p>
+ * Entries are keyed by a fingerprint of the body and its enclosing declaration. Each entry records the global
+ * names the body looked up, together with a description of what those names resolved to, the errors the body
+ * produced and the {@link TypeTable} entries of its expressions. An entry is reused only while every one of those
+ * names still resolves to the same declarations. Error positions are stored relative to the start of the
+ * declaration, so moving a function within the file does not invalidate it.
+ */
+public class AnalysisCache {
+    private static final int MAGIC = 0x50455043; // "PEPC"
+    private static final int VERSION = 2;
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private static final PrimitiveType[] PRIMITIVE_TYPES = PrimitiveType.values();
+    private static final SymbolReference.Scope[] SCOPES = SymbolReference.Scope.values();
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Entry> used = new ConcurrentHashMap<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Loads a cache saved by {@link #save(Path)}. A missing, unreadable or outdated file gives an empty cache.
+     */
+    public static AnalysisCache load(Path path) {
+        var cache = new AnalysisCache();
+        if (!Files.isRegularFile(path))
+            return cache;
+
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                return cache;
+
+            int entryCount = input.readInt();
+            for (int entryIndex = 0; entryIndex < entryCount; entryIndex++) {
+                String key = input.readUTF();
+
+                int dependencyCount = input.readInt();
+                Map<String, String> dependencies = new LinkedHashMap<>();
+                for (int index = 0; index < dependencyCount; index++) {
+                    dependencies.put(input.readUTF(), input.readUTF());
+                }
+
+                int errorCount = input.readInt();
+                List<CachedError> errors = new ArrayList<>(errorCount);
+                for (int index = 0; index < errorCount; index++) {
+                    int type = input.readShort();
+                    String value = input.readBoolean() ? input.readUTF() : null;
+                    errors.add(new CachedError(type < 0 ? null : TOKEN_TYPES[type], value, input.readInt(), input.readUTF()));
+                }
+
+                int localCount = input.readInt();
+                List<CachedLocal> locals = new ArrayList<>(localCount);
+                for (int index = 0; index < localCount; index++) {
+                    locals.add(readLocal(input));
+                }
+
+                int expressionCount = input.readInt();
+                List<CachedExpression> expressions = new ArrayList<>(expressionCount);
+                for (int index = 0; index < expressionCount; index++) {
+                    int expression = input.readInt();
+                    Type type = readType(input);
+                    Type conversion = readType(input);
+                    SymbolReference declaration = input.readBoolean() ?
+                            new SymbolReference(SCOPES[input.readByte()], input.readUTF(), input.readInt(), input.readInt()) :
+                            null;
+                    expressions.add(new CachedExpression(expression, type, conversion, declaration));
+                }
+
+                cache.entries.put(key, new Entry(dependencies, errors, locals, expressions));
+            }
+        } catch (IOException | RuntimeException exception) {
+            return new AnalysisCache();
+        }
+
+        return cache;
+    }
+
+    /**
+     * Saves the entries that were used or created since this cache was loaded. Entries for code that no longer
+     * exists are dropped.
+     */
+    public void save(Path path) throws IOException {
+        try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+
+            output.writeInt(this.used.size());
+            for (Map.Entry<String, Entry> keyed : this.used.entrySet()) {
+                output.writeUTF(keyed.getKey());
+
+                Entry entry = keyed.getValue();
+                output.writeInt(entry.dependencies().size());
+                for (Map.Entry<String, String> dependency : entry.dependencies().entrySet()) {
+                    output.writeUTF(dependency.getKey());
+                    output.writeUTF(dependency.getValue());
+                }
+
+                output.writeInt(entry.errors().size());
+                for (CachedError error : entry.errors()) {
+                    output.writeShort(error.type() == null ? -1 : error.type().ordinal());
+                    output.writeBoolean(error.value() != null);
+                    if (error.value() != null) {
+                        output.writeUTF(error.value());
+                    }
+
+                    output.writeInt(error.offset());
+                    output.writeUTF(error.message());
+                }
+
+                output.writeInt(entry.locals().size());
+                for (CachedLocal local : entry.locals()) {
+                    writeLocal(output, local);
+                }
+
+                output.writeInt(entry.expressions().size());
+                for (CachedExpression expression : entry.expressions()) {
+                    output.writeInt(expression.index());
+                    writeType(output, expression.type());
+                    writeType(output, expression.conversion());
+
+                    SymbolReference declaration = expression.declaration();
+                    output.writeBoolean(declaration != null);
+                    if (declaration != null) {
+                        output.writeByte(declaration.scope().ordinal());
+                        output.writeUTF(declaration.name());
+                        output.writeInt(declaration.kind());
+                        output.writeInt(declaration.index());
+                    }
+                }
+            }
+        }
+    }
+
+    private static CachedLocal readLocal(DataInput input) throws IOException {
+        String name = input.readUTF();
+        Type type = readType(input);
+
+        int parameterCount = input.readInt();
+        if (parameterCount < 0)
+            return new CachedLocal(name, type, null);
+
+        List<CachedLocal> parameters = new ArrayList<>(parameterCount);
+        for (int index = 0; index < parameterCount; index++) {
+            parameters.add(readLocal(input));
+        }
+
+        return new CachedLocal(name, type, parameters);
+    }
+
+    private static void writeLocal(DataOutput output, CachedLocal local) throws IOException {
+        output.writeUTF(local.name());
+        writeType(output, local.type());
+
+        output.writeInt(local.parameters() == null ? -1 : local.parameters().size());
+        if (local.parameters() != null) {
+            for (CachedLocal parameter : local.parameters()) {
+                writeLocal(output, parameter);
+            }
+        }
+    }
+
+    private static Type readType(DataInput input) throws IOException {
+        if (!input.readBoolean())
+            return null;
+
+        return input.readBoolean() ? Type.of(PRIMITIVE_TYPES[input.readShort()]) : Type.ofClass(input.readUTF());
+    }
+
+    private static void writeType(DataOutput output, Type type) throws IOException {
+        output.writeBoolean(type != null);
+        if (type == null)
+            return;
+
+        output.writeBoolean(type.isPrimitive());
+        if (type.isPrimitive()) {
+            output.writeShort(type.getPrimitiveType().ordinal());
+        } else {
+            output.writeUTF(type.getName());
+        }
+    }
+
+    /**
+     * @return how many bodies were not re-checked because their entry was still valid
+     */
+    public int getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return how many bodies had to be checked
+     */
+    public int getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the key of a body, from a description of its enclosing declaration and a fingerprint of its statements
+     */
+    static String key(String context, String fingerprint) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(context.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest) + fingerprint;
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+    }
+
+    Entry get(String key) {
+        return this.entries.get(key);
+    }
+
+    void reuse(String key, Entry entry) {
+        this.hits.incrementAndGet();
+        this.used.put(key, entry);
+    }
+
+    void put(String key, Entry entry) {
+        this.misses.incrementAndGet();
+        this.entries.put(key, entry);
+        this.used.put(key, entry);
+    }
+
+    /**
+     * @param dependencies every global name the body looked up, mapped to a description of what it resolved to
+     * @param errors       the errors the body produced
+     * @param locals       the symbols the body declared itself that any of its expressions refer to
+     * @param expressions  the {@link TypeTable} entries of the body's expressions
+     */
+    record Entry(Map<String, String> dependencies, List<CachedError> errors, List<CachedLocal> locals,
+                 List<CachedExpression> expressions) {
+        static Entry of(Map<String, String> dependencies, List<SemanticException> errors, Token anchor,
+                        List<CachedLocal> locals, List<CachedExpression> expressions) {
+            List<CachedError> cachedErrors = new ArrayList<>(errors.size());
+            for (SemanticException error : errors) {
+                Token token = error.getToken();
+                cachedErrors.add(token == null ?
+                        new CachedError(null, null, 0, error.getMessage()) :
+                        new CachedError(token.type(), token.value() == null ? null : String.valueOf(token.value()), token.pos() - anchor.pos(), error.getMessage()));
+            }
+
+            return new Entry(dependencies, cachedErrors, locals, expressions);
+        }
+
+        List<SemanticException> errorsAt(Token anchor) {
+            List<SemanticException> exceptions = new ArrayList<>(this.errors.size());
+            for (CachedError error : this.errors) {
+                Token token = error.type() == null ? null : new Token(error.type(), error.value(), anchor.pos() + error.offset());
+                exceptions.add(new SemanticException(token, error.message()));
+            }
+
+            return exceptions;
+        }
+    }
+
+    /**
+     * An error with its token position relative to the start of the declaration it was found in.
+     */
+    record CachedError(TokenType type, String value, int offset, String message) {
+    }
+
+    /**
+     * A variable or function declared inside a body.
+     *
+     * @param type       the type of the variable, or the return type of the function
+     * @param parameters the parameters of the function, or {@code null} for a variable
+     */
+    record CachedLocal(String name, Type type, List<CachedLocal> parameters) {
+    }
+
+    /**
+     * The {@link TypeTable} entries of one expression of a body.
+     *
+     * @param index       the position of the expression among the body's expressions, as {@link BodyTypes} numbers them
+     * @param type        the type the expression evaluates to, or {@code null}
+     * @param conversion  the type its value is converted to where it is stored, or {@code null}
+     * @param declaration what the expression refers to, or {@code null}
+     */
+    record CachedExpression(int index, Type type, Type conversion, SymbolReference declaration) {
+    }
+
+    /**
+     * Where a declaration can be found again when the body is reused.
+     *
+     * @param name  the name of a global, or the name of the class declaring a member, and otherwise empty
+     * @param kind  the {@link SymbolType} of a global, or which of a class's member lists a member is in
+     * @param index the position of the symbol among the symbols of its scope, its overloads or its class's members
+     */
+    record SymbolReference(Scope scope, String name, int kind, int index) {
+        enum Scope {
+            ENCLOSING,
+            PARAMETER,
+            GLOBAL,
+            MEMBER,
+            LOCAL
+        }
+    }
+}
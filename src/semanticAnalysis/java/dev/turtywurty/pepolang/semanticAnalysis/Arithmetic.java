@@ -0,0 +1,190 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.lexer.TokenType;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Numeric operators with the semantics of the analyzed types, shared by the interpreter and {@link ConstantFolder} so
+ * that a folded literal is exactly the value the operation would have produced at runtime.
+ * <p>
+ * An operation is computed in the type {@link TypeChecker} gives it, the same way native code does: integers
+ * overflow and divide like Java's (and LLVM's {@code sdiv}), and comparisons follow IEEE 754 for floating point
+ * numbers. The result is boxed as that type, so an {@code int} result is always an {@link Integer}.
+ */
+public final class Arithmetic {
+    private Arithmetic() {
+    }
+
+    /**
+     * @return the result of the arithmetic operator, or {@code null} if it is not an arithmetic operator on the type
+     * @throws ArithmeticException if an integer is divided by zero
+     */
+    public static @Nullable Number evaluate(TokenType operator, PrimitiveType type, Number left, Number right) {
+        return switch (type) {
+            case DOUBLE -> {
+                double a = left.doubleValue(), b = right.doubleValue();
+                yield switch (operator) {
+                    case ADD -> a + b;
+                    case SUB -> a - b;
+                    case MUL -> a * b;
+                    case DIV -> a / b;
+                    case MOD -> a % b;
+                    default -> null;
+                };
+            }
+            case FLOAT -> {
+                float a = left.floatValue(), b = right.floatValue();
+                yield switch (operator) {
+                    case ADD -> a + b;
+                    case SUB -> a - b;
+                    case MUL -> a * b;
+                    case DIV -> a / b;
+                    case MOD -> a % b;
+                    default -> null;
+                };
+            }
+            case LONG -> {
+                long a = left.longValue(), b = right.longValue();
+                yield switch (operator) {
+                    case ADD -> a + b;
+                    case SUB -> a - b;
+                    case MUL -> a * b;
+                    case DIV -> a / b;
+                    case MOD -> a % b;
+                    default -> null;
+                };
+            }
+            case INT -> {
+                int a = left.intValue(), b = right.intValue();
+                yield switch (operator) {
+                    case ADD -> a + b;
+                    case SUB -> a - b;
+                    case MUL -> a * b;
+                    case DIV -> a / b;
+                    case MOD -> a % b;
+                    default -> null;
+                };
+            }
+            case SHORT -> {
+                int a = left.shortValue(), b = right.shortValue();
+                yield switch (operator) {
+                    case ADD -> (short) (a + b);
+                    case SUB -> (short) (a - b);
+                    case MUL -> (short) (a * b);
+                    case DIV -> (short) (a / b);
+                    default -> null;
+                };
+            }
+            case BYTE -> {
+                int a = left.byteValue(), b = right.byteValue();
+                yield switch (operator) {
+                    case ADD -> (byte) (a + b);
+                    case SUB -> (byte) (a - b);
+                    case MUL -> (byte) (a * b);
+                    case DIV -> (byte) (a / b);
+                    default -> null;
+                };
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * @return the result of the comparison operator, with both operands converted to the type, or {@code null} if it
+     * is not a comparison operator
+     */
+    public static @Nullable Boolean compare(TokenType operator, PrimitiveType type, Number left, Number right) {
+        if (type == PrimitiveType.DOUBLE || type == PrimitiveType.FLOAT) {
+            double a = type == PrimitiveType.FLOAT ? left.floatValue() : left.doubleValue();
+            double b = type == PrimitiveType.FLOAT ? right.floatValue() : right.doubleValue();
+            return switch (operator) {
+                case EQUAL -> a == b;
+                case NOT_EQUAL -> a != b;
+                case LT -> a < b;
+                case LESS_EQUAL -> a <= b;
+                case GT -> a > b;
+                case GREATER_EQUAL -> a >= b;
+                default -> null;
+            };
+        }
+
+        long a = left.longValue(), b = right.longValue();
+        return switch (operator) {
+            case EQUAL -> a == b;
+            case NOT_EQUAL -> a != b;
+            case LT -> a < b;
+            case LESS_EQUAL -> a <= b;
+            case GT -> a > b;
+            case GREATER_EQUAL -> a >= b;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return the value converted to the type the way a cast would, or the value itself if the type is not numeric
+     */
+    public static Object convert(Number value, PrimitiveType type) {
+        return switch (type) {
+            case DOUBLE -> value.doubleValue();
+            case FLOAT -> value.floatValue();
+            case LONG -> value.longValue();
+            case INT -> value.intValue();
+            case SHORT -> value.shortValue();
+            case BYTE -> value.byteValue();
+            default -> value;
+        };
+    }
+
+    /**
+     * @return the value negated, boxed as the same type
+     */
+    public static @Nullable Number negate(Number value) {
+        return switch (value) {
+            case Integer integer -> -integer;
+            case Long longValue -> -longValue;
+            case Double doubleValue -> -doubleValue;
+            case Float floatValue -> -floatValue;
+            case Short shortValue -> (short) -shortValue;
+            case Byte byteValue -> (byte) -byteValue;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return the type the operator is computed in when the operand types are only known from their values, following
+     * the same promotion as {@link TypeChecker}
+     */
+    public static PrimitiveType typeOf(TokenType operator, Number left, Number right) {
+        PrimitiveType type = wider(typeOf(left), typeOf(right));
+        return operator == TokenType.MOD && (type == PrimitiveType.SHORT || type == PrimitiveType.BYTE) ? PrimitiveType.INT : type;
+    }
+
+    /**
+     * @return the wider of two numeric types, which comparisons between them are computed in
+     */
+    public static PrimitiveType wider(PrimitiveType left, PrimitiveType right) {
+        return rank(left) >= rank(right) ? left : right;
+    }
+
+    private static PrimitiveType typeOf(Number value) {
+        return switch (value) {
+            case Double ignored -> PrimitiveType.DOUBLE;
+            case Float ignored -> PrimitiveType.FLOAT;
+            case Long ignored -> PrimitiveType.LONG;
+            case Short ignored -> PrimitiveType.SHORT;
+            case Byte ignored -> PrimitiveType.BYTE;
+            default -> PrimitiveType.INT;
+        };
+    }
+
+    private static int rank(PrimitiveType type) {
+        return switch (type) {
+            case DOUBLE -> 5;
+            case FLOAT -> 4;
+            case LONG -> 3;
+            case INT -> 2;
+            case SHORT -> 1;
+            default -> 0;
+        };
+    }
+}
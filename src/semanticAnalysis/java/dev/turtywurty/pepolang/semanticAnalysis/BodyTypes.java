@@ -0,0 +1,210 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.parser.AstArena;
+import dev.turtywurty.pepolang.parser.AstArenaEncoder;
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.AnalysisCache.CachedExpression;
+import dev.turtywurty.pepolang.semanticAnalysis.AnalysisCache.CachedLocal;
+import dev.turtywurty.pepolang.semanticAnalysis.AnalysisCache.SymbolReference;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.ClassSymbol;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.MethodSymbol;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.Symbol;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.VariableSymbol;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the {@link TypeTable} entries of a checked body into the form an {@link AnalysisCache.Entry} keeps them in,
+ * and back, so a body reused from the cache is typed exactly as checking it again would type it.
+ * <p>
+ * Expressions are numbered in the order the {@link AstArenaEncoder} reaches them, which only depends on the shape
+ * of the body and so is the same for every body with the same fingerprint. Declarations are stored as references to
+ * where the symbol was found: a scope enclosing the body, a parameter, a global, a member of a global class, or a
+ * symbol the body declared itself, which is created again once per reused body.
+ */
+final class BodyTypes {
+    private final List<Symbol> enclosingSymbols;
+    private final List<VariableSymbol> parameters;
+    private final SymbolTable globals;
+    private final List<Symbol> globalSymbols;
+
+    /**
+     * @param globals       the global scope as the body sees it, which every global reference is resolved in
+     * @param globalSymbols the global symbols the body can see, in declaration order
+     */
+    BodyTypes(List<Symbol> enclosingSymbols, List<VariableSymbol> parameters, SymbolTable globals, List<Symbol> globalSymbols) {
+        this.enclosingSymbols = enclosingSymbols;
+        this.parameters = parameters;
+        this.globals = globals;
+        this.globalSymbols = globalSymbols;
+    }
+
+    /**
+     * Encodes the statements as roots of the arena.
+     *
+     * @return every expression of the statements, numbered in the order they were encoded
+     */
+    static List<Expression> encode(AstArena arena, List<Statement> statements) {
+        List<Expression> expressions = new ArrayList<>();
+        var encoder = new AstArenaEncoder(arena) {
+            @Override
+            public int encode(Expression expression) {
+                if (expression != null) {
+                    expressions.add(expression);
+                }
+
+                return super.encode(expression);
+            }
+        };
+
+        for (Statement statement : statements) {
+            arena.addRoot(encoder.encode(statement));
+        }
+
+        return expressions;
+    }
+
+    /**
+     * Collects the entries the types have for the expressions, adding every symbol the body declared itself that
+     * they refer to to the locals.
+     */
+    List<CachedExpression> capture(TypeTable types, List<Expression> expressions, List<CachedLocal> locals) {
+        Map<Symbol, Integer> localIndices = new IdentityHashMap<>();
+        List<CachedExpression> cached = new ArrayList<>();
+        for (int index = 0; index < expressions.size(); index++) {
+            Expression expression = expressions.get(index);
+            Type type = types.getType(expression);
+            Type conversion = types.getConversion(expression);
+            Symbol declaration = types.getDeclaration(expression);
+            SymbolReference reference = declaration == null ? null : reference(declaration, localIndices, locals);
+            if (type != null || conversion != null || reference != null) {
+                cached.add(new CachedExpression(index, type, conversion, reference));
+            }
+        }
+
+        return cached;
+    }
+
+    /**
+     * @return a table with the entries of the cache entry for the expressions of the body it was captured from
+     */
+    TypeTable restore(AnalysisCache.Entry entry, List<Expression> expressions) {
+        List<Symbol> locals = new ArrayList<>(entry.locals().size());
+        for (CachedLocal local : entry.locals()) {
+            locals.add(toSymbol(local));
+        }
+
+        var types = new TypeTable();
+        for (CachedExpression cached : entry.expressions()) {
+            Expression expression = expressions.get(cached.index());
+            types.record(expression, cached.type());
+            if (cached.conversion() != null) {
+                types.convert(expression, cached.conversion());
+            }
+
+            if (cached.declaration() != null) {
+                types.declare(expression, resolve(cached.declaration(), locals));
+            }
+        }
+
+        return types;
+    }
+
+    private SymbolReference reference(Symbol symbol, Map<Symbol, Integer> localIndices, List<CachedLocal> locals) {
+        int index = indexOf(this.enclosingSymbols, symbol);
+        if (index >= 0)
+            return new SymbolReference(SymbolReference.Scope.ENCLOSING, "", 0, index);
+
+        index = indexOf(this.parameters, symbol);
+        if (index >= 0)
+            return new SymbolReference(SymbolReference.Scope.PARAMETER, "", 0, index);
+
+        index = indexOf(this.globals.getSymbols(symbol.getName(), symbol.getSymbolType()), symbol);
+        if (index >= 0)
+            return new SymbolReference(SymbolReference.Scope.GLOBAL, symbol.getName(), symbol.getSymbolType().ordinal(), index);
+
+        for (Symbol global : this.globalSymbols) {
+            if (!(global instanceof ClassSymbol classSymbol))
+                continue;
+
+            List<List<? extends Symbol>> members = members(classSymbol);
+            for (int kind = 0; kind < members.size(); kind++) {
+                index = indexOf(members.get(kind), symbol);
+                if (index >= 0)
+                    return new SymbolReference(SymbolReference.Scope.MEMBER, classSymbol.getName(), kind, index);
+            }
+        }
+
+        Integer local = localIndices.get(symbol);
+        if (local == null) {
+            CachedLocal cachedLocal = toLocal(symbol);
+            if (cachedLocal == null)
+                return null;
+
+            local = locals.size();
+            locals.add(cachedLocal);
+            localIndices.put(symbol, local);
+        }
+
+        return new SymbolReference(SymbolReference.Scope.LOCAL, "", 0, local);
+    }
+
+    private Symbol resolve(SymbolReference reference, List<Symbol> locals) {
+        return switch (reference.scope()) {
+            case ENCLOSING -> this.enclosingSymbols.get(reference.index());
+            case PARAMETER -> this.parameters.get(reference.index());
+            case GLOBAL -> this.globals.getSymbols(reference.name(), SymbolType.values()[reference.kind()]).get(reference.index());
+            case MEMBER -> members(this.globals.getClass(reference.name())).get(reference.kind()).get(reference.index());
+            case LOCAL -> locals.get(reference.index());
+        };
+    }
+
+    private static List<List<? extends Symbol>> members(ClassSymbol classSymbol) {
+        return List.of(classSymbol.getStaticFields(), classSymbol.getStaticMethods(), classSymbol.getFields(),
+                classSymbol.getMethods(), classSymbol.getConstructors());
+    }
+
+    private static int indexOf(List<? extends Symbol> symbols, Symbol symbol) {
+        for (int index = 0; index < symbols.size(); index++) {
+            if (symbols.get(index) == symbol)
+                return index;
+        }
+
+        return -1;
+    }
+
+    private static CachedLocal toLocal(Symbol symbol) {
+        return switch (symbol) {
+            case VariableSymbol variable -> new CachedLocal(variable.getName(), variable.getReturnType(), null);
+            case MethodSymbol method -> {
+                List<CachedLocal> parameters = new ArrayList<>(method.getParameters().size());
+                for (VariableSymbol parameter : method.getParameters()) {
+                    parameters.add(toLocal(parameter));
+                }
+
+                yield new CachedLocal(method.getName(), method.getReturnType(), parameters);
+            }
+            default -> null;
+        };
+    }
+
+    private static Symbol toSymbol(CachedLocal local) {
+        if (local.parameters() == null)
+            return local.type().isPrimitive() ?
+                    new VariableSymbol(local.name(), local.type().getPrimitiveType()) :
+                    new VariableSymbol(local.name(), local.type().getName());
+
+        List<VariableSymbol> parameters = new ArrayList<>(local.parameters().size());
+        for (CachedLocal parameter : local.parameters()) {
+            parameters.add((VariableSymbol) toSymbol(parameter));
+        }
+
+        return local.type().isPrimitive() ?
+                new MethodSymbol(local.name(), local.type().getPrimitiveType(), parameters) :
+                new MethodSymbol(local.name(), local.type().getName(), parameters);
+    }
+}
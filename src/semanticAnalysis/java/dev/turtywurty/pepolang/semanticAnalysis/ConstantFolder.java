@@ -0,0 +1,509 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.lexer.Token;
+import dev.turtywurty.pepolang.lexer.TokenType;
+import dev.turtywurty.pepolang.parser.*;
+
+import java.util.*;
+
+/**
+ * An AST-to-AST optimization pass that runs after semantic analysis.
+ * <p>
+ * It folds {@link Expression.Binary}, {@link Expression.Unary} and {@link Expression.Logical} expressions whose
+ * operands are literals, simplifies arithmetic identities such as {@code x * 1} and {@code x + 0}, and prunes
+ * {@link Statement.IfStatement} branches with constant conditions. Result types follow {@link TypeChecker} and values
+ * are computed with {@link Arithmetic}, as the backends compute them, so a folded literal has exactly the type and
+ * value the original expression would have had at runtime.
+ * <p>
+ * Nodes whose children did not change are returned as-is. When given the {@link TypeTable} of the analysis, a node
+ * that replaces another takes over its type, so the table stays complete for the folded tree.
+ */
+public class ConstantFolder implements ExpressionVisitor<Expression>, StatementVisitor<Statement> {
+    private static final Statement EMPTY_BLOCK = new Statement.BlockStatement(List.of());
+
+    private final Deque<Map<String, Type>> scopes = new ArrayDeque<>();
+    private final TypeTable types;
+
+    public ConstantFolder() {
+        this(null);
+    }
+
+    public ConstantFolder(TypeTable types) {
+        this.types = types;
+        this.scopes.push(new HashMap<>());
+    }
+
+    public List<Statement> fold(List<Statement> statements) {
+        List<Statement> folded = new ArrayList<>(statements.size());
+        for (Statement statement : statements) {
+            folded.add(fold(statement));
+        }
+
+        return folded;
+    }
+
+    public Statement fold(Statement statement) {
+        return statement == null ? null : statement.accept(this);
+    }
+
+    public Expression fold(Expression expression) {
+        if (expression == null)
+            return null;
+
+        Expression folded = expression.accept(this);
+        if (this.types != null) {
+            this.types.copyIfAbsent(expression, folded);
+        }
+
+        return folded;
+    }
+
+    @Override
+    public Statement visitBlockStatement(Statement.BlockStatement statement) {
+        enterScope();
+        List<Statement> statements = foldStatements(statement.getStatements());
+        exitScope();
+
+        return statements == statement.getStatements() ? statement : new Statement.BlockStatement(statements);
+    }
+
+    @Override
+    public Statement visitFunctionStatement(Statement.FunctionStatement statement) {
+        enterScope();
+        declareParameters(statement.getParameters());
+        List<Statement> body = foldStatements(statement.getBody());
+        exitScope();
+
+        return body == statement.getBody() ? statement :
+                new Statement.FunctionStatement(statement.getName(), statement.getReturnType(), statement.getParameters(), body);
+    }
+
+    @Override
+    public Statement visitVariableStatement(Statement.VariableStatement statement) {
+        Expression initializer = fold(statement.getInitializer());
+        declare(statement.getName(), statement.getType());
+
+        return initializer == statement.getInitializer() ? statement :
+                new Statement.VariableStatement(statement.getType(), statement.getName(), initializer);
+    }
+
+    @Override
+    public Statement visitClassStatement(Statement.ClassStatement statement) {
+        enterScope();
+        for (Statement.VariableStatement field : statement.getFields()) {
+            declare(field.getName(), field.getType());
+        }
+
+        for (Statement.VariableStatement field : statement.getStaticFields()) {
+            declare(field.getName(), field.getType());
+        }
+
+        List<Statement.ConstructorStatement> constructors = foldStatements(statement.getConstructors());
+        List<Statement.FunctionStatement> methods = foldStatements(statement.getMethods());
+        List<Statement.VariableStatement> fields = foldStatements(statement.getFields());
+        List<Statement.FunctionStatement> staticMethods = foldStatements(statement.getStaticMethods());
+        List<Statement.VariableStatement> staticFields = foldStatements(statement.getStaticFields());
+        exitScope();
+
+        if (constructors == statement.getConstructors() && methods == statement.getMethods() &&
+                fields == statement.getFields() && staticMethods == statement.getStaticMethods() &&
+                staticFields == statement.getStaticFields())
+            return statement;
+
+        return new Statement.ClassStatement(statement.getName(), statement.getSuperclass(),
+                constructors, methods, fields, staticMethods, staticFields);
+    }
+
+    @Override
+    public Statement visitConstructorStatement(Statement.ConstructorStatement statement) {
+        enterScope();
+        declareParameters(statement.getParameters());
+        List<Statement> body = foldStatements(statement.getBody());
+        exitScope();
+
+        return body == statement.getBody() ? statement :
+                new Statement.ConstructorStatement(statement.getName(), statement.getParameters(), body);
+    }
+
+    @Override
+    public Statement visitExpressionStatement(Statement.ExpressionStatement statement) {
+        Expression expression = fold(statement.getExpression());
+        return expression == statement.getExpression() ? statement : new Statement.ExpressionStatement(expression);
+    }
+
+    @Override
+    public Statement visitIfStatement(Statement.IfStatement statement) {
+        Expression condition = fold(statement.getCondition());
+        if (condition instanceof Expression.Literal literal && literal.getValue() instanceof Boolean bool) {
+            Statement branch = bool ? statement.getThenBranch() : statement.getElseBranch();
+            return branch == null ? EMPTY_BLOCK : fold(branch);
+        }
+
+        Statement thenBranch = fold(statement.getThenBranch());
+        Statement elseBranch = fold(statement.getElseBranch());
+        if (condition == statement.getCondition() && thenBranch == statement.getThenBranch() && elseBranch == statement.getElseBranch())
+            return statement;
+
+        return new Statement.IfStatement(condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public Statement visitAssignStatement(Statement.AssignStatement statement) {
+        Expression value = fold(statement.getValue());
+        return value == statement.getValue() ? statement : new Statement.AssignStatement(statement.getName(), value);
+    }
+
+    @Override
+    public Statement visitWhileStatement(Statement.WhileStatement statement) {
+        Expression condition = fold(statement.getCondition());
+        if (condition instanceof Expression.Literal literal && Boolean.FALSE.equals(literal.getValue()))
+            return EMPTY_BLOCK;
+
+        Statement body = fold(statement.getBody());
+        if (condition == statement.getCondition() && body == statement.getBody())
+            return statement;
+
+        return new Statement.WhileStatement(condition, body);
+    }
+
+    @Override
+    public Statement visitForStatement(Statement.ForStatement statement) {
+        enterScope();
+        Statement initializer = fold(statement.getInitializer());
+        Expression condition = fold(statement.getCondition());
+        if (condition instanceof Expression.Literal literal && Boolean.FALSE.equals(literal.getValue())) {
+            exitScope();
+            return initializer == null ? EMPTY_BLOCK : new Statement.BlockStatement(List.of(initializer));
+        }
+
+        Expression increment = fold(statement.getIncrement());
+        Statement body = fold(statement.getBody());
+        exitScope();
+
+        if (initializer == statement.getInitializer() && condition == statement.getCondition() &&
+                increment == statement.getIncrement() && body == statement.getBody())
+            return statement;
+
+        return new Statement.ForStatement(initializer, condition, increment, body);
+    }
+
+    @Override
+    public Statement visitImportStatement(Statement.ImportStatement statement) {
+        return statement;
+    }
+
+    @Override
+    public Statement visitBreakStatement(Statement.BreakStatement statement) {
+        return statement;
+    }
+
+    @Override
+    public Statement visitContinueStatement(Statement.ContinueStatement statement) {
+        return statement;
+    }
+
+    @Override
+    public Statement visitReturnStatement(Statement.ReturnStatement statement) {
+        Expression value = fold(statement.getValue());
+        return value == statement.getValue() ? statement : new Statement.ReturnStatement(statement.getKeyword(), value);
+    }
+
+    @Override
+    public Expression visitAssign(Expression.Assign expression) {
+        Expression value = fold(expression.getValue());
+        return value == expression.getValue() ? expression : new Expression.Assign(expression.getName(), value);
+    }
+
+    @Override
+    public Expression visitBinary(Expression.Binary expression) {
+        Token operator = expression.getOperator();
+        Expression left = fold(expression.getLeft());
+        Expression right = fold(expression.getRight());
+
+        Type leftType = typeOf(left);
+        Type rightType = typeOf(right);
+        Type resultType = checkBinary(operator, leftType, rightType);
+
+        if (resultType != null && left instanceof Expression.Literal leftLiteral && right instanceof Expression.Literal rightLiteral) {
+            Object value = evaluateBinary(operator.type(), leftType, rightType, resultType, leftLiteral.getValue(), rightLiteral.getValue());
+            if (value != null)
+                return new Expression.Literal(value);
+        }
+
+        if (isNumeric(resultType)) {
+            if (resultType == leftType && isIdentity(operator.type(), right, false))
+                return left;
+
+            if (resultType == rightType && isIdentity(operator.type(), left, true))
+                return right;
+        }
+
+        if (left == expression.getLeft() && right == expression.getRight())
+            return expression;
+
+        return new Expression.Binary(left, operator, right);
+    }
+
+    @Override
+    public Expression visitCall(Expression.Call expression) {
+        Expression callee = fold(expression.getCallee());
+        List<Expression> arguments = foldExpressions(expression.getArguments());
+        if (callee == expression.getCallee() && arguments == expression.getArguments())
+            return expression;
+
+        return new Expression.Call(callee, expression.getParen(), arguments);
+    }
+
+    @Override
+    public Expression visitNew(Expression.New expression) {
+        Expression call = fold(expression.getCall());
+        return call == expression.getCall() ? expression : new Expression.New(expression.getKeyword(), call);
+    }
+
+    @Override
+    public Expression visitGet(Expression.Get expression) {
+        Expression object = fold(expression.getObject());
+        return object == expression.getObject() ? expression : new Expression.Get(object, expression.getName());
+    }
+
+    @Override
+    public Expression visitSet(Expression.Set expression) {
+        Expression object = fold(expression.getObject());
+        Expression value = fold(expression.getValue());
+        if (object == expression.getObject() && value == expression.getValue())
+            return expression;
+
+        return new Expression.Set(object, expression.getName(), value);
+    }
+
+    @Override
+    public Expression visitThis(Expression.This expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visitSuper(Expression.Super expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visitGrouping(Expression.Grouping expression) {
+        Expression inner = fold(expression.getExpression());
+        if (inner instanceof Expression.Literal)
+            return inner;
+
+        return inner == expression.getExpression() ? expression : new Expression.Grouping(inner);
+    }
+
+    @Override
+    public Expression visitLiteral(Expression.Literal expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visitLogical(Expression.Logical expression) {
+        Token operator = expression.getOperator();
+        Expression left = fold(expression.getLeft());
+        Expression right = fold(expression.getRight());
+
+        if (left instanceof Expression.Literal literal && literal.getValue() instanceof Boolean bool) {
+            // true || x -> true, false && x -> false, otherwise the result is just the right operand
+            boolean shortCircuits = operator.type() == TokenType.OR ? bool : !bool;
+            return shortCircuits ? left : right;
+        }
+
+        if (right instanceof Expression.Literal literal && literal.getValue() instanceof Boolean bool) {
+            // x && true -> x, x || false -> x
+            if (operator.type() == TokenType.OR ? !bool : bool)
+                return left;
+        }
+
+        if (left == expression.getLeft() && right == expression.getRight())
+            return expression;
+
+        return new Expression.Logical(left, operator, right);
+    }
+
+    @Override
+    public Expression visitUnary(Expression.Unary expression) {
+        Token operator = expression.getOperator();
+        Expression right = fold(expression.getRight());
+
+        if (right instanceof Expression.Literal literal) {
+            Object value = evaluateUnary(operator.type(), literal.getValue());
+            if (value != null)
+                return new Expression.Literal(value);
+        }
+
+        return right == expression.getRight() ? expression : new Expression.Unary(operator, right);
+    }
+
+    @Override
+    public Expression visitVariable(Expression.Variable expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visitFunction(Expression.Function expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visitExtends(Expression.Extends expression) {
+        return expression;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Statement> List<T> foldStatements(List<T> statements) {
+        List<T> folded = null;
+        for (int index = 0; index < statements.size(); index++) {
+            T statement = statements.get(index);
+            T result = (T) fold(statement);
+            if (result != statement && folded == null) {
+                folded = new ArrayList<>(statements.subList(0, index));
+            }
+
+            if (folded != null) {
+                folded.add(result);
+            }
+        }
+
+        return folded == null ? statements : folded;
+    }
+
+    private List<Expression> foldExpressions(List<Expression> expressions) {
+        List<Expression> folded = null;
+        for (int index = 0; index < expressions.size(); index++) {
+            Expression expression = expressions.get(index);
+            Expression result = fold(expression);
+            if (result != expression && folded == null) {
+                folded = new ArrayList<>(expressions.subList(0, index));
+            }
+
+            if (folded != null) {
+                folded.add(result);
+            }
+        }
+
+        return folded == null ? expressions : folded;
+    }
+
+    private Type typeOf(Expression expression) {
+        try {
+            return TypeChecker.checkExpression(expression, this::lookUp);
+        } catch (SemanticException exception) {
+            return null;
+        }
+    }
+
+    private static Type checkBinary(Token operator, Type left, Type right) {
+        if (left == null || right == null)
+            return null;
+
+        try {
+            return TypeChecker.checkBinaryExpression(operator, left, right);
+        } catch (SemanticException exception) {
+            return null;
+        }
+    }
+
+    private static boolean isNumeric(Type type) {
+        return type == Type.INT || type == Type.LONG || type == Type.DOUBLE || type == Type.FLOAT ||
+                type == Type.SHORT || type == Type.BYTE;
+    }
+
+    private static boolean isIdentity(TokenType operator, Expression operand, boolean isLeftOperand) {
+        if (!(operand instanceof Expression.Literal literal) || !(literal.getValue() instanceof Number number))
+            return false;
+
+        double value = number.doubleValue();
+        boolean isZero = value == 0;
+        if (!isIntegral(number)) {
+            // x + 0.0 is not x when x is -0.0, but x + -0.0 and x - 0.0 always are
+            boolean isNegativeZero = isZero && Double.doubleToRawLongBits(value) != 0L;
+            isZero = operator == TokenType.ADD ? isNegativeZero : isZero && !isNegativeZero;
+        }
+
+        return switch (operator) {
+            case ADD -> isZero;
+            case SUB -> !isLeftOperand && isZero;
+            case MUL -> value == 1;
+            case DIV -> !isLeftOperand && value == 1;
+            default -> false;
+        };
+    }
+
+    private static Object evaluateBinary(TokenType operator, Type leftType, Type rightType, Type resultType, Object left, Object right) {
+        // native code formats floating point numbers itself, so only the runtime can turn them into strings
+        if (resultType == Type.STRING)
+            return isFloatingPoint(left) || isFloatingPoint(right) ? null : String.valueOf(left) + right;
+
+        if (left instanceof String leftStr && right instanceof String rightStr) {
+            return switch (operator) {
+                case EQUAL -> leftStr.equals(rightStr);
+                case NOT_EQUAL -> !leftStr.equals(rightStr);
+                default -> null;
+            };
+        }
+
+        if (!(left instanceof Number leftNum) || !(right instanceof Number rightNum))
+            return null;
+
+        if (resultType == Type.BOOL) {
+            if (!isNumeric(leftType) || !isNumeric(rightType))
+                return null;
+
+            return Arithmetic.compare(operator, Arithmetic.wider(leftType.getPrimitiveType(), rightType.getPrimitiveType()), leftNum, rightNum);
+        }
+
+        // leave division by zero for the backends to report at runtime
+        if ((operator == TokenType.DIV || operator == TokenType.MOD) && rightNum.doubleValue() == 0)
+            return null;
+
+        return isNumeric(resultType) ? Arithmetic.evaluate(operator, resultType.getPrimitiveType(), leftNum, rightNum) : null;
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+    }
+
+    private static boolean isFloatingPoint(Object value) {
+        return value instanceof Double || value instanceof Float;
+    }
+
+    private static Object evaluateUnary(TokenType operator, Object value) {
+        return switch (operator) {
+            case NOT -> value instanceof Boolean bool ? !bool : null;
+            case ADD -> value instanceof Number ? value : null;
+            case SUB -> value instanceof Number number ? Arithmetic.negate(number) : null;
+            default -> null;
+        };
+    }
+
+    private void declareParameters(List<Parameter> parameters) {
+        for (Parameter parameter : parameters) {
+            declare(parameter.name(), parameter.type());
+        }
+    }
+
+    private void declare(Token name, Token type) {
+        this.scopes.peek().put((String) name.value(), type.type().isTypeKeyword() ? Type.of(type) : null);
+    }
+
+    private Type lookUp(String name) {
+        for (Map<String, Type> scope : this.scopes) {
+            if (scope.containsKey(name))
+                return scope.get(name);
+        }
+
+        return null;
+    }
+
+    private void enterScope() {
+        this.scopes.push(new HashMap<>());
+    }
+
+    private void exitScope() {
+        this.scopes.pop();
+    }
+}
@@ -0,0 +1,389 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.lexer.Token;
+import dev.turtywurty.pepolang.lexer.TokenType;
+import dev.turtywurty.pepolang.parser.*;
+
+import java.util.*;
+
+/**
+ * A whole-program pass that runs after semantic analysis and removes the top-level functions and classes, and the
+ * methods of classes, that the program can never reach, so the later passes do not resolve, interpret or generate
+ * code for them.
+ * <p>
+ * Everything reachable is found by name, starting from the top-level statements that are not declarations. Calling
+ * or referring to a function reaches every top-level function with that name. Naming a class in a {@code new}
+ * expression, a type or an {@code extends} clause reaches that class, along with its fields and constructors.
+ * Accessing a member through a get or super expression, or calling a function by name, reaches the methods with that
+ * name in every reachable class. This keeps some code that is never run, such as unused overloads, but it does not
+ * depend on the types of any expressions, so it also works for bodies whose analysis was reused from the
+ * {@link AnalysisCache}.
+ * <p>
+ * Statements that are kept are returned as-is.
+ */
+public class DeadCodeEliminator implements StatementVisitor<Void>, ExpressionVisitor<Void> {
+    private final Map<String, List<Statement.FunctionStatement>> functions = new HashMap<>();
+    private final Map<String, List<Statement.ClassStatement>> classes = new HashMap<>();
+
+    private final Set<String> reachableFunctions = new HashSet<>();
+    private final Set<String> reachableClasses = new HashSet<>();
+    private final Set<String> reachableMembers = new HashSet<>();
+    private final Set<Statement.FunctionStatement> reachableMethods = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Deque<Statement> pending = new ArrayDeque<>();
+
+    public List<Statement> eliminate(List<Statement> statements) {
+        return eliminateAll(List.of(statements)).getFirst();
+    }
+
+    /**
+     * Eliminates dead code from a program made up of several modules, whose top-level declarations are all visible
+     * to each other.
+     *
+     * @param modules the statements of each module
+     * @return the live statements of each module, in the same order
+     */
+    public List<List<Statement>> eliminateAll(List<List<Statement>> modules) {
+        for (List<Statement> statements : modules) {
+            for (Statement statement : statements) {
+                switch (statement) {
+                    case Statement.FunctionStatement function ->
+                            this.functions.computeIfAbsent(nameOf(function.getName()), name -> new ArrayList<>()).add(function);
+                    case Statement.ClassStatement classStatement ->
+                            this.classes.computeIfAbsent(nameOf(classStatement.getName()), name -> new ArrayList<>()).add(classStatement);
+                    default -> this.pending.add(statement);
+                }
+            }
+        }
+
+        while (!this.pending.isEmpty()) {
+            this.pending.poll().accept(this);
+        }
+
+        List<List<Statement>> live = new ArrayList<>(modules.size());
+        for (List<Statement> statements : modules) {
+            List<Statement> liveStatements = new ArrayList<>(statements.size());
+            for (Statement statement : statements) {
+                switch (statement) {
+                    case Statement.FunctionStatement function -> {
+                        if (this.reachableFunctions.contains(nameOf(function.getName()))) {
+                            liveStatements.add(function);
+                        }
+                    }
+                    case Statement.ClassStatement classStatement -> {
+                        if (this.reachableClasses.contains(nameOf(classStatement.getName()))) {
+                            liveStatements.add(removeDeadMethods(classStatement));
+                        }
+                    }
+                    default -> liveStatements.add(statement);
+                }
+            }
+
+            live.add(liveStatements);
+        }
+
+        return live;
+    }
+
+    private Statement.ClassStatement removeDeadMethods(Statement.ClassStatement statement) {
+        List<Statement.FunctionStatement> methods = liveMethods(statement.getMethods());
+        List<Statement.FunctionStatement> staticMethods = liveMethods(statement.getStaticMethods());
+        if (methods.size() == statement.getMethods().size() && staticMethods.size() == statement.getStaticMethods().size())
+            return statement;
+
+        return new Statement.ClassStatement(statement.getName(), statement.getSuperclass(), statement.getConstructors(),
+                methods, statement.getFields(), staticMethods, statement.getStaticFields());
+    }
+
+    private List<Statement.FunctionStatement> liveMethods(List<Statement.FunctionStatement> methods) {
+        List<Statement.FunctionStatement> live = new ArrayList<>(methods.size());
+        for (Statement.FunctionStatement method : methods) {
+            if (this.reachableMethods.contains(method)) {
+                live.add(method);
+            }
+        }
+
+        return live;
+    }
+
+    private void reachFunction(String name) {
+        if (this.reachableFunctions.add(name)) {
+            this.pending.addAll(this.functions.getOrDefault(name, List.of()));
+        }
+    }
+
+    private void reachClass(String name) {
+        if (!this.reachableClasses.add(name))
+            return;
+
+        for (Statement.ClassStatement statement : this.classes.getOrDefault(name, List.of())) {
+            if (statement.getSuperclass() != null) {
+                reachClass(nameOf(statement.getSuperclass().getName()));
+            }
+
+            this.pending.addAll(statement.getConstructors());
+            this.pending.addAll(statement.getFields());
+            this.pending.addAll(statement.getStaticFields());
+            for (String member : this.reachableMembers) {
+                reachMethods(statement, member);
+            }
+        }
+    }
+
+    private void reachMember(String name) {
+        if (!this.reachableMembers.add(name))
+            return;
+
+        for (String className : this.reachableClasses) {
+            for (Statement.ClassStatement statement : this.classes.getOrDefault(className, List.of())) {
+                reachMethods(statement, name);
+            }
+        }
+    }
+
+    private void reachMethods(Statement.ClassStatement statement, String name) {
+        for (Statement.FunctionStatement method : statement.getMethods()) {
+            if (nameOf(method.getName()).equals(name) && this.reachableMethods.add(method)) {
+                this.pending.add(method);
+            }
+        }
+
+        for (Statement.FunctionStatement method : statement.getStaticMethods()) {
+            if (nameOf(method.getName()).equals(name) && this.reachableMethods.add(method)) {
+                this.pending.add(method);
+            }
+        }
+    }
+
+    private void reachType(Token type) {
+        if (type != null && type.type() == TokenType.IDENTIFIER) {
+            reachClass(nameOf(type));
+        }
+    }
+
+    private void visit(List<? extends Statement> statements) {
+        for (Statement statement : statements) {
+            visit(statement);
+        }
+    }
+
+    private void visit(Statement statement) {
+        if (statement != null) {
+            statement.accept(this);
+        }
+    }
+
+    private void visit(Expression expression) {
+        if (expression != null) {
+            expression.accept(this);
+        }
+    }
+
+    private static String nameOf(Token name) {
+        return String.valueOf(name.value());
+    }
+
+    @Override
+    public Void visitBlockStatement(Statement.BlockStatement statement) {
+        visit(statement.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStatement(Statement.FunctionStatement statement) {
+        reachType(statement.getReturnType());
+        for (Parameter parameter : statement.getParameters()) {
+            reachType(parameter.type());
+        }
+
+        visit(statement.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visitVariableStatement(Statement.VariableStatement statement) {
+        reachType(statement.getType());
+        visit(statement.getInitializer());
+        return null;
+    }
+
+    @Override
+    public Void visitClassStatement(Statement.ClassStatement statement) {
+        // Only classes declared inside a body get here, and those are kept whole
+        visit(statement.getSuperclass());
+        visit(statement.getConstructors());
+        visit(statement.getMethods());
+        visit(statement.getFields());
+        visit(statement.getStaticMethods());
+        visit(statement.getStaticFields());
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorStatement(Statement.ConstructorStatement statement) {
+        for (Parameter parameter : statement.getParameters()) {
+            reachType(parameter.type());
+        }
+
+        visit(statement.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStatement(Statement.ExpressionStatement statement) {
+        visit(statement.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visitIfStatement(Statement.IfStatement statement) {
+        visit(statement.getCondition());
+        visit(statement.getThenBranch());
+        visit(statement.getElseBranch());
+        return null;
+    }
+
+    @Override
+    public Void visitAssignStatement(Statement.AssignStatement statement) {
+        visit(statement.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStatement(Statement.WhileStatement statement) {
+        visit(statement.getCondition());
+        visit(statement.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visitForStatement(Statement.ForStatement statement) {
+        visit(statement.getInitializer());
+        visit(statement.getCondition());
+        visit(statement.getIncrement());
+        visit(statement.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStatement(Statement.BreakStatement statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStatement(Statement.ContinueStatement statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStatement(Statement.ReturnStatement statement) {
+        visit(statement.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitImportStatement(Statement.ImportStatement statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitAssign(Expression.Assign expression) {
+        visit(expression.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(Expression.Binary expression) {
+        visit(expression.getLeft());
+        visit(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitCall(Expression.Call expression) {
+        visit(expression.getCallee());
+        for (Expression argument : expression.getArguments()) {
+            visit(argument);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitNew(Expression.New expression) {
+        visit(expression.getCall());
+        return null;
+    }
+
+    @Override
+    public Void visitGet(Expression.Get expression) {
+        visit(expression.getObject());
+        reachMember(nameOf(expression.getName()));
+        return null;
+    }
+
+    @Override
+    public Void visitSet(Expression.Set expression) {
+        visit(expression.getObject());
+        visit(expression.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitThis(Expression.This expression) {
+        return null;
+    }
+
+    @Override
+    public Void visitSuper(Expression.Super expression) {
+        reachMember(nameOf(expression.getMethod()));
+        return null;
+    }
+
+    @Override
+    public Void visitGrouping(Expression.Grouping expression) {
+        visit(expression.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteral(Expression.Literal expression) {
+        return null;
+    }
+
+    @Override
+    public Void visitLogical(Expression.Logical expression) {
+        visit(expression.getLeft());
+        visit(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(Expression.Unary expression) {
+        visit(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitVariable(Expression.Variable expression) {
+        // A name can refer to a function as a value, or to a class whose static members are accessed
+        reachFunction(nameOf(expression.getName()));
+        reachClass(nameOf(expression.getName()));
+        return null;
+    }
+
+    @Override
+    public Void visitFunction(Expression.Function expression) {
+        // The callee of a constructor call is parsed the same way as the callee of a function call, and inside a
+        // class a method can be called without naming the object
+        reachFunction(nameOf(expression.getName()));
+        reachClass(nameOf(expression.getName()));
+        reachMember(nameOf(expression.getName()));
+        return null;
+    }
+
+    @Override
+    public Void visitExtends(Expression.Extends expression) {
+        reachClass(nameOf(expression.getName()));
+        return null;
+    }
+}
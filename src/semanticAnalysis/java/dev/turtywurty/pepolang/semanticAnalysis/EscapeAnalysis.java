@@ -0,0 +1,66 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.Statement;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The local variables that {@link EscapeAnalyzer} found to hold an object that never leaves the scope it was created
+ * in, along with the field accesses made through them. All lookups compare by identity.
+ * <p>
+ * The fields of a local object are numbered per class, so every access knows the slot it reads or writes ahead of
+ * time. That includes the field stores to {@code this} in the constructors the objects are created with.
+ */
+public final class EscapeAnalysis {
+    private final Map<Statement.VariableStatement, Integer> localObjects = new IdentityHashMap<>();
+    private final Set<Expression> allocations = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Expression, Integer> fieldSlots = new IdentityHashMap<>();
+
+    void addLocalObject(Statement.VariableStatement localObject, int fieldCount) {
+        this.localObjects.put(localObject, fieldCount);
+        this.allocations.add(localObject.getInitializer());
+    }
+
+    void addFieldAccess(Expression access, int slot) {
+        this.fieldSlots.put(access, slot);
+    }
+
+    /**
+     * @return whether the variable is initialized with an object that does not escape, so its fields can be kept
+     * in local slots or on the stack instead of in a heap object
+     */
+    public boolean isLocalObject(Statement.VariableStatement statement) {
+        return this.localObjects.containsKey(statement);
+    }
+
+    /**
+     * @return whether the expression is the {@code new} expression that initializes a local object
+     */
+    public boolean isLocalAllocation(Expression.New expression) {
+        return this.allocations.contains(expression);
+    }
+
+    /**
+     * @return the number of slots the fields of the local object need
+     */
+    public int getFieldCount(Statement.VariableStatement localObject) {
+        return this.localObjects.getOrDefault(localObject, 0);
+    }
+
+    /**
+     * @param access a get or set expression
+     * @return the slot of the field that is accessed if the object is a local object, or {@code -1} if the access
+     * is never made through one
+     */
+    public int getFieldSlot(Expression access) {
+        return this.fieldSlots.getOrDefault(access, -1);
+    }
+
+    public int size() {
+        return this.localObjects.size();
+    }
+}
@@ -0,0 +1,497 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.lexer.Token;
+import dev.turtywurty.pepolang.parser.*;
+
+import java.util.*;
+
+/**
+ * Finds the objects that are created by a local variable's initializer and never leave that variable, so their fields
+ * can be kept in local slots (by the interpreter) or on the stack (by the code generator) rather than in a heap
+ * object.
+ * <p>
+ * A local {@code C c = new C(...)} does not escape if {@code c} is only ever used to read or write fields, with
+ * {@code c.x} or {@code c.x = value}. Passing, returning, comparing or assigning {@code c}, reassigning it, calling a
+ * method on it, or using it from a nested function all make it escape. The class has to be a top-level class declared
+ * once, with a known superclass chain, and its constructors may only use {@code this} to store fields, with
+ * {@code this.x = value}, since they would otherwise be able to hand the object to someone else. Those stores are
+ * made to the slots of the local object, as if the constructor was inlined. Variables in the global scope are never
+ * local objects, as functions can read them by name.
+ * <p>
+ * Every field that is accessed through a local object, or stored in a constructor, is given a slot in the layout of
+ * its class, in the order they are first seen.
+ */
+public class EscapeAnalyzer implements StatementVisitor<Void>, ExpressionVisitor<Void> {
+    // Marks where a function body starts, so candidates used from inside a nested function escape
+    private static final Map<String, Candidate> FUNCTION_BOUNDARY = Map.of();
+
+    private final Map<String, List<Statement.ClassStatement>> classes = new HashMap<>();
+    private final Set<String> constructorsUsingThis = new HashSet<>();
+    private final List<ConstructorStore> constructorStores = new ArrayList<>();
+    private final Map<String, Map<String, Integer>> layouts = new HashMap<>();
+    private final Deque<Map<String, Candidate>> scopes = new ArrayDeque<>();
+    private final List<Candidate> candidates = new ArrayList<>();
+    private String currentConstructorClass;
+    // The class whose fields 'this.x = value' stores to, which is only set directly in the body of a constructor
+    private String fieldStoreClass;
+
+    public EscapeAnalysis analyze(List<Statement> statements) {
+        return analyzeAll(List.of(statements));
+    }
+
+    /**
+     * @param modules the statements of each module of a program, whose top-level classes are all visible to each
+     *                other
+     */
+    public EscapeAnalysis analyzeAll(List<List<Statement>> modules) {
+        for (List<Statement> statements : modules) {
+            for (Statement statement : statements) {
+                if (statement instanceof Statement.ClassStatement classStatement) {
+                    this.classes.computeIfAbsent(nameOf(classStatement.getName()), name -> new ArrayList<>()).add(classStatement);
+                }
+            }
+        }
+
+        for (List<Statement> statements : modules) {
+            visit(statements);
+        }
+
+        var analysis = new EscapeAnalysis();
+        for (ConstructorStore store : this.constructorStores) {
+            if (!this.constructorsUsingThis.contains(store.className)) {
+                analysis.addFieldAccess(store.store, slot(store.className, store.store.getName()));
+            }
+        }
+
+        List<Candidate> localObjects = new ArrayList<>();
+        for (Candidate candidate : this.candidates) {
+            if (!candidate.escaped && !this.constructorsUsingThis.contains(candidate.className)) {
+                localObjects.add(candidate);
+                for (Expression access : candidate.accesses) {
+                    analysis.addFieldAccess(access, slot(candidate.className, fieldName(access)));
+                }
+            }
+        }
+
+        // Only counted once every slot is known, as an access through one object can add a slot to all of its class
+        for (Candidate candidate : localObjects) {
+            analysis.addLocalObject(candidate.declaration, this.layouts.getOrDefault(candidate.className, Map.of()).size());
+        }
+
+        return analysis;
+    }
+
+    private int slot(String className, Token field) {
+        Map<String, Integer> layout = this.layouts.computeIfAbsent(className, name -> new HashMap<>());
+        return layout.computeIfAbsent(nameOf(field), name -> layout.size());
+    }
+
+    private static Token fieldName(Expression access) {
+        return switch (access) {
+            case Expression.Get get -> get.getName();
+            case Expression.Set set -> set.getName();
+            default -> throw new IllegalArgumentException("Not a field access: " + access);
+        };
+    }
+
+    /**
+     * @return the names of the methods that the class and its superclasses declare, or {@code null} if objects of
+     * the class can not be local objects
+     */
+    private Set<String> methodNames(String className) {
+        Set<String> methods = new HashSet<>();
+        Set<String> seen = new HashSet<>();
+        String current = className;
+        while (current != null) {
+            List<Statement.ClassStatement> declarations = this.classes.get(current);
+            if (declarations == null || declarations.size() != 1 || !seen.add(current))
+                return null;
+
+            Statement.ClassStatement statement = declarations.getFirst();
+            for (Statement.FunctionStatement method : statement.getMethods()) {
+                methods.add(nameOf(method.getName()));
+            }
+
+            for (Statement.FunctionStatement method : statement.getStaticMethods()) {
+                methods.add(nameOf(method.getName()));
+            }
+
+            current = statement.getSuperclass() == null ? null : nameOf(statement.getSuperclass().getName());
+        }
+
+        return methods;
+    }
+
+    private Candidate createCandidate(Statement.VariableStatement statement) {
+        if (this.scopes.isEmpty() || !(statement.getInitializer() instanceof Expression.New newExpression) ||
+                !(newExpression.getCall() instanceof Expression.Call call))
+            return null;
+
+        Token className = switch (call.getCallee()) {
+            case Expression.Function function -> function.getName();
+            case Expression.Variable variable -> variable.getName();
+            default -> null;
+        };
+        if (className == null)
+            return null;
+
+        Set<String> methods = methodNames(nameOf(className));
+        if (methods == null)
+            return null;
+
+        return new Candidate(statement, nameOf(className), methods);
+    }
+
+    private Candidate lookUp(String name) {
+        boolean crossedFunction = false;
+        for (Map<String, Candidate> scope : this.scopes) {
+            if (scope == FUNCTION_BOUNDARY) {
+                crossedFunction = true;
+            } else if (scope.containsKey(name)) {
+                Candidate candidate = scope.get(name);
+                if (candidate != null && crossedFunction) {
+                    candidate.escaped = true;
+                    return null;
+                }
+
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    private void escape(String name) {
+        Candidate candidate = lookUp(name);
+        if (candidate != null) {
+            candidate.escaped = true;
+        }
+    }
+
+    /**
+     * Records a field access made through a candidate, or visits the object normally if it is not one.
+     */
+    private void accessField(Expression access, Expression object, Token name) {
+        if (object instanceof Expression.Variable variable) {
+            Candidate candidate = lookUp(nameOf(variable.getName()));
+            if (candidate != null) {
+                if (candidate.methods.contains(nameOf(name))) {
+                    candidate.escaped = true;
+                } else {
+                    candidate.accesses.add(access);
+                }
+
+                return;
+            }
+        }
+
+        visit(object);
+    }
+
+    private void declare(Token name, Candidate candidate) {
+        if (!this.scopes.isEmpty()) {
+            this.scopes.peek().put(nameOf(name), candidate);
+        }
+    }
+
+    private void beginScope() {
+        this.scopes.push(new HashMap<>());
+    }
+
+    private void endScope() {
+        this.scopes.pop();
+    }
+
+    private void beginFunction(List<Parameter> parameters) {
+        this.scopes.push(FUNCTION_BOUNDARY);
+        beginScope();
+        for (Parameter parameter : parameters) {
+            declare(parameter.name(), null);
+        }
+    }
+
+    private void endFunction() {
+        endScope();
+        this.scopes.pop();
+    }
+
+    private void visit(List<? extends Statement> statements) {
+        for (Statement statement : statements) {
+            visit(statement);
+        }
+    }
+
+    private void visit(Statement statement) {
+        if (statement != null) {
+            statement.accept(this);
+        }
+    }
+
+    private void visit(Expression expression) {
+        if (expression != null) {
+            expression.accept(this);
+        }
+    }
+
+    private static String nameOf(Token name) {
+        return String.valueOf(name.value());
+    }
+
+    @Override
+    public Void visitBlockStatement(Statement.BlockStatement statement) {
+        beginScope();
+        visit(statement.getStatements());
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStatement(Statement.FunctionStatement statement) {
+        String enclosingFieldStoreClass = this.fieldStoreClass;
+        this.fieldStoreClass = null;
+        beginFunction(statement.getParameters());
+        visit(statement.getBody());
+        endFunction();
+        this.fieldStoreClass = enclosingFieldStoreClass;
+        return null;
+    }
+
+    @Override
+    public Void visitVariableStatement(Statement.VariableStatement statement) {
+        visit(statement.getInitializer());
+
+        Candidate candidate = createCandidate(statement);
+        if (candidate != null) {
+            this.candidates.add(candidate);
+        }
+
+        declare(statement.getName(), candidate);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStatement(Statement.ClassStatement statement) {
+        // Fields are not local variables, so only their initializers are visited
+        for (Statement.VariableStatement field : statement.getFields()) {
+            visit(field.getInitializer());
+        }
+
+        for (Statement.VariableStatement field : statement.getStaticFields()) {
+            visit(field.getInitializer());
+        }
+
+        String enclosingConstructorClass = this.currentConstructorClass;
+        this.currentConstructorClass = nameOf(statement.getName());
+        visit(statement.getConstructors());
+        this.currentConstructorClass = enclosingConstructorClass;
+
+        visit(statement.getMethods());
+        visit(statement.getStaticMethods());
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorStatement(Statement.ConstructorStatement statement) {
+        this.fieldStoreClass = this.currentConstructorClass;
+        beginFunction(statement.getParameters());
+        visit(statement.getBody());
+        endFunction();
+        this.fieldStoreClass = null;
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStatement(Statement.ExpressionStatement statement) {
+        visit(statement.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visitIfStatement(Statement.IfStatement statement) {
+        visit(statement.getCondition());
+        visit(statement.getThenBranch());
+        visit(statement.getElseBranch());
+        return null;
+    }
+
+    @Override
+    public Void visitAssignStatement(Statement.AssignStatement statement) {
+        escape(nameOf(statement.getName()));
+        visit(statement.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStatement(Statement.WhileStatement statement) {
+        visit(statement.getCondition());
+        visit(statement.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visitForStatement(Statement.ForStatement statement) {
+        beginScope();
+        visit(statement.getInitializer());
+        visit(statement.getCondition());
+        visit(statement.getIncrement());
+        visit(statement.getBody());
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStatement(Statement.BreakStatement statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStatement(Statement.ContinueStatement statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStatement(Statement.ReturnStatement statement) {
+        visit(statement.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitImportStatement(Statement.ImportStatement statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitAssign(Expression.Assign expression) {
+        escape(nameOf(expression.getName()));
+        visit(expression.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(Expression.Binary expression) {
+        visit(expression.getLeft());
+        visit(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitCall(Expression.Call expression) {
+        // A method call binds the object to this, so the object of a get used as a callee is visited as a value
+        if (expression.getCallee() instanceof Expression.Get get) {
+            visit(get.getObject());
+        } else {
+            visit(expression.getCallee());
+        }
+
+        for (Expression argument : expression.getArguments()) {
+            visit(argument);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitNew(Expression.New expression) {
+        if (expression.getCall() instanceof Expression.Call call) {
+            for (Expression argument : call.getArguments()) {
+                visit(argument);
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitGet(Expression.Get expression) {
+        accessField(expression, expression.getObject(), expression.getName());
+        return null;
+    }
+
+    @Override
+    public Void visitSet(Expression.Set expression) {
+        if (expression.getObject() instanceof Expression.This && this.fieldStoreClass != null) {
+            this.constructorStores.add(new ConstructorStore(expression, this.fieldStoreClass));
+            visit(expression.getValue());
+            return null;
+        }
+
+        accessField(expression, expression.getObject(), expression.getName());
+        visit(expression.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitThis(Expression.This expression) {
+        if (this.currentConstructorClass != null) {
+            this.constructorsUsingThis.add(this.currentConstructorClass);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitSuper(Expression.Super expression) {
+        if (this.currentConstructorClass != null) {
+            this.constructorsUsingThis.add(this.currentConstructorClass);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitGrouping(Expression.Grouping expression) {
+        visit(expression.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteral(Expression.Literal expression) {
+        return null;
+    }
+
+    @Override
+    public Void visitLogical(Expression.Logical expression) {
+        visit(expression.getLeft());
+        visit(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(Expression.Unary expression) {
+        visit(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitVariable(Expression.Variable expression) {
+        escape(nameOf(expression.getName()));
+        return null;
+    }
+
+    @Override
+    public Void visitFunction(Expression.Function expression) {
+        return null;
+    }
+
+    @Override
+    public Void visitExtends(Expression.Extends expression) {
+        return null;
+    }
+
+    private static final class Candidate {
+        private final Statement.VariableStatement declaration;
+        private final String className;
+        private final Set<String> methods;
+        private final List<Expression> accesses = new ArrayList<>();
+        private boolean escaped;
+
+        private Candidate(Statement.VariableStatement declaration, String className, Set<String> methods) {
+            this.declaration = declaration;
+            this.className = className;
+            this.methods = methods;
+        }
+    }
+
+    private record ConstructorStore(Expression.Set store, String className) {
+    }
+}
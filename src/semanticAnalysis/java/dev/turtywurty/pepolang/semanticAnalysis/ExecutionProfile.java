@@ -0,0 +1,307 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.parser.AstArena;
+import dev.turtywurty.pepolang.parser.AstArenaEncoder;
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.Statement;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts of how often the branches, calls and functions of a program ran, recorded by the interpreter so the native
+ * code generator can optimize for the paths that real runs take.
+ * <p>
+ * The profile has a counter per site: the condition of every {@code if}, {@code while} and {@code for} statement
+ * counts how often it was true and false, every call expression counts how often it ran, and every function counts
+ * how often it was called. A site is keyed by the fingerprint of the top-level statement it is in (see
+ * {@link AstArena#fingerprint()}) and its position among the sites of that statement, so the counts of a function
+ * survive edits to the rest of the file, and are dropped once the function itself changes. Counts from several runs
+ * add up.
+ * <p>
+ * Counters are looked up through {@link Sites}, which binds them to the nodes of a parsed program.
+ */
+public class ExecutionProfile {
+    private static final int MAGIC = 0x50455050; // "PEPP"
+    private static final int VERSION = 1;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Loads a profile saved by {@link #save(Path)}. A missing, unreadable or outdated file gives an empty profile.
+     */
+    public static ExecutionProfile load(Path path) {
+        var profile = new ExecutionProfile();
+        if (!Files.isRegularFile(path))
+            return profile;
+
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                return profile;
+
+            int counterCount = input.readInt();
+            for (int index = 0; index < counterCount; index++) {
+                String key = input.readUTF();
+                var counter = new Counter(SiteKind.values()[input.readByte()]);
+                counter.first = input.readLong();
+                counter.second = input.readLong();
+                profile.counters.put(key, counter);
+            }
+        } catch (IOException | RuntimeException exception) {
+            return new ExecutionProfile();
+        }
+
+        return profile;
+    }
+
+    public void save(Path path) throws IOException {
+        try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+
+            output.writeInt(this.counters.size());
+            for (Map.Entry<String, Counter> keyed : this.counters.entrySet()) {
+                Counter counter = keyed.getValue();
+                output.writeUTF(keyed.getKey());
+                output.writeByte(counter.kind.ordinal());
+                output.writeLong(counter.first);
+                output.writeLong(counter.second);
+            }
+        }
+    }
+
+    /**
+     * @return a hash of every count, which changes whenever anything is recorded
+     */
+    public String fingerprint() {
+        var description = new StringBuilder();
+        new TreeMap<>(this.counters).forEach((key, counter) ->
+                description.append(key).append('=').append(counter.first).append(',').append(counter.second).append(';'));
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(description.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+    }
+
+    /**
+     * Binds the counters to the sites of a program that is about to be interpreted, adding zeroed counters for the
+     * sites this profile has not seen yet, so that sites which never run are recorded as such.
+     *
+     * @param modules the statements of each module of the program
+     */
+    public Sites record(List<List<Statement>> modules) {
+        var sites = new Sites(this);
+        for (List<Statement> statements : modules) {
+            bind(statements, sites, true);
+        }
+
+        return sites;
+    }
+
+    /**
+     * Binds the counters this profile has to the sites of a program. Sites without a counter have no count.
+     */
+    public Sites lookUp(List<Statement> statements) {
+        var sites = new Sites(this);
+        bind(statements, sites, false);
+        return sites;
+    }
+
+    /**
+     * @return the branches, calls and functions in the statement, in the order their counters are numbered in
+     */
+    public static List<Object> sitesOf(Statement statement) {
+        List<Object> nodes = new ArrayList<>();
+        new SiteFinder(new AstArena(), nodes).encode(statement);
+        return nodes;
+    }
+
+    private void bind(List<Statement> statements, Sites sites, boolean create) {
+        for (Statement statement : statements) {
+            List<Object> nodes = new ArrayList<>();
+            var arena = new AstArena();
+            arena.addRoot(new SiteFinder(arena, nodes).encode(statement));
+
+            String prefix = arena.fingerprint() + ":";
+            for (int index = 0; index < nodes.size(); index++) {
+                Object node = nodes.get(index);
+                SiteKind kind = node instanceof Expression.Call ? SiteKind.CALL
+                        : node instanceof Statement.FunctionStatement ? SiteKind.ENTRY
+                        : SiteKind.BRANCH;
+                String key = prefix + index;
+                Counter counter = create
+                        ? this.counters.computeIfAbsent(key, ignored -> new Counter(kind))
+                        : this.counters.get(key);
+                if (counter != null && counter.kind == kind) {
+                    sites.counters.put(node, counter);
+                }
+            }
+        }
+
+        long entries = 0;
+        for (Counter counter : this.counters.values()) {
+            if (counter.kind == SiteKind.ENTRY) {
+                entries += counter.first;
+            }
+        }
+
+        sites.totalEntries = entries;
+    }
+
+    /**
+     * Collects the sites of a statement in the order the encoder reaches them, which is the same for the same code.
+     */
+    private static final class SiteFinder extends AstArenaEncoder {
+        private final List<Object> nodes;
+
+        private SiteFinder(AstArena arena, List<Object> nodes) {
+            super(arena);
+            this.nodes = nodes;
+        }
+
+        @Override
+        public Integer visitIfStatement(Statement.IfStatement statement) {
+            this.nodes.add(statement);
+            return super.visitIfStatement(statement);
+        }
+
+        @Override
+        public Integer visitWhileStatement(Statement.WhileStatement statement) {
+            this.nodes.add(statement);
+            return super.visitWhileStatement(statement);
+        }
+
+        @Override
+        public Integer visitForStatement(Statement.ForStatement statement) {
+            this.nodes.add(statement);
+            return super.visitForStatement(statement);
+        }
+
+        @Override
+        public Integer visitCall(Expression.Call expression) {
+            this.nodes.add(expression);
+            return super.visitCall(expression);
+        }
+
+        @Override
+        public Integer visitFunctionStatement(Statement.FunctionStatement statement) {
+            this.nodes.add(statement);
+            return super.visitFunctionStatement(statement);
+        }
+    }
+
+    /**
+     * The counters of a profile, bound to the nodes of one program, compared by identity. Recording is not
+     * thread-safe, while reading is.
+     */
+    public static final class Sites {
+        private final ExecutionProfile profile;
+        private final Map<Object, Counter> counters = new IdentityHashMap<>();
+        private long totalEntries;
+
+        private Sites(ExecutionProfile profile) {
+            this.profile = profile;
+        }
+
+        /**
+         * Records which way the condition of an {@code if}, {@code while} or {@code for} statement went.
+         */
+        public void recordBranch(Statement statement, boolean taken) {
+            Counter counter = this.counters.get(statement);
+            if (counter != null) {
+                if (taken) {
+                    counter.first++;
+                } else {
+                    counter.second++;
+                }
+            }
+        }
+
+        /**
+         * Records that a call expression ran.
+         *
+         * @param callee the function it called, or {@code null} if it was not a PepoLang function
+         */
+        public void recordCall(Expression.Call call, Statement.@Nullable FunctionStatement callee) {
+            Counter counter = this.counters.get(call);
+            if (counter != null) {
+                counter.first++;
+            }
+
+            Counter entries = callee == null ? null : this.counters.get(callee);
+            if (entries != null) {
+                entries.first++;
+                this.totalEntries++;
+            }
+        }
+
+        /**
+         * @return how often the statement's condition was true and how often it was false, or {@code null} if the
+         * profile has no counts for it
+         */
+        public long @Nullable [] getBranchCounts(Statement statement) {
+            Counter counter = this.counters.get(statement);
+            return counter == null ? null : new long[]{counter.first, counter.second};
+        }
+
+        /**
+         * @return how often the call ran, or -1 if the profile has no count for it
+         */
+        public long getCallCount(Expression.Call call) {
+            Counter counter = this.counters.get(call);
+            return counter == null ? -1 : counter.first;
+        }
+
+        /**
+         * @return how often the function was called, or -1 if the profile has no count for it
+         */
+        public long getEntryCount(Statement.FunctionStatement function) {
+            Counter counter = this.counters.get(function);
+            return counter == null ? -1 : counter.first;
+        }
+
+        /**
+         * @return a hash of every count of the profile the sites are bound to
+         * @see ExecutionProfile#fingerprint()
+         */
+        public String fingerprint() {
+            return this.profile.fingerprint();
+        }
+
+        /**
+         * @return how often any function was called, over the whole profile
+         */
+        public long getTotalEntries() {
+            return this.totalEntries;
+        }
+    }
+
+    private enum SiteKind {
+        BRANCH,
+        CALL,
+        ENTRY
+    }
+
+    /**
+     * For a branch, the times its condition was true and false. For a call or a function, the times it ran, and 0.
+     */
+    private static final class Counter {
+        private final SiteKind kind;
+        private long first;
+        private long second;
+
+        private Counter(SiteKind kind) {
+            this.kind = kind;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.lexer.Token;
+import dev.turtywurty.pepolang.parser.*;
+
+import java.util.*;
+
+/**
+ * Finds the top-level functions whose result depends only on their arguments and that have no side effects, so a
+ * call to one of them can be replaced by the result of an earlier call with the same arguments.
+ * <p>
+ * A function is pure if its body only reads and assigns its own parameters and local variables, only calls pure
+ * functions and the pure built-ins ({@code sqrt}, {@code parseInt} and {@code parseDouble}), and does not use objects,
+ * declare nested functions or classes, or call anything that is not a function name. Reading a global variable makes
+ * a function impure, since the global can change between calls. Functions that only call each other recursively are
+ * pure unless one of them does something impure.
+ */
+public class PurityAnalyzer implements StatementVisitor<Boolean>, ExpressionVisitor<Boolean> {
+    private static final Set<String> PURE_BUILTINS = Set.of("sqrt", "parseInt", "parseDouble");
+
+    private final Map<String, List<Statement.FunctionStatement>> functions = new HashMap<>();
+    private final Deque<Set<String>> scopes = new ArrayDeque<>();
+    private Set<String> calledFunctions;
+
+    public Set<Statement.FunctionStatement> analyze(List<Statement> statements) {
+        return analyzeAll(List.of(statements));
+    }
+
+    /**
+     * @param modules the statements of each module of a program, whose top-level functions are all visible to each
+     *                other
+     * @return the pure top-level functions, compared by identity
+     */
+    public Set<Statement.FunctionStatement> analyzeAll(List<List<Statement>> modules) {
+        for (List<Statement> statements : modules) {
+            for (Statement statement : statements) {
+                if (statement instanceof Statement.FunctionStatement function) {
+                    this.functions.computeIfAbsent(nameOf(function.getName()), name -> new ArrayList<>()).add(function);
+                }
+            }
+        }
+
+        // Each function is checked on its own first, remembering which functions it calls
+        Map<Statement.FunctionStatement, Set<String>> candidates = new IdentityHashMap<>();
+        for (List<Statement.FunctionStatement> overloads : this.functions.values()) {
+            for (Statement.FunctionStatement function : overloads) {
+                this.calledFunctions = new HashSet<>();
+                if (Boolean.TRUE.equals(function.accept(this))) {
+                    candidates.put(function, this.calledFunctions);
+                }
+            }
+        }
+
+        // Then functions calling a function that is not pure are removed until nothing changes
+        boolean changed = true;
+        while (changed) {
+            changed = candidates.entrySet().removeIf(candidate -> !candidate.getValue().stream().allMatch(name ->
+                    this.functions.get(name).stream().allMatch(candidates::containsKey)));
+        }
+
+        Set<Statement.FunctionStatement> pure = Collections.newSetFromMap(new IdentityHashMap<>());
+        pure.addAll(candidates.keySet());
+        return pure;
+    }
+
+    private boolean isLocal(String name) {
+        for (Set<String> scope : this.scopes) {
+            if (scope.contains(name))
+                return true;
+        }
+
+        return false;
+    }
+
+    private void declare(String name) {
+        this.scopes.peek().add(name);
+    }
+
+    private boolean check(List<? extends Statement> statements) {
+        for (Statement statement : statements) {
+            if (!check(statement))
+                return false;
+        }
+
+        return true;
+    }
+
+    private boolean check(Statement statement) {
+        return statement == null || statement.accept(this);
+    }
+
+    private boolean check(Expression expression) {
+        return expression == null || expression.accept(this);
+    }
+
+    private static String nameOf(Token name) {
+        return String.valueOf(name.value());
+    }
+
+    @Override
+    public Boolean visitBlockStatement(Statement.BlockStatement statement) {
+        this.scopes.push(new HashSet<>());
+        try {
+            return check(statement.getStatements());
+        } finally {
+            this.scopes.pop();
+        }
+    }
+
+    @Override
+    public Boolean visitFunctionStatement(Statement.FunctionStatement statement) {
+        // Nested functions can capture and outlive the call, so only top-level functions are checked
+        if (!this.scopes.isEmpty())
+            return false;
+
+        this.scopes.push(new HashSet<>());
+        try {
+            for (Parameter parameter : statement.getParameters()) {
+                declare(nameOf(parameter.name()));
+            }
+
+            return check(statement.getBody());
+        } finally {
+            this.scopes.pop();
+        }
+    }
+
+    @Override
+    public Boolean visitVariableStatement(Statement.VariableStatement statement) {
+        if (!check(statement.getInitializer()))
+            return false;
+
+        declare(nameOf(statement.getName()));
+        return true;
+    }
+
+    @Override
+    public Boolean visitClassStatement(Statement.ClassStatement statement) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitConstructorStatement(Statement.ConstructorStatement statement) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitExpressionStatement(Statement.ExpressionStatement statement) {
+        return check(statement.getExpression());
+    }
+
+    @Override
+    public Boolean visitIfStatement(Statement.IfStatement statement) {
+        return check(statement.getCondition()) && check(statement.getThenBranch()) && check(statement.getElseBranch());
+    }
+
+    @Override
+    public Boolean visitAssignStatement(Statement.AssignStatement statement) {
+        return isLocal(nameOf(statement.getName())) && check(statement.getValue());
+    }
+
+    @Override
+    public Boolean visitWhileStatement(Statement.WhileStatement statement) {
+        return check(statement.getCondition()) && check(statement.getBody());
+    }
+
+    @Override
+    public Boolean visitForStatement(Statement.ForStatement statement) {
+        this.scopes.push(new HashSet<>());
+        try {
+            return check(statement.getInitializer()) && check(statement.getCondition()) &&
+                    check(statement.getIncrement()) && check(statement.getBody());
+        } finally {
+            this.scopes.pop();
+        }
+    }
+
+    @Override
+    public Boolean visitBreakStatement(Statement.BreakStatement statement) {
+        return true;
+    }
+
+    @Override
+    public Boolean visitContinueStatement(Statement.ContinueStatement statement) {
+        return true;
+    }
+
+    @Override
+    public Boolean visitReturnStatement(Statement.ReturnStatement statement) {
+        return check(statement.getValue());
+    }
+
+    @Override
+    public Boolean visitImportStatement(Statement.ImportStatement statement) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitAssign(Expression.Assign expression) {
+        return isLocal(nameOf(expression.getName())) && check(expression.getValue());
+    }
+
+    @Override
+    public Boolean visitBinary(Expression.Binary expression) {
+        return check(expression.getLeft()) && check(expression.getRight());
+    }
+
+    @Override
+    public Boolean visitCall(Expression.Call expression) {
+        if (!(expression.getCallee() instanceof Expression.Function function))
+            return false;
+
+        String name = nameOf(function.getName());
+        if (this.functions.containsKey(name)) {
+            this.calledFunctions.add(name);
+        } else if (!PURE_BUILTINS.contains(name)) {
+            return false;
+        }
+
+        for (Expression argument : expression.getArguments()) {
+            if (!check(argument))
+                return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public Boolean visitNew(Expression.New expression) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitGet(Expression.Get expression) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitSet(Expression.Set expression) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitThis(Expression.This expression) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitSuper(Expression.Super expression) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitGrouping(Expression.Grouping expression) {
+        return check(expression.getExpression());
+    }
+
+    @Override
+    public Boolean visitLiteral(Expression.Literal expression) {
+        return true;
+    }
+
+    @Override
+    public Boolean visitLogical(Expression.Logical expression) {
+        return check(expression.getLeft()) && check(expression.getRight());
+    }
+
+    @Override
+    public Boolean visitUnary(Expression.Unary expression) {
+        return check(expression.getRight());
+    }
+
+    @Override
+    public Boolean visitVariable(Expression.Variable expression) {
+        return isLocal(nameOf(expression.getName()));
+    }
+
+    @Override
+    public Boolean visitFunction(Expression.Function expression) {
+        // Only reached for a function used as a value, since calls are handled by visitCall
+        return false;
+    }
+
+    @Override
+    public Boolean visitExtends(Expression.Extends expression) {
+        return false;
+    }
+}
@@ -5,38 +5,199 @@ import dev.turtywurty.pepolang.lexer.TokenType;
 import dev.turtywurty.pepolang.parser.*;
 import dev.turtywurty.pepolang.semanticAnalysis.symbol.*;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVisitor<Symbol> {
+    private static final List<Symbol> BUILTINS = List.of(
+            new MethodSymbol("print", PrimitiveType.VOID, List.of(new VariableSymbol("value", PrimitiveType.STRING))),
+            new MethodSymbol("time", PrimitiveType.LONG, List.of()),
+            new MethodSymbol("randomDouble", PrimitiveType.DOUBLE, List.of(new VariableSymbol("min", PrimitiveType.DOUBLE), new VariableSymbol("max", PrimitiveType.DOUBLE))),
+            new MethodSymbol("randomInt", PrimitiveType.INT, List.of(new VariableSymbol("min", PrimitiveType.INT), new VariableSymbol("max", PrimitiveType.INT))),
+            new MethodSymbol("sqrt", PrimitiveType.DOUBLE, List.of(new VariableSymbol("value", PrimitiveType.DOUBLE))),
+            new MethodSymbol("input", PrimitiveType.STRING, List.of(new VariableSymbol("prompt", PrimitiveType.STRING))),
+            new MethodSymbol("parseInt", PrimitiveType.INT, List.of(new VariableSymbol("value", PrimitiveType.STRING))),
+            new MethodSymbol("parseDouble", PrimitiveType.DOUBLE, List.of(new VariableSymbol("value", PrimitiveType.STRING))),
+            new MethodSymbol("sleep", PrimitiveType.VOID, List.of(new VariableSymbol("milliseconds", PrimitiveType.LONG)))
+    );
+
     private final List<Statement> statements;
     private final SymbolTable symbolTable;
 
     private final List<SemanticException> errors = new ArrayList<>();
+    private final TypeTable types = new TypeTable();
+    private List<DeferredBody> deferredBodies;
+    private AnalysisCache cache;
+    private Type returnType;
+
+    public SemanticAnalyzer() {
+        this(List.of());
+    }
 
     public SemanticAnalyzer(List<Statement> statements) {
+        this(statements, new SymbolTable());
+        for (Symbol builtin : BUILTINS) {
+            this.symbolTable.addSymbol(builtin);
+        }
+    }
+
+    private SemanticAnalyzer(List<Statement> statements, SymbolTable symbolTable) {
         this.statements = statements;
-        this.symbolTable = new SymbolTable();
-        this.symbolTable.addSymbol(new MethodSymbol("print", PrimitiveType.VOID, List.of(new VariableSymbol("value", PrimitiveType.STRING))));
-        this.symbolTable.addSymbol(new MethodSymbol("time", PrimitiveType.LONG, List.of()));
-        this.symbolTable.addSymbol(new MethodSymbol("randomDouble", PrimitiveType.DOUBLE, List.of(new VariableSymbol("min", PrimitiveType.DOUBLE), new VariableSymbol("max", PrimitiveType.DOUBLE))));
-        this.symbolTable.addSymbol(new MethodSymbol("randomInt", PrimitiveType.INT, List.of(new VariableSymbol("min", PrimitiveType.INT), new VariableSymbol("max", PrimitiveType.INT))));
-        this.symbolTable.addSymbol(new MethodSymbol("sqrt", PrimitiveType.DOUBLE, List.of(new VariableSymbol("value", PrimitiveType.DOUBLE))));
-        this.symbolTable.addSymbol(new MethodSymbol("input", PrimitiveType.STRING, List.of(new VariableSymbol("prompt", PrimitiveType.STRING))));
-        this.symbolTable.addSymbol(new MethodSymbol("parseInt", PrimitiveType.INT, List.of(new VariableSymbol("value", PrimitiveType.STRING))));
-        this.symbolTable.addSymbol(new MethodSymbol("parseDouble", PrimitiveType.DOUBLE, List.of(new VariableSymbol("value", PrimitiveType.STRING))));
-        this.symbolTable.addSymbol(new MethodSymbol("sleep", PrimitiveType.VOID, List.of(new VariableSymbol("milliseconds", PrimitiveType.LONG))));
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Makes the given symbols, usually the exports of an imported module, visible in the global scope. Symbols that
+     * are already visible are skipped, so importing the same module twice is harmless.
+     */
+    public void importSymbols(List<Symbol> symbols) {
+        List<Symbol> globals = this.symbolTable.getGlobalSymbols();
+        for (Symbol symbol : symbols) {
+            if (globals.stream().noneMatch(global -> global == symbol)) {
+                this.symbolTable.addSymbol(symbol);
+            }
+        }
+    }
+
+    /**
+     * @return the symbols declared in the global scope by the analyzed statements, excluding the built-ins
+     */
+    public List<Symbol> getExportedSymbols() {
+        List<Symbol> symbols = new ArrayList<>(this.symbolTable.getGlobalSymbols());
+        symbols.removeIf(symbol -> BUILTINS.stream().anyMatch(builtin -> builtin == symbol));
+        return symbols;
+    }
+
+    /**
+     * Makes {@link #analyze()} reuse the results of bodies that, along with every declaration they depend on, are
+     * unchanged since they were last checked with the given cache.
+     */
+    public void setCache(AnalysisCache cache) {
+        this.cache = cache;
     }
 
+    /**
+     * Analyzes all the statements in two phases. The first walks the statements in order, declaring classes,
+     * functions and variables but only recording the bodies of functions, methods and constructors. The second
+     * checks those bodies in parallel, each against the global symbols that were declared before it. Errors are
+     * reported in source order, and the type of every expression is recorded in {@link #getTypes()}.
+     */
     public void analyze() {
+        this.deferredBodies = new ArrayList<>();
         for (Statement statement : this.statements) {
-            try {
+            analyze(statement);
+        }
+
+        List<DeferredBody> bodies = this.deferredBodies;
+        this.deferredBodies = null;
+
+        List<CheckedBody> checkedBodies = bodies.parallelStream()
+                .map(this::checkDeferredBody)
+                .toList();
+        for (CheckedBody checkedBody : checkedBodies) {
+            this.errors.addAll(checkedBody.errors());
+            if (checkedBody.types() != null) {
+                this.types.merge(checkedBody.types());
+            }
+        }
+
+        this.errors.sort(Comparator.comparing(SemanticException::getToken, Comparator.nullsLast(Comparator.comparingInt(Token::pos))));
+    }
+
+    private CheckedBody checkDeferredBody(DeferredBody body) {
+        String key = null;
+        BodyTypes bodyTypes = null;
+        List<Expression> expressions = null;
+        if (this.cache != null) {
+            var arena = new AstArena();
+            expressions = BodyTypes.encode(arena, body.statements());
+            key = AnalysisCache.key(describeContext(body), arena.fingerprint());
+            bodyTypes = new BodyTypes(body.enclosingSymbols(), body.parameters(), new SymbolTable(this.symbolTable, body.visibleGlobals()),
+                    this.symbolTable.getGlobalSymbols().subList(0, body.visibleGlobals()));
+
+            AnalysisCache.Entry entry = this.cache.get(key);
+            if (entry != null && isUpToDate(entry, body)) {
+                this.cache.reuse(key, entry);
+                return new CheckedBody(entry.errorsAt(body.anchor()), bodyTypes.restore(entry, expressions));
+            }
+        }
+
+        var analyzer = new SemanticAnalyzer(List.of(), new SymbolTable(this.symbolTable, body.visibleGlobals()));
+        Set<String> lookups = key == null ? null : analyzer.symbolTable.recordParentLookups();
+        for (Symbol symbol : body.enclosingSymbols()) {
+            analyzer.symbolTable.addSymbol(symbol);
+        }
+
+        try {
+            analyzer.checkBody(body.parameters(), body.statements(), body.anchor(), body.returnType());
+        } catch (Exception ignored) {
+        }
+
+        if (key != null) {
+            var globals = new SymbolTable(this.symbolTable, body.visibleGlobals());
+            Map<String, String> dependencies = new TreeMap<>();
+            for (String name : lookups) {
+                dependencies.put(name, describeGlobal(globals, name));
+            }
+
+            List<AnalysisCache.CachedLocal> locals = new ArrayList<>();
+            List<AnalysisCache.CachedExpression> cachedExpressions = bodyTypes.capture(analyzer.types, expressions, locals);
+            this.cache.put(key, AnalysisCache.Entry.of(dependencies, analyzer.errors, body.anchor(), locals, cachedExpressions));
+        }
+
+        return new CheckedBody(analyzer.errors, analyzer.types);
+    }
+
+    private boolean isUpToDate(AnalysisCache.Entry entry, DeferredBody body) {
+        var globals = new SymbolTable(this.symbolTable, body.visibleGlobals());
+        for (Map.Entry<String, String> dependency : entry.dependencies().entrySet()) {
+            if (!dependency.getValue().equals(describeGlobal(globals, dependency.getKey())))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks the body of a function, method or constructor, or records it to be checked later if this analyzer is
+     * collecting declarations.
+     */
+    private void checkBody(List<VariableSymbol> parameters, List<Statement> body, Token anchor, Type returnType) {
+        if (this.deferredBodies != null) {
+            this.deferredBodies.add(new DeferredBody(anchor, this.symbolTable.getGlobalSymbolCount(), this.symbolTable.getLocalSymbols(), parameters, body, returnType));
+            return;
+        }
+
+        Type enclosingReturnType = this.returnType;
+        this.returnType = returnType;
+        this.symbolTable.enterScope();
+        for (VariableSymbol parameter : parameters) {
+            this.symbolTable.addSymbol(parameter);
+        }
+
+        try {
+            for (Statement statement : body) {
                 statement.accept(this);
-            } catch (Exception ignored) {
             }
+        } finally {
+            this.symbolTable.exitScope();
+            this.returnType = enclosingReturnType;
+        }
+    }
+
+    /**
+     * Analyzes a single top-level statement against everything analyzed so far.
+     *
+     * @return {@code true} if the statement did not produce any new errors
+     */
+    public boolean analyze(Statement statement) {
+        int errorCount = this.errors.size();
+        try {
+            statement.accept(this);
+        } catch (Exception ignored) {
         }
+
+        return this.errors.size() == errorCount;
     }
 
     @Override
@@ -75,7 +236,8 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
         this.symbolTable.addSymbol(symbol);
 
         if (initializer != null) {
-            initializer.accept(this);
+            check(initializer);
+            this.types.convert(initializer, symbol.getReturnType());
         }
 
         return null;
@@ -83,7 +245,7 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
 
     @Override
     public Symbol visitExpressionStatement(Statement.ExpressionStatement statement) {
-        statement.getExpression().accept(this);
+        check(statement.getExpression());
         return null;
     }
 
@@ -93,7 +255,7 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
         Statement thenBranch = statement.getThenBranch();
         Statement elseBranch = statement.getElseBranch();
 
-        condition.accept(this);
+        check(condition);
         thenBranch.accept(this);
         if (elseBranch != null) {
             elseBranch.accept(this);
@@ -113,7 +275,8 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
             throw error(name, "Variable with name '" + name.value() + "' does not exist in this scope!");
         }
 
-        value.accept(this);
+        check(value);
+        this.types.convert(value, this.symbolTable.getVariable(nameValue).getReturnType());
         return null;
     }
 
@@ -122,11 +285,40 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
         Expression condition = statement.getCondition();
         Statement body = statement.getBody();
 
-        condition.accept(this);
+        check(condition);
         body.accept(this);
         return null;
     }
 
+    @Override
+    public Symbol visitForStatement(Statement.ForStatement statement) {
+        this.symbolTable.enterScope();
+        if (statement.getInitializer() != null) {
+            statement.getInitializer().accept(this);
+        }
+
+        if (statement.getCondition() != null) {
+            check(statement.getCondition());
+        }
+
+        if (statement.getIncrement() != null) {
+            check(statement.getIncrement());
+        }
+
+        statement.getBody().accept(this);
+        this.symbolTable.exitScope();
+        return null;
+    }
+
+    @Override
+    public Symbol visitImportStatement(Statement.ImportStatement statement) {
+        if (!this.symbolTable.isGlobalScope()) {
+            throw error(statement.getKeyword(), "Imports are only allowed at the top level!");
+        }
+
+        return null;
+    }
+
     @Override
     public Symbol visitBreakStatement(Statement.BreakStatement statement) {
         return null;
@@ -142,7 +334,12 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
         Expression value = statement.getValue();
 
         if (value != null) {
-            return value.accept(this);
+            Symbol symbol = check(value);
+            if (this.returnType != null) {
+                this.types.convert(value, this.returnType);
+            }
+
+            return symbol;
         }
 
         return null;
@@ -217,18 +414,26 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
             throw error(name, "Variable with name '" + name.value() + "' does not exist in this scope!");
         }
 
-        value.accept(this);
-        return this.symbolTable.getVariable(nameValue);
+        check(value);
+        VariableSymbol variable = this.symbolTable.getVariable(nameValue);
+        this.types.convert(value, variable.getReturnType());
+        return variable;
     }
 
     @Override
     public Symbol visitBinary(Expression.Binary expression) {
+        // Arithmetic over literals and variables can be checked in one pass, without visiting each operand
+        Type checkedType = TypeChecker.checkExpression(expression, this::variableType, this.types);
+        if (checkedType != null) {
+            return ValueSymbol.of(checkedType);
+        }
+
         Token operator = expression.getOperator();
         Expression left = expression.getLeft();
         Expression right = expression.getRight();
 
-        Symbol leftSymbol = left.accept(this);
-        Symbol rightSymbol = right.accept(this);
+        Symbol leftSymbol = check(left);
+        Symbol rightSymbol = check(right);
 
         if (leftSymbol == null || rightSymbol == null) {
             throw error(operator, "Invalid binary expression: one or more operands are null.");
@@ -238,17 +443,17 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
             throw error(operator, "Invalid binary expression: one or more operands are not of type ReturnTypeSymbol.");
         }
 
-        Either<PrimitiveType, String> leftType = leftReturnTypeSymbol.getReturnType();
-        Either<PrimitiveType, String> rightType = rightReturnTypeSymbol.getReturnType();
+        Type leftType = leftReturnTypeSymbol.getReturnType();
+        Type rightType = rightReturnTypeSymbol.getReturnType();
 
-        if (leftType.isLeft() && rightType.isLeft()) {
-            PrimitiveType type = TypeChecker.checkBinaryExpression(operator, leftType.getLeft(), rightType.getLeft());
-            return new ValueSymbol(Either.left(type));
+        if (leftType.isPrimitive() && rightType.isPrimitive()) {
+            Type type = TypeChecker.checkBinaryExpression(operator, leftType, rightType);
+            return ValueSymbol.of(type);
         }
 
-        if ((leftType.isLeft() && leftType.getLeft() == PrimitiveType.STRING) || (rightType.isLeft() && rightType.getLeft() == PrimitiveType.STRING)) {
+        if (leftType == Type.STRING || rightType == Type.STRING) {
             if (operator.type() == TokenType.ADD) {
-                return new ValueSymbol(Either.left(PrimitiveType.STRING));
+                return ValueSymbol.of(Type.STRING);
             }
 
             throw error(operator, "Invalid binary expression: operator '" + operator.type().name() + "' cannot be used with strings.");
@@ -263,7 +468,7 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
         Expression callee = expression.getCallee();
         List<Expression> arguments = expression.getArguments();
 
-        Symbol calleeSymbol = callee.accept(this);
+        Symbol calleeSymbol = check(callee);
         if (calleeSymbol == null) {
             throw error(expression.getParen(), "Invalid call expression: callee is null.");
         }
@@ -272,16 +477,9 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
             throw error(expression.getParen(), "Invalid call expression: callee is not of type MethodSymbol.");
         }
 
-        List<VariableSymbol> parameters = methodSymbol.getParameters();
-        if (parameters.size() != arguments.size()) {
-            throw error(expression.getParen(), "Method '%s' has %d parameters, but %d arguments were provided.".formatted(methodSymbol.getName(), parameters.size(), arguments.size()));
-        }
-
-        for (int i = 0; i < parameters.size(); i++) { // TODO: Copilot wrote this, confirm that it's correct lol
-            VariableSymbol parameter = parameters.get(i);
-            Expression argument = arguments.get(i);
-            Symbol argumentSymbol = argument.accept(this);
-
+        List<Type> argumentTypes = new ArrayList<>(arguments.size());
+        for (Expression argument : arguments) {
+            Symbol argumentSymbol = check(argument);
             if (argumentSymbol == null) {
                 throw error(expression.getParen(), "Invalid call expression: argument is null.");
             }
@@ -290,25 +488,63 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
                 throw error(expression.getParen(), "Invalid call expression: argument is not of type ReturnTypeSymbol.");
             }
 
-            Either<PrimitiveType, String> argumentType = argumentReturnTypeSymbol.getReturnType();
-            Either<PrimitiveType, String> parameterType = parameter.getReturnType();
+            argumentTypes.add(argumentReturnTypeSymbol.getReturnType());
+        }
 
-            if (argumentType.isLeft() && parameterType.isLeft()) {
-                if (argumentType.getLeft() != parameterType.getLeft()) {
-                    throw error(expression.getParen(), "Invalid call expression: expected argument of type '" + parameterType.getLeft() + "', but got argument of type '" + argumentType.getLeft() + "'.");
-                }
-            } else if (argumentType.isRight() && parameterType.isRight()) {
-                if (!argumentType.getRight().equals(parameterType.getRight())) {
-                    throw error(expression.getParen(), "Invalid call expression: expected argument of type '" + parameterType.getRight() + "', but got argument of type '" + argumentType.getRight() + "'.");
-                }
-            } else {
-                throw error(expression.getParen(), "Invalid call expression: argument and parameter types do not match.");
+        MethodSymbol overload = findOverload(callee, methodSymbol, argumentTypes);
+        if (overload != null) {
+            this.types.declare(callee, overload);
+            return overload;
+        }
+
+        List<VariableSymbol> parameters = methodSymbol.getParameters();
+        if (parameters.size() != arguments.size()) {
+            throw error(expression.getParen(), "Method '%s' has %d parameters, but %d arguments were provided.".formatted(methodSymbol.getName(), parameters.size(), arguments.size()));
+        }
+
+        for (int i = 0; i < parameters.size(); i++) {
+            Type argumentType = argumentTypes.get(i);
+            Type parameterType = parameters.get(i).getReturnType();
+
+            if (argumentType != parameterType) {
+                if (argumentType.isPrimitive() != parameterType.isPrimitive())
+                    throw error(expression.getParen(), "Invalid call expression: argument and parameter types do not match.");
+
+                throw error(expression.getParen(), "Invalid call expression: expected argument of type '" + parameterType + "', but got argument of type '" + argumentType + "'.");
             }
         }
 
         return methodSymbol;
     }
 
+    /**
+     * Finds the overload of the called method that takes exactly the given argument types. Methods of a class are
+     * found through the class's {@link OverloadIndex}.
+     *
+     * @param candidate the method the callee resolved to on its own, which is the first declared overload
+     * @return the matching overload, or {@code null} if there is none
+     */
+    private MethodSymbol findOverload(Expression callee, MethodSymbol candidate, List<Type> argumentTypes) {
+        if (candidate.accepts(argumentTypes))
+            return candidate;
+
+        return switch (callee) {
+            case Expression.Get get when this.types.getType(get.getObject()) instanceof Type.ClassType classType -> {
+                ClassSymbol classSymbol = this.symbolTable.getClass(classType.getName());
+                yield classSymbol == null ? null : classSymbol.findMethod(candidate.getName(), argumentTypes);
+            }
+            case Expression.Function function -> {
+                for (MethodSymbol method : this.symbolTable.getMethods((String) function.getName().value())) {
+                    if (method.accepts(argumentTypes))
+                        yield method;
+                }
+
+                yield null;
+            }
+            default -> null;
+        };
+    }
+
     @Override
     public Symbol visitNew(Expression.New expression) {
         Expression callLikeExpr = expression.getCall();
@@ -335,9 +571,9 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
             throw error(classNameToken, "Class with name '%s' does not exist in this scope!".formatted(className));
         }
 
-        List<Either<PrimitiveType, String>> argumentTypes = new ArrayList<>();
+        List<Type> argumentTypes = new ArrayList<>();
         for (Expression argExpr : call.getArguments()) {
-            Symbol argSymbol = argExpr.accept(this);
+            Symbol argSymbol = check(argExpr);
             if (!(argSymbol instanceof HasReturnType argReturnTypeSymbol)) {
                 throw error(call.getParen(), "Argument in constructor call does not have a resolvable type.");
             }
@@ -346,9 +582,10 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
         }
 
         MethodSymbol constructorSymbol = foundSymbol.findConstructor(argumentTypes);
+        this.types.record(expression, Type.ofClass(className));
         if (constructorSymbol == null) {
             String argTypesString = argumentTypes.stream()
-                    .map(type -> type.map(PrimitiveType::toString, s -> s))
+                    .map(Type::getName)
                     .collect(Collectors.joining(", "));
 
             throw error(classNameToken, "No matching constructor found for class '%s' with argument types (%s).".formatted(className, argTypesString));
@@ -363,7 +600,7 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
         Token nameToken = expression.getName();
         String memberName = (String) nameToken.value();
 
-        Symbol objectSymbol = object.accept(this);
+        Symbol objectSymbol = check(object);
         if (objectSymbol == null) {
             String objectExprStr = (object instanceof Expression.Variable variable) ?
                     "'" + variable.getName().value() + "'" :
@@ -375,12 +612,12 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
             throw error(nameToken, "Invalid get expression: object '" + objectSymbol.getName() + "' does not have a retrievable type.");
         }
 
-        Either<PrimitiveType, String> objectType = objectTypeProvider.getReturnType();
-        if(objectType.isLeft()) {
-            throw error(nameToken, "Cannot access property '" + memberName + "' on primitive type '" + objectType.getLeft() + "'.");
+        Type objectType = objectTypeProvider.getReturnType();
+        if(objectType.isPrimitive()) {
+            throw error(nameToken, "Cannot access property '" + memberName + "' on primitive type '" + objectType + "'.");
         }
 
-        String className = objectType.getRight();
+        String className = objectType.getName();
         ClassSymbol classSymbol = this.symbolTable.getClass(className);
         if(classSymbol == null) {
             throw error(nameToken, "Class with name '%s' does not exist in this scope!".formatted(className));
@@ -405,11 +642,20 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
         Token name = expression.getName();
         Expression value = expression.getValue();
 
-        Symbol objectSymbol = object.accept(this);
+        Symbol objectSymbol = check(object);
         if (objectSymbol == null) {
             throw error(name, "Invalid set expression: object is null.");
         }
 
+        if (objectSymbol instanceof HasReturnType typed && !typed.getReturnType().isPrimitive()) {
+            ClassSymbol classSymbol = this.symbolTable.getClass(typed.getReturnType().getName());
+            VariableSymbol field = classSymbol == null ? null : classSymbol.findField((String) name.value());
+            if (field != null) {
+                check(value);
+                this.types.convert(value, field.getReturnType());
+            }
+        }
+
         return null; // TODO
     }
 
@@ -426,26 +672,18 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
     @Override
     public Symbol visitGrouping(Expression.Grouping expression) {
         Expression expr = expression.getExpression();
-        return expr.accept(this);
+        return check(expr);
     }
 
     @Override
     public Symbol visitLiteral(Expression.Literal expression) {
         Object value = expression.getValue();
 
-        return switch (value) {
-            case Integer _ -> new ValueSymbol(Either.left(PrimitiveType.INT));
-            case Double _ -> new ValueSymbol(Either.left(PrimitiveType.DOUBLE));
-            case Boolean _ -> new ValueSymbol(Either.left(PrimitiveType.BOOL));
-            case String _ -> new ValueSymbol(Either.left(PrimitiveType.STRING));
-            case Float _ -> new ValueSymbol(Either.left(PrimitiveType.FLOAT));
-            case Long _ -> new ValueSymbol(Either.left(PrimitiveType.LONG));
-            case Short _ -> new ValueSymbol(Either.left(PrimitiveType.SHORT));
-            case Byte _ -> new ValueSymbol(Either.left(PrimitiveType.BYTE));
-            case Character _ -> new ValueSymbol(Either.left(PrimitiveType.CHAR));
-            case null, default ->
-                    throw error(null, "Invalid literal expression: value is not of a valid type. Value: " + value);
-        };
+        Type type = TypeChecker.literalType(value);
+        if (type == null)
+            throw error(null, "Invalid literal expression: value is not of a valid type. Value: " + value);
+
+        return ValueSymbol.of(type);
     }
 
     @Override
@@ -454,8 +692,8 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
         Expression left = expression.getLeft();
         Expression right = expression.getRight();
 
-        Symbol leftSymbol = left.accept(this);
-        Symbol rightSymbol = right.accept(this);
+        Symbol leftSymbol = check(left);
+        Symbol rightSymbol = check(right);
 
         if (leftSymbol == null || rightSymbol == null) {
             throw error(operator, "Invalid logical expression: one or more operands are null.");
@@ -465,14 +703,12 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
             throw error(operator, "Invalid logical expression: one or more operands are not of type ReturnTypeSymbol.");
         }
 
-        Either<PrimitiveType, String> leftType = leftReturnTypeSymbol.getReturnType();
-        Either<PrimitiveType, String> rightType = rightReturnTypeSymbol.getReturnType();
+        Type leftType = leftReturnTypeSymbol.getReturnType();
+        Type rightType = rightReturnTypeSymbol.getReturnType();
 
-        if (leftType.isLeft() && rightType.isLeft()) {
-            if (operator.type() == TokenType.OR || operator.type() == TokenType.AND) {
-                if (leftType.getLeft() == PrimitiveType.BOOL && rightType.getLeft() == PrimitiveType.BOOL) {
-                    return new ValueSymbol(Either.left(PrimitiveType.BOOL));
-                }
+        if (operator.type() == TokenType.OR || operator.type() == TokenType.AND) {
+            if (leftType == Type.BOOL && rightType == Type.BOOL) {
+                return ValueSymbol.of(Type.BOOL);
             }
         }
 
@@ -484,7 +720,7 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
         Token operator = expression.getOperator();
         Expression right = expression.getRight();
 
-        Symbol rightSymbol = right.accept(this);
+        Symbol rightSymbol = check(right);
         if (rightSymbol == null) {
             throw error(operator, "Invalid unary expression: right operand is null.");
         }
@@ -493,15 +729,11 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
             throw error(operator, "Invalid unary expression: right operand does not have a type.");
         }
 
-        Either<PrimitiveType, String> rightType = rightReturnTypeSymbol.getReturnType();
-
-        if (rightType.isLeft()) {
-            PrimitiveType type = TypeChecker.checkUnaryExpression(operator, rightType.getLeft());
-            return new ValueSymbol(Either.left(type));
-        }
+        Type rightType = rightReturnTypeSymbol.getReturnType();
 
-        if (rightType.isRight()) {
-            throw error(operator, "Invalid unary expression: right operand type is invalid.");
+        if (rightType.isPrimitive()) {
+            Type type = TypeChecker.checkUnaryExpression(operator, rightType);
+            return ValueSymbol.of(type);
         }
 
         throw error(operator, "Invalid unary expression: right operand type is invalid.");
@@ -561,7 +793,8 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
         semanticAnalyzer.symbolTable.addSymbol(symbol);
 
         if (initializer != null) {
-            initializer.accept(semanticAnalyzer);
+            semanticAnalyzer.check(initializer);
+            semanticAnalyzer.types.convert(initializer, symbol.getReturnType());
             // TODO: Type check initializer against field type
         }
 
@@ -611,17 +844,7 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
 //        }
 
         semanticAnalyzer.symbolTable.addSymbol(symbol);
-
-        semanticAnalyzer.symbolTable.enterScope();
-        for (VariableSymbol parameter : parametersSymbols) {
-            semanticAnalyzer.symbolTable.addSymbol(parameter);
-        }
-
-        for (Statement stmt : body) {
-            stmt.accept(semanticAnalyzer);
-        }
-
-        semanticAnalyzer.symbolTable.exitScope();
+        semanticAnalyzer.checkBody(parametersSymbols, body, methodName, symbol.getReturnType());
         return symbol;
     }
 
@@ -642,34 +865,107 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
 
         var constructorSymbol = new MethodSymbol(ownerClass.getName(), PrimitiveType.VOID, paramSymbols);
         semanticAnalyzer.symbolTable.addSymbol(constructorSymbol);
+        semanticAnalyzer.checkBody(paramSymbols, constructor.getBody(), constructor.getName(), null);
+        return constructorSymbol;
+    }
 
-        semanticAnalyzer.symbolTable.enterScope();
-        for (VariableSymbol param : paramSymbols) {
-            semanticAnalyzer.symbolTable.addSymbol(param);
+    /**
+     * Visits an expression and records its type and, if it names one, its declaration.
+     */
+    private Symbol check(Expression expression) {
+        Symbol symbol = expression.accept(this);
+        if (symbol != null && !(symbol instanceof ValueSymbol)) {
+            this.types.declare(expression, symbol);
         }
 
-        List<Statement> body = constructor.getBody();
-        for (Statement stmt : body) {
-            stmt.accept(semanticAnalyzer);
+        if (this.types.getType(expression) == null) {
+            // A function on its own has no value type; only calling it does
+            Type type = switch (symbol) {
+                case MethodSymbol method -> expression instanceof Expression.Call ? method.getReturnType() : null;
+                case HasReturnType typed -> typed.getReturnType();
+                case null, default -> null;
+            };
+            this.types.record(expression, type);
         }
 
-        semanticAnalyzer.symbolTable.exitScope();
-        return constructorSymbol;
+        return symbol;
+    }
+
+    private Type variableType(Expression.Variable expression) {
+        VariableSymbol variable = this.symbolTable.getVariable((String) expression.getName().value());
+        if (variable == null)
+            return null;
+
+        this.types.declare(expression, variable);
+        return variable.getReturnType();
+    }
+
+    private static String describeContext(DeferredBody body) {
+        var context = new StringBuilder();
+        for (Symbol symbol : body.enclosingSymbols()) {
+            context.append(describe(symbol)).append(';');
+        }
+
+        context.append('(');
+        for (VariableSymbol parameter : body.parameters()) {
+            context.append(describe(parameter)).append(';');
+        }
+
+        return context.append(')').toString();
+    }
+
+    private static String describeGlobal(SymbolTable globals, String name) {
+        var description = new StringBuilder();
+        for (SymbolType symbolType : SymbolType.values()) {
+            for (Symbol symbol : globals.getSymbols(name, symbolType)) {
+                description.append(describe(symbol)).append(';');
+            }
+        }
+
+        return description.toString();
+    }
+
+    private static String describe(Symbol symbol) {
+        return switch (symbol) {
+            case MethodSymbol method -> getMethodSignature(method);
+            case ClassSymbol classSymbol -> {
+                var description = new StringBuilder("class ").append(classSymbol.getName()).append(" {");
+                for (VariableSymbol field : classSymbol.getStaticFields()) {
+                    description.append("static ").append(describe(field)).append(';');
+                }
+
+                for (MethodSymbol method : classSymbol.getStaticMethods()) {
+                    description.append("static ").append(describe(method)).append(';');
+                }
+
+                for (VariableSymbol field : classSymbol.getFields()) {
+                    description.append(describe(field)).append(';');
+                }
+
+                for (MethodSymbol method : classSymbol.getMethods()) {
+                    description.append(describe(method)).append(';');
+                }
+
+                for (MethodSymbol constructor : classSymbol.getConstructors()) {
+                    description.append(describe(constructor)).append(';');
+                }
+
+                yield description.append('}').toString();
+            }
+            case HasReturnType typed -> typed.getReturnType().getName() + " " + symbol.getName();
+            default -> symbol.getSymbolType() + " " + symbol.getName();
+        };
     }
 
     private static String getMethodSignature(MethodSymbol method) {
         var signature = new StringBuilder();
-        signature.append((String) method.getReturnType().map(
-                primitiveType -> primitiveType.name().toLowerCase(Locale.ROOT),
-                classType -> classType));
+        signature.append(method.getReturnType().getName());
         signature.append(" ");
         signature.append(method.getName());
         signature.append("(");
         for (int i = 0; i < method.getParameters().size(); i++) {
             VariableSymbol parameter = method.getParameters().get(i);
-            signature.append((String) parameter.getReturnType().map(
-                    primitiveType -> primitiveType.name().toLowerCase(Locale.ROOT),
-                    classType -> classType));
+            signature.append(parameter.getReturnType().getName());
             if (i < method.getParameters().size() - 1) {
                 signature.append(", ");
             }
@@ -692,4 +988,34 @@ public class SemanticAnalyzer implements StatementVisitor<Symbol>, ExpressionVis
     public List<SemanticException> getErrors() {
         return this.errors;
     }
+
+    /**
+     * @return the type and declaration of every expression that was analyzed, including those of bodies whose
+     * results were reused from the {@link AnalysisCache}
+     */
+    public TypeTable getTypes() {
+        return this.types;
+    }
+
+    /**
+     * A body whose checking was put off until every declaration has been collected.
+     *
+     * @param anchor           the name of the function, method or constructor, which error positions in the
+     *                         {@link AnalysisCache} are relative to
+     * @param visibleGlobals   how many global symbols had been declared when the body was reached
+     * @param enclosingSymbols the symbols of the scopes between the global scope and the body, such as a class's
+     *                         fields and methods
+     * @param parameters       the parameters of the function, method or constructor
+     * @param statements       the body itself
+     * @param returnType       the type values are returned as, or {@code null} for a constructor
+     */
+    private record DeferredBody(Token anchor, int visibleGlobals, List<Symbol> enclosingSymbols, List<VariableSymbol> parameters,
+                                List<Statement> statements, Type returnType) {
+    }
+
+    /**
+     * The outcome of checking a deferred body.
+     */
+    private record CheckedBody(List<SemanticException> errors, TypeTable types) {
+    }
 }
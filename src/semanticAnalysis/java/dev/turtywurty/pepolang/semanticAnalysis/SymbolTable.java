@@ -6,107 +6,186 @@ import dev.turtywurty.pepolang.semanticAnalysis.symbol.Symbol;
 import dev.turtywurty.pepolang.semanticAnalysis.symbol.VariableSymbol;
 
 import java.util.*;
-import java.util.function.Predicate;
 
+/**
+ * Keeps track of the symbols visible at the current point of the analysis.
+ * <p>
+ * For every {@link SymbolType} there is a single map from name to the innermost binding of that name, and each
+ * binding links to the binding it shadows. Every binding is also appended to an undo log, so leaving a scope
+ * only has to pop that scope's bindings off the log and restore what they shadowed. Looking a name up is a single
+ * map lookup no matter how deeply scopes are nested.
+ * <p>
+ * A table can also be layered over a parent table that no longer changes, seeing only the parent's first few
+ * global symbols. Any number of such tables can share one parent concurrently.
+ */
 public class SymbolTable {
-    private final Deque<Map<String, List<Symbol>>> scopes = new ArrayDeque<>();
+    private final Map<SymbolType, Map<String, Binding>> bindings = new EnumMap<>(SymbolType.class);
+    private final List<Binding> log = new ArrayList<>();
+    private int[] scopeStarts = new int[16];
+    private int depth = 0;
+
+    private final SymbolTable parent;
+    private final int visibleParentSymbols;
+    private Set<String> parentLookups;
 
     public SymbolTable() {
+        this(null, 0);
+    }
+
+    /**
+     * Creates a table whose outermost scope sits inside the global scope of the given parent.
+     *
+     * @param parent               the table to fall back to; it must not be modified while this table is in use
+     * @param visibleParentSymbols how many of the parent's global symbols, in declaration order, are visible
+     */
+    public SymbolTable(SymbolTable parent, int visibleParentSymbols) {
+        this.parent = parent;
+        this.visibleParentSymbols = visibleParentSymbols;
+        for (SymbolType symbolType : SymbolType.values()) {
+            this.bindings.put(symbolType, new HashMap<>());
+        }
+
         enterScope();
     }
 
     public void enterScope() {
-        this.scopes.push(new HashMap<>());
+        if (this.depth == this.scopeStarts.length) {
+            this.scopeStarts = Arrays.copyOf(this.scopeStarts, this.depth * 2);
+        }
+
+        this.scopeStarts[this.depth++] = this.log.size();
     }
 
     public void exitScope() {
-        if (this.scopes.isEmpty()) {
+        if (this.depth == 0) {
             System.err.println("Warning: Attempting to exit a scope when no scopes are present.");
             return;
         }
 
-        if(this.scopes.size() == 1) {
+        if(this.depth == 1) {
             System.err.println("Warning: Attempting to exit the global scope. This may lead to undefined behavior.");
             return;
         }
 
-        this.scopes.pop();
+        int start = this.scopeStarts[--this.depth];
+        for (int index = this.log.size() - 1; index >= start; index--) {
+            Binding binding = this.log.remove(index);
+            Map<String, Binding> named = this.bindings.get(binding.symbol().getSymbolType());
+            if (binding.shadowed() == null) {
+                named.remove(binding.symbol().getName());
+            } else {
+                named.put(binding.symbol().getName(), binding.shadowed());
+            }
+        }
     }
 
-    public void addSymbol(Symbol symbol) {
-        if (!this.scopes.isEmpty()) {
-            this.scopes.peek().computeIfAbsent(symbol.getName(), _ -> new ArrayList<>()).add(symbol);
-        }
+    /**
+     * Starts recording every name this table looks up in its parent, whether or not it is found there.
+     *
+     * @return the set the names are recorded into
+     */
+    public Set<String> recordParentLookups() {
+        this.parentLookups = new HashSet<>();
+        return this.parentLookups;
     }
 
-    public List<Symbol> getSymbols(String name, Predicate<Symbol> predicate) {
-        for (Map<String, List<Symbol>> scope : this.scopes) {
-            List<Symbol> symbols = scope.get(name);
-            if (symbols != null) {
-                List<Symbol> filteredSymbols = new ArrayList<>();
-                for (Symbol symbol : symbols) {
-                    if (predicate.test(symbol)) {
-                        filteredSymbols.add(symbol);
-                    }
-                }
-
-                if (!filteredSymbols.isEmpty()) {
-                    return filteredSymbols;
-                }
-            }
+    public boolean isGlobalScope() {
+        return this.parent == null && this.depth == 1;
+    }
+
+    public List<Symbol> getGlobalSymbols() {
+        return getSymbols(0, getGlobalSymbolCount());
+    }
+
+    /**
+     * @return the symbols declared in every scope except the outermost one, in declaration order
+     */
+    public List<Symbol> getLocalSymbols() {
+        return getSymbols(getGlobalSymbolCount(), this.log.size());
+    }
+
+    /**
+     * @return how many symbols have been declared in the outermost scope so far
+     */
+    public int getGlobalSymbolCount() {
+        return this.depth > 1 ? this.scopeStarts[1] : this.log.size();
+    }
+
+    private List<Symbol> getSymbols(int start, int end) {
+        List<Symbol> symbols = new ArrayList<>(end - start);
+        for (int index = start; index < end; index++) {
+            symbols.add(this.log.get(index).symbol());
         }
 
-        return Collections.emptyList();
+        return symbols;
     }
 
-    public List<Symbol> getSymbols(String name) {
-        return getSymbols(name, _ -> true);
+    public void addSymbol(Symbol symbol) {
+        if (this.depth == 0)
+            return;
+
+        Map<String, Binding> named = this.bindings.get(symbol.getSymbolType());
+        var binding = new Binding(symbol, this.depth, this.log.size(), named.get(symbol.getName()));
+        named.put(symbol.getName(), binding);
+        this.log.add(binding);
     }
 
-    public VariableSymbol getVariable(String name) {
-        List<VariableSymbol> symbols = getSymbols(name, symbol -> symbol.getSymbolType() == SymbolType.VARIABLE)
-                .stream()
-                .filter(VariableSymbol.class::isInstance)
-                .map(VariableSymbol.class::cast)
-                .toList();
-        if (!symbols.isEmpty()) {
-            return symbols.getFirst();
+    /**
+     * @return every symbol of the given type and name declared in the innermost scope that declares any, in
+     * declaration order
+     */
+    public List<Symbol> getSymbols(String name, SymbolType symbolType) {
+        Binding binding = lookUp(name, symbolType);
+        if (binding == null)
+            return Collections.emptyList();
+
+        if (binding.shadowed() == null || binding.shadowed().depth() != binding.depth())
+            return List.of(binding.symbol());
+
+        List<Symbol> symbols = new ArrayList<>();
+        for (Binding current = binding; current != null && current.depth() == binding.depth(); current = current.shadowed()) {
+            symbols.add(current.symbol());
         }
 
-        return null;
+        return symbols.reversed();
+    }
+
+    public VariableSymbol getVariable(String name) {
+        Binding binding = lookUp(name, SymbolType.VARIABLE);
+        return binding != null && binding.symbol() instanceof VariableSymbol variable ? variable : null;
     }
 
     public List<MethodSymbol> getMethods(String name) {
-        return getSymbols(name, symbol -> symbol.getSymbolType() == SymbolType.METHOD)
-                .stream()
-                .filter(MethodSymbol.class::isInstance)
-                .map(MethodSymbol.class::cast)
-                .toList();
+        List<MethodSymbol> methods = new ArrayList<>();
+        for (Symbol symbol : getSymbols(name, SymbolType.METHOD)) {
+            if (symbol instanceof MethodSymbol method) {
+                methods.add(method);
+            }
+        }
+
+        return methods;
     }
 
     public List<Symbol> getFields(String name) {
-        return getSymbols(name, symbol -> symbol.getSymbolType() == SymbolType.FIELD);
+        return getSymbols(name, SymbolType.FIELD);
     }
 
     public ClassSymbol getClass(String name) {
-        return getSymbols(name, symbol -> symbol.getSymbolType() == SymbolType.CLASS)
-                .stream()
-                .filter(ClassSymbol.class::isInstance)
-                .map(ClassSymbol.class::cast)
-                .findFirst()
-                .orElse(null);
-    }
-
-    public boolean containsSymbol(String name, Predicate<Symbol> predicate) {
-        return !getSymbols(name, predicate).isEmpty();
+        Binding binding = lookUp(name, SymbolType.CLASS);
+        return binding != null && binding.symbol() instanceof ClassSymbol classSymbol ? classSymbol : null;
     }
 
     public boolean containsSymbol(String name) {
-        return containsSymbol(name, symbol -> true);
+        for (SymbolType symbolType : this.bindings.keySet()) {
+            if (containsSymbol(name, symbolType))
+                return true;
+        }
+
+        return false;
     }
 
     public boolean containsSymbol(String name, SymbolType symbolType) {
-        return containsSymbol(name, symbol -> symbol.getSymbolType() == symbolType);
+        return lookUp(name, symbolType) != null;
     }
 
     /**
@@ -117,39 +196,16 @@ public class SymbolTable {
      * @return true if a symbol with the given name exists in the current scope, false otherwise.
      */
     public boolean isSymbolDefinedInCurrentScope(String name) {
-        if (this.scopes.isEmpty() || name == null) {
+        if (this.depth == 0 || name == null) {
             return false; // No scopes or no name to check
         }
-        Map<String, List<Symbol>> currentScope = this.scopes.peek();
-        // Check if the name exists as a key and the list of symbols for that name is not empty.
-        List<Symbol> symbols = currentScope.get(name);
-        return symbols != null && !symbols.isEmpty();
-    }
 
-    /**
-     * Checks if a symbol with the given name and matching the predicate
-     * is defined ONLY in the current (top-most) scope.
-     * Does not search in parent scopes.
-     *
-     * @param name The name of the symbol to check.
-     * @param predicate The predicate to test the symbol(s).
-     * @return true if such a symbol exists in the current scope, false otherwise.
-     */
-    public boolean isSymbolDefinedInCurrentScope(String name, Predicate<Symbol> predicate) {
-        if (this.scopes.isEmpty() || name == null || predicate == null) {
-            return false;
-        }
-        Map<String, List<Symbol>> currentScope = this.scopes.peek();
-        List<Symbol> symbolsInCurrentScope = currentScope.get(name);
-
-        if (symbolsInCurrentScope != null) {
-            for (Symbol symbol : symbolsInCurrentScope) {
-                if (predicate.test(symbol)) {
-                    return true; // Found a matching symbol in the current scope
-                }
-            }
+        for (SymbolType symbolType : this.bindings.keySet()) {
+            if (isSymbolDefinedInCurrentScope(name, symbolType))
+                return true;
         }
-        return false; // No matching symbol found in the current scope
+
+        return false;
     }
 
     /**
@@ -161,6 +217,32 @@ public class SymbolTable {
      * @return true if such a symbol exists in the current scope, false otherwise.
      */
     public boolean isSymbolDefinedInCurrentScope(String name, SymbolType symbolType) {
-        return isSymbolDefinedInCurrentScope(name, symbol -> symbol.getSymbolType() == symbolType);
+        Binding binding = this.bindings.get(symbolType).get(name);
+        return binding != null && binding.depth() == this.depth;
+    }
+
+    private Binding lookUp(String name, SymbolType symbolType) {
+        Binding binding = this.bindings.get(symbolType).get(name);
+        if (binding != null || this.parent == null)
+            return binding;
+
+        if (this.parentLookups != null && name != null) {
+            this.parentLookups.add(name);
+        }
+
+        binding = this.parent.bindings.get(symbolType).get(name);
+        while (binding != null && binding.index() >= this.visibleParentSymbols) {
+            binding = binding.shadowed();
+        }
+
+        return binding;
+    }
+
+    /**
+     * A symbol bound to a name in the scope at the given depth, shadowing the binding of the same name in an outer
+     * scope (or an earlier binding in the same scope, for overloads). The index is the binding's position in the
+     * undo log.
+     */
+    private record Binding(Symbol symbol, int depth, int index, Binding shadowed) {
     }
 }
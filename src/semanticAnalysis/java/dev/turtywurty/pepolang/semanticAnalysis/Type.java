@@ -0,0 +1,114 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.lexer.Token;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The type of a value as seen by the semantic analyzer.
+ * <p>
+ * Types are interned: there is exactly one instance for every primitive type and one for every class name, so two
+ * types are the same if and only if they are {@code ==}.
+ */
+public abstract sealed class Type permits Type.Primitive, Type.ClassType {
+    private static final Primitive[] PRIMITIVES = createPrimitives();
+    private static final Map<String, ClassType> CLASSES = new ConcurrentHashMap<>();
+
+    public static final Primitive INT = of(PrimitiveType.INT);
+    public static final Primitive FLOAT = of(PrimitiveType.FLOAT);
+    public static final Primitive DOUBLE = of(PrimitiveType.DOUBLE);
+    public static final Primitive STRING = of(PrimitiveType.STRING);
+    public static final Primitive BOOL = of(PrimitiveType.BOOL);
+    public static final Primitive VOID = of(PrimitiveType.VOID);
+    public static final Primitive LONG = of(PrimitiveType.LONG);
+    public static final Primitive CHAR = of(PrimitiveType.CHAR);
+    public static final Primitive BYTE = of(PrimitiveType.BYTE);
+    public static final Primitive SHORT = of(PrimitiveType.SHORT);
+    public static final Primitive ANY = of(PrimitiveType.ANY);
+
+    private final String name;
+
+    private Type(String name) {
+        this.name = name;
+    }
+
+    public static Primitive of(PrimitiveType type) {
+        return PRIMITIVES[type.ordinal()];
+    }
+
+    public static ClassType ofClass(String name) {
+        return CLASSES.computeIfAbsent(name, ClassType::new);
+    }
+
+    /**
+     * @return the type named by a type keyword or class name token
+     */
+    public static Type of(Token token) {
+        return token.type().isTypeKeyword() ?
+                of(PrimitiveType.fromTokenType(token.type())) :
+                ofClass((String) token.value());
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public abstract boolean isPrimitive();
+
+    /**
+     * @return the primitive type this type describes, or {@code null} if it is a class type
+     */
+    public abstract PrimitiveType getPrimitiveType();
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+    private static Primitive[] createPrimitives() {
+        PrimitiveType[] types = PrimitiveType.values();
+        var primitives = new Primitive[types.length];
+        for (PrimitiveType type : types) {
+            primitives[type.ordinal()] = new Primitive(type);
+        }
+
+        return primitives;
+    }
+
+    public static final class Primitive extends Type {
+        private final PrimitiveType primitiveType;
+
+        private Primitive(PrimitiveType primitiveType) {
+            super(primitiveType.name().toLowerCase(Locale.ROOT));
+            this.primitiveType = primitiveType;
+        }
+
+        @Override
+        public PrimitiveType getPrimitiveType() {
+            return this.primitiveType;
+        }
+
+        @Override
+        public boolean isPrimitive() {
+            return true;
+        }
+    }
+
+    public static final class ClassType extends Type {
+        private ClassType(String name) {
+            super(name);
+        }
+
+        @Override
+        public PrimitiveType getPrimitiveType() {
+            return null;
+        }
+
+        @Override
+        public boolean isPrimitive() {
+            return false;
+        }
+    }
+}
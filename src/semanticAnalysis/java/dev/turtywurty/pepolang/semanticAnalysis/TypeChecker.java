@@ -2,127 +2,211 @@ package dev.turtywurty.pepolang.semanticAnalysis;
 
 import dev.turtywurty.pepolang.lexer.Token;
 import dev.turtywurty.pepolang.lexer.TokenType;
+import dev.turtywurty.pepolang.parser.Expression;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.function.Function;
 
 public class TypeChecker {
-    private static final Map<TokenType, BiMap<PrimitiveType, PrimitiveType, PrimitiveType>> BINARY_OPERATOR_RULES = new HashMap<>();
+    private static final int PRIMITIVE_COUNT = PrimitiveType.values().length;
+
+    /**
+     * The result type of every binary operator, indexed by the operator's {@link TokenType#ordinal()} and then the
+     * {@link PrimitiveType#ordinal()} of the left and right operands. An operator without any rules has no table.
+     */
+    private static final Type.Primitive[][][] BINARY_OPERATOR_RULES = new Type.Primitive[TokenType.values().length][][];
 
     static {
-        PrimitiveType[] numericTypeOrder = {
-                PrimitiveType.DOUBLE,
-                PrimitiveType.FLOAT,
-                PrimitiveType.LONG,
-                PrimitiveType.INT,
-                PrimitiveType.SHORT,
-                PrimitiveType.BYTE
+        Type.Primitive[] numericTypeOrder = {
+                Type.DOUBLE,
+                Type.FLOAT,
+                Type.LONG,
+                Type.INT,
+                Type.SHORT,
+                Type.BYTE
         };
 
-        for (int resultIndex = 0; resultIndex < numericTypeOrder.length; resultIndex++) {
-            PrimitiveType type = numericTypeOrder[resultIndex];
-            for (int leftIndex = 0; leftIndex <= resultIndex; leftIndex++) {
-                PrimitiveType left = numericTypeOrder[leftIndex];
-                for (int rightIndex = 0; rightIndex <= leftIndex; rightIndex++) {
-                    PrimitiveType right = numericTypeOrder[rightIndex];
-                    addRule(TokenType.ADD, left, right, type);
-                    addRule(TokenType.SUB, left, right, type);
-                    addRule(TokenType.MUL, left, right, type);
-                    addRule(TokenType.DIV, left, right, type);
-                    addRule(TokenType.EQUAL, left, right, PrimitiveType.BOOL);
-                    addRule(TokenType.NOT_EQUAL, left, right, PrimitiveType.BOOL);
-                    addRule(TokenType.LT, left, right, PrimitiveType.BOOL);
-                    addRule(TokenType.LESS_EQUAL, left, right, PrimitiveType.BOOL);
-                    addRule(TokenType.GT, left, right, PrimitiveType.BOOL);
-                    addRule(TokenType.GREATER_EQUAL, left, right, PrimitiveType.BOOL);
-                }
+        // The result of a numeric operation is the wider of the two operand types
+        for (int leftIndex = 0; leftIndex < numericTypeOrder.length; leftIndex++) {
+            Type.Primitive left = numericTypeOrder[leftIndex];
+            for (int rightIndex = 0; rightIndex <= leftIndex; rightIndex++) {
+                Type.Primitive right = numericTypeOrder[rightIndex];
+                Type.Primitive type = numericTypeOrder[rightIndex];
+                addRule(TokenType.ADD, left, right, type);
+                addRule(TokenType.SUB, left, right, type);
+                addRule(TokenType.MUL, left, right, type);
+                addRule(TokenType.DIV, left, right, type);
+                addRule(TokenType.EQUAL, left, right, Type.BOOL);
+                addRule(TokenType.NOT_EQUAL, left, right, Type.BOOL);
+                addRule(TokenType.LT, left, right, Type.BOOL);
+                addRule(TokenType.LESS_EQUAL, left, right, Type.BOOL);
+                addRule(TokenType.GT, left, right, Type.BOOL);
+                addRule(TokenType.GREATER_EQUAL, left, right, Type.BOOL);
             }
         }
 
         // Special rules for STRING concatenation
-        addRule(TokenType.ADD, PrimitiveType.STRING, PrimitiveType.STRING, PrimitiveType.STRING);
+        addRule(TokenType.ADD, Type.STRING, Type.STRING, Type.STRING);
 
         // Allow concatenation with numeric types (e.g., "abc" + 123 = "abc123")
-        for (PrimitiveType numericType : numericTypeOrder) {
-            addRule(TokenType.ADD, PrimitiveType.STRING, numericType, PrimitiveType.STRING);
-            addRule(TokenType.ADD, numericType, PrimitiveType.STRING, PrimitiveType.STRING);
+        for (Type.Primitive numericType : numericTypeOrder) {
+            addRule(TokenType.ADD, Type.STRING, numericType, Type.STRING);
+            addRule(TokenType.ADD, numericType, Type.STRING, Type.STRING);
         }
 
         // String equality rules
-        addRule(TokenType.EQUAL, PrimitiveType.STRING, PrimitiveType.STRING, PrimitiveType.BOOL);
-        addRule(TokenType.NOT_EQUAL, PrimitiveType.STRING, PrimitiveType.STRING, PrimitiveType.BOOL);
-        for (PrimitiveType numericType : numericTypeOrder) {
-            addRule(TokenType.EQUAL, PrimitiveType.STRING, numericType, PrimitiveType.BOOL);
-            addRule(TokenType.NOT_EQUAL, PrimitiveType.STRING, numericType, PrimitiveType.BOOL);
-            addRule(TokenType.EQUAL, numericType, PrimitiveType.STRING, PrimitiveType.BOOL);
-            addRule(TokenType.NOT_EQUAL, numericType, PrimitiveType.STRING, PrimitiveType.BOOL);
+        addRule(TokenType.EQUAL, Type.STRING, Type.STRING, Type.BOOL);
+        addRule(TokenType.NOT_EQUAL, Type.STRING, Type.STRING, Type.BOOL);
+        for (Type.Primitive numericType : numericTypeOrder) {
+            addRule(TokenType.EQUAL, Type.STRING, numericType, Type.BOOL);
+            addRule(TokenType.NOT_EQUAL, Type.STRING, numericType, Type.BOOL);
+            addRule(TokenType.EQUAL, numericType, Type.STRING, Type.BOOL);
+            addRule(TokenType.NOT_EQUAL, numericType, Type.STRING, Type.BOOL);
         }
 
         // Modulo rules for integer types, promoting BYTE and SHORT to INT
-        PrimitiveType[] integerTypes = {
-                PrimitiveType.LONG,
-                PrimitiveType.INT,
-                PrimitiveType.SHORT,
-                PrimitiveType.BYTE
+        Type.Primitive[] integerTypes = {
+                Type.LONG,
+                Type.INT,
+                Type.SHORT,
+                Type.BYTE
         };
 
-        for (int resultIndex = 0; resultIndex < integerTypes.length; resultIndex++) {
-            PrimitiveType type = integerTypes[resultIndex];
-            for (int leftIndex = 0; leftIndex <= resultIndex; leftIndex++) {
-                PrimitiveType left = integerTypes[leftIndex];
-                for (int rightIndex = 0; rightIndex <= leftIndex; rightIndex++) {
-                    PrimitiveType right = integerTypes[rightIndex];
-                    // Result type is the largest of the three, but at least INT
-                    PrimitiveType result = (type == PrimitiveType.BYTE || type == PrimitiveType.SHORT) ? PrimitiveType.INT : type;
-                    addRule(TokenType.MOD, left, right, result);
-                }
+        for (int leftIndex = 0; leftIndex < integerTypes.length; leftIndex++) {
+            Type.Primitive left = integerTypes[leftIndex];
+            for (int rightIndex = 0; rightIndex <= leftIndex; rightIndex++) {
+                Type.Primitive right = integerTypes[rightIndex];
+                Type.Primitive type = integerTypes[rightIndex];
+                // Result type is the larger of the two, but at least INT
+                Type.Primitive result = (type == Type.BYTE || type == Type.SHORT) ? Type.INT : type;
+                addRule(TokenType.MOD, left, right, result);
             }
         }
     }
 
-    private static void addRule(TokenType operator, PrimitiveType allSame) {
+    private static void addRule(TokenType operator, Type.Primitive allSame) {
         addRule(operator, allSame, allSame);
     }
 
-    private static void addRule(TokenType operator, PrimitiveType input, PrimitiveType result) {
+    private static void addRule(TokenType operator, Type.Primitive input, Type.Primitive result) {
         addRule(operator, input, input, result, true);
     }
 
-    private static void addRule(TokenType operator, PrimitiveType left, PrimitiveType right, PrimitiveType result) {
+    private static void addRule(TokenType operator, Type.Primitive left, Type.Primitive right, Type.Primitive result) {
         addRule(operator, left, right, result, true);
     }
 
-    private static void addRule(TokenType operator, PrimitiveType left, PrimitiveType right, PrimitiveType result, boolean symmetric) {
-        BINARY_OPERATOR_RULES.computeIfAbsent(operator, k -> new BiMap<>()).put(left, right, result);
+    private static void addRule(TokenType operator, Type.Primitive left, Type.Primitive right, Type.Primitive result, boolean symmetric) {
+        Type.Primitive[][] rules = BINARY_OPERATOR_RULES[operator.ordinal()];
+        if (rules == null) {
+            rules = new Type.Primitive[PRIMITIVE_COUNT][PRIMITIVE_COUNT];
+            BINARY_OPERATOR_RULES[operator.ordinal()] = rules;
+        }
+
+        rules[left.getPrimitiveType().ordinal()][right.getPrimitiveType().ordinal()] = result;
         if (symmetric)
-            BINARY_OPERATOR_RULES.computeIfAbsent(operator, k -> new BiMap<>()).put(right, left, result);
+            rules[right.getPrimitiveType().ordinal()][left.getPrimitiveType().ordinal()] = result;
     }
 
-    public static PrimitiveType checkBinaryExpression(Token operator, PrimitiveType left, PrimitiveType right) {
-        BiMap<PrimitiveType, PrimitiveType, PrimitiveType> rules = BINARY_OPERATOR_RULES.get(operator.type());
+    public static Type checkBinaryExpression(Token operator, Type left, Type right) {
+        Type.Primitive[][] rules = BINARY_OPERATOR_RULES[operator.type().ordinal()];
         if (rules == null)
             throw new SemanticException(operator, "Invalid binary operator: " + operator.type().name());
 
-        PrimitiveType result = rules.get(left, right);
+        PrimitiveType leftPrimitive = left.getPrimitiveType();
+        PrimitiveType rightPrimitive = right.getPrimitiveType();
+        Type result = leftPrimitive == null || rightPrimitive == null ? null : rules[leftPrimitive.ordinal()][rightPrimitive.ordinal()];
         if (result == null)
-            throw new SemanticException(operator, "Invalid binary operator: " + operator.type().name() + " for types: " + left.name() + " and " + right.name());
+            throw new SemanticException(operator, "Invalid binary operator: " + operator.type().name() + " for types: " + left + " and " + right);
 
         return result;
     }
 
-    public static PrimitiveType checkUnaryExpression(Token operator, PrimitiveType left) {
+    public static Type checkUnaryExpression(Token operator, Type left) {
         if (operator.type() == TokenType.SUB || operator.type() == TokenType.ADD) {
-            if (left == PrimitiveType.STRING)
-                throw new SemanticException(operator, "Invalid unary operator: " + operator.type().name() + " for type: " + left.name());
+            if (left == Type.STRING || !left.isPrimitive())
+                throw new SemanticException(operator, "Invalid unary operator: " + operator.type().name() + " for type: " + left);
 
             return left;
         } else if (operator.type() == TokenType.NOT) {
-            if (left != PrimitiveType.BOOL)
-                throw new SemanticException(operator, "Invalid unary operator: " + operator.type().name() + " for type: " + left.name());
+            if (left != Type.BOOL)
+                throw new SemanticException(operator, "Invalid unary operator: " + operator.type().name() + " for type: " + left);
 
-            return PrimitiveType.BOOL;
+            return Type.BOOL;
         }
 
         throw new SemanticException(operator, "Invalid unary operator: " + operator.type().name());
     }
+
+    public static Type checkLogicalExpression(Token operator, Type left, Type right) {
+        if ((operator.type() != TokenType.OR && operator.type() != TokenType.AND) || left != Type.BOOL || right != Type.BOOL)
+            throw new SemanticException(operator, "Invalid logical expression: operator '" + operator.type().name() + "' cannot be used with types '" + left + "' and '" + right + "'.");
+
+        return Type.BOOL;
+    }
+
+    /**
+     * Type checks a whole tree of literals, variables, groupings and unary, binary and logical operators in a single
+     * pass, without going through a visitor or creating any symbols.
+     *
+     * @param variableTypes looks up the declared type of a variable, returning {@code null} if it is unknown
+     * @return the type of the expression, or {@code null} if it contains anything else (such as a call) or a variable
+     * whose type is unknown
+     * @throws SemanticException if an operator is used with types it does not support
+     */
+    public static Type checkExpression(Expression expression, Function<String, Type> variableTypes) {
+        return checkExpression(expression, variable -> variableTypes.apply((String) variable.getName().value()), null);
+    }
+
+    /**
+     * Like {@link #checkExpression(Expression, Function)}, but also records the type of every node it checks.
+     *
+     * @param variableTypes looks up the declared type of a variable node, returning {@code null} if it is unknown
+     * @param types         where to record the type of each node, or {@code null} to not record them
+     */
+    public static Type checkExpression(Expression expression, Function<Expression.Variable, Type> variableTypes, TypeTable types) {
+        Type type = switch (expression) {
+            case Expression.Literal literal -> literalType(literal.getValue());
+            case Expression.Variable variable -> variableTypes.apply(variable);
+            case Expression.Grouping grouping -> checkExpression(grouping.getExpression(), variableTypes, types);
+            case Expression.Unary unary -> {
+                Type right = checkExpression(unary.getRight(), variableTypes, types);
+                yield right == null ? null : checkUnaryExpression(unary.getOperator(), right);
+            }
+            case Expression.Binary binary -> {
+                Type left = checkExpression(binary.getLeft(), variableTypes, types);
+                Type right = left == null ? null : checkExpression(binary.getRight(), variableTypes, types);
+                yield right == null ? null : checkBinaryExpression(binary.getOperator(), left, right);
+            }
+            case Expression.Logical logical -> {
+                Type left = checkExpression(logical.getLeft(), variableTypes, types);
+                Type right = left == null ? null : checkExpression(logical.getRight(), variableTypes, types);
+                yield right == null ? null : checkLogicalExpression(logical.getOperator(), left, right);
+            }
+            default -> null;
+        };
+
+        if (types != null) {
+            types.record(expression, type);
+        }
+
+        return type;
+    }
+
+    /**
+     * @return the type of a literal value, or {@code null} if it is not a value a literal can hold
+     */
+    public static Type literalType(Object value) {
+        return switch (value) {
+            case Integer _ -> Type.INT;
+            case Double _ -> Type.DOUBLE;
+            case Boolean _ -> Type.BOOL;
+            case String _ -> Type.STRING;
+            case Float _ -> Type.FLOAT;
+            case Long _ -> Type.LONG;
+            case Short _ -> Type.SHORT;
+            case Byte _ -> Type.BYTE;
+            case Character _ -> Type.CHAR;
+            case null, default -> null;
+        };
+    }
 }
@@ -0,0 +1,109 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.Symbol;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The results of semantic analysis for every {@link Expression} node: the type it evaluates to, for names, calls
+ * and member accesses the declaration it resolved to, and for a number stored into a variable, field or return value
+ * of another numeric type, the type it is converted to.
+ * <p>
+ * Nodes are looked up by identity, so two structurally equal expressions at different places in the source have
+ * separate entries. Backends use the table to pick a specialized path where a type is statically known, and fall
+ * back to their dynamic path for any node without an entry.
+ */
+public class TypeTable {
+    private final Map<Expression, Type> types = new IdentityHashMap<>();
+    private final Map<Expression, Symbol> declarations = new IdentityHashMap<>();
+    private final Map<Expression, Type> conversions = new IdentityHashMap<>();
+
+    public void record(Expression expression, Type type) {
+        if (expression != null && type != null) {
+            this.types.put(expression, type);
+        }
+    }
+
+    public void declare(Expression expression, Symbol declaration) {
+        if (expression != null && declaration != null) {
+            this.declarations.put(expression, declaration);
+        }
+    }
+
+    /**
+     * Records that the value of the expression is stored as the given type, if it is a number of another type.
+     */
+    public void convert(Expression value, Type target) {
+        Type type = this.types.get(value);
+        if (isNumeric(type) && isNumeric(target) && type != target) {
+            this.conversions.put(value, target);
+        }
+    }
+
+    /**
+     * @return the type the expression evaluates to, or {@code null} if it is not known
+     */
+    public Type getType(Expression expression) {
+        return this.types.get(expression);
+    }
+
+    /**
+     * @return the variable, function, field, method or constructor the expression refers to, or {@code null} if it
+     * does not refer to one or it is not known
+     */
+    public Symbol getDeclaration(Expression expression) {
+        return this.declarations.get(expression);
+    }
+
+    /**
+     * @return the numeric type the value of the expression has to be converted to where it is stored, or
+     * {@code null} if it is stored as it is
+     */
+    public Type getConversion(Expression expression) {
+        return this.conversions.get(expression);
+    }
+
+    /**
+     * Gives a node that replaces another, such as a folded literal, the replaced node's entries where it has none of
+     * its own.
+     */
+    public void copyIfAbsent(Expression from, Expression to) {
+        if (from == to)
+            return;
+
+        Type type = this.types.get(from);
+        if (type != null) {
+            this.types.putIfAbsent(to, type);
+        }
+
+        Symbol declaration = this.declarations.get(from);
+        if (declaration != null) {
+            this.declarations.putIfAbsent(to, declaration);
+        }
+
+        Type conversion = this.conversions.get(from);
+        if (conversion != null) {
+            this.conversions.putIfAbsent(to, conversion);
+        }
+    }
+
+    /**
+     * Adds every entry of another table to this one.
+     */
+    public void merge(TypeTable other) {
+        this.types.putAll(other.types);
+        this.declarations.putAll(other.declarations);
+        this.conversions.putAll(other.conversions);
+    }
+
+    public int size() {
+        return this.types.size();
+    }
+
+    private static boolean isNumeric(Type type) {
+        return type == Type.INT || type == Type.LONG || type == Type.DOUBLE || type == Type.FLOAT ||
+                type == Type.SHORT || type == Type.BYTE;
+    }
+}
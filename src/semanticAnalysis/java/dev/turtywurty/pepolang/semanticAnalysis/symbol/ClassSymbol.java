@@ -1,9 +1,9 @@
 package dev.turtywurty.pepolang.semanticAnalysis.symbol;
 
-import dev.turtywurty.pepolang.semanticAnalysis.Either;
-import dev.turtywurty.pepolang.semanticAnalysis.PrimitiveType;
 import dev.turtywurty.pepolang.semanticAnalysis.SymbolType;
+import dev.turtywurty.pepolang.semanticAnalysis.Type;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class ClassSymbol extends Symbol {
@@ -12,6 +12,8 @@ public class ClassSymbol extends Symbol {
     private final List<VariableSymbol> fields;
     private final List<MethodSymbol> methods;
     private final List<MethodSymbol> constructors;
+    private volatile OverloadIndex methodIndex;
+    private volatile OverloadIndex constructorIndex;
 
     public ClassSymbol(String name, List<VariableSymbol> staticFields, List<MethodSymbol> staticMethods, List<VariableSymbol> fields, List<MethodSymbol> methods, List<MethodSymbol> constructors) {
         super(SymbolType.CLASS, name);
@@ -42,30 +44,12 @@ public class ClassSymbol extends Symbol {
         return constructors;
     }
 
-    public MethodSymbol findConstructor(List<Either<PrimitiveType, String>> argumentTypes) {
-        for (MethodSymbol constructor : this.constructors) {
-            if (!constructor.getName().equals(this.getName()))
-                continue;
-
-            List<VariableSymbol> parameters = constructor.getParameters();
-            if (parameters.size() == argumentTypes.size()) {
-                boolean match = true;
-                for (int i = 0; i < argumentTypes.size(); i++) {
-                    Either<PrimitiveType, String> expectedType = parameters.get(i).getReturnType();
-                    Either<PrimitiveType, String> actualType = argumentTypes.get(i);
-                    if (!expectedType.equals(actualType)) {
-                        // TODO: Add more sophisticated type checking if you support inheritance/implicit conversions
-                        match = false;
-                        break;
-                    }
-                }
-                if (match) {
-                    return constructor;
-                }
-            }
-        }
-
-        return null;
+    /**
+     * @return the constructor whose parameter types are exactly the given argument types, or {@code null} if there is
+     * none
+     */
+    public MethodSymbol findConstructor(List<Type> argumentTypes) {
+        return constructorIndex().find(getName(), argumentTypes);
     }
 
     public VariableSymbol findField(String name) {
@@ -88,26 +72,42 @@ public class ClassSymbol extends Symbol {
         return null;
     }
 
+    /**
+     * @return the first declared instance method with the given name, or else the first static one
+     */
     public MethodSymbol findMethod(String name) {
-        // Check instance methods
-        for (MethodSymbol method : this.methods) {
-            if (method.getName().equals(name)) {
-                // For simplicity, returning the first match.
-                // If you have method overloading and need to resolve a specific one,
-                // this method might need to return a list or take parameter types.
-                // However, for `Expression.Get`, you're fetching the method group or a non-overloaded method.
-                return method;
-            }
+        // TODO: search in superclass(es)
+        return methodIndex().first(name);
+    }
+
+    /**
+     * @return the instance or static method whose parameter types are exactly the given argument types, or
+     * {@code null} if there is none
+     */
+    public MethodSymbol findMethod(String name, List<Type> argumentTypes) {
+        return methodIndex().find(name, argumentTypes);
+    }
+
+    // The member lists are filled in while the class is analyzed, so an index is rebuilt if it was built too early
+    private OverloadIndex methodIndex() {
+        OverloadIndex index = this.methodIndex;
+        if (index == null || index.size() != this.methods.size() + this.staticMethods.size()) {
+            List<MethodSymbol> methods = new ArrayList<>(this.methods);
+            methods.addAll(this.staticMethods);
+            index = new OverloadIndex(methods);
+            this.methodIndex = index;
         }
 
-        // Check static methods
-        for (MethodSymbol staticMethod : this.staticMethods) {
-            if (staticMethod.getName().equals(name)) {
-                return staticMethod;
-            }
+        return index;
+    }
+
+    private OverloadIndex constructorIndex() {
+        OverloadIndex index = this.constructorIndex;
+        if (index == null || index.size() != this.constructors.size()) {
+            index = new OverloadIndex(this.constructors);
+            this.constructorIndex = index;
         }
 
-        // TODO: search in superclass(es)
-        return null;
+        return index;
     }
 }
@@ -1,8 +1,7 @@
 package dev.turtywurty.pepolang.semanticAnalysis.symbol;
 
-import dev.turtywurty.pepolang.semanticAnalysis.Either;
-import dev.turtywurty.pepolang.semanticAnalysis.PrimitiveType;
+import dev.turtywurty.pepolang.semanticAnalysis.Type;
 
 public interface HasReturnType {
-    Either<PrimitiveType, String> getReturnType();
+    Type getReturnType();
 }
@@ -1,37 +1,36 @@
 package dev.turtywurty.pepolang.semanticAnalysis.symbol;
 
 import dev.turtywurty.pepolang.lexer.Token;
-import dev.turtywurty.pepolang.semanticAnalysis.Either;
 import dev.turtywurty.pepolang.semanticAnalysis.PrimitiveType;
 import dev.turtywurty.pepolang.semanticAnalysis.SymbolType;
+import dev.turtywurty.pepolang.semanticAnalysis.Type;
 
 import java.util.List;
-import java.util.Objects;
 
 public class MethodSymbol extends Symbol implements HasReturnType {
-    private final Either<PrimitiveType, String> returnType;
+    private final Type returnType;
     private final List<VariableSymbol> parameters;
 
     public MethodSymbol(String name, PrimitiveType returnType, List<VariableSymbol> parameters) {
         super(SymbolType.METHOD, name);
-        this.returnType = Either.left(returnType);
+        this.returnType = Type.of(returnType);
         this.parameters = parameters;
     }
 
     public MethodSymbol(String name, String returnType, List<VariableSymbol> parameters) {
         super(SymbolType.METHOD, name);
-        this.returnType = Either.right(returnType);
+        this.returnType = Type.ofClass(returnType);
         this.parameters = parameters;
     }
 
     public MethodSymbol(String name, Token returnType, List<VariableSymbol> parameters) {
         super(SymbolType.METHOD, name);
-        this.returnType = tokenToEither(returnType);
+        this.returnType = Type.of(returnType);
         this.parameters = parameters;
     }
 
     @Override
-    public Either<PrimitiveType, String> getReturnType() {
+    public Type getReturnType() {
         return this.returnType;
     }
 
@@ -39,20 +38,35 @@ public class MethodSymbol extends Symbol implements HasReturnType {
         return this.parameters;
     }
 
+    /**
+     * @return whether the method can be called with arguments of exactly the given types
+     */
+    public boolean accepts(List<Type> argumentTypes) {
+        if (this.parameters.size() != argumentTypes.size())
+            return false;
+
+        for (int i = 0; i < this.parameters.size(); i++) {
+            if (this.parameters.get(i).getReturnType() != argumentTypes.get(i))
+                return false;
+        }
+
+        return true;
+    }
+
     public boolean matches(List<VariableSymbol> parameters) {
         if (this.parameters.size() != parameters.size())
             return false;
 
         for (int i = 0; i < this.parameters.size(); i++) {
-            if (!this.parameters.get(i).getReturnType().equals(parameters.get(i).getReturnType()))
+            if (this.parameters.get(i).getReturnType() != parameters.get(i).getReturnType())
                 return false;
         }
 
         return true;
     }
 
-    public boolean matches(List<VariableSymbol> parameters, Either<PrimitiveType, String> returnType) {
-        return matches(parameters) && Objects.equals(this.returnType, returnType);
+    public boolean matches(List<VariableSymbol> parameters, Type returnType) {
+        return matches(parameters) && this.returnType == returnType;
     }
 
     public boolean matches(MethodSymbol methodSymbol) {
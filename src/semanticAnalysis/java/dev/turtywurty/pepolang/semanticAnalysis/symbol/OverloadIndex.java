@@ -0,0 +1,59 @@
+package dev.turtywurty.pepolang.semanticAnalysis.symbol;
+
+import dev.turtywurty.pepolang.semanticAnalysis.Type;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the overload of a method or constructor that a call resolves to with a single map lookup on its name and
+ * argument types, rather than comparing the parameters of every candidate.
+ * <p>
+ * Types are interned, so a signature's hash and equality only compare type identities. When two overloads have the
+ * same signature, the one declared first wins.
+ */
+public final class OverloadIndex {
+    private final Map<Signature, MethodSymbol> bySignature = new HashMap<>();
+    private final Map<String, MethodSymbol> byName = new HashMap<>();
+    private final int size;
+
+    public OverloadIndex(List<MethodSymbol> methods) {
+        this.size = methods.size();
+        for (MethodSymbol method : methods) {
+            List<Type> parameterTypes = new ArrayList<>(method.getParameters().size());
+            for (VariableSymbol parameter : method.getParameters()) {
+                parameterTypes.add(parameter.getReturnType());
+            }
+
+            this.bySignature.putIfAbsent(new Signature(method.getName(), parameterTypes), method);
+            this.byName.putIfAbsent(method.getName(), method);
+        }
+    }
+
+    /**
+     * @return the overload whose parameter types are exactly the given argument types, or {@code null} if there is
+     * none
+     */
+    public MethodSymbol find(String name, List<Type> argumentTypes) {
+        return this.bySignature.get(new Signature(name, argumentTypes));
+    }
+
+    /**
+     * @return the first declared overload with the given name, or {@code null} if there is none
+     */
+    public MethodSymbol first(String name) {
+        return this.byName.get(name);
+    }
+
+    /**
+     * @return how many methods the index was built from
+     */
+    public int size() {
+        return this.size;
+    }
+
+    private record Signature(String name, List<Type> parameterTypes) {
+    }
+}
@@ -1,8 +1,5 @@
 package dev.turtywurty.pepolang.semanticAnalysis.symbol;
 
-import dev.turtywurty.pepolang.lexer.Token;
-import dev.turtywurty.pepolang.semanticAnalysis.Either;
-import dev.turtywurty.pepolang.semanticAnalysis.PrimitiveType;
 import dev.turtywurty.pepolang.semanticAnalysis.SymbolType;
 
 public abstract class Symbol {
@@ -21,10 +18,4 @@ public abstract class Symbol {
     public String getName() {
         return this.name;
     }
-
-    public static Either<PrimitiveType, String> tokenToEither(Token token) {
-        return token.type().isTypeKeyword() ?
-                Either.left(PrimitiveType.fromTokenType(token.type())) :
-                Either.right((String) token.value());
-    }
 }
\ No newline at end of file
@@ -1,19 +1,30 @@
 package dev.turtywurty.pepolang.semanticAnalysis.symbol;
 
-import dev.turtywurty.pepolang.semanticAnalysis.Either;
-import dev.turtywurty.pepolang.semanticAnalysis.PrimitiveType;
 import dev.turtywurty.pepolang.semanticAnalysis.SymbolType;
+import dev.turtywurty.pepolang.semanticAnalysis.Type;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ValueSymbol extends Symbol implements HasReturnType {
-    private final Either<PrimitiveType, String> returnType;
+    private static final Map<Type, ValueSymbol> VALUES = new ConcurrentHashMap<>();
+
+    private final Type returnType;
 
-    public ValueSymbol(Either<PrimitiveType, String> returnType) {
+    private ValueSymbol(Type returnType) {
         super(SymbolType.VALUE, null);
         this.returnType = returnType;
     }
 
+    /**
+     * @return the shared symbol for a value of the given type
+     */
+    public static ValueSymbol of(Type returnType) {
+        return VALUES.computeIfAbsent(returnType, ValueSymbol::new);
+    }
+
     @Override
-    public Either<PrimitiveType, String> getReturnType() {
+    public Type getReturnType() {
         return this.returnType;
     }
 }
@@ -1,30 +1,30 @@
 package dev.turtywurty.pepolang.semanticAnalysis.symbol;
 
 import dev.turtywurty.pepolang.lexer.Token;
-import dev.turtywurty.pepolang.semanticAnalysis.Either;
 import dev.turtywurty.pepolang.semanticAnalysis.PrimitiveType;
 import dev.turtywurty.pepolang.semanticAnalysis.SymbolType;
+import dev.turtywurty.pepolang.semanticAnalysis.Type;
 
 public class VariableSymbol extends Symbol implements HasReturnType {
-    private final Either<PrimitiveType, String> type;
+    private final Type type;
 
     public VariableSymbol(String name, PrimitiveType type) {
         super(SymbolType.VARIABLE, name);
-        this.type = Either.left(type);
+        this.type = Type.of(type);
     }
 
     public VariableSymbol(String name, String type) {
         super(SymbolType.VARIABLE, name);
-        this.type = Either.right(type);
+        this.type = Type.ofClass(type);
     }
 
     public VariableSymbol(String name, Token token) {
         super(SymbolType.VARIABLE, name);
-        this.type = tokenToEither(token);
+        this.type = Type.of(token);
     }
 
     @Override
-    public Either<PrimitiveType, String> getReturnType() {
+    public Type getReturnType() {
         return this.type;
     }
 }
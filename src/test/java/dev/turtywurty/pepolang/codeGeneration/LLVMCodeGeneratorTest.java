@@ -0,0 +1,152 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.SemanticAnalyzer;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.global.LLVM;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LLVMCodeGeneratorTest {
+    private static final String FUNCTIONS = """
+            int twice(int n) {
+                return n * 2;
+            }
+            int y = twice(3);
+            print("" + y);
+            """;
+
+    private static final String STRINGS = """
+            string greeting = "hello " + "world";
+            print(greeting);
+            print("" + true);
+            print("" + 7);
+            """;
+
+    private static final String LOOPS = """
+            int total = 0;
+            int i = 0;
+            while (i < 4) {
+                if (i % 2 == 0) {
+                    total = total + i;
+                }
+                i = i + 1;
+            }
+            for (int j = 0; j < 3; j = j + 1) {
+                total = total + j;
+            }
+            print("" + total);
+            """;
+
+    private static final String CLASSES = """
+            class Animal {
+                Animal() {
+                }
+
+                string sound() {
+                    return "...";
+                }
+            }
+
+            class Dog extends Animal {
+                Dog() {
+                }
+
+                string sound() {
+                    return "woof";
+                }
+            }
+
+            Animal dog = new Dog();
+            print(dog.sound());
+            """;
+
+    @TempDir
+    Path directory;
+
+    static SemanticAnalyzer analyze(List<Statement> statements) {
+        var analyzer = new SemanticAnalyzer(statements);
+        analyzer.analyze();
+        assertFalse(analyzer.hadError(), () -> analyzer.getErrors().toString());
+        return analyzer;
+    }
+
+    static CodeGenOptions options(OptimizationLevel level, OutputFormat format, boolean garbageCollected) {
+        return new CodeGenOptions(level, false, format, 1, null, garbageCollected, null);
+    }
+
+    private static void assertVerifies(String source, boolean garbageCollected) {
+        List<Statement> statements = parse(source);
+        SemanticAnalyzer analyzer = analyze(statements);
+
+        LLVMContextRef context = LLVM.LLVMContextCreate();
+        LLVMModuleRef module = LLVMCodeGenerator.buildModule(statements, analyzer.getTypes(),
+                options(OptimizationLevel.O0, OutputFormat.LLVM_IR, garbageCollected), context);
+        try {
+            assertDoesNotThrow(() -> LLVMOptimizer.verify(module));
+        } finally {
+            LLVM.LLVMDisposeModule(module);
+            LLVM.LLVMContextDispose(context);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {FUNCTIONS, STRINGS, LOOPS, CLASSES})
+    public void testGeneratedModulesVerify(String source) {
+        assertVerifies(source, false);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {FUNCTIONS, STRINGS, LOOPS, CLASSES})
+    public void testGarbageCollectedModulesVerify(String source) {
+        assertVerifies(source, true);
+    }
+
+    /**
+     * Compiles the program to an executable, runs it and returns what it printed.
+     */
+    private String runExecutable(String source, OptimizationLevel level, boolean garbageCollected)
+            throws IOException, InterruptedException {
+        List<Statement> statements = parse(source);
+        Path executable = this.directory.resolve("program");
+        LLVMCodeGenerator.generate(statements, analyze(statements).getTypes(),
+                options(level, OutputFormat.EXECUTABLE, garbageCollected), executable);
+
+        Process process = new ProcessBuilder(executable.toString()).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(0, process.waitFor(), output);
+        return output;
+    }
+
+    @Test
+    public void testExecutablesPrintWhatTheProgramDoes() throws IOException, InterruptedException {
+        assertEquals("6\n", runExecutable(FUNCTIONS, OptimizationLevel.O0, false));
+        assertEquals("hello world\ntrue\n7\n", runExecutable(STRINGS, OptimizationLevel.O2, false));
+        assertEquals("5\n", runExecutable(LOOPS, OptimizationLevel.O2, true));
+        assertEquals("woof\n", runExecutable(CLASSES, OptimizationLevel.O0, true));
+    }
+
+    @Test
+    public void testFunctionsCalledMainDoNotReplaceTheEntryPoint() throws IOException, InterruptedException {
+        String source = """
+                print("top");
+                void main() {
+                    print("in main");
+                }
+                main();
+                print("after");
+                """;
+        assertEquals("top\nin main\nafter\n", runExecutable(source, OptimizationLevel.O0, false));
+    }
+}
@@ -0,0 +1,52 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import dev.turtywurty.pepolang.parser.Statement;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LLVMJitTest {
+    private static int run(String source, OptimizationLevel level, boolean garbageCollected) {
+        List<Statement> statements = parse(source);
+        return LLVMJit.run(statements, LLVMCodeGeneratorTest.analyze(statements).getTypes(),
+                LLVMCodeGeneratorTest.options(level, OutputFormat.LLVM_IR, garbageCollected));
+    }
+
+    @Test
+    public void testProgramsRunToCompletion() {
+        assertEquals(0, run("""
+                int twice(int n) {
+                    return n * 2;
+                }
+                int y = twice(3);
+                """, OptimizationLevel.O0, false));
+        assertEquals(0, run("""
+                string greeting = "hello " + "world";
+                int total = 0;
+                for (int i = 0; i < 10; i = i + 1) {
+                    total = total + i;
+                }
+                """, OptimizationLevel.O2, false));
+    }
+
+    @Test
+    public void testGarbageCollectedProgramsRunToCompletion() {
+        assertEquals(0, run("""
+                class Box {
+                    int value;
+
+                    Box(int v) {
+                        value = v;
+                    }
+                }
+
+                for (int i = 0; i < 1000; i = i + 1) {
+                    Box box = new Box(i);
+                    string text = "box " + i;
+                }
+                """, OptimizationLevel.O0, true));
+    }
+}
@@ -0,0 +1,80 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import dev.turtywurty.pepolang.parser.Statement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Map;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NativeRuntimeTest {
+    // Allocates about 300 MB over its run, but never has more than a few objects alive
+    private static final String CHURN = """
+            class Node {
+                int value;
+
+                Node(int v) {
+                    value = v;
+                }
+            }
+
+            void main() {
+                string s = "";
+                for (int i = 0; i < 2000000; i = i + 1) {
+                    s = "x" + i;
+                    Node node = new Node(i);
+                }
+                print(s);
+            }
+            main();
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testGarbageCollectedProgramsStayWithinBoundedMemory() throws IOException, InterruptedException {
+        List<Statement> statements = parse(CHURN);
+        Path executable = this.directory.resolve("churn");
+        LLVMCodeGenerator.generate(statements, LLVMCodeGeneratorTest.analyze(statements).getTypes(),
+                LLVMCodeGeneratorTest.options(OptimizationLevel.O0, OutputFormat.EXECUTABLE, true), executable);
+
+        // 64 MiB of address space, far less than the program allocates in total
+        Process process = new ProcessBuilder("/bin/sh", "-c", "ulimit -v 65536 && exec \"$0\"", executable.toString())
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(0, process.waitFor(), output);
+        assertEquals("x1999999\n", output);
+    }
+
+    @Test
+    public void testRuntimeIsCachedPerUser() {
+        assertEquals(Path.of("/cache/pepolang"), NativeRuntime.cacheDirectory(Map.of("XDG_CACHE_HOME", "/cache"), "/home/pepo"));
+        assertEquals(Path.of("/home/pepo/.cache/pepolang"), NativeRuntime.cacheDirectory(Map.of(), "/home/pepo"));
+        // the specification says relative paths are to be ignored
+        assertEquals(Path.of("/home/pepo/.cache/pepolang"), NativeRuntime.cacheDirectory(Map.of("XDG_CACHE_HOME", "cache"), "/home/pepo"));
+    }
+
+    @Test
+    public void testRuntimeDirectoriesArePrivate() throws IOException {
+        Path created = this.directory.resolve("cache/pepolang");
+        NativeRuntime.createPrivateDirectory(created);
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(created)));
+
+        Path shared = Files.createDirectory(this.directory.resolve("shared"));
+        Files.setPosixFilePermissions(shared, PosixFilePermissions.fromString("rwxrwxrwx"));
+        assertThrows(IOException.class, () -> NativeRuntime.createPrivateDirectory(shared));
+
+        Path link = Files.createSymbolicLink(this.directory.resolve("link"), created);
+        assertThrows(IOException.class, () -> NativeRuntime.createPrivateDirectory(link));
+    }
+}
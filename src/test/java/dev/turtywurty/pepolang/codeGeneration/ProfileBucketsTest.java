@@ -0,0 +1,101 @@
+package dev.turtywurty.pepolang.codeGeneration;
+
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.ExecutionProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProfileBucketsTest {
+    private static final String SOURCE = """
+            int sign(int x) {
+                if (x < 0) {
+                    return -1;
+                }
+                return 1;
+            }
+            int unused() {
+                return 0;
+            }
+            sign(5);
+            """;
+
+    @Test
+    public void testBucketsOnlyChangeWithBehaviour() {
+        List<Statement> statements = parse(SOURCE);
+        ExecutionProfile.Sites sites = new ExecutionProfile().record(List.of(statements));
+        String unprofiled = describe(sites, statements);
+
+        run(sites, statements, 3, 1);
+        String first = describe(sites, statements);
+        assertNotEquals(unprofiled, first);
+
+        // The same behaviour again only grows the counts
+        run(sites, statements, 3, 1);
+        assertEquals(first, describe(sites, statements));
+
+        run(sites, statements, 0, 200);
+        assertNotEquals(first, describe(sites, statements));
+    }
+
+    @Test
+    public void testBranchCountsKeepTheirRatio() {
+        List<Statement> statements = parse(SOURCE);
+        ExecutionProfile.Sites sites = new ExecutionProfile().record(List.of(statements));
+        Statement site = function(statements, 0).getBody().getFirst();
+        assertNull(ProfileBuckets.branchCounts(sites, site));
+
+        run(sites, statements, 0, 7);
+        assertArrayEquals(new long[]{0, 7}, ProfileBuckets.branchCounts(sites, site));
+
+        run(sites, statements, 8, 0);
+        assertArrayEquals(new long[]{0, 0}, ProfileBuckets.branchCounts(sites, site));
+    }
+
+    @Test
+    public void testHeat() {
+        List<Statement> statements = parse(SOURCE);
+        ExecutionProfile.Sites sites = new ExecutionProfile().record(List.of(statements));
+        assertNull(ProfileBuckets.heat(null, function(statements, 0)));
+
+        run(sites, statements, 0, 1);
+        assertEquals(ProfileBuckets.Heat.NORMAL, ProfileBuckets.heat(sites, function(statements, 0)));
+        assertEquals(ProfileBuckets.Heat.COLD, ProfileBuckets.heat(sites, function(statements, 1)));
+
+        run(sites, statements, 0, 99);
+        assertEquals(ProfileBuckets.Heat.HOT, ProfileBuckets.heat(sites, function(statements, 0)));
+    }
+
+    private static String describe(ExecutionProfile.Sites sites, List<Statement> statements) {
+        var description = new StringBuilder();
+        for (Statement statement : statements) {
+            ProfileBuckets.describe(sites, statement, description);
+        }
+
+        return description.toString();
+    }
+
+    /**
+     * Records what calling {@code sign} with negative and positive numbers the given number of times would.
+     */
+    private static void run(ExecutionProfile.Sites sites, List<Statement> statements, int negative, int positive) {
+        Statement.FunctionStatement sign = function(statements, 0);
+        var call = (Expression.Call) ((Statement.ExpressionStatement) statements.getLast()).getExpression();
+        for (int index = 0; index < negative + positive; index++) {
+            sites.recordCall(call, sign);
+            sites.recordBranch(sign.getBody().getFirst(), index < negative);
+        }
+    }
+
+    private static Statement.FunctionStatement function(List<Statement> statements, int index) {
+        return statements.stream()
+                .filter(Statement.FunctionStatement.class::isInstance)
+                .map(Statement.FunctionStatement.class::cast)
+                .toList()
+                .get(index);
+    }
+}
@@ -0,0 +1,121 @@
+package dev.turtywurty.pepolang.interpreter;
+
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.EscapeAnalysis;
+import dev.turtywurty.pepolang.semanticAnalysis.EscapeAnalyzer;
+import dev.turtywurty.pepolang.semanticAnalysis.SemanticAnalyzer;
+import dev.turtywurty.pepolang.semanticAnalysis.TypeTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InterpreterTest {
+    @Test
+    public void testOverloadsWithTheSameArityAreDispatchedByType() {
+        String output = run("""
+                class Printer {
+                    Printer(int value) {
+                        print("int constructor");
+                    }
+                    Printer(string value) {
+                        print("string constructor");
+                    }
+                    string describe(int value) {
+                        return "int " + value;
+                    }
+                    string describe(string value) {
+                        return "string " + value;
+                    }
+                }
+                Printer printer = new Printer("x");
+                print(printer.describe("a"));
+                print(printer.describe(1));
+                Printer other = new Printer(1);
+                """);
+
+        assertEquals("""
+                string constructor
+                string a
+                int 1
+                int constructor
+                """, output);
+    }
+
+    @Test
+    public void testLocalObjectsKeepTheirFieldsInSlots() {
+        // Semantic analysis does not support 'this' yet, so the program runs without types
+        List<Statement> statements = parse("""
+                class Point {
+                    int x;
+                    int y;
+
+                    Point(int x, int y) {
+                        this.x = x;
+                        this.y = y;
+                    }
+                }
+                int sum(int n) {
+                    int total = 0;
+                    for (int i = 0; i < n; i = i + 1) {
+                        Point p = new Point(i, 2);
+                        p.x = p.x + 1;
+                        total = total + p.x * p.y;
+                    }
+                    return total;
+                }
+                print(sum(4));
+                Point kept = new Point(5, 6);
+                print(kept.x + kept.y);
+                """);
+        EscapeAnalysis escapes = new EscapeAnalyzer().analyze(statements);
+        assertEquals(1, escapes.size());
+
+        assertEquals("20\n11\n", interpret(statements, new Interpreter(new TypeTable(), escapes)));
+    }
+
+    /**
+     * Analyzes and runs a program the way {@code PepoLang} does.
+     *
+     * @return what the program printed
+     */
+    static String run(String source) {
+        return run(source, (interpreter, statements) -> {
+        });
+    }
+
+    /**
+     * @param setup configures the interpreter for the parsed statements before they run
+     */
+    static String run(String source, BiConsumer<Interpreter, List<Statement>> setup) {
+        List<Statement> statements = parse(source);
+        var analyzer = new SemanticAnalyzer(statements);
+        analyzer.analyze();
+        assertFalse(analyzer.hadError(), () -> analyzer.getErrors().toString());
+
+        var interpreter = new Interpreter(analyzer.getTypes(), new EscapeAnalyzer().analyze(statements));
+        setup.accept(interpreter, statements);
+        return interpret(statements, interpreter);
+    }
+
+    private static String interpret(List<Statement> statements, Interpreter interpreter) {
+        new Resolver(interpreter).resolve(statements);
+
+        PrintStream previous = System.out;
+        var output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+        try {
+            interpreter.interpret(statements);
+        } finally {
+            System.setOut(previous);
+        }
+
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,109 @@
+package dev.turtywurty.pepolang.interpreter;
+
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.PurityAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoCacheTest {
+    private static final String FIB = """
+            int fib(int n) {
+                if (n < 2) {
+                    return n;
+                }
+                return fib(n - 1) + fib(n - 2);
+            }
+            for (int i = 0; i < 25; i = i + 1) {
+                print("" + fib(i));
+            }
+            """;
+
+    @Test
+    public void testLeastRecentlyUsedResultIsEvicted() {
+        var function = new CountingFunction(argument -> argument);
+        var cache = new MemoCache(Set.of(function.getDeclaration()), 2);
+
+        assertEquals(1, cache.call(function, null, List.of(1)));
+        assertEquals(2, cache.call(function, null, List.of(2)));
+        // Using 1 again leaves 2 as the least recently used result
+        assertEquals(1, cache.call(function, null, List.of(1)));
+        assertEquals(3, cache.call(function, null, List.of(3)));
+        assertEquals(3, function.calls);
+
+        assertEquals(1, cache.call(function, null, List.of(1)));
+        assertEquals(3, function.calls);
+        assertEquals(2, cache.call(function, null, List.of(2)));
+        assertEquals(4, function.calls);
+    }
+
+    @Test
+    public void testNullResultsAreCached() {
+        var function = new CountingFunction(argument -> null);
+        var cache = new MemoCache(Set.of(function.getDeclaration()), 4);
+
+        assertNull(cache.call(function, null, List.of(1)));
+        assertNull(cache.call(function, null, List.of(1)));
+        assertEquals(1, function.calls);
+    }
+
+    @Test
+    public void testInstanceArgumentsBypassTheCache() {
+        var function = new CountingFunction(argument -> 0);
+        var cache = new MemoCache(Set.of(function.getDeclaration()), 4);
+        var instance = new PepoInstance(PepoClass.of("Box", null, Map.of(), List.of()));
+
+        cache.call(function, null, List.of(instance));
+        cache.call(function, null, List.of(instance));
+        assertEquals(2, function.calls);
+    }
+
+    @Test
+    public void testImpureFunctionsAreNotCached() {
+        var function = new CountingFunction(argument -> argument);
+        var cache = new MemoCache(Set.of(), 4);
+
+        cache.call(function, null, List.of(1));
+        cache.call(function, null, List.of(1));
+        assertEquals(2, function.calls);
+    }
+
+    @Test
+    public void testMemoizedFibonacciMatchesUnmemoized() {
+        String unmemoized = InterpreterTest.run(FIB);
+        String memoized = InterpreterTest.run(FIB, (interpreter, statements) -> {
+            Set<Statement.FunctionStatement> pureFunctions = new PurityAnalyzer().analyze(statements);
+            assertEquals(1, pureFunctions.size());
+            // Small enough for results to be evicted while the recursion still needs them
+            interpreter.enableMemoization(pureFunctions, 8);
+        });
+
+        assertEquals(unmemoized, memoized);
+        assertTrue(memoized.endsWith("46368\n"));
+    }
+
+    /**
+     * A function of one argument that counts how often it actually ran.
+     */
+    private static final class CountingFunction extends PepoFunction {
+        private final Function<Object, Object> body;
+        private int calls;
+
+        private CountingFunction(Function<Object, Object> body) {
+            super((Statement.FunctionStatement) parse("int identity(int x) { return x; }").getFirst(), new Environment());
+            this.body = body;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            this.calls++;
+            return this.body.apply(arguments.getFirst());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package dev.turtywurty.pepolang.module;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModuleLoaderTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testDependenciesExecuteFirstAndOnce() throws IOException {
+        write("util.pepo", "int twice(int x) {\n    return x + x;\n}\n");
+        write("left.pepo", "import \"util.pepo\";\nint left() {\n    return twice(1);\n}\n");
+        write("right.pepo", "import \"util.pepo\";\nint right() {\n    return twice(2);\n}\n");
+        Path main = write("main.pepo", "import \"left.pepo\";\nimport \"right.pepo\";\nint x = left() + right();\n");
+
+        Module module = new ModuleLoader().load(main);
+        List<String> order = ModuleLoader.executionOrder(module).stream()
+                .map(loaded -> loaded.path().getFileName().toString())
+                .toList();
+
+        assertEquals(List.of("util.pepo", "left.pepo", "right.pepo", "main.pepo"), order);
+        assertSame(module.dependencies().get(0).dependencies().getFirst(), module.dependencies().get(1).dependencies().getFirst());
+    }
+
+    @Test
+    public void testImportsAreDiscoveredOnTheCallingThread() throws IOException {
+        // each module is read, and its imports discovered, before the module that imports it is done
+        int depth = 20;
+        write("m0.pepo", "int m0 = 0;\n");
+        for (int index = 1; index < depth; index++) {
+            write("m" + index + ".pepo", "import \"m" + (index - 1) + ".pepo\";\nint m" + index + " = m" + (index - 1) + ";\n");
+        }
+
+        Path main = this.directory.resolve("m" + (depth - 1) + ".pepo");
+        Module module = assertDoesNotThrow(() -> new ModuleLoader(Runnable::run, null).load(main));
+        assertEquals(depth, ModuleLoader.executionOrder(module).size());
+    }
+
+    @Test
+    public void testUnchangedModulesAreCached() throws IOException {
+        Path library = write("library.pepo", "int one() {\n    return 1;\n}\n");
+        Path first = write("first.pepo", "import \"library.pepo\";\nint a = one();\n");
+        Path second = write("second.pepo", "import \"library.pepo\";\nint b = one();\n");
+
+        Module firstLibrary = new ModuleLoader().load(first).dependencies().getFirst();
+        Module secondLibrary = new ModuleLoader().load(second).dependencies().getFirst();
+        assertSame(firstLibrary, secondLibrary);
+
+        Files.writeString(library, "int one() {\n    return 2;\n}\n");
+        Module changedLibrary = new ModuleLoader().load(first).dependencies().getFirst();
+        assertNotSame(firstLibrary, changedLibrary);
+    }
+
+    @Test
+    public void testUnimportedSymbolsAreErrors() throws IOException {
+        write("library.pepo", "int one() {\n    return 1;\n}\n");
+        Path main = write("main.pepo", "int a = one();\n");
+
+        ModuleException exception = assertThrows(ModuleException.class, () -> new ModuleLoader().load(main));
+        assertFalse(exception.getErrors().isEmpty());
+    }
+
+    @Test
+    public void testCircularImportsAreRejected() throws IOException {
+        write("a.pepo", "import \"b.pepo\";\n");
+        write("b.pepo", "import \"a.pepo\";\n");
+
+        ModuleException exception = assertThrows(ModuleException.class, () -> new ModuleLoader().load(this.directory.resolve("a.pepo")));
+        assertTrue(exception.getMessage().startsWith("Circular import"));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(this.directory.resolve(name), content);
+    }
+}
@@ -0,0 +1,117 @@
+package dev.turtywurty.pepolang.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AstArenaTest {
+    private static final String SOURCE = """
+            class Animal {
+                string name;
+
+                Animal(string name) {
+                    this.name = name;
+                }
+
+                string speak() {
+                    return "...";
+                }
+            }
+
+            class Dog extends Animal {
+                string speak() {
+                    return super.speak() + "!";
+                }
+            }
+
+            int add(int a, int b) {
+                return a + b * 2;
+            }
+
+            int total = 0;
+            for (int i = 0; i < 10; i = i + 1) {
+                if (i == 5 || !true) {
+                    continue;
+                } else {
+                    total = add(total, i);
+                }
+            }
+
+            while (total > 100) {
+                total = total - 1;
+                break;
+            }
+
+            Dog dog = new Dog("Rex");
+            print(dog.speak());
+            """;
+
+    private static byte[] serialize(AstArena arena) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        arena.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        AstArena arena = AstArena.of(parse(SOURCE));
+        AstArena reencoded = AstArena.of(arena.toStatements());
+
+        assertEquals(arena.size(), reencoded.size());
+        assertArrayEquals(serialize(arena), serialize(reencoded));
+    }
+
+    @Test
+    public void testSerialization() throws IOException {
+        AstArena arena = AstArena.of(parse(SOURCE));
+        byte[] bytes = serialize(arena);
+
+        AstArena read = AstArena.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        assertEquals(arena.getRoots(), read.getRoots());
+        assertArrayEquals(bytes, serialize(read));
+    }
+
+    @Test
+    public void testNodeView() {
+        AstArena arena = AstArena.of(parse("int x = 1 + 2;"));
+        AstArena.Node root = arena.node(arena.getRoots().getFirst());
+        assertEquals(AstKind.VARIABLE_STATEMENT, root.kind());
+        assertEquals(3, root.childCount());
+
+        AstArena.Node binary = root.child(2);
+        assertEquals(AstKind.BINARY, binary.kind());
+        assertEquals(1, binary.child(0).child(0).value());
+        assertEquals(2, binary.child(2).child(0).value());
+
+        Expression expression = binary.toExpression();
+        assertInstanceOf(Expression.Binary.class, expression);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testNodeVisitorDispatchesOnKind() {
+        // answers with the name of the method the node was dispatched to
+        var visitor = (AstNodeVisitor<String>) Proxy.newProxyInstance(AstNodeVisitor.class.getClassLoader(),
+                new Class<?>[]{AstNodeVisitor.class},
+                (proxy, method, arguments) -> method.isDefault() ?
+                        InvocationHandler.invokeDefault(proxy, method, arguments) :
+                        method.getName());
+
+        AstArena arena = AstArena.of(parse("int x = 1 + 2;"));
+        AstArena.Node root = arena.node(arena.getRoots().getFirst());
+        assertEquals("visitVariableStatement", root.accept(visitor));
+        assertEquals("visitBinary", root.child(2).accept(visitor));
+        assertEquals("visitLiteral", root.child(2).child(0).accept(visitor));
+        assertThrows(IllegalArgumentException.class, () -> root.child(0).accept(visitor));
+    }
+}
@@ -0,0 +1,47 @@
+package dev.turtywurty.pepolang.parser;
+
+import dev.turtywurty.pepolang.lexer.Lexer;
+import dev.turtywurty.pepolang.lexer.TokenType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ForStatementTest {
+    private static Statement.ForStatement parseFor(String source) {
+        var parser = new Parser(new Lexer(source).lex());
+        List<Statement> statements = parser.parse();
+        assertFalse(parser.hadError());
+        assertEquals(1, statements.size());
+        return assertInstanceOf(Statement.ForStatement.class, statements.getFirst());
+    }
+
+    @Test
+    public void testCanonicalLoop() {
+        Statement.ForStatement statement = parseFor("for (int i = 0; i < 10; i++) { print(\"\" + i); }");
+        assertInstanceOf(Statement.VariableStatement.class, statement.getInitializer());
+        assertInstanceOf(Expression.Binary.class, statement.getCondition());
+        assertInstanceOf(Statement.BlockStatement.class, statement.getBody());
+
+        var increment = assertInstanceOf(Expression.Assign.class, statement.getIncrement());
+        var value = assertInstanceOf(Expression.Binary.class, increment.getValue());
+        assertEquals(TokenType.ADD, value.getOperator().type());
+    }
+
+    @Test
+    public void testDecrement() {
+        Statement.ForStatement statement = parseFor("for (int i = 10; i > 0; --i) print(\"\" + i);");
+        var increment = assertInstanceOf(Expression.Assign.class, statement.getIncrement());
+        var value = assertInstanceOf(Expression.Binary.class, increment.getValue());
+        assertEquals(TokenType.SUB, value.getOperator().type());
+    }
+
+    @Test
+    public void testEmptyClauses() {
+        Statement.ForStatement statement = parseFor("for (;;) { break; }");
+        assertNull(statement.getInitializer());
+        assertNull(statement.getCondition());
+        assertNull(statement.getIncrement());
+    }
+}
@@ -0,0 +1,48 @@
+package dev.turtywurty.pepolang.parser;
+
+import dev.turtywurty.pepolang.lexer.Lexer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParserStreamTest {
+    private static final String SOURCE = """
+            int add(int a, int b) {
+                return a + b;
+            }
+
+            int x = add(1, 2);
+            while (x < 10) {
+                x = x + 1;
+            }
+
+            print("x = " + x);
+            """;
+
+    @Test
+    public void testStreamMatchesParse() {
+        List<Statement> parsed = new Parser(new Lexer(SOURCE).lex()).parse();
+        List<Statement> streamed = new Parser(new Lexer(SOURCE)).stream().toList();
+
+        assertEquals(parsed.size(), streamed.size());
+        for (int index = 0; index < parsed.size(); index++) {
+            assertEquals(parsed.get(index).getClass(), streamed.get(index).getClass());
+        }
+    }
+
+    @Test
+    public void testStatementsAreYieldedBeforeLaterErrors() {
+        var parser = new Parser(new Lexer("int x = 1;\nint y = ;"));
+        Iterator<Statement> statements = parser.statements();
+
+        assertTrue(statements.hasNext());
+        assertInstanceOf(Statement.VariableStatement.class, statements.next());
+        assertFalse(parser.hadError());
+
+        assertFalse(statements.hasNext());
+        assertTrue(parser.hadError());
+    }
+}
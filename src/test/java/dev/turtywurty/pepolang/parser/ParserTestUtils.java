@@ -0,0 +1,16 @@
+package dev.turtywurty.pepolang.parser;
+
+import dev.turtywurty.pepolang.lexer.Lexer;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class ParserTestUtils {
+    public static List<Statement> parse(String source) {
+        var parser = new Parser(new Lexer(source).lex());
+        List<Statement> statements = parser.parse();
+        assertFalse(parser.hadError());
+        return statements;
+    }
+}
@@ -0,0 +1,144 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.lexer.Lexer;
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.Parser;
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.MethodSymbol;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnalysisCacheTest {
+    private static final String SOURCE = """
+            int square(int x) {
+                return x * x;
+            }
+            int useSquare() {
+                return square(3);
+            }
+            int broken() {
+                return missing;
+            }
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testUnchangedBodiesAreReused() {
+        var cache = new AnalysisCache();
+        analyze(SOURCE, cache);
+        assertEquals(3, cache.getMisses());
+
+        String shifted = "int padding = 0;\n" + SOURCE;
+        SemanticAnalyzer analyzer = analyze(shifted, cache);
+        assertEquals(3, cache.getHits());
+        assertEquals(3, cache.getMisses());
+
+        // the cached error moves along with its function
+        SemanticAnalyzer uncached = analyze(shifted, null);
+        assertEquals(1, analyzer.getErrors().size());
+        assertEquals(uncached.getErrors().getFirst().getToken().pos(), analyzer.getErrors().getFirst().getToken().pos());
+    }
+
+    @Test
+    public void testDependentsOfChangedDeclarationsAreRechecked() {
+        var cache = new AnalysisCache();
+        analyze(SOURCE, cache);
+
+        analyze(SOURCE.replace("int square(int x)", "long square(int x)"), cache);
+        // only the caller of square depends on its signature
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testNewlyDeclaredNamesInvalidateEntries() {
+        var cache = new AnalysisCache();
+        assertTrue(analyze(SOURCE, cache).hadError());
+
+        assertFalse(analyze("int missing = 1;\n" + SOURCE, cache).hadError());
+    }
+
+    @Test
+    public void testCacheSurvivesSaving() throws IOException {
+        var cache = new AnalysisCache();
+        analyze(SOURCE, cache);
+
+        Path file = this.directory.resolve("analysis.cache");
+        cache.save(file);
+
+        AnalysisCache loaded = AnalysisCache.load(file);
+        SemanticAnalyzer analyzer = analyze(SOURCE, loaded);
+        assertEquals(3, loaded.getHits());
+        assertEquals(0, loaded.getMisses());
+        assertEquals("missing", analyzer.getErrors().getFirst().getToken().value());
+    }
+
+    @Test
+    public void testReusedBodiesKeepTheirTypes() throws IOException {
+        String source = """
+                class Counter {
+                    int count;
+                    Counter() {
+                        this.count = 0;
+                    }
+                    int next(int by) {
+                        this.count = this.count + by;
+                        return this.count;
+                    }
+                }
+                float half(int x) {
+                    float result = x;
+                    return result / 2;
+                }
+                int useCounter() {
+                    Counter counter = new Counter();
+                    int first = counter.next(1);
+                    return first + counter.next(2);
+                }
+                """;
+
+        var cache = new AnalysisCache();
+        TypeTable fresh = analyze(parse(source), cache).getTypes();
+
+        List<Statement> statements = parse(source);
+        TypeTable reused = analyze(statements, cache).getTypes();
+        assertEquals(4, cache.getHits());
+        assertEquals(fresh.size(), reused.size());
+
+        var half = (Statement.FunctionStatement) statements.get(1);
+        var result = (Statement.VariableStatement) half.getBody().getFirst();
+        assertSame(Type.FLOAT, reused.getConversion(result.getInitializer()));
+
+        var useCounter = (Statement.FunctionStatement) statements.get(2);
+        var first = (Statement.VariableStatement) useCounter.getBody().get(1);
+        var call = (Expression.Call) first.getInitializer();
+        assertSame(Type.ofClass("Counter"), reused.getType(((Expression.Get) call.getCallee()).getObject()));
+        assertInstanceOf(MethodSymbol.class, reused.getDeclaration(call));
+        assertEquals("next", reused.getDeclaration(call).getName());
+
+        Path file = this.directory.resolve("analysis.cache");
+        cache.save(file);
+        TypeTable loaded = analyze(parse(source), AnalysisCache.load(file)).getTypes();
+        assertEquals(fresh.size(), loaded.size());
+    }
+
+    private static SemanticAnalyzer analyze(String source, AnalysisCache cache) {
+        return analyze(new Parser(new Lexer(source).lex()).parse(), cache);
+    }
+
+    private static SemanticAnalyzer analyze(List<Statement> statements, AnalysisCache cache) {
+        var analyzer = new SemanticAnalyzer(statements);
+        analyzer.setCache(cache);
+        analyzer.analyze();
+        return analyzer;
+    }
+}
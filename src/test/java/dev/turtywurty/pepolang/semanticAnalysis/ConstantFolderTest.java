@@ -0,0 +1,81 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.lexer.Lexer;
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.Parser;
+import dev.turtywurty.pepolang.parser.Statement;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConstantFolderTest {
+    private static List<Statement> fold(String source) {
+        List<Statement> statements = new Parser(new Lexer(source).lex()).parse();
+        return new ConstantFolder().fold(statements);
+    }
+
+    private static Expression initializer(Statement statement) {
+        return assertInstanceOf(Statement.VariableStatement.class, statement).getInitializer();
+    }
+
+    private static void assertLiteral(Object expected, Expression expression) {
+        assertEquals(expected, assertInstanceOf(Expression.Literal.class, expression).getValue());
+    }
+
+    @Test
+    public void testArithmetic() {
+        List<Statement> statements = fold("int a = 1 + 2 * 3; int b = (10 - 4) / 4; long c = 5 % 3; int d = 7 / 2;");
+        assertLiteral(7, initializer(statements.get(0)));
+        assertLiteral(1, initializer(statements.get(1)));
+        assertLiteral(2, initializer(statements.get(2)));
+        assertLiteral(3, initializer(statements.get(3)));
+    }
+
+    @Test
+    public void testComparisons() {
+        List<Statement> statements = fold("bool a = 1 < 2; bool b = 3 == 4; bool c = \"x\" != \"y\";");
+        assertLiteral(true, initializer(statements.get(0)));
+        assertLiteral(false, initializer(statements.get(1)));
+        assertLiteral(true, initializer(statements.get(2)));
+    }
+
+    @Test
+    public void testStringConcatenation() {
+        List<Statement> statements = fold("string s = \"a\" + 1 + \"b\";");
+        assertLiteral("a1b", initializer(statements.getFirst()));
+    }
+
+    @Test
+    public void testDivisionByZeroIsNotFolded() {
+        List<Statement> statements = fold("int a = 1 / 0;");
+        assertInstanceOf(Expression.Binary.class, initializer(statements.getFirst()));
+    }
+
+    @Test
+    public void testIdentities() {
+        List<Statement> statements = fold("int x = 5; int a = x * 1; int b = 0 + x; string s = \"\"; string t = s + 0;");
+        assertInstanceOf(Expression.Variable.class, initializer(statements.get(1)));
+        assertInstanceOf(Expression.Variable.class, initializer(statements.get(2)));
+        assertInstanceOf(Expression.Binary.class, initializer(statements.get(4)));
+    }
+
+    @Test
+    public void testLogical() {
+        List<Statement> statements = fold("bool a = !false || x; bool b = false && x; bool c = y && true;");
+        assertLiteral(true, initializer(statements.get(0)));
+        assertLiteral(false, initializer(statements.get(1)));
+        assertInstanceOf(Expression.Variable.class, initializer(statements.get(2)));
+    }
+
+    @Test
+    public void testIfPruning() {
+        List<Statement> statements = fold("if (1 < 2) { print(\"yes\"); } else { print(\"no\"); } if (false) print(\"never\");");
+        var thenBranch = assertInstanceOf(Statement.BlockStatement.class, statements.get(0));
+        assertEquals(1, thenBranch.getStatements().size());
+
+        var pruned = assertInstanceOf(Statement.BlockStatement.class, statements.get(1));
+        assertTrue(pruned.getStatements().isEmpty());
+    }
+}
@@ -0,0 +1,90 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.parser.Statement;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadCodeEliminatorTest {
+    private static List<String> names(List<Statement> statements) {
+        return statements.stream()
+                .map(statement -> switch (statement) {
+                    case Statement.FunctionStatement function -> "fn " + function.getName().value();
+                    case Statement.ClassStatement classStatement -> "class " + classStatement.getName().value();
+                    default -> statement.getClass().getSimpleName();
+                })
+                .toList();
+    }
+
+    @Test
+    public void testUnreachableFunctionsAreRemoved() {
+        List<Statement> statements = new DeadCodeEliminator().eliminate(parse("""
+                int unused() {
+                    return 1;
+                }
+                int helper(int a) {
+                    return a * 2;
+                }
+                int entry(int a) {
+                    return helper(a) + 1;
+                }
+                int onlyCalledByUnused() {
+                    return 2;
+                }
+                int result = entry(3);
+                """));
+
+        assertEquals(List.of("fn helper", "fn entry", "VariableStatement"), names(statements));
+    }
+
+    @Test
+    public void testClassesKeepOnlyCalledMethods() {
+        List<Statement> source = parse("""
+                class Unused {
+                }
+                class Base {
+                    string describe() {
+                        return "base";
+                    }
+                }
+                class Greeter extends Base {
+                    Greeter() {
+                    }
+                    string greet() {
+                        return describe();
+                    }
+                    string farewell() {
+                        return "bye";
+                    }
+                }
+                Greeter greeter = new Greeter();
+                print(greeter.greet());
+                """);
+        List<Statement> statements = new DeadCodeEliminator().eliminate(source);
+
+        assertEquals(List.of("class Base", "class Greeter", "VariableStatement", "ExpressionStatement"), names(statements));
+
+        var base = (Statement.ClassStatement) statements.getFirst();
+        assertEquals(1, base.getMethods().size());
+
+        var greeter = (Statement.ClassStatement) statements.get(1);
+        assertEquals(1, greeter.getMethods().size());
+        assertEquals("greet", greeter.getMethods().getFirst().getName().value());
+        assertEquals(1, greeter.getConstructors().size());
+
+        assertSame(source.get(1), statements.getFirst(), "kept statements should be returned as-is");
+    }
+
+    @Test
+    public void testFunctionsAreSharedBetweenModules() {
+        List<List<Statement>> modules = new DeadCodeEliminator().eliminateAll(List.of(
+                parse("int square(int a) { return a * a; } int cube(int a) { return a * a * a; }"),
+                parse("int x = square(4);")));
+
+        assertEquals(List.of("fn square"), names(modules.get(0)));
+        assertEquals(List.of("VariableStatement"), names(modules.get(1)));
+    }
+}
@@ -0,0 +1,151 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.Statement;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EscapeAnalyzerTest {
+    private static final String POINT = """
+            class Point {
+                int x;
+                int y;
+
+                Point() {
+                }
+            }
+            """;
+
+    // Finds the local variables declared directly in the body of each function, in order
+    private static List<Statement.VariableStatement> locals(List<Statement> statements) {
+        List<Statement.VariableStatement> locals = new ArrayList<>();
+        for (Statement statement : statements) {
+            if (statement instanceof Statement.FunctionStatement function) {
+                collect(function.getBody(), locals);
+            }
+        }
+
+        return locals;
+    }
+
+    private static void collect(List<Statement> statements, List<Statement.VariableStatement> locals) {
+        for (Statement statement : statements) {
+            switch (statement) {
+                case Statement.VariableStatement variable -> locals.add(variable);
+                case Statement.BlockStatement block -> collect(block.getStatements(), locals);
+                case Statement.ForStatement loop -> collect(List.of(loop.getBody()), locals);
+                default -> {
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testObjectOnlyUsedForFieldsIsLocal() {
+        List<Statement> statements = parse(POINT + """
+                int sum(int n) {
+                    int total = 0;
+                    for (int i = 0; i < n; i = i + 1) {
+                        Point p = new Point();
+                        p.x = i;
+                        total = total + p.x;
+                    }
+                    return total;
+                }
+                """);
+        EscapeAnalysis analysis = new EscapeAnalyzer().analyze(statements);
+
+        List<Statement.VariableStatement> locals = locals(statements);
+        assertFalse(analysis.isLocalObject(locals.get(0)));
+        assertTrue(analysis.isLocalObject(locals.get(1)));
+        assertTrue(analysis.isLocalAllocation((Expression.New) locals.get(1).getInitializer()));
+        assertEquals(1, analysis.size());
+    }
+
+    @Test
+    public void testEscapingObjectsAreNotLocal() {
+        List<Statement> statements = parse(POINT + """
+                Point kept;
+                Point returned() {
+                    Point p = new Point();
+                    return p;
+                }
+                void passed() {
+                    Point p = new Point();
+                    print(p);
+                }
+                void stored() {
+                    Point p = new Point();
+                    kept = p;
+                }
+                void reassigned() {
+                    Point p = new Point();
+                    p = new Point();
+                }
+                void captured() {
+                    Point p = new Point();
+                    int read() {
+                        return p.x;
+                    }
+                }
+                """);
+
+        assertEquals(0, new EscapeAnalyzer().analyze(statements).size());
+    }
+
+    @Test
+    public void testConstructorStoringFieldsIsInlined() {
+        List<Statement> statements = parse("""
+                class Pair {
+                    int first;
+                    int second;
+
+                    Pair(int first, int second) {
+                        this.second = second;
+                        this.first = first;
+                    }
+                }
+                int sum() {
+                    Pair pair = new Pair(1, 2);
+                    return pair.first + pair.second;
+                }
+                """);
+        EscapeAnalysis analysis = new EscapeAnalyzer().analyze(statements);
+
+        Statement.VariableStatement pair = locals(statements).getFirst();
+        assertTrue(analysis.isLocalObject(pair));
+        assertEquals(2, analysis.getFieldCount(pair));
+
+        var constructor = ((Statement.ClassStatement) statements.getFirst()).getConstructors().getFirst();
+        var storeSecond = (Expression.Set) ((Statement.ExpressionStatement) constructor.getBody().get(0)).getExpression();
+        var storeFirst = (Expression.Set) ((Statement.ExpressionStatement) constructor.getBody().get(1)).getExpression();
+        var sum = (Expression.Binary) ((Statement.ReturnStatement) ((Statement.FunctionStatement) statements.get(1)).getBody().get(1)).getValue();
+        assertEquals(analysis.getFieldSlot(storeFirst), analysis.getFieldSlot(sum.getLeft()));
+        assertEquals(analysis.getFieldSlot(storeSecond), analysis.getFieldSlot(sum.getRight()));
+        assertNotEquals(analysis.getFieldSlot(storeFirst), analysis.getFieldSlot(storeSecond));
+    }
+
+    @Test
+    public void testConstructorUsingThisPreventsLocalObjects() {
+        List<Statement> statements = parse("""
+                class Node {
+                    string name;
+
+                    Node() {
+                        this.name = "" + this;
+                    }
+                }
+                void build() {
+                    Node node = new Node();
+                    node.name = "";
+                }
+                """);
+
+        assertEquals(0, new EscapeAnalyzer().analyze(statements).size());
+    }
+}
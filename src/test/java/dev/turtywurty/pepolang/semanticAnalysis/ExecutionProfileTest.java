@@ -0,0 +1,116 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.Statement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionProfileTest {
+    private static final String SOURCE = """
+            int sign(int x) {
+                if (x < 0) {
+                    return -1;
+                }
+                return 1;
+            }
+            int unused() {
+                return 0;
+            }
+            sign(5);
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testCountsSurviveSavingAndReparsing() throws IOException {
+        var profile = new ExecutionProfile();
+        List<Statement> statements = parse(SOURCE);
+        ExecutionProfile.Sites sites = profile.record(List.of(statements));
+        run(sites, statements, 5);
+
+        Path file = this.directory.resolve("profile.bin");
+        profile.save(file);
+
+        List<Statement> reparsed = parse(SOURCE);
+        ExecutionProfile.Sites loaded = ExecutionProfile.load(file).lookUp(reparsed);
+        assertArrayEquals(new long[]{0, 5}, loaded.getBranchCounts(ifStatement(reparsed)));
+        assertEquals(5, loaded.getCallCount(call(reparsed)));
+        assertEquals(5, loaded.getEntryCount(function(reparsed, 0)));
+        assertEquals(0, loaded.getEntryCount(function(reparsed, 1)));
+        assertEquals(5, loaded.getTotalEntries());
+        assertEquals(profile.fingerprint(), loaded.fingerprint());
+    }
+
+    @Test
+    public void testRunsAddUp() {
+        var profile = new ExecutionProfile();
+        List<Statement> first = parse(SOURCE);
+        run(profile.record(List.of(first)), first, 2);
+        List<Statement> second = parse(SOURCE);
+        run(profile.record(List.of(second)), second, 3);
+
+        List<Statement> third = parse(SOURCE);
+        assertEquals(5, profile.lookUp(third).getCallCount(call(third)));
+    }
+
+    @Test
+    public void testEditedFunctionsLoseTheirCounts() {
+        var profile = new ExecutionProfile();
+        List<Statement> statements = parse(SOURCE);
+        String before = profile.fingerprint();
+        run(profile.record(List.of(statements)), statements, 1);
+        assertNotEquals(before, profile.fingerprint());
+
+        List<Statement> edited = parse("int padding = 0;\n" + SOURCE.replace("x < 0", "x <= 0"));
+        ExecutionProfile.Sites sites = profile.lookUp(edited);
+        assertNull(sites.getBranchCounts(ifStatement(edited)));
+        assertEquals(-1, sites.getEntryCount(function(edited, 0)));
+        // untouched functions keep their counts, wherever they moved to
+        assertEquals(0, sites.getEntryCount(function(edited, 1)));
+    }
+
+    @Test
+    public void testUnreadableFilesGiveAnEmptyProfile() throws IOException {
+        Path file = this.directory.resolve("garbage.bin");
+        Files.writeString(file, "not a profile");
+
+        List<Statement> statements = parse(SOURCE);
+        assertEquals(-1, ExecutionProfile.load(file).lookUp(statements).getCallCount(call(statements)));
+        assertEquals(-1, ExecutionProfile.load(this.directory.resolve("missing.bin")).lookUp(statements).getCallCount(call(statements)));
+    }
+
+    /**
+     * Records what running {@code sign(5)} the given number of times would.
+     */
+    private static void run(ExecutionProfile.Sites sites, List<Statement> statements, int times) {
+        for (int index = 0; index < times; index++) {
+            sites.recordCall(call(statements), function(statements, 0));
+            sites.recordBranch(ifStatement(statements), false);
+        }
+    }
+
+    private static Statement.FunctionStatement function(List<Statement> statements, int index) {
+        return statements.stream()
+                .filter(Statement.FunctionStatement.class::isInstance)
+                .map(Statement.FunctionStatement.class::cast)
+                .toList()
+                .get(index);
+    }
+
+    private static Statement.IfStatement ifStatement(List<Statement> statements) {
+        return (Statement.IfStatement) function(statements, 0).getBody().getFirst();
+    }
+
+    private static Expression.Call call(List<Statement> statements) {
+        return (Expression.Call) ((Statement.ExpressionStatement) statements.getLast()).getExpression();
+    }
+}
@@ -0,0 +1,89 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.parser.Statement;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PurityAnalyzerTest {
+    private static List<String> pureNames(String source) {
+        List<Statement> statements = parse(source);
+        Set<Statement.FunctionStatement> pure = new PurityAnalyzer().analyze(statements);
+        return statements.stream()
+                .filter(pure::contains)
+                .map(statement -> String.valueOf(((Statement.FunctionStatement) statement).getName().value()))
+                .toList();
+    }
+
+    @Test
+    public void testRecursiveArithmeticIsPure() {
+        assertEquals(List.of("fib", "hypot"), pureNames("""
+                int fib(int n) {
+                    if (n < 2) {
+                        return n;
+                    }
+                    return fib(n - 1) + fib(n - 2);
+                }
+                float hypot(float a, float b) {
+                    float squared = a * a + b * b;
+                    return sqrt(squared);
+                }
+                """));
+    }
+
+    @Test
+    public void testSideEffectsAndGlobalsAreImpure() {
+        assertEquals(List.of("sum"), pureNames("""
+                int counter = 0;
+                int count() {
+                    counter = counter + 1;
+                    return counter;
+                }
+                int scaled(int a) {
+                    return a * counter;
+                }
+                void shout(string message) {
+                    print(message);
+                }
+                int roll() {
+                    return randomInt(1, 6);
+                }
+                int sum(int n) {
+                    int total = 0;
+                    for (int i = 0; i < n; i = i + 1) {
+                        total = total + i;
+                    }
+                    return total;
+                }
+                """));
+    }
+
+    @Test
+    public void testCallingImpureFunctionIsImpure() {
+        assertEquals(List.of(), pureNames("""
+                int log(int a) {
+                    print(a);
+                    return a;
+                }
+                int twice(int a) {
+                    return log(a) * 2;
+                }
+                int even(int n) {
+                    if (n == 0) {
+                        return 1;
+                    }
+                    return odd(n - 1) + twice(0);
+                }
+                int odd(int n) {
+                    if (n == 0) {
+                        return 0;
+                    }
+                    return even(n - 1);
+                }
+                """));
+    }
+}
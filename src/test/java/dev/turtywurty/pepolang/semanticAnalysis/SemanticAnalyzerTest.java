@@ -0,0 +1,107 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.lexer.Lexer;
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.Parser;
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.MethodSymbol;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SemanticAnalyzerTest {
+    @Test
+    public void testBodiesOnlySeeEarlierGlobals() {
+        SemanticAnalyzer analyzer = analyze("""
+                int early = 1;
+                int useEarly() {
+                    return early;
+                }
+                int useLate() {
+                    return late;
+                }
+                int late = 2;
+                """);
+
+        assertEquals(1, analyzer.getErrors().size());
+        assertEquals("late", analyzer.getErrors().getFirst().getToken().value());
+    }
+
+    @Test
+    public void testErrorsAreReportedInSourceOrder() {
+        var source = new StringBuilder();
+        for (int index = 0; index < 200; index++) {
+            source.append("int f").append(index).append("(int a) {\n    return missing").append(index).append(";\n}\n");
+        }
+
+        List<SemanticException> errors = analyze(source.toString()).getErrors();
+        assertEquals(200, errors.size());
+        for (int index = 0; index < errors.size(); index++) {
+            assertEquals("missing" + index, errors.get(index).getToken().value());
+        }
+    }
+
+    @Test
+    public void testRecursionAndParameters() {
+        SemanticAnalyzer analyzer = analyze("""
+                int factorial(int n) {
+                    if (n <= 1) {
+                        return 1;
+                    }
+                    return n * factorial(n - 1);
+                }
+                int x = factorial(5);
+                """);
+
+        assertFalse(analyzer.hadError(), () -> analyzer.getErrors().toString());
+    }
+
+    @Test
+    public void testOverloadsResolveByArgumentTypes() {
+        List<Statement> statements = new Parser(new Lexer("""
+                class Greeter {
+                    Greeter() {
+                    }
+                    Greeter(string name) {
+                    }
+                    string greet() {
+                        return "hi";
+                    }
+                    string greet(string name, int times) {
+                        return name;
+                    }
+                }
+                Greeter greeter = new Greeter("bob");
+                string greeting = greeter.greet("amy", 3);
+                """).lex()).parse();
+        var analyzer = new SemanticAnalyzer(statements);
+        analyzer.analyze();
+        assertFalse(analyzer.hadError(), () -> analyzer.getErrors().toString());
+
+        var greeting = (Statement.VariableStatement) statements.getLast();
+        var call = (Expression.Call) greeting.getInitializer();
+        MethodSymbol overload = assertInstanceOf(MethodSymbol.class, analyzer.getTypes().getDeclaration(call.getCallee()));
+        assertEquals(2, overload.getParameters().size());
+
+        SemanticAnalyzer mismatched = analyze("""
+                class Greeter {
+                    Greeter() {
+                    }
+                    string greet(string name) {
+                        return name;
+                    }
+                }
+                Greeter greeter = new Greeter();
+                string greeting = greeter.greet(1);
+                """);
+        assertEquals(1, mismatched.getErrors().size());
+    }
+
+    private static SemanticAnalyzer analyze(String source) {
+        var analyzer = new SemanticAnalyzer(new Parser(new Lexer(source).lex()).parse());
+        analyzer.analyze();
+        return analyzer;
+    }
+}
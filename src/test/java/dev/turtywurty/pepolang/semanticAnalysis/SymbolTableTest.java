@@ -0,0 +1,57 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.MethodSymbol;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.VariableSymbol;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SymbolTableTest {
+    @Test
+    public void testExitScopeRestoresShadowedBindings() {
+        var table = new SymbolTable();
+        var outer = new VariableSymbol("x", PrimitiveType.INT);
+        table.addSymbol(outer);
+
+        table.enterScope();
+        var inner = new VariableSymbol("x", PrimitiveType.STRING);
+        table.addSymbol(inner);
+        table.addSymbol(new VariableSymbol("y", PrimitiveType.INT));
+        assertSame(inner, table.getVariable("x"));
+        assertTrue(table.isSymbolDefinedInCurrentScope("y", SymbolType.VARIABLE));
+
+        table.exitScope();
+        assertSame(outer, table.getVariable("x"));
+        assertFalse(table.containsSymbol("y", SymbolType.VARIABLE));
+        assertEquals(List.of(outer), table.getGlobalSymbols());
+    }
+
+    @Test
+    public void testOverloadsComeFromTheInnermostScope() {
+        var table = new SymbolTable();
+        var global = new MethodSymbol("f", PrimitiveType.VOID, List.of());
+        table.addSymbol(global);
+
+        table.enterScope();
+        var first = new MethodSymbol("f", PrimitiveType.INT, List.of());
+        var second = new MethodSymbol("f", PrimitiveType.INT, List.of(new VariableSymbol("a", PrimitiveType.INT)));
+        table.addSymbol(first);
+        table.addSymbol(second);
+        assertEquals(List.of(first, second), table.getMethods("f"));
+
+        table.exitScope();
+        assertEquals(List.of(global), table.getMethods("f"));
+    }
+
+    @Test
+    public void testKindsAreSeparate() {
+        var table = new SymbolTable();
+        table.addSymbol(new MethodSymbol("value", PrimitiveType.INT, List.of()));
+
+        assertTrue(table.containsSymbol("value"));
+        assertFalse(table.containsSymbol("value", SymbolType.VARIABLE));
+        assertNull(table.getVariable("value"));
+    }
+}
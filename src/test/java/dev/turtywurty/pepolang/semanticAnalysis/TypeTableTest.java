@@ -0,0 +1,93 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.MethodSymbol;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.VariableSymbol;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static dev.turtywurty.pepolang.parser.ParserTestUtils.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TypeTableTest {
+    @Test
+    public void testExpressionsAreTyped() {
+        List<Statement> statements = parse("""
+                int i = 2;
+                float r = i + parseDouble("4");
+                """);
+        TypeTable types = analyze(statements).getTypes();
+
+        Expression.Binary sum = (Expression.Binary) initializer(statements.get(1));
+        assertSame(Type.DOUBLE, types.getType(sum));
+        assertSame(Type.INT, types.getType(sum.getLeft()));
+
+        VariableSymbol declaration = assertInstanceOf(VariableSymbol.class, types.getDeclaration(sum.getLeft()));
+        assertEquals("i", declaration.getName());
+
+        Expression.Call call = (Expression.Call) sum.getRight();
+        assertSame(Type.DOUBLE, types.getType(call));
+        assertEquals("parseDouble", types.getDeclaration(call).getName());
+        assertInstanceOf(MethodSymbol.class, types.getDeclaration(call.getCallee()));
+        assertNull(types.getType(call.getCallee()));
+    }
+
+    @Test
+    public void testBodiesAreTyped() {
+        List<Statement> statements = parse("""
+                int twice(int n) {
+                    return n * 2;
+                }
+                """);
+        TypeTable types = analyze(statements).getTypes();
+
+        var function = (Statement.FunctionStatement) statements.getFirst();
+        var returnStatement = (Statement.ReturnStatement) function.getBody().getFirst();
+        Expression.Binary product = (Expression.Binary) returnStatement.getValue();
+        assertSame(Type.INT, types.getType(product));
+        assertEquals("n", types.getDeclaration(product.getLeft()).getName());
+    }
+
+    @Test
+    public void testFoldedExpressionsKeepTheirType() {
+        List<Statement> statements = parse("""
+                int l = randomInt(1, 5);
+                int x = 1 * 2 + l;
+                """);
+        TypeTable types = analyze(statements).getTypes();
+
+        List<Statement> folded = new ConstantFolder(types).fold(statements);
+        Expression.Binary sum = (Expression.Binary) initializer(folded.get(1));
+        assertNotSame(initializer(statements.get(1)), sum);
+        assertSame(Type.INT, types.getType(sum));
+        assertInstanceOf(Expression.Literal.class, sum.getLeft());
+        assertSame(Type.INT, types.getType(sum.getLeft()));
+    }
+
+    @Test
+    public void testStoredNumbersAreConverted() {
+        List<Statement> statements = parse("""
+                int i = 2;
+                float f = i;
+                float g = f;
+                """);
+        TypeTable types = analyze(statements).getTypes();
+
+        assertNull(types.getConversion(initializer(statements.get(0))));
+        assertSame(Type.FLOAT, types.getConversion(initializer(statements.get(1))));
+        assertNull(types.getConversion(initializer(statements.get(2))));
+    }
+
+    private static Expression initializer(Statement statement) {
+        return ((Statement.VariableStatement) statement).getInitializer();
+    }
+
+    private static SemanticAnalyzer analyze(List<Statement> statements) {
+        var analyzer = new SemanticAnalyzer(statements);
+        analyzer.analyze();
+        assertFalse(analyzer.hadError(), () -> analyzer.getErrors().toString());
+        return analyzer;
+    }
+}
@@ -0,0 +1,54 @@
+package dev.turtywurty.pepolang.semanticAnalysis;
+
+import dev.turtywurty.pepolang.lexer.Lexer;
+import dev.turtywurty.pepolang.lexer.Token;
+import dev.turtywurty.pepolang.lexer.TokenType;
+import dev.turtywurty.pepolang.parser.Expression;
+import dev.turtywurty.pepolang.parser.Parser;
+import dev.turtywurty.pepolang.parser.Statement;
+import dev.turtywurty.pepolang.semanticAnalysis.symbol.ValueSymbol;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TypeTest {
+    @Test
+    public void testTypesAreInterned() {
+        assertSame(Type.INT, Type.of(PrimitiveType.INT));
+        assertSame(Type.INT, Type.of(new Token(TokenType.KEYWORD_INT, "int", 0)));
+        assertSame(Type.ofClass("Dog"), Type.of(new Token(TokenType.IDENTIFIER, "Dog", 0)));
+        assertNotSame(Type.ofClass("Dog"), Type.ofClass("Cat"));
+    }
+
+    @Test
+    public void testValueSymbolsAreShared() {
+        assertSame(ValueSymbol.of(Type.STRING), ValueSymbol.of(Type.STRING));
+        assertSame(Type.STRING, ValueSymbol.of(Type.STRING).getReturnType());
+    }
+
+    @Test
+    public void testBinaryRulesUseInternedTypes() {
+        var plus = new Token(TokenType.ADD, "+", 0);
+        assertSame(Type.LONG, TypeChecker.checkBinaryExpression(plus, Type.INT, Type.LONG));
+        assertSame(Type.STRING, TypeChecker.checkBinaryExpression(plus, Type.STRING, Type.INT));
+        assertThrows(SemanticException.class, () -> TypeChecker.checkBinaryExpression(plus, Type.ofClass("Dog"), Type.INT));
+    }
+
+    @Test
+    public void testWholeExpressionsAreCheckedInOnePass() {
+        Map<String, Type> variables = Map.of("a", Type.INT, "b", Type.LONG, "flag", Type.BOOL);
+
+        assertSame(Type.LONG, TypeChecker.checkExpression(expression("(a + 2) * b - -a;"), variables::get));
+        assertSame(Type.BOOL, TypeChecker.checkExpression(expression("flag && a < b;"), variables::get));
+        assertNull(TypeChecker.checkExpression(expression("a + unknown;"), variables::get));
+        assertNull(TypeChecker.checkExpression(expression("a + time();"), variables::get));
+        assertThrows(SemanticException.class, () -> TypeChecker.checkExpression(expression("flag * a;"), variables::get));
+    }
+
+    private static Expression expression(String source) {
+        Statement statement = new Parser(new Lexer(source).lex()).parse().getFirst();
+        return ((Statement.ExpressionStatement) statement).getExpression();
+    }
+}
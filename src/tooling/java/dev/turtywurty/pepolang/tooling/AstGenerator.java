@@ -13,6 +13,14 @@ import java.nio.file.Paths;
 import java.util.*;
 
 public class AstGenerator {
+    private static final String PACKAGE = "dev.turtywurty.pepolang.parser";
+    private static final ClassName EXPRESSION_TYPE = ClassName.get(PACKAGE, "Expression");
+    private static final ClassName STATEMENT_TYPE = ClassName.get(PACKAGE, "Statement");
+    private static final ClassName PARAMETER_TYPE = ClassName.get(PACKAGE, "Parameter");
+    private static final ClassName AST_ARENA = ClassName.get(PACKAGE, "AstArena");
+    private static final ClassName AST_KIND = ClassName.get(PACKAGE, "AstKind");
+    private static final TypeName TOKEN_TYPE = TypeName.get(Token.class);
+
     public static void main(String[] args) throws IOException {
         if (args.length != 1) {
             System.err.println("Usage: generate_ast <output directory>");
@@ -131,11 +139,21 @@ public class AstGenerator {
                         "condition", expression,
                         "body", statement
                 ),
+                "ForStatement", CollectionUtility.createLinkedHashMap(
+                        "initializer", statement,
+                        "condition", expression,
+                        "increment", expression,
+                        "body", statement
+                ),
                 "BreakStatement", CollectionUtility.createLinkedHashMap(),
                 "ContinueStatement", CollectionUtility.createLinkedHashMap(),
                 "ReturnStatement", CollectionUtility.createLinkedHashMap(
                         "keyword", token,
                         "value", expression
+                ),
+                "ImportStatement", CollectionUtility.createLinkedHashMap(
+                        "keyword", token,
+                        "path", token
                 )
         );
 
@@ -143,6 +161,10 @@ public class AstGenerator {
         defineVisitor(outputDir, "Expression", expressionTypes);
         defineAst(outputDir, "Statement", statementTypes);
         defineVisitor(outputDir, "Statement", statementTypes);
+        defineArenaKinds(outputDir, expressionTypes, statementTypes);
+        defineArenaEncoder(outputDir, expressionTypes, statementTypes);
+        defineArenaDecoder(outputDir, expressionTypes, statementTypes);
+        defineArenaVisitor(outputDir, expressionTypes, statementTypes);
     }
 
     private static void defineVisitor(String outputDir, String baseName, LinkedHashMap<String, LinkedHashMap<String, TypeName>> types) throws IOException {
@@ -238,4 +260,321 @@ public class AstGenerator {
 
         return clazz.build();
     }
+
+    private static void defineArenaKinds(String outputDir, LinkedHashMap<String, LinkedHashMap<String, TypeName>> expressionTypes, LinkedHashMap<String, LinkedHashMap<String, TypeName>> statementTypes) throws IOException {
+        TypeSpec.Builder kinds = TypeSpec.enumBuilder("AstKind")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(JavaGenerated.class);
+
+        for (FieldKind kind : List.of(FieldKind.NONE, FieldKind.TOKEN, FieldKind.VALUE, FieldKind.PARAMETER, FieldKind.LIST)) {
+            kinds.addEnumConstant(kind.name());
+        }
+
+        for (String type : expressionTypes.keySet()) {
+            kinds.addEnumConstant(StringUtility.toUpperSnakeCase(type));
+        }
+
+        for (String type : statementTypes.keySet()) {
+            kinds.addEnumConstant(StringUtility.toUpperSnakeCase(type));
+        }
+
+        writeGenerated(outputDir, kinds.build());
+    }
+
+    private static void defineArenaEncoder(String outputDir, LinkedHashMap<String, LinkedHashMap<String, TypeName>> expressionTypes, LinkedHashMap<String, LinkedHashMap<String, TypeName>> statementTypes) throws IOException {
+        TypeName integer = ClassName.get(Integer.class);
+        TypeSpec.Builder encoder = TypeSpec.classBuilder("AstArenaEncoder")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(JavaGenerated.class)
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(PACKAGE, "ExpressionVisitor"), integer))
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(PACKAGE, "StatementVisitor"), integer))
+                .addField(AST_ARENA, "arena", Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(AST_ARENA, "arena")
+                        .addStatement("this.arena = arena")
+                        .build());
+
+        for (ClassName base : List.of(EXPRESSION_TYPE, STATEMENT_TYPE)) {
+            String parameter = StringUtility.decapitalize(base.simpleName());
+            encoder.addMethod(MethodSpec.methodBuilder("encode")
+                    .addModifiers(Modifier.PUBLIC)
+                    .addParameter(base, parameter)
+                    .returns(TypeName.INT)
+                    .beginControlFlow("if ($L == null)", parameter)
+                    .addStatement("return this.arena.addNone()")
+                    .endControlFlow()
+                    .addStatement("return $L.accept(this)", parameter)
+                    .build());
+        }
+
+        encoder.addMethod(defineListEncoder("encodeExpressions", WildcardTypeName.subtypeOf(EXPRESSION_TYPE), "encode"));
+        encoder.addMethod(defineListEncoder("encodeStatements", WildcardTypeName.subtypeOf(STATEMENT_TYPE), "encode"));
+        encoder.addMethod(defineListEncoder("encodeParameters", PARAMETER_TYPE, "this.arena.addParameter"));
+
+        for (Map.Entry<ClassName, LinkedHashMap<String, LinkedHashMap<String, TypeName>>> entry : CollectionUtility.createLinkedHashMap(EXPRESSION_TYPE, expressionTypes, STATEMENT_TYPE, statementTypes).entrySet()) {
+            ClassName base = entry.getKey();
+            String parameter = StringUtility.decapitalize(base.simpleName());
+            for (Map.Entry<String, LinkedHashMap<String, TypeName>> type : entry.getValue().entrySet()) {
+                MethodSpec.Builder method = MethodSpec.methodBuilder("visit" + type.getKey())
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(base.nestedClass(type.getKey()), parameter)
+                        .returns(integer);
+
+                String primaryToken = null;
+                List<String> children = new ArrayList<>();
+                for (Map.Entry<String, TypeName> field : type.getValue().entrySet()) {
+                    FieldKind kind = FieldKind.of(field.getValue());
+                    String local = field.getKey() + "Node";
+                    String getter = parameter + ".get" + StringUtility.capitalize(field.getKey()) + "()";
+                    method.addStatement("int $L = $L", local, kind.encoder.formatted(getter));
+                    children.add(local);
+
+                    if (kind == FieldKind.TOKEN && primaryToken == null) {
+                        primaryToken = local;
+                    }
+                }
+
+                CodeBlock.Builder addNode = CodeBlock.builder()
+                        .add("return this.arena.addNode($T.$L, ", AST_KIND, StringUtility.toUpperSnakeCase(type.getKey()));
+                if (primaryToken == null) {
+                    addNode.add("$T.NO_NODE", AST_ARENA);
+                } else {
+                    addNode.add("$L", primaryToken);
+                }
+
+                for (String child : children) {
+                    addNode.add(", $L", child);
+                }
+
+                method.addStatement(addNode.add(")").build());
+                encoder.addMethod(method.build());
+            }
+        }
+
+        writeGenerated(outputDir, encoder.build());
+    }
+
+    private static MethodSpec defineListEncoder(String name, TypeName elementType, String elementEncoder) {
+        return MethodSpec.methodBuilder(name)
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(ParameterizedTypeName.get(ClassName.get(List.class), elementType), "elements")
+                .returns(TypeName.INT)
+                .beginControlFlow("if (elements == null)")
+                .addStatement("return this.arena.addNone()")
+                .endControlFlow()
+                .addStatement("int[] children = new int[elements.size()]")
+                .beginControlFlow("for (int index = 0; index < children.length; index++)")
+                .addStatement("children[index] = $L(elements.get(index))", elementEncoder)
+                .endControlFlow()
+                .addStatement("return this.arena.addList(children)")
+                .build();
+    }
+
+    private static void defineArenaDecoder(String outputDir, LinkedHashMap<String, LinkedHashMap<String, TypeName>> expressionTypes, LinkedHashMap<String, LinkedHashMap<String, TypeName>> statementTypes) throws IOException {
+        TypeSpec.Builder decoder = TypeSpec.classBuilder("AstArenaDecoder")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(JavaGenerated.class)
+                .addField(AST_ARENA, "arena", Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(AST_ARENA, "arena")
+                        .addStatement("this.arena = arena")
+                        .build());
+
+        decoder.addMethod(defineNodeDecoder(EXPRESSION_TYPE, expressionTypes));
+        decoder.addMethod(defineNodeDecoder(STATEMENT_TYPE, statementTypes));
+        decoder.addMethod(defineListDecoder("decodeExpressions", EXPRESSION_TYPE, "decodeExpression"));
+        decoder.addMethod(defineListDecoder("decodeStatements", STATEMENT_TYPE, "decodeStatement"));
+        decoder.addMethod(MethodSpec.methodBuilder("decodeParameters")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(TypeName.INT, "node")
+                .returns(ParameterizedTypeName.get(ClassName.get(List.class), PARAMETER_TYPE))
+                .addCode(CodeBlock.builder()
+                        .beginControlFlow("if (this.arena.kind(node) == $T.NONE)", AST_KIND)
+                        .addStatement("return null")
+                        .endControlFlow()
+                        .addStatement("$T<$T> parameters = new $T<>(this.arena.childCount(node))", List.class, PARAMETER_TYPE, ArrayList.class)
+                        .beginControlFlow("for (int child = this.arena.firstChild(node); child != $T.NO_NODE; child = this.arena.nextSibling(child))", AST_ARENA)
+                        .addStatement("parameters.add(decodeParameter(child))")
+                        .endControlFlow()
+                        .addStatement("return parameters")
+                        .build())
+                .build());
+        decoder.addMethod(MethodSpec.methodBuilder("decodeParameter")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(TypeName.INT, "node")
+                .returns(PARAMETER_TYPE)
+                .beginControlFlow("if (this.arena.kind(node) == $T.NONE)", AST_KIND)
+                .addStatement("return null")
+                .endControlFlow()
+                .addStatement("int name = this.arena.firstChild(node)")
+                .addStatement("int type = this.arena.nextSibling(name)")
+                .addStatement("return new $T(this.arena.token(name), this.arena.token(type))", PARAMETER_TYPE)
+                .build());
+
+        writeGenerated(outputDir, decoder.build());
+    }
+
+    private static void defineArenaVisitor(String outputDir, LinkedHashMap<String, LinkedHashMap<String, TypeName>> expressionTypes, LinkedHashMap<String, LinkedHashMap<String, TypeName>> statementTypes) throws IOException {
+        TypeVariableName r = TypeVariableName.get("R");
+        ClassName node = AST_ARENA.nestedClass("Node");
+
+        TypeSpec.Builder visitor = TypeSpec.interfaceBuilder("AstNodeVisitor")
+                .addModifiers(Modifier.PUBLIC)
+                .addTypeVariable(r)
+                .addAnnotation(JavaGenerated.class);
+
+        CodeBlock.Builder dispatch = CodeBlock.builder()
+                .add("return switch (node.kind()) {\n$>");
+
+        List<String> types = new ArrayList<>(expressionTypes.keySet());
+        types.addAll(statementTypes.keySet());
+        for (String type : types) {
+            visitor.addMethod(MethodSpec.methodBuilder("visit" + type)
+                    .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                    .addParameter(node, "node")
+                    .returns(r)
+                    .build());
+            dispatch.add("case $L -> visit$L(node);\n", StringUtility.toUpperSnakeCase(type), type);
+        }
+
+        dispatch.add("default -> throw new $T(\"Node \" + node.index() + \" is not an expression or statement: \" + node.kind());\n", IllegalArgumentException.class)
+                .add("$<};\n");
+
+        visitor.addMethod(MethodSpec.methodBuilder("visit")
+                .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+                .addParameter(node, "node")
+                .returns(r)
+                .addCode(dispatch.build())
+                .build());
+
+        writeGenerated(outputDir, visitor.build());
+    }
+
+    private static MethodSpec defineNodeDecoder(ClassName base, LinkedHashMap<String, LinkedHashMap<String, TypeName>> types) {
+        CodeBlock.Builder body = CodeBlock.builder()
+                .add("return switch (this.arena.kind(node)) {\n$>")
+                .add("case NONE -> null;\n");
+
+        for (Map.Entry<String, LinkedHashMap<String, TypeName>> type : types.entrySet()) {
+            body.add("case $L -> {\n$>", StringUtility.toUpperSnakeCase(type.getKey()));
+
+            boolean first = true;
+            for (Map.Entry<String, TypeName> field : type.getValue().entrySet()) {
+                if (first) {
+                    body.addStatement("int child = this.arena.firstChild(node)");
+                    first = false;
+                } else {
+                    body.addStatement("child = this.arena.nextSibling(child)");
+                }
+
+                TypeName fieldType = field.getValue().withoutAnnotations();
+                FieldKind kind = FieldKind.of(fieldType);
+                boolean needsCast = (kind == FieldKind.EXPRESSION || kind == FieldKind.STATEMENT) &&
+                        !fieldType.equals(EXPRESSION_TYPE) && !fieldType.equals(STATEMENT_TYPE);
+                if (needsCast) {
+                    body.addStatement("$T $L = ($T) $L", fieldType, field.getKey(), fieldType, kind.decoder);
+                } else {
+                    body.addStatement("$T $L = $L", fieldType, field.getKey(), kind.decoder);
+                }
+            }
+
+            body.addStatement("yield new $T($L)", base.nestedClass(type.getKey()), String.join(", ", type.getValue().keySet()))
+                    .add("$<}\n");
+        }
+
+        body.add("default -> throw new $T(\"Node \" + node + \" is not a $L: \" + this.arena.kind(node));\n", IllegalArgumentException.class, StringUtility.decapitalize(base.simpleName()))
+                .add("$<};\n");
+
+        return MethodSpec.methodBuilder("decode" + base.simpleName())
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(TypeName.INT, "node")
+                .returns(base)
+                .addCode(body.build())
+                .build();
+    }
+
+    private static MethodSpec defineListDecoder(String name, ClassName base, String elementDecoder) {
+        TypeVariableName t = TypeVariableName.get("T", base);
+        return MethodSpec.methodBuilder(name)
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build())
+                .addModifiers(Modifier.PRIVATE)
+                .addTypeVariable(t)
+                .addParameter(TypeName.INT, "node")
+                .returns(ParameterizedTypeName.get(ClassName.get(List.class), t))
+                .beginControlFlow("if (this.arena.kind(node) == $T.NONE)", AST_KIND)
+                .addStatement("return null")
+                .endControlFlow()
+                .addStatement("$T<$T> elements = new $T<>(this.arena.childCount(node))", List.class, t, ArrayList.class)
+                .beginControlFlow("for (int child = this.arena.firstChild(node); child != $T.NO_NODE; child = this.arena.nextSibling(child))", AST_ARENA)
+                .addStatement("elements.add(($T) $L(child))", t, elementDecoder)
+                .endControlFlow()
+                .addStatement("return elements")
+                .build();
+    }
+
+    private static void writeGenerated(String outputDir, TypeSpec type) throws IOException {
+        JavaFile javaFile = JavaFile.builder(PACKAGE, type)
+                .skipJavaLangImports(true)
+                .indent("    ")
+                .addFileComment("This file is automatically generated. Do not modify.")
+                .build();
+
+        javaFile.writeTo(System.out);
+        javaFile.writeTo(Paths.get(outputDir));
+    }
+
+    private enum FieldKind {
+        NONE(null, null),
+        TOKEN("this.arena.addToken(%s)", "this.arena.token(child)"),
+        VALUE("this.arena.addValue(%s)", "this.arena.value(child)"),
+        PARAMETER("this.arena.addParameter(%s)", "decodeParameter(child)"),
+        LIST(null, null),
+        EXPRESSION("encode(%s)", "decodeExpression(child)"),
+        STATEMENT("encode(%s)", "decodeStatement(child)"),
+        EXPRESSION_LIST("encodeExpressions(%s)", "decodeExpressions(child)"),
+        STATEMENT_LIST("encodeStatements(%s)", "decodeStatements(child)"),
+        PARAMETER_LIST("encodeParameters(%s)", "decodeParameters(child)");
+
+        private final String encoder;
+        private final String decoder;
+
+        FieldKind(String encoder, String decoder) {
+            this.encoder = encoder;
+            this.decoder = decoder;
+        }
+
+        private static FieldKind of(TypeName type) {
+            type = type.withoutAnnotations();
+            if (type.equals(TOKEN_TYPE))
+                return TOKEN;
+
+            if (type.equals(ClassName.OBJECT))
+                return VALUE;
+
+            if (type.equals(PARAMETER_TYPE))
+                return PARAMETER;
+
+            if (type instanceof ClassName className) {
+                if (className.equals(EXPRESSION_TYPE) || EXPRESSION_TYPE.equals(className.enclosingClassName()))
+                    return EXPRESSION;
+
+                if (className.equals(STATEMENT_TYPE) || STATEMENT_TYPE.equals(className.enclosingClassName()))
+                    return STATEMENT;
+            }
+
+            if (type instanceof ParameterizedTypeName parameterized && parameterized.rawType().equals(ClassName.get(List.class))) {
+                return switch (of(parameterized.typeArguments().getFirst())) {
+                    case EXPRESSION -> EXPRESSION_LIST;
+                    case STATEMENT -> STATEMENT_LIST;
+                    case PARAMETER -> PARAMETER_LIST;
+                    default -> throw new IllegalArgumentException("Unsupported list element type: " + parameterized);
+                };
+            }
+
+            throw new IllegalArgumentException("Unsupported AST field type: " + type);
+        }
+    }
 }
@@ -30,4 +30,22 @@ public class StringUtility {
 
         return builder.toString();
     }
+
+    public static String toUpperSnakeCase(String str) {
+        if (str == null || str.isEmpty()) {
+            return str;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < str.length(); i++) {
+            char character = str.charAt(i);
+            if (Character.isUpperCase(character) && i > 0) {
+                builder.append('_');
+            }
+
+            builder.append(Character.toUpperCase(character));
+        }
+
+        return builder.toString();
+    }
 }